@@ -0,0 +1,162 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.core.dom.Name;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.VariableAccess.*;
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class BitVectorDataFlowTest {
+
+    private static final String SOURCE = ""
+            + "class A {\n"
+            + "    int f;\n"
+            + "    int m(int p, boolean c) {\n"
+            + "        int x = p;\n"
+            + "        int y = 0;\n"
+            + "        if (c) {\n"
+            + "            y = x + 1;\n"
+            + "        } else {\n"
+            + "            x = 2;\n"
+            + "        }\n"
+            + "        int z = 1;\n"
+            + "        z = y;\n"
+            + "        f = z;\n"
+            + "        int i = 0;\n"
+            + "        while (i < p) {\n"
+            + "            i++;\n"
+            + "        }\n"
+            + "        return x;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testLiveVariables() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final LiveVariables live = LiveVariables.of(cfg);
+        assertSame(live, LiveVariables.of(cfg));
+
+        assertTrue(live.isLiveAfter(findAccess(cfg, "y = 0", "y", DECL_INIT)));
+        assertTrue(live.isLiveAfter(findAccess(cfg, "x = p", "x", DECL_INIT)));
+        assertFalse(live.isLiveAfter(findAccess(cfg, "z = 1", "z", DECL_INIT)));
+        assertTrue(live.isLiveAfter(findAccess(cfg, "z = y", "z", WRITE)));
+        assertFalse(live.isLiveAfter(findAccess(cfg, "z = y", "y", READ)));
+        assertTrue(live.isLiveAfter(findAccess(cfg, "i++", "i", WRITE)));
+        // fields are always live
+        assertTrue(live.isLiveAfter(findAccess(cfg, "f = z", "f", WRITE)));
+    }
+
+    @Test
+    public void testReachingDefinitions() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final ReachingDefinitions reaching = ReachingDefinitions.of(cfg);
+        assertSame(reaching, ReachingDefinitions.of(cfg));
+
+        assertReachingDefinitions(cfg, reaching, findAccess(cfg, "return x", "x", READ),
+                findAccess(cfg, "x = p", "x", DECL_INIT), findAccess(cfg, "x = 2", "x", WRITE));
+        assertReachingDefinitions(cfg, reaching, findAccess(cfg, "z = y", "y", READ),
+                findAccess(cfg, "y = 0", "y", DECL_INIT), findAccess(cfg, "y = x + 1", "y", WRITE));
+        assertReachingDefinitions(cfg, reaching, findAccess(cfg, "f = z", "z", READ),
+                findAccess(cfg, "z = y", "z", WRITE));
+        assertReachingDefinitions(cfg, reaching, findAccess(cfg, "i < p", "i", READ),
+                findAccess(cfg, "i = 0", "i", DECL_INIT), findAccess(cfg, "i++", "i", WRITE));
+        assertNull(reaching.getReachingDefinitions(findAccess(cfg, "f = z", "f", WRITE)));
+    }
+
+    @Test
+    public void benchmarkLargeMethod() throws Exception {
+        final int nbStatements = 3000;
+        final StringBuilder sb = new StringBuilder();
+        sb.append("class A {\n");
+        sb.append("    int m(int p) {\n");
+        sb.append("        int x = 0;\n");
+        sb.append("        int y = 0;\n");
+        for (int i = 0; i < nbStatements; i++) {
+            sb.append("        if (p > ").append(i).append(") {\n");
+            sb.append("            x = x + y;\n");
+            sb.append("        }\n");
+            sb.append("        y = p + ").append(i).append(";\n");
+        }
+        sb.append("        return x;\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        final String source = sb.toString();
+        final CompactCFG cfg = buildCompactCFGs(source).get(0);
+        final LiveVariables live = LiveVariables.of(cfg);
+        final ReachingDefinitions reaching = ReachingDefinitions.of(cfg);
+
+        assertTrue(live.isLiveOnExit(cfg.getEntryBlock(), cfg.getAccessVariable(0)));
+        assertEquals(2 + 2 * nbStatements + 1, reaching.getDefinitionCount());
+        final int lastWriteOfY = findAccess(cfg, source, "y = p + " + (nbStatements - 1), "y", WRITE);
+        assertFalse(live.isLiveAfter(lastWriteOfY));
+        // "x = 0" and each "x = x + y" reach the return statement
+        final int readOfX = findAccess(cfg, source, "return x", "x", READ);
+        assertEquals(nbStatements + 1, reaching.getReachingDefinitions(readOfX).length);
+    }
+
+    /**
+     * Finds the access to the provided variable with the provided flags inside the provided code snippet.
+     */
+    private int findAccess(CompactCFG cfg, String snippet, String variableName, int flags) {
+        return findAccess(cfg, SOURCE, snippet, variableName, flags);
+    }
+
+    private int findAccess(CompactCFG cfg, String source, String snippet, String variableName, int flags) {
+        final int start = source.indexOf(snippet);
+        assertTrue(snippet + " should be in the source", start != -1);
+        final int end = start + snippet.length();
+        for (int a = 0; a < cfg.getAccessCount(); a++) {
+            final VariableAccess access = cfg.getAccess(a);
+            final int position = access.getASTNode().getStartPosition();
+            final Name name = cfg.getAccessVariable(a) != -1 ? cfg.getVariableName(cfg.getAccessVariable(a)) : null;
+            if (start <= position && position < end
+                    && name != null && variableName.equals(name.getFullyQualifiedName())
+                    && (cfg.getAccessFlags(a) & flags) == flags) {
+                return a;
+            }
+        }
+        fail("Could not find access to " + variableName + " in " + snippet);
+        return -1;
+    }
+
+    private void assertReachingDefinitions(CompactCFG cfg, ReachingDefinitions reaching, int access,
+            int... expectedDefinitionAccesses) {
+        final int[] defs = reaching.getReachingDefinitions(access);
+        final int[] actual = new int[defs.length];
+        for (int i = 0; i < defs.length; i++) {
+            actual[i] = reaching.getDefinitionAccess(defs[i]);
+        }
+        Arrays.sort(actual);
+        Arrays.sort(expectedDefinitionAccesses);
+        assertArrayEquals(expectedDefinitionAccesses, actual);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.List;
+
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.refactoring.Release;
+import org.autorefactor.ui.JavaProjectOptionsImpl;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class CFGBuilderTypeDeclarationTest {
+
+    private static final String SOURCE = ""
+            + "class A {\n"
+            + "    int f = 42;\n"
+            + "    {\n"
+            + "        f++;\n"
+            + "    }\n"
+            + "    void m1() {\n"
+            + "    }\n"
+            + "    interface I {\n"
+            + "        void notBuilt();\n"
+            + "        class C {\n"
+            + "            void m3() {\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "    void m2() {\n"
+            + "    }\n"
+            + "    static class B {\n"
+            + "        void m4() {\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testMethodsOfMemberTypes() throws Exception {
+        final CompilationUnit astRoot = parse(SOURCE, "A.java");
+        final JavaProjectOptionsImpl options = new JavaProjectOptionsImpl();
+        options.setJavaSERelease(Release.javaSE("1.7"));
+        options.setTabSize(4);
+        final List<CFGBasicBlock> entryBlocks = new CFGBuilder(SOURCE, (JavaProjectOptions) options)
+                .buildCFG((TypeDeclaration) astRoot.types().get(0));
+
+        // no CFG for the field initializer and the initializer block
+        assertEquals(4, entryBlocks.size());
+        assertMethod("m1", entryBlocks.get(0));
+        assertMethod("m2", entryBlocks.get(1));
+        assertMethod("m3", entryBlocks.get(2));
+        assertMethod("m4", entryBlocks.get(3));
+    }
+
+    private void assertMethod(String methodName, CFGBasicBlock entryBlock) {
+        assertTrue(entryBlock.isEntryBlock());
+        assertEquals(methodName, ((MethodDeclaration) entryBlock.getNode()).getName().getIdentifier());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.autorefactor.cfg.CFGExporter.Format;
+import org.autorefactor.refactoring.Release;
+import org.autorefactor.ui.JavaProjectOptionsImpl;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class CFGExporterTest {
+
+    private static final String SOURCE = ""
+            + "abstract class A {\n"
+            + "    abstract void noBody();\n"
+            + "    void straight(int i) {\n"
+            + "        i = i + 1;\n"
+            + "    }\n"
+            + "    int branchy(int[] a, boolean b) {\n"
+            + "        int sum = 0;\n"
+            + "        for (int i = 0; i < a.length; i++) {\n"
+            + "            if (b) {\n"
+            + "                sum += a[i];\n"
+            + "            } else {\n"
+            + "                sum -= a[i];\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return sum;\n"
+            + "    }\n"
+            + "    void unsupported() {\n"
+            + "        class Local {}\n"
+            + "    }\n"
+            + "    static class B {\n"
+            + "        void inner(String... args) {\n"
+            + "            System.out.println(args);\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n"
+            + "enum E {\n"
+            + "    C {\n"
+            + "        int notExported() {\n"
+            + "            return 1;\n"
+            + "        }\n"
+            + "    };\n"
+            + "    int ordinalPlusOne() {\n"
+            + "        return ordinal() + 1;\n"
+            + "    }\n"
+            + "}\n"
+            + "@interface I {\n"
+            + "    class D {\n"
+            + "        void inAnnotation() {\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testJson() throws Exception {
+        final String[] lines = export(Format.JSON, null, 1).split("\n");
+        assertEquals(6, lines.length);
+        assertTrue(lines[0],
+                lines[0].startsWith("{\"file\":\"FakeClass.java\",\"method\":\"A.straight(int)\",\"line\":3,"));
+        assertTrue(lines[0], lines[0].contains("\"cyclomaticComplexity\":1}"));
+        assertTrue(lines[0], lines[0].contains("\"accesses\":[\"i:R\",\"i:W\"]"));
+        assertTrue(lines[1], lines[1].contains("\"method\":\"A.branchy(int[],boolean)\""));
+        assertTrue(lines[1], lines[1].contains("\"cyclomaticComplexity\":3}"));
+        assertTrue(lines[1], lines[1].contains("\"condition\":true"));
+        assertTrue(lines[2], lines[2].contains("\"method\":\"A.unsupported()\",\"line\":17,\"error\":"));
+        assertTrue(lines[3], lines[3].contains("\"method\":\"A.B.inner(String...)\""));
+        assertTrue(lines[4], lines[4].contains("\"method\":\"E.ordinalPlusOne()\",\"line\":32,"));
+        assertTrue(lines[5], lines[5].contains("\"method\":\"I.D.inAnnotation()\""));
+    }
+
+    @Test
+    public void testDot() throws Exception {
+        final String dot = export(Format.DOT, null, 1);
+        assertTrue(dot, dot.startsWith("// FakeClass.java:3 A.straight(int) blocks="));
+        assertTrue(dot, dot.contains("i=i + 1;\\n(4,9)\\ni:R i:W\"];"));
+        assertTrue(dot, dot.contains("// FakeClass.java:17 A.unsupported() error: "));
+    }
+
+    @Test
+    public void testParallelExportIsDeterministic() throws Exception {
+        for (Format format : Format.values()) {
+            final String expected = export(format, null, 1);
+            for (int nbThreads : new int[] { 1, 2, 4 }) {
+                final ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+                try {
+                    for (int maxPendingMethods : new int[] { 1, 2, 16 }) {
+                        assertEquals(format + " with " + nbThreads + " threads and " + maxPendingMethods
+                                + " pending methods", expected, export(format, executor, maxPendingMethods));
+                    }
+                } finally {
+                    executor.shutdown();
+                }
+            }
+        }
+    }
+
+    private String export(Format format, ExecutorService executor, int maxPendingMethods) throws Exception {
+        final CompilationUnit astRoot = parse(SOURCE, "A.java");
+        final JavaProjectOptionsImpl options = new JavaProjectOptionsImpl();
+        options.setJavaSERelease(Release.javaSE("1.7"));
+        options.setTabSize(4);
+        final StringWriter out = new StringWriter();
+        final CFGExporter exporter = new CFGExporter(out, format, executor, maxPendingMethods);
+        assertEquals(6, exporter.export(astRoot, SOURCE, options));
+        return out.toString();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.autorefactor.util.IllegalArgumentException;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class CodePathCollectorTest {
+
+    private static final String SOURCE = ""
+            + "class A {\n"
+            + "    void m(boolean c, boolean d) {\n"
+            + "        if (c) {\n"
+            + "            c = false;\n"
+            + "        } else {\n"
+            + "            d = false;\n"
+            + "        }\n"
+            + "        while (d) {\n"
+            + "            d = c;\n"
+            + "        }\n"
+            + "        c = d;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testCountPaths() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final CodePathCollector collector = new CodePathCollector(cfg);
+        // 2 branches for the if statement, entering the loop only leads back to its condition
+        assertEquals(2, collector.countPaths());
+        assertEquals(2, collector.getPaths(Integer.MAX_VALUE).size());
+        assertEquals(1, collector.countPaths(cfg.getExitBlock(), cfg.getExitBlock()));
+    }
+
+    @Test
+    public void testCountPathsFromInsideLoop() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final CodePathCollector collector = new CodePathCollector(cfg);
+        // the loop header and the blocks after the loop are valid start blocks
+        assertEquals(1, collector.countPaths(findBlock(cfg, "d"), cfg.getExitBlock()));
+        assertEquals(1, collector.countPaths(findBlock(cfg, "c=d;"), cfg.getExitBlock()));
+        assertEquals(0, collector.countPaths(findBlock(cfg, "c=d;"), findBlock(cfg, "d=c;")));
+        // the acyclic path from the loop body leaves it through the back edge
+        try {
+            collector.countPaths(findBlock(cfg, "d=c;"), cfg.getExitBlock());
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAllPathsPassThrough() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final CodePathCollector collector = new CodePathCollector(cfg);
+        final int entry = cfg.getEntryBlock();
+        assertFalse(collector.allPathsPassThrough(entry, findBlock(cfg, "c=false;")));
+        assertFalse(collector.allPathsPassThrough(entry, findBlock(cfg, "d=c;")));
+        assertTrue(collector.allPathsPassThrough(entry, findBlock(cfg, "d")));
+        assertTrue(collector.allPathsPassThrough(entry, findBlock(cfg, "c=d;")));
+        assertTrue(collector.allPathsPassThrough(findBlock(cfg, "c=false;"), findBlock(cfg, "c=d;")));
+    }
+
+    @Test
+    public void testPathIterator() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final Set<List<CFGBasicBlock>> paths = new HashSet<List<CFGBasicBlock>>();
+        for (Iterator<List<CFGBasicBlock>> iter = new CodePathCollector(cfg).pathIterator(10); iter.hasNext();) {
+            final List<CFGBasicBlock> path = iter.next();
+            assertTrue(path.get(0).isEntryBlock());
+            assertTrue(path.get(path.size() - 1).isExitBlock());
+            assertTrue("Paths should be unique", paths.add(path));
+        }
+        assertEquals(2, paths.size());
+        assertEquals(1, new CodePathCollector(cfg).getPaths(1).size());
+    }
+
+    @Test
+    public void testManySequentialIfs() throws Exception {
+        final int nbIfs = 100;
+        final StringBuilder sb = new StringBuilder();
+        sb.append("class A {\n");
+        sb.append("    void m(boolean c, int i) {\n");
+        for (int i = 0; i < nbIfs; i++) {
+            sb.append("        if (c) {\n");
+            sb.append("            i = ").append(i).append(";\n");
+            sb.append("        }\n");
+        }
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        final CodePathCollector collector = new CodePathCollector(buildCompactCFGs(sb.toString()).get(0));
+        assertEquals(Long.MAX_VALUE, collector.countPaths());
+        assertEquals(1000, collector.getPaths(1000).size());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.refactoring.Release;
+import org.autorefactor.ui.JavaProjectOptionsImpl;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+@RunWith(value = Parameterized.class)
+public class CompactCFGTest {
+
+    private String testName;
+
+    public CompactCFGTest(String testName) {
+        this.testName = testName;
+    }
+
+    @Parameters(name = "{index}: {0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                { "ForWithIfToEndLoopSample" },
+                { "IfElseIfSample" },
+                { "LabelsSample" },
+                { "SwitchSample" },
+                { "WhileLoopsSample" },
+                { "TryCatchThrowSample" },
+        });
+    }
+
+    @Test
+    public void testCompactCFGMatchesObjectGraph() throws Exception {
+        final String javaSource = readAll(new File("src/test/java/org/autorefactor/cfg", testName + ".java"));
+        final CompilationUnit astRoot = parse(javaSource, testName + ".java");
+
+        final JavaProjectOptionsImpl options = new JavaProjectOptionsImpl();
+        options.setJavaSERelease(Release.javaSE("1.7"));
+        options.setTabSize(4);
+        for (CFGBasicBlock entryBlock : new CFGBuilder(javaSource, (JavaProjectOptions) options).buildCFG(astRoot)) {
+            assertMatches(entryBlock, CompactCFG.of(entryBlock));
+        }
+    }
+
+    private void assertMatches(CFGBasicBlock entryBlock, CompactCFG cfg) {
+        assertSame(entryBlock, cfg.getBlock(cfg.getEntryBlock()));
+        int nbPredecessors = 0;
+        for (int b = 0; b < cfg.getBlockCount(); b++) {
+            final CFGBasicBlock block = cfg.getBlock(b);
+            assertEquals(b, cfg.indexOf(block));
+            assertEquals(block.isExitBlock(), b == cfg.getExitBlock());
+
+            final List<CFGEdge> edges = new ArrayList<CFGEdge>();
+            final List<VariableAccess> accesses = new ArrayList<VariableAccess>();
+            for (Object obj : block.getOutgoingEdgesAndVariableAccesses()) {
+                if (obj instanceof CFGEdge) {
+                    edges.add((CFGEdge) obj);
+                } else {
+                    accesses.add((VariableAccess) obj);
+                }
+            }
+            assertEquals(edges.size(), cfg.getSuccessorsEnd(b) - cfg.getSuccessorsStart(b));
+            for (int e = cfg.getSuccessorsStart(b), i = 0; e < cfg.getSuccessorsEnd(b); e++, i++) {
+                assertSame(edges.get(i), cfg.getEdge(e));
+                assertSame(edges.get(i).getTargetBlock(), cfg.getBlock(cfg.getSuccessor(e)));
+            }
+            assertEquals(accesses.size(), cfg.getAccessesEnd(b) - cfg.getAccessesStart(b));
+            for (int a = cfg.getAccessesStart(b), i = 0; a < cfg.getAccessesEnd(b); a++, i++) {
+                assertSame(accesses.get(i), cfg.getAccess(a));
+                assertEquals(accesses.get(i).getAccessType(), cfg.getAccessFlags(a));
+            }
+
+            for (int p = cfg.getPredecessorsStart(b); p < cfg.getPredecessorsEnd(b); p++) {
+                final int edge = cfg.getPredecessorEdge(p);
+                assertEquals(b, cfg.getSuccessor(edge));
+                assertSame(cfg.getBlock(cfg.getPredecessor(p)), cfg.getEdge(edge).getSourceBlock());
+                nbPredecessors++;
+            }
+        }
+        assertEquals(cfg.getEdgeCount(), nbPredecessors);
+    }
+}
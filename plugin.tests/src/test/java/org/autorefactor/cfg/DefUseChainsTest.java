@@ -0,0 +1,134 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import org.junit.Test;
+
+import static org.autorefactor.cfg.VariableAccess.*;
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class DefUseChainsTest {
+
+    private static final String SOURCE = ""
+            + "class A {\n"
+            + "    int m(boolean b, int n) {\n"
+            + "        int x = 0;\n"
+            + "        int y = 1;\n"
+            + "        if (b) {\n"
+            + "            x = 2;\n"
+            + "            y = 3;\n"
+            + "        }\n"
+            + "        int sum = x;\n"
+            + "        for (int i = 0; i < n; i++) {\n"
+            + "            sum += i;\n"
+            + "        }\n"
+            + "        return sum;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testChains() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final DefUseChains chains = DefUseChains.of(cfg);
+        assertSame(chains, DefUseChains.of(cfg));
+
+        // "sum = x" is reached by both definitions of "x"
+        final int readX = findAccess(cfg, "x", READ, 0);
+        assertEquals(2, chains.getDefinitionsEnd(readX) - chains.getDefinitionsStart(readX));
+        final int initX = findAccess(cfg, "x", DECL_INIT, 0);
+        assertEquals(1, chains.getUsesEnd(initX) - chains.getUsesStart(initX));
+        assertEquals(readX, chains.getUse(chains.getUsesStart(initX)));
+
+        // "y" is never read
+        assertTrue(chains.isDeadDefinition(findAccess(cfg, "y", DECL_INIT, 0)));
+        assertTrue(chains.isDeadDefinition(findAccess(cfg, "y", WRITE, 0)));
+        assertFalse(chains.isDeadDefinition(initX));
+
+        // "n" is only defined by the parameter declaration
+        assertTrue(chains.hasSingleDefinition(findAccess(cfg, "n", READ, 0)));
+    }
+
+    @Test
+    public void testSSAForm() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final SSAForm ssa = SSAForm.of(cfg);
+        assertSame(ssa, SSAForm.of(cfg));
+
+        // "x" is merged after the if, but not the dead "y"
+        final int readX = findAccess(cfg, "x", READ, 0);
+        final int phiX = ssa.getValue(readX);
+        assertTrue(ssa.isPhi(phiX));
+        assertEquals(cfg.getAccessVariable(readX), ssa.getPhiVariable(phiX));
+        assertEquals(2, ssa.getPhiOperandsEnd(phiX) - ssa.getPhiOperandsStart(phiX));
+        final int y = cfg.getAccessVariable(findAccess(cfg, "y", WRITE, 0));
+        for (int phi = ssa.getPhisStart(ssa.getPhiBlock(phiX)); phi < ssa.getPhisEnd(ssa.getPhiBlock(phiX)); phi++) {
+            assertTrue(y != ssa.getPhiVariable(phi));
+        }
+
+        // "i" and "sum" are merged at the loop header, from the initializations and from the updates
+        final int loopHeader = findBlock(cfg, "i < n");
+        final int readI = findAccess(cfg, "i", READ, 0);
+        final int phiI = ssa.getValue(readI);
+        assertTrue(ssa.isPhi(phiI));
+        assertEquals(loopHeader, ssa.getPhiBlock(phiI));
+        final int initI = findAccess(cfg, "i", DECL_INIT, 0);
+        final int incrementI = findAccess(cfg, "i", WRITE, 0);
+        assertPhiOperands(ssa, phiI, ssa.getValue(initI), ssa.getValue(incrementI));
+        final int phiSum = ssa.getValue(findAccess(cfg, "sum", READ, 0));
+        assertEquals(loopHeader, ssa.getPhiBlock(phiSum));
+        final int initSum = findAccess(cfg, "sum", DECL_INIT, 0);
+        final int updateSum = findAccess(cfg, "sum", WRITE, 0);
+        assertPhiOperands(ssa, phiSum, ssa.getValue(initSum), ssa.getValue(updateSum));
+    }
+
+    private void assertPhiOperands(SSAForm ssa, int phi, int... expectedValues) {
+        final int start = ssa.getPhiOperandsStart(phi);
+        assertEquals(expectedValues.length, ssa.getPhiOperandsEnd(phi) - start);
+        for (int expectedValue : expectedValues) {
+            boolean found = false;
+            for (int i = start; i < ssa.getPhiOperandsEnd(phi); i++) {
+                found |= ssa.getPhiOperand(i) == expectedValue;
+            }
+            assertTrue("Phi operand " + expectedValue + " not found", found);
+        }
+    }
+
+    private int findAccess(CompactCFG cfg, String name, int flags, int occurrence) {
+        int count = 0;
+        for (int a = 0; a < cfg.getAccessCount(); a++) {
+            final int variable = cfg.getAccessVariable(a);
+            if (variable != -1
+                    && name.equals(cfg.getVariableName(variable).getFullyQualifiedName())
+                    && (cfg.getAccessFlags(a) & flags) != 0
+                    && count++ == occurrence) {
+                return a;
+            }
+        }
+        fail("Could not find access number " + occurrence + " to " + name);
+        return -1;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class DominatorTreeTest {
+
+    private static final String SOURCE = ""
+            + "class A {\n"
+            + "    void m(boolean c, boolean d) {\n"
+            + "        if (c) {\n"
+            + "            c = false;\n"
+            + "        } else {\n"
+            + "            d = false;\n"
+            + "        }\n"
+            + "        while (d) {\n"
+            + "            d = c;\n"
+            + "        }\n"
+            + "        c = d;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testDominators() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final DominatorTree dominators = DominatorTree.dominators(cfg);
+        assertSame(dominators, DominatorTree.dominators(cfg));
+
+        final int ifBlock = findBlock(cfg, "if (c) {");
+        final int thenBlock = findBlock(cfg, "c=false;");
+        final int elseBlock = findBlock(cfg, "d=false;");
+        final int conditionBlock = findBlock(cfg, "d");
+        final int loopBodyBlock = findBlock(cfg, "d=c;");
+        final int afterLoopBlock = findBlock(cfg, "c=d;");
+
+        assertEquals(cfg.getEntryBlock(), dominators.getRoot());
+        for (int b = 0; b < cfg.getBlockCount(); b++) {
+            assertTrue(dominators.dominates(cfg.getEntryBlock(), b));
+            assertTrue(dominators.dominates(b, b));
+            assertFalse(dominators.strictlyDominates(b, b));
+        }
+        assertTrue(dominators.dominates(ifBlock, thenBlock));
+        assertTrue(dominators.dominates(ifBlock, afterLoopBlock));
+        assertFalse(dominators.dominates(thenBlock, conditionBlock));
+        assertFalse(dominators.dominates(elseBlock, conditionBlock));
+        assertEquals(ifBlock, dominators.getImmediateDominator(conditionBlock));
+        assertTrue(dominators.dominates(conditionBlock, loopBodyBlock));
+        assertTrue(dominators.dominates(conditionBlock, afterLoopBlock));
+        assertFalse(dominators.dominates(loopBodyBlock, afterLoopBlock));
+        assertTrue(dominators.dominates(cfg.getBlock(conditionBlock), cfg.getBlock(loopBodyBlock)));
+    }
+
+    @Test
+    public void testPostDominators() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final DominatorTree postDominators = DominatorTree.postDominators(cfg);
+        assertSame(postDominators, DominatorTree.postDominators(cfg));
+        assertNotSame(postDominators, DominatorTree.dominators(cfg));
+
+        final int ifBlock = findBlock(cfg, "if (c) {");
+        final int thenBlock = findBlock(cfg, "c=false;");
+        final int conditionBlock = findBlock(cfg, "d");
+        final int loopBodyBlock = findBlock(cfg, "d=c;");
+        final int afterLoopBlock = findBlock(cfg, "c=d;");
+
+        assertEquals(cfg.getExitBlock(), postDominators.getRoot());
+        for (int b = 0; b < cfg.getBlockCount(); b++) {
+            assertTrue(postDominators.dominates(cfg.getExitBlock(), b));
+        }
+        assertTrue(postDominators.dominates(afterLoopBlock, cfg.getEntryBlock()));
+        assertTrue(postDominators.dominates(conditionBlock, thenBlock));
+        assertEquals(conditionBlock, postDominators.getImmediateDominator(ifBlock));
+        assertFalse(postDominators.dominates(thenBlock, ifBlock));
+        assertFalse(postDominators.dominates(loopBodyBlock, conditionBlock));
+    }
+}
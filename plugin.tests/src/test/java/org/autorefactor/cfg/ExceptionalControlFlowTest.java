@@ -0,0 +1,119 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class ExceptionalControlFlowTest {
+
+    private static final String SOURCE = ""
+            + "import java.io.*;\n"
+            + "class A {\n"
+            + "    void catchSubtypes(InputStream in) throws IOException {\n"
+            + "        try {\n"
+            + "            in.read();\n"
+            + "        } catch (FileNotFoundException e) {\n"
+            + "            in.close();\n"
+            + "        } catch (IOException e) {\n"
+            + "            in.reset();\n"
+            + "        }\n"
+            + "    }\n"
+            + "    void finallyRethrows(InputStream in) throws IOException {\n"
+            + "        try {\n"
+            + "            in.read();\n"
+            + "        } catch (RuntimeException e) {\n"
+            + "            e.printStackTrace();\n"
+            + "        } finally {\n"
+            + "            in.mark(0);\n"
+            + "        }\n"
+            + "    }\n"
+            + "    void multiCatch(InputStream in) {\n"
+            + "        try {\n"
+            + "            in.read();\n"
+            + "            throw new IllegalStateException();\n"
+            + "        } catch (IllegalStateException | IOException e) {\n"
+            + "            e.printStackTrace();\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testCatchClausesMatchSubtypes() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final int read = findBlock(cfg, "in.read();");
+        final int catchFileNotFound = findBlock(cfg, "catch (FileNotFoundException e) {");
+        final int catchIO = findBlock(cfg, "catch (IOException e) {");
+        // an IOException may be a FileNotFoundException, and is always caught by the second catch clause
+        assertTrue(hasJumpingEdge(cfg, read, catchFileNotFound));
+        assertTrue(hasJumpingEdge(cfg, read, catchIO));
+        assertFalse(hasJumpingEdge(cfg, read, cfg.getExitBlock()));
+        // exceptions thrown from a catch clause escape the method
+        assertTrue(hasJumpingEdge(cfg, catchFileNotFound, cfg.getExitBlock()));
+        assertTrue(hasJumpingEdge(cfg, catchIO, cfg.getExitBlock()));
+    }
+
+    @Test
+    public void testFinallyRethrowsUncaughtExceptions() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(1);
+        final int read = findBlock(cfg, "in.read();");
+        final int finallyBlock = findBlock(cfg, "in.mark(0);");
+        // nothing in the try block throws a RuntimeException
+        assertFalse(isReachable(cfg, "catch (RuntimeException e) {"));
+        assertTrue(hasJumpingEdge(cfg, read, finallyBlock));
+        assertTrue(hasJumpingEdge(cfg, finallyBlock, cfg.getExitBlock()));
+    }
+
+    @Test
+    public void testMultiCatch() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(2);
+        final int read = findBlock(cfg, "in.read();");
+        final int catchBlock = findBlock(cfg, "catch (IllegalStateException|IOException e) {");
+        assertTrue(hasJumpingEdge(cfg, read, catchBlock));
+        assertFalse(hasJumpingEdge(cfg, read, cfg.getExitBlock()));
+        assertFalse(hasJumpingEdge(cfg, catchBlock, cfg.getExitBlock()));
+    }
+
+    private boolean isReachable(CompactCFG cfg, String codeExcerpt) {
+        for (int b = 0; b < cfg.getBlockCount(); b++) {
+            if (codeExcerpt.equals(cfg.getCodeExcerpt(b))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasJumpingEdge(CompactCFG cfg, int source, int target) {
+        for (int e = cfg.getSuccessorsStart(source); e < cfg.getSuccessorsEnd(source); e++) {
+            if (cfg.getSuccessor(e) == target && cfg.getEdge(e).isJumping()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
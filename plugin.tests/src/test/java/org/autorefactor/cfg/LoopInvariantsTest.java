@@ -0,0 +1,126 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.Statement;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class LoopInvariantsTest {
+
+    private static final String SOURCE = ""
+            + "class A {\n"
+            + "    private final int limit = 10;\n"
+            + "    private int counter;\n"
+            + "    int m(int[] a, String s, int k) {\n"
+            + "        int total = 0;\n"
+            + "        for (int i = 0; i < a.length; i++) {\n"
+            + "            int j = 0;\n"
+            + "            while (j < a.length * k) {\n"
+            + "                total += Math.max(s.length(), limit) + a[j] + counter + j;\n"
+            + "                j++;\n"
+            + "            }\n"
+            + "            k = s.indexOf(i);\n"
+            + "        }\n"
+            + "        return total;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testInvariants() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final LoopInvariants invariants = LoopInvariants.of(cfg);
+        assertSame(invariants, LoopInvariants.of(cfg));
+        final LoopNestingForest loops = invariants.getLoops();
+        final Statement forStmt = loops.getLoopStatement(loops.getInnermostLoop(findBlock(cfg, "i < a.length")));
+        final Statement whileStmt = loops.getLoopStatement(loops.getInnermostLoop(findBlock(cfg, "j < a.length * k")));
+
+        // "a" is never redefined
+        assertTrue(invariants.isInvariant(findExpression(forStmt, "a.length"), forStmt));
+        // "k" is redefined in the outer loop only
+        final Expression product = findExpression(whileStmt, "a.length * k");
+        assertTrue(invariants.isInvariant(product, whileStmt));
+        assertFalse(invariants.isInvariant(product, forStmt));
+        // pure method calls with invariant arguments, final fields
+        final Expression max = findExpression(whileStmt, "Math.max(s.length(),limit)");
+        assertTrue(invariants.isInvariant(max, whileStmt));
+        assertTrue(invariants.isInvariant(max, forStmt));
+        // array elements, non final fields, variables defined in the loop and impure calls
+        assertFalse(invariants.isInvariant(findExpression(whileStmt, "a[j]"), whileStmt));
+        assertFalse(invariants.isInvariant(findExpression(whileStmt, "counter"), whileStmt));
+        assertFalse(invariants.isInvariant(findExpression(whileStmt, "j"), whileStmt));
+        assertFalse(invariants.isInvariant(findExpression(forStmt, "i"), forStmt));
+        assertTrue(invariants.isInvariant(findExpression(forStmt, "s.indexOf(i)"), whileStmt));
+        assertFalse(invariants.isInvariant(findExpression(forStmt, "s.indexOf(i)"), forStmt));
+    }
+
+    @Test
+    public void testPureMethodsOnlyTakeImmutableArguments() throws Exception {
+        final String source = ""
+                + "class A {\n"
+                + "    int m(char[] chars, StringBuilder sb, String s, int k) {\n"
+                + "        int total = 0;\n"
+                + "        for (int i = 0; i < k; i++) {\n"
+                + "            chars[0] = 'a';\n"
+                + "            sb.append(i);\n"
+                + "            total += String.valueOf(chars).length() + String.copyValueOf(chars).length();\n"
+                + "            total += String.valueOf(sb).length() + s.indexOf(s.concat(String.valueOf(k)));\n"
+                + "        }\n"
+                + "        return total;\n"
+                + "    }\n"
+                + "}\n";
+        final CompactCFG cfg = buildCompactCFGs(source).get(0);
+        final LoopInvariants invariants = LoopInvariants.of(cfg);
+        final LoopNestingForest loops = invariants.getLoops();
+        final Statement forStmt = loops.getLoopStatement(loops.getInnermostLoop(findBlock(cfg, "i < k")));
+
+        // the mutated arguments are read by the called methods
+        assertFalse(invariants.isInvariant(findExpression(forStmt, "String.valueOf(chars)"), forStmt));
+        assertFalse(invariants.isInvariant(findExpression(forStmt, "String.copyValueOf(chars)"), forStmt));
+        assertFalse(invariants.isInvariant(findExpression(forStmt, "String.valueOf(sb)"), forStmt));
+        // primitive and String arguments
+        assertTrue(invariants.isInvariant(findExpression(forStmt, "s.indexOf(s.concat(String.valueOf(k)))"), forStmt));
+    }
+
+    private Expression findExpression(ASTNode root, final String text) {
+        final Expression[] result = new Expression[1];
+        root.accept(new ASTVisitor() {
+            @Override
+            public void preVisit(ASTNode node) {
+                if (result[0] == null && node instanceof Expression && text.equals(node.toString())) {
+                    result[0] = (Expression) node;
+                }
+            }
+        });
+        assertNotNull("Could not find expression " + text, result[0]);
+        return result[0];
+    }
+}
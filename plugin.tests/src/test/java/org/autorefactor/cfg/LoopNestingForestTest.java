@@ -0,0 +1,116 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import org.eclipse.jdt.core.dom.DoStatement;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.WhileStatement;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class LoopNestingForestTest {
+
+    private static final String SOURCE = ""
+            + "import java.util.*;\n"
+            + "class A {\n"
+            + "    int m(List<String> l, int n) {\n"
+            + "        int s = 0;\n"
+            + "        for (int i = 0; i < n; i++) {\n"
+            + "            for (String x : l) {\n"
+            + "                s += x.length();\n"
+            + "            }\n"
+            + "            int j = 0;\n"
+            + "            do {\n"
+            + "                j++;\n"
+            + "            } while (j < n);\n"
+            + "        }\n"
+            + "        while (s > 3) {\n"
+            + "            s--;\n"
+            + "        }\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testLoopNesting() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final LoopNestingForest loops = LoopNestingForest.of(cfg);
+        assertSame(loops, LoopNestingForest.of(cfg));
+        assertEquals(4, loops.getLoopCount());
+
+        final int forLoop = loops.getInnermostLoop(findBlock(cfg, "i < n"));
+        final int enhancedForLoop = loops.getInnermostLoop(findBlock(cfg, "s+=x.length();"));
+        final int doLoop = loops.getInnermostLoop(findBlock(cfg, "j < n"));
+        final int whileLoop = loops.getInnermostLoop(findBlock(cfg, "s--;"));
+
+        assertEquals(findBlock(cfg, "i < n"), loops.getHeader(forLoop));
+        assertEquals(findBlock(cfg, "s > 3"), loops.getHeader(whileLoop));
+        assertEquals(-1, loops.getParent(forLoop));
+        assertEquals(-1, loops.getParent(whileLoop));
+        assertEquals(forLoop, loops.getParent(enhancedForLoop));
+        assertEquals(forLoop, loops.getParent(doLoop));
+        assertEquals(1, loops.getDepth(forLoop));
+        assertEquals(2, loops.getDepth(doLoop));
+
+        assertEquals(0, loops.getLoopDepth(findBlock(cfg, "return s;")));
+        assertEquals(1, loops.getLoopDepth(findBlock(cfg, "int j=0;")));
+        assertEquals(2, loops.getLoopDepth(findBlock(cfg, "s+=x.length();")));
+        assertTrue(loops.contains(forLoop, findBlock(cfg, "s+=x.length();")));
+        assertFalse(loops.contains(enhancedForLoop, findBlock(cfg, "int j=0;")));
+        assertFalse(loops.contains(forLoop, findBlock(cfg, "s--;")));
+
+        assertTrue(loops.getLoopStatement(forLoop) instanceof ForStatement);
+        assertTrue(loops.getLoopStatement(enhancedForLoop) instanceof EnhancedForStatement);
+        assertTrue(loops.getLoopStatement(doLoop) instanceof DoStatement);
+        assertTrue(loops.getLoopStatement(whileLoop) instanceof WhileStatement);
+        for (int loop = 0; loop < loops.getLoopCount(); loop++) {
+            final Statement loopStmt = loops.getLoopStatement(loop);
+            assertEquals(loop, loops.getLoop(loopStmt));
+        }
+    }
+
+    @Test
+    public void testBackEdges() throws Exception {
+        final CompactCFG cfg = buildCompactCFGs(SOURCE).get(0);
+        final LoopNestingForest loops = LoopNestingForest.of(cfg);
+        int nbBackEdges = 0;
+        for (int e = 0; e < cfg.getEdgeCount(); e++) {
+            if (loops.isBackEdge(e)) {
+                nbBackEdges++;
+            }
+        }
+        assertEquals(4, nbBackEdges);
+        final int doHeader = loops.getHeader(loops.getInnermostLoop(findBlock(cfg, "j < n")));
+        final int condition = findBlock(cfg, "j < n");
+        for (int e = cfg.getSuccessorsStart(condition); e < cfg.getSuccessorsEnd(condition); e++) {
+            assertEquals(cfg.getSuccessor(e) == doHeader, loops.isBackEdge(e));
+        }
+    }
+}
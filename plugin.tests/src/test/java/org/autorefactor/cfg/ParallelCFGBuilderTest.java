@@ -0,0 +1,99 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.refactoring.Release;
+import org.autorefactor.ui.JavaProjectOptionsImpl;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+@RunWith(value = Parameterized.class)
+public class ParallelCFGBuilderTest {
+
+    private String testName;
+
+    public ParallelCFGBuilderTest(String testName) {
+        this.testName = testName;
+    }
+
+    @Parameters(name = "{index}: {0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                { "ForWithIfToEndLoopSample" },
+                { "IfElseIfSample" },
+                { "LabelsSample" },
+                { "SwitchSample" },
+                { "WhileLoopsSample" },
+                { "TryCatchThrowSample" },
+        });
+    }
+
+    @Test
+    public void testParallelBuildIsDeterministic() throws Exception {
+        final String javaSource = readAll(new File("src/test/java/org/autorefactor/cfg", testName + ".java"));
+        final List<String> expected = toDots(buildCFGs(javaSource, null));
+        for (int nbThreads : new int[] { 1, 2, 4, 8 }) {
+            final ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+            try {
+                assertEquals(testName + " with " + nbThreads + " threads",
+                        expected, toDots(buildCFGs(javaSource, executor)));
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private List<CFGBasicBlock> buildCFGs(String javaSource, ExecutorService executor) {
+        final CompilationUnit astRoot = parse(javaSource, testName + ".java");
+        final JavaProjectOptionsImpl options = new JavaProjectOptionsImpl();
+        options.setJavaSERelease(Release.javaSE("1.7"));
+        options.setTabSize(4);
+        return new CFGBuilder(javaSource, (JavaProjectOptions) options).buildCFG(astRoot, executor);
+    }
+
+    private List<String> toDots(List<CFGBasicBlock> entryBlocks) {
+        final List<String> results = new ArrayList<String>();
+        for (CFGBasicBlock entryBlock : entryBlocks) {
+            results.add(new CFGDotPrinter().toDot(entryBlock));
+        }
+        return results;
+    }
+}
@@ -29,6 +29,21 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.autorefactor.cfg.CFGBuilder;
+import org.autorefactor.cfg.CompactCFG;
+import org.autorefactor.refactoring.Release;
+import org.autorefactor.ui.JavaProjectOptionsImpl;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
 
 public class TestUtils {
 
@@ -53,4 +68,38 @@ public class TestUtils {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    public static CompilationUnit parse(String javaSource, String unitName) {
+        final ASTParser parser = ASTParser.newParser(AST.JLS4);
+        parser.setSource(javaSource.toCharArray());
+        parser.setUnitName(unitName);
+        parser.setEnvironment(new String[0], new String[0], null, true);
+        parser.setResolveBindings(true);
+        final Map<String, String> options = JavaCore.getOptions();
+        JavaCore.setComplianceOptions("1.7", options);
+        parser.setCompilerOptions(options);
+        return (CompilationUnit) parser.createAST(null);
+    }
+
+    public static List<CompactCFG> buildCompactCFGs(String javaSource) {
+        final CompilationUnit astRoot = parse(javaSource, "A.java");
+        final JavaProjectOptionsImpl options = new JavaProjectOptionsImpl();
+        options.setJavaSERelease(Release.javaSE("1.7"));
+        options.setTabSize(4);
+        final CFGBuilder builder = new CFGBuilder(javaSource, options);
+        final List<CompactCFG> results = new ArrayList<CompactCFG>();
+        for (MethodDeclaration method : ((TypeDeclaration) astRoot.types().get(0)).getMethods()) {
+            results.add(CompactCFG.of(builder.buildCFG(method)));
+        }
+        return results;
+    }
+
+    public static int findBlock(CompactCFG cfg, String codeExcerpt) {
+        for (int b = 0; b < cfg.getBlockCount(); b++) {
+            if (codeExcerpt.equals(cfg.getCodeExcerpt(b))) {
+                return b;
+            }
+        }
+        throw new AssertionError("Could not find block " + codeExcerpt);
+    }
 }
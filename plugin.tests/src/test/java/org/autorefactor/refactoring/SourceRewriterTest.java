@@ -0,0 +1,86 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SourceRewriterTest {
+
+    @Test
+    public void removeAndReplace() throws Exception {
+        SourceRewriter rewriter = new SourceRewriter();
+        rewriter.remove(SourceLocation.fromPositions(0, 4));
+        rewriter.replace(SourceLocation.fromPositions(5, 8), "two");
+        rewriter.replace(SourceLocation.fromPositions(9, 13), "three");
+        assertEquals(" two three", apply(rewriter, "zero one four"));
+    }
+
+    @Test
+    public void duplicateEdits() throws Exception {
+        SourceRewriter rewriter = new SourceRewriter();
+        rewriter.remove(SourceLocation.fromPositions(0, 2));
+        rewriter.remove(SourceLocation.fromPositions(0, 2));
+        rewriter.replace(SourceLocation.fromPositions(3, 4), "x");
+        rewriter.replace(SourceLocation.fromPositions(3, 4), "y");
+        assertEquals(4, rewriter.size());
+        assertEquals(" y c", apply(rewriter, "aa b c"));
+    }
+
+    /** Checks all the edits of an edit heavy pass, like removing all the empty lines of a big file, are applied. */
+    @Test
+    public void editHeavyPass() throws Exception {
+        final int nbLines = 100000;
+        final StringBuilder source = new StringBuilder();
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < nbLines; i++) {
+            source.append("int i").append(i).append(";\n\n");
+            expected.append("int i").append(i).append(";\n");
+        }
+
+        final SourceRewriter rewriter = new SourceRewriter();
+        int offset = 0;
+        for (int i = 0; i < nbLines; i++) {
+            offset = source.indexOf("\n\n", offset) + 1;
+            rewriter.remove(offset, 1);
+        }
+        assertEquals(nbLines, rewriter.size());
+        assertEquals(expected.toString(), apply(rewriter, source.toString()));
+    }
+
+    private String apply(SourceRewriter rewriter, String source) throws Exception {
+        final IDocument document = new Document(source);
+        final TextEdit edits = new MultiTextEdit();
+        rewriter.addEdits(document, edits);
+        edits.apply(document);
+        return document.get();
+    }
+}
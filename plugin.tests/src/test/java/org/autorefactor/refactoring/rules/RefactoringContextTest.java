@@ -0,0 +1,97 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import org.autorefactor.cfg.CFGBasicBlock;
+import org.autorefactor.cfg.CompactCFG;
+import org.autorefactor.refactoring.Release;
+import org.autorefactor.ui.JavaProjectOptionsImpl;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class RefactoringContextTest {
+
+    private static final String SOURCE = ""
+        + "package org.autorefactor;\n"
+        + "public abstract class RefactoringContextSample {\n"
+        + "    public int aMethod(int i) {\n"
+        + "        while (i > 0) {\n"
+        + "            i--;\n"
+        + "        }\n"
+        + "        return i;\n"
+        + "    }\n"
+        + "    public void anotherMethod() {\n"
+        + "    }\n"
+        + "    public abstract void abstractMethod();\n"
+        + "}\n";
+
+    private RefactoringContext ctx;
+    private MethodDeclaration[] methods;
+
+    @Before
+    public void setUp() throws Exception {
+        final ICompilationUnit cu = JavaCoreHelper.getPackageFragment().createCompilationUnit(
+                "RefactoringContextSample.java", SOURCE, true, null);
+        final CompilationUnit astRoot = parse(SOURCE, "RefactoringContextSample.java");
+        final JavaProjectOptionsImpl options = new JavaProjectOptionsImpl();
+        options.setJavaSERelease(Release.javaSE("1.7"));
+        options.setTabSize(4);
+        ctx = new RefactoringContext(cu, astRoot, options);
+        methods = ((TypeDeclaration) astRoot.types().get(0)).getMethods();
+    }
+
+    @Test
+    public void getCFGIsMemoized() throws Exception {
+        final CFGBasicBlock entryBlock = ctx.getCFG(methods[0]);
+        assertNotNull(entryBlock);
+        assertSame(entryBlock, ctx.getCFG(methods[0]));
+        assertNotSame(entryBlock, ctx.getCFG(methods[1]));
+        assertSame(ctx.getCFG(methods[1]), ctx.getCFG(methods[1]));
+    }
+
+    @Test
+    public void getCompactCFGIsMemoized() throws Exception {
+        final CompactCFG cfg = ctx.getCompactCFG(methods[0]);
+        assertNotNull(cfg);
+        assertSame(cfg, ctx.getCompactCFG(methods[0]));
+        assertSame(ctx.getCFG(methods[0]), cfg.getBlock(cfg.getEntryBlock()));
+        assertNotSame(cfg, ctx.getCompactCFG(methods[1]));
+    }
+
+    @Test
+    public void methodWithoutBody() throws Exception {
+        assertNull(ctx.getCFG(methods[2]));
+        assertNull(ctx.getCompactCFG(methods[2]));
+        assertNull(ctx.getCFG(methods[2]));
+    }
+}
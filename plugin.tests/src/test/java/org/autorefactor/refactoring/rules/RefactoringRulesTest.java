@@ -57,6 +57,8 @@ import org.junit.runners.Parameterized.Parameters;
 public class RefactoringRulesTest {
 
     private static final String SAMPLES_BASE_DIR = "../samples/src/test/java/org/autorefactor/refactoring/rules/";
+    /** Samples whose name ends with this suffix are refactored for Java 8 instead of Java 7. */
+    private static final String JAVA8_SUFFIX = "Java8";
     private final String testName;
 
     public RefactoringRulesTest(String testName) {
@@ -99,7 +101,10 @@ public class RefactoringRulesTest {
         final File sampleOut = new File(SAMPLES_BASE_DIR, "samples_out/" + sampleName);
         assertTrue(testName + ": sample out file " + sampleOut + " should exist", sampleOut.exists());
 
-        final String refactoringClassname = testName + "Refactoring";
+        final boolean isJava8 = testName.endsWith(JAVA8_SUFFIX);
+        final String refactoringName =
+                isJava8 ? testName.substring(0, testName.length() - JAVA8_SUFFIX.length()) : testName;
+        final String refactoringClassname = refactoringName + "Refactoring";
         final RefactoringRule refactoring = getRefactoringClass(refactoringClassname);
         assertNotNull(testName + ": refactoring class " + refactoringClassname + " should exist", refactoring);
 
@@ -116,7 +121,7 @@ public class RefactoringRulesTest {
         new ApplyRefactoringsJob(null, null).applyRefactoring(
                 doc, cu,
                 new AggregateASTVisitor(Arrays.asList(refactoring)),
-                newJavaProjectOptions(Release.javaSE("1.7.0"), 4));
+                newJavaProjectOptions(Release.javaSE(isJava8 ? "1.8.0" : "1.7.0"), 4));
 
         final String actual = normalize(
                 doc.get().replaceAll("samples_in", "samples_out"));
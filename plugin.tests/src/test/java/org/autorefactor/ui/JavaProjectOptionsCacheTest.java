@@ -0,0 +1,92 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.ui;
+
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.refactoring.rules.JavaCoreHelper;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JavaProjectOptionsCacheTest {
+
+    private JavaProjectOptionsCache cache;
+    private IJavaProject javaProject;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new JavaProjectOptionsCache();
+        javaProject = JavaCoreHelper.createJavaProject("optionsCacheProject", "bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.dispose();
+        javaProject.getProject().delete(true, null);
+    }
+
+    @Test
+    public void cachedOptionsAreReused() throws Exception {
+        final JavaProjectOptions options = cache.getJavaProjectOptions(javaProject);
+        assertSame(options, cache.getJavaProjectOptions(javaProject));
+        assertSame(options.getCompilerOptions(), options.getCompilerOptions());
+    }
+
+    @Test
+    public void optionsAreRebuiltWhenClasspathChanges() throws Exception {
+        final JavaProjectOptionsImpl options = (JavaProjectOptionsImpl) cache.getJavaProjectOptions(javaProject);
+
+        javaProject.setRawClasspath(new IClasspathEntry[] {
+            JavaCore.newSourceEntry(javaProject.getPath().append("src")) }, null);
+
+        final JavaProjectOptionsImpl newOptions =
+                (JavaProjectOptionsImpl) cache.getJavaProjectOptions(javaProject);
+        assertNotSame(options, newOptions);
+        assertTrue(options.getClasspathFingerprint() != newOptions.getClasspathFingerprint());
+        assertSame(newOptions, cache.getJavaProjectOptions(javaProject));
+    }
+
+    @Test
+    public void parserSettingsAreReusable() throws Exception {
+        final JavaProjectOptions options = cache.getJavaProjectOptions(javaProject);
+        final ASTParser parser = ASTParser.newParser(AST.JLS4);
+        for (int i = 0; i < 2; i++) {
+            options.configureParser(parser);
+            parser.setSource("class A {}".toCharArray());
+            final CompilationUnit astRoot = (CompilationUnit) parser.createAST(null);
+            assertEquals("A", ((TypeDeclaration) astRoot.types().get(0)).getName().getIdentifier());
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.util.Vector;
 
 import org.autorefactor.preferences.PreferenceConstants;
 import org.autorefactor.preferences.Preferences;
+import org.autorefactor.ui.JavaProjectOptionsCache;
 import org.autorefactor.ui.preferences.EclipsePreferences;
 import org.autorefactor.util.UnhandledException;
 import org.eclipse.core.runtime.ILog;
@@ -51,6 +52,7 @@ public class AutoRefactorPlugin extends AbstractUIPlugin {
     private static AutoRefactorPlugin plugin;
 
     private static Preferences preferenceHelper;
+    private static JavaProjectOptionsCache javaProjectOptionsCache;
     private static Vector<Job> jobs = new Vector<Job>();
 
     @Override
@@ -62,6 +64,12 @@ public class AutoRefactorPlugin extends AbstractUIPlugin {
     @Override
     public void stop(final BundleContext context) throws Exception {
         plugin = null;
+        synchronized (AutoRefactorPlugin.class) {
+            if (javaProjectOptionsCache != null) {
+                javaProjectOptionsCache.dispose();
+                javaProjectOptionsCache = null;
+            }
+        }
         for (Job job : jobs) {
             job.cancel();
         }
@@ -139,6 +147,18 @@ public class AutoRefactorPlugin extends AbstractUIPlugin {
         return preferenceHelper;
     }
 
+    /**
+     * Returns the cache of the java projects options.
+     *
+     * @return the cache of the java projects options
+     */
+    public static synchronized JavaProjectOptionsCache getJavaProjectOptionsCache() {
+        if (javaProjectOptionsCache == null) {
+            javaProjectOptionsCache = new JavaProjectOptionsCache();
+        }
+        return javaProjectOptionsCache;
+    }
+
     /**
      * Turns on the debug mode.
      *
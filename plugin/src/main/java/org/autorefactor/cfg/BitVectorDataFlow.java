@@ -0,0 +1,273 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+/**
+ * Worklist solver for bit vector data flow problems over a {@link CompactCFG}.
+ * <p>
+ * Facts are numbered densely from {@code 0} to {@code nbFacts - 1} and the facts holding at each block boundary are
+ * stored as {@code long[]} bitsets. Subclasses describe the transfer function of each block with gen and kill sets:
+ * {@code out = gen | (in & ~kill)} for forward problems, {@code in = gen | (out & ~kill)} for backward problems.
+ * </p>
+ * <p>
+ * Blocks are visited in reverse postorder for forward problems and in postorder for backward problems, which makes
+ * most problems converge in two or three rounds.
+ * </p>
+ */
+public abstract class BitVectorDataFlow {
+
+    /** The graph being analyzed. */
+    protected final CompactCFG cfg;
+    /** The number of facts. */
+    protected final int nbFacts;
+    /** The number of {@code long}s used to store one set of facts. */
+    protected final int nbWords;
+    private final boolean forward;
+    private final boolean union;
+    /** Facts holding on entering each block, {@code nbWords} longs per block. */
+    private final long[] entryFacts;
+    /** Facts holding on exiting each block, {@code nbWords} longs per block. */
+    private final long[] exitFacts;
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param cfg the graph to analyze
+     * @param nbFacts the number of facts
+     * @param forward true for a forward problem, false for a backward problem
+     * @param union true if facts are merged with a union (may problems),
+     *              false if they are merged with an intersection (must problems)
+     */
+    protected BitVectorDataFlow(CompactCFG cfg, int nbFacts, boolean forward, boolean union) {
+        this.cfg = cfg;
+        this.nbFacts = nbFacts;
+        this.nbWords = (nbFacts + 63) >>> 6;
+        this.forward = forward;
+        this.union = union;
+        this.entryFacts = new long[cfg.getBlockCount() * nbWords];
+        this.exitFacts = new long[cfg.getBlockCount() * nbWords];
+    }
+
+    /**
+     * Computes the gen and kill sets of the provided block.
+     *
+     * @param block the block index
+     * @param gen where to set the facts generated by the block, starting at {@code offset}
+     * @param kill where to set the facts killed by the block, starting at {@code offset}
+     * @param offset the offset of the block facts in the provided arrays
+     */
+    protected abstract void computeTransfer(int block, long[] gen, long[] kill, int offset);
+
+    /**
+     * Solves this data flow problem. Must be called once by subclasses after they are fully initialized.
+     */
+    protected final void solve() {
+        final int nbBlocks = cfg.getBlockCount();
+        final long[] gen = new long[nbBlocks * nbWords];
+        final long[] kill = new long[nbBlocks * nbWords];
+        for (int b = 0; b < nbBlocks; b++) {
+            computeTransfer(b, gen, kill, b * nbWords);
+        }
+
+        final long[] inputs = forward ? entryFacts : exitFacts;
+        final long[] outputs = forward ? exitFacts : entryFacts;
+        if (!union) {
+            final long lastWordMask = (nbFacts & 63) == 0 ? -1L : (1L << (nbFacts & 63)) - 1;
+            for (int b = 0; b < nbBlocks; b++) {
+                for (int w = 0; w < nbWords; w++) {
+                    outputs[b * nbWords + w] = w == nbWords - 1 ? lastWordMask : -1L;
+                }
+            }
+        }
+
+        final long[] worklist = new long[(nbBlocks + 63) >>> 6];
+        for (int b = 0; b < nbBlocks; b++) {
+            worklist[b >>> 6] |= 1L << b;
+        }
+        final long[] newOutput = new long[nbWords];
+        int nbPending = nbBlocks;
+        int cursor = forward ? 0 : nbBlocks - 1;
+        while (nbPending > 0) {
+            final int b = nextPending(worklist, cursor, nbBlocks);
+            worklist[b >>> 6] &= ~(1L << b);
+            nbPending--;
+            cursor = forward ? b + 1 : b - 1;
+
+            final int offset = b * nbWords;
+            merge(b, inputs, offset, outputs);
+            boolean changed = false;
+            for (int w = 0; w < nbWords; w++) {
+                newOutput[w] = gen[offset + w] | (inputs[offset + w] & ~kill[offset + w]);
+                changed |= newOutput[w] != outputs[offset + w];
+            }
+            if (changed) {
+                System.arraycopy(newOutput, 0, outputs, offset, nbWords);
+                nbPending += forward
+                        ? addSuccessors(b, worklist)
+                        : addPredecessors(b, worklist);
+            }
+        }
+    }
+
+    private int nextPending(long[] worklist, int cursor, int nbBlocks) {
+        if (forward) {
+            final int b = nextSetBit(worklist, cursor < nbBlocks ? cursor : 0);
+            return b != -1 ? b : nextSetBit(worklist, 0);
+        }
+        final int b = previousSetBit(worklist, cursor >= 0 ? cursor : nbBlocks - 1);
+        return b != -1 ? b : previousSetBit(worklist, nbBlocks - 1);
+    }
+
+    private static int nextSetBit(long[] bits, int from) {
+        int w = from >>> 6;
+        long word = bits[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == bits.length) {
+                return -1;
+            }
+            word = bits[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    private static int previousSetBit(long[] bits, int from) {
+        int w = from >>> 6;
+        long word = bits[w] & (-1L >>> (63 - (from & 63)));
+        while (word == 0) {
+            if (--w < 0) {
+                return -1;
+            }
+            word = bits[w];
+        }
+        return (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+    }
+
+    private void merge(int block, long[] inputs, int offset, long[] outputs) {
+        final int start = forward ? cfg.getPredecessorsStart(block) : cfg.getSuccessorsStart(block);
+        final int end = forward ? cfg.getPredecessorsEnd(block) : cfg.getSuccessorsEnd(block);
+        if (start == end) {
+            // boundary block: nothing flows in
+            for (int w = 0; w < nbWords; w++) {
+                inputs[offset + w] = 0;
+            }
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            final int other = forward ? cfg.getPredecessor(i) : cfg.getSuccessor(i);
+            final int otherOffset = other * nbWords;
+            for (int w = 0; w < nbWords; w++) {
+                if (i == start) {
+                    inputs[offset + w] = outputs[otherOffset + w];
+                } else if (union) {
+                    inputs[offset + w] |= outputs[otherOffset + w];
+                } else {
+                    inputs[offset + w] &= outputs[otherOffset + w];
+                }
+            }
+        }
+    }
+
+    private int addSuccessors(int block, long[] worklist) {
+        int nbAdded = 0;
+        for (int e = cfg.getSuccessorsStart(block); e < cfg.getSuccessorsEnd(block); e++) {
+            nbAdded += add(worklist, cfg.getSuccessor(e));
+        }
+        return nbAdded;
+    }
+
+    private int addPredecessors(int block, long[] worklist) {
+        int nbAdded = 0;
+        for (int p = cfg.getPredecessorsStart(block); p < cfg.getPredecessorsEnd(block); p++) {
+            nbAdded += add(worklist, cfg.getPredecessor(p));
+        }
+        return nbAdded;
+    }
+
+    private int add(long[] worklist, int block) {
+        final long mask = 1L << block;
+        if ((worklist[block >>> 6] & mask) != 0) {
+            return 0;
+        }
+        worklist[block >>> 6] |= mask;
+        return 1;
+    }
+
+    /**
+     * Returns whether the provided fact holds on entering the provided block.
+     *
+     * @param block the block index
+     * @param fact the fact index
+     * @return true if the provided fact holds on entering the provided block, false otherwise
+     */
+    public boolean isSetOnEntry(int block, int fact) {
+        return isSet(entryFacts, block * nbWords, fact);
+    }
+
+    /**
+     * Returns whether the provided fact holds on exiting the provided block.
+     *
+     * @param block the block index
+     * @param fact the fact index
+     * @return true if the provided fact holds on exiting the provided block, false otherwise
+     */
+    public boolean isSetOnExit(int block, int fact) {
+        return isSet(exitFacts, block * nbWords, fact);
+    }
+
+    /**
+     * Sets the provided fact in the bitset starting at the provided offset.
+     *
+     * @param bits the bitsets
+     * @param offset the offset of the bitset
+     * @param fact the fact to set
+     */
+    protected static void set(long[] bits, int offset, int fact) {
+        bits[offset + (fact >>> 6)] |= 1L << fact;
+    }
+
+    /**
+     * Clears the provided fact in the bitset starting at the provided offset.
+     *
+     * @param bits the bitsets
+     * @param offset the offset of the bitset
+     * @param fact the fact to clear
+     */
+    protected static void clear(long[] bits, int offset, int fact) {
+        bits[offset + (fact >>> 6)] &= ~(1L << fact);
+    }
+
+    /**
+     * Returns whether the provided fact is set in the bitset starting at the provided offset.
+     *
+     * @param bits the bitsets
+     * @param offset the offset of the bitset
+     * @param fact the fact to test
+     * @return true if the provided fact is set, false otherwise
+     */
+    protected static boolean isSet(long[] bits, int offset, int fact) {
+        return (bits[offset + (fact >>> 6)] & (1L << fact)) != 0;
+    }
+}
@@ -25,28 +25,33 @@
  */
 package org.autorefactor.cfg;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.regex.MatchResult;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.autorefactor.refactoring.ASTHelper;
 import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.refactoring.WellKnownTypes;
 import org.autorefactor.util.IllegalStateException;
 import org.autorefactor.util.NotImplementedException;
 import org.autorefactor.util.UnhandledException;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
 import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
 import org.eclipse.jdt.core.dom.ArrayAccess;
@@ -74,8 +79,10 @@ import org.eclipse.jdt.core.dom.ExpressionStatement;
 import org.eclipse.jdt.core.dom.FieldAccess;
 import org.eclipse.jdt.core.dom.FieldDeclaration;
 import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.core.dom.IMethodBinding;
 import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
 import org.eclipse.jdt.core.dom.IfStatement;
 import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.Initializer;
@@ -88,6 +95,7 @@ import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.MethodRef;
 import org.eclipse.jdt.core.dom.MethodRefParameter;
 import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.Name;
 import org.eclipse.jdt.core.dom.NullLiteral;
 import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.ParameterizedType;
@@ -194,7 +202,9 @@ public class CFGBuilder {
         }
 
         private LivenessState nextStmtsAreDeadCode() {
-            return copyLiveEdges();
+            // the live edges can only be the fall through edges of the current block:
+            // control flow never falls through a jump statement
+            return new LivenessState();
         }
 
         private boolean requireNewBlock() {
@@ -225,6 +235,11 @@ public class CFGBuilder {
 
     private final String source;
     private final int tabSize;
+    /**
+     * End positions of each newline in the source, shared by all the per-method builders.
+     * Used to compute line and column numbers with a binary search.
+     */
+    private final int[] newlineEnds;
     /**
      * Edges to be built after visiting the statement used as the key.
      * <p>
@@ -240,15 +255,8 @@ public class CFGBuilder {
             new HashMap<Statement, Map<CFGEdgeBuilder, Boolean>>();
     /** The exit block for the CFG being built. */
     private CFGBasicBlock exitBlock;
-
-    /**
-     * Cache of "manually" resolved type bindings.
-     * <p>
-     * Cannot be made static because for {@link ITypeBinding#equals(Object)} to
-     * work, all type bindings must have been loaded from the same
-     * CompilationUnit.
-     */
-    private final Map<String, ITypeBinding> typeBindingsCache = new HashMap<String, ITypeBinding>();
+    /** The exception types thrown or caught in the CFG being built. */
+    private ExceptionHierarchy exceptionHierarchy;
 
     /**
      * Builds an instance of this class.
@@ -259,6 +267,35 @@ public class CFGBuilder {
     public CFGBuilder(String source, JavaProjectOptions options) {
         this.source = source;
         this.tabSize = options.getTabSize();
+        this.newlineEnds = newlineEnds(source);
+    }
+
+    /**
+     * Builds a per-method builder sharing the immutable state of the provided builder.
+     * <p>
+     * Each method CFG is built by its own instance, so the mutable state ({@link #edgesToBuild},
+     * {@link #exitBlock} and {@link #exceptionHierarchy}) is never shared and method CFGs can be built concurrently.
+     * </p>
+     *
+     * @param shared the builder holding the immutable state to share
+     */
+    private CFGBuilder(CFGBuilder shared) {
+        this.source = shared.source;
+        this.tabSize = shared.tabSize;
+        this.newlineEnds = shared.newlineEnds;
+    }
+
+    private static int[] newlineEnds(String source) {
+        int[] results = new int[16];
+        int count = 0;
+        final Matcher matcher = NEWLINE.matcher(source);
+        while (matcher.find()) {
+            if (count == results.length) {
+                results = Arrays.copyOf(results, count * 2);
+            }
+            results[count++] = matcher.end();
+        }
+        return Arrays.copyOf(results, count);
     }
 
     /**
@@ -273,8 +310,9 @@ public class CFGBuilder {
         switch (node.getNodeType()) {
         case ARRAY_ACCESS:
             ArrayAccess aa = (ArrayAccess) node;
-            addVariableAccess(basicBlock, aa.getArray(), flags, throwers);
-            addVariableAccess(basicBlock, aa.getIndex(), flags, throwers);
+            // writing an array element only reads the array and index variables
+            addVariableAccess(basicBlock, aa.getArray(), READ, throwers);
+            addVariableAccess(basicBlock, aa.getIndex(), READ, throwers);
             throwers.addThrow(aa, newException(node, "java.lang.ArrayIndexOutOfBoundsException"));
             return true;
         case ARRAY_CREATION:
@@ -287,8 +325,10 @@ public class CFGBuilder {
             return addVariableAccesses(basicBlock, ai.expressions(), flags, throwers);
         case ASSIGNMENT:
             Assignment a = (Assignment) node;
-            boolean aMightThrow1 = addVariableAccess(basicBlock, a.getLeftHandSide(), WRITE, throwers);
-            boolean aMightThrow2 = addVariableAccess(basicBlock, a.getRightHandSide(), READ, throwers);
+            // record accesses in evaluation order: the right hand side is read before the variable is written
+            boolean aMightThrow1 = addVariableAccess(basicBlock, a.getRightHandSide(), READ, throwers);
+            boolean aMightThrow2 = addVariableAccess(basicBlock, a.getLeftHandSide(),
+                    Assignment.Operator.ASSIGN.equals(a.getOperator()) ? WRITE : READ | WRITE, throwers);
             return aMightThrow1 || aMightThrow2;
         case BOOLEAN_LITERAL:
         case CHARACTER_LITERAL:
@@ -305,10 +345,11 @@ public class CFGBuilder {
             ClassInstanceCreation cic = (ClassInstanceCreation) node;
             addVariableAccess(basicBlock, cic.getExpression(), flags, throwers);
             addVariableAccesses(basicBlock, cic.arguments(), flags, throwers);
-            IMethodBinding cicBinding = cic.resolveConstructorBinding();
+            addCapturedVariableAccesses(basicBlock, cic.getAnonymousClassDeclaration());
+            IMethodBinding cicBinding = resolveConstructorBinding(cic);
             if (cicBinding != null) {
-                ITypeBinding[] declaredThrows = cicBinding.getExceptionTypes();
-                throwers.addThrow(cic, declaredThrows);
+                ITypeBinding[] declaredThrows = getExceptionTypes(cic, cicBinding);
+                throwers.addThrow(basicBlock, declaredThrows);
                 return declaredThrows.length > 0;
             }
             return false;
@@ -320,7 +361,7 @@ public class CFGBuilder {
             return mightThrow1 || mightThrow2 || mightThrow3;
         case FIELD_ACCESS:
             FieldAccess fa = (FieldAccess) node;
-            boolean mightThrow = addVariableAccess(basicBlock, fa.getExpression(), flags, throwers);
+            boolean mightThrow = addVariableAccess(basicBlock, fa.getExpression(), READ, throwers);
             basicBlock.addVariableAccess(new VariableAccess(fa, flags));
             if (is(flags, READ)) {
                 throwers.addThrow(fa, newException(node, "java.lang.NullPointerException"));
@@ -339,10 +380,10 @@ public class CFGBuilder {
             MethodInvocation mi = (MethodInvocation) node;
             addVariableAccess(basicBlock, mi.getExpression(), flags, throwers);
             addVariableAccesses(basicBlock, mi.arguments(), flags, throwers);
-            IMethodBinding methodBinding = mi.resolveMethodBinding();
+            IMethodBinding methodBinding = resolveMethodBinding(mi);
             if (methodBinding != null) {
-                ITypeBinding[] declaredThrows = methodBinding.getExceptionTypes();
-                throwers.addThrow(mi, declaredThrows);
+                ITypeBinding[] declaredThrows = getExceptionTypes(mi, methodBinding);
+                throwers.addThrow(basicBlock, declaredThrows);
                 return declaredThrows.length > 0;
             }
             return false;
@@ -356,6 +397,10 @@ public class CFGBuilder {
             return false;
         case QUALIFIED_NAME:
             QualifiedName qn = (QualifiedName) node;
+            if (resolveBinding(qn.getQualifier()) instanceof IVariableBinding) {
+                // "a.length" also reads the variable "a"
+                addVariableAccess(basicBlock, qn.getQualifier(), READ, throwers);
+            }
             basicBlock.addVariableAccess(new VariableAccess(qn, flags));
             throwers.addThrow(qn, newException(node, "java.lang.NullPointerException"));
             return true;
@@ -364,10 +409,13 @@ public class CFGBuilder {
             return addVariableAccess(basicBlock, pe.getExpression(), flags, throwers);
         case POSTFIX_EXPRESSION:
             PostfixExpression poe = (PostfixExpression) node;
-            return addVariableAccess(basicBlock, poe.getOperand(), flags, throwers);
+            return addVariableAccess(basicBlock, poe.getOperand(), READ | WRITE, throwers);
         case PREFIX_EXPRESSION:
             PrefixExpression pre = (PrefixExpression) node;
-            return addVariableAccess(basicBlock, pre.getOperand(), flags, throwers);
+            final boolean isIncrementOrDecrement = PrefixExpression.Operator.INCREMENT.equals(pre.getOperator())
+                    || PrefixExpression.Operator.DECREMENT.equals(pre.getOperator());
+            return addVariableAccess(basicBlock, pre.getOperand(),
+                    isIncrementOrDecrement ? READ | WRITE : flags, throwers);
         case SUPER_FIELD_ACCESS:
             SuperFieldAccess sfa = (SuperFieldAccess) node;
             boolean sfaMightThrow1 = addVariableAccess(basicBlock, sfa.getQualifier(), flags, throwers);
@@ -377,10 +425,10 @@ public class CFGBuilder {
             SuperMethodInvocation smi = (SuperMethodInvocation) node;
             addVariableAccess(basicBlock, smi.getQualifier(), flags, throwers);
             addVariableAccess(basicBlock, smi.getName(), flags, throwers);
-            IMethodBinding sMethodBinding = smi.resolveMethodBinding();
+            IMethodBinding sMethodBinding = resolveMethodBinding(smi);
             if (sMethodBinding != null) {
-                ITypeBinding[] declaredThrows = sMethodBinding.getExceptionTypes();
-                throwers.addThrow(smi, declaredThrows);
+                ITypeBinding[] declaredThrows = getExceptionTypes(smi, sMethodBinding);
+                throwers.addThrow(basicBlock, declaredThrows);
                 return declaredThrows.length > 0;
             }
             return false;
@@ -395,62 +443,91 @@ public class CFGBuilder {
         }
     }
 
+    /**
+     * Local variables used in an anonymous class body are read when the anonymous class is instantiated.
+     */
+    private void addCapturedVariableAccesses(final CFGBasicBlock basicBlock,
+            final AnonymousClassDeclaration anonymousClass) {
+        if (anonymousClass == null) {
+            return;
+        }
+        final int start = anonymousClass.getStartPosition();
+        final int end = start + anonymousClass.getLength();
+        anonymousClass.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                final IBinding binding = resolveBinding(node);
+                if (binding instanceof IVariableBinding && !((IVariableBinding) binding).isField()) {
+                    final ASTNode declaration = findDeclaringNode(node, binding);
+                    if (declaration != null
+                            && (declaration.getStartPosition() < start || end <= declaration.getStartPosition())) {
+                        basicBlock.addVariableAccess(new VariableAccess(node, READ));
+                    }
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+    }
+
     private boolean is(int flags, int flag) {
         return (flags & flag) == flag;
     }
 
     private ITypeBinding newException(Expression node, String fullyQualifiedName) {
-        ITypeBinding typeBinding = typeBindingsCache.get(fullyQualifiedName);
-        if (typeBinding == null) {
-            typeBinding = resolveWellKnownType(node, fullyQualifiedName);
-            typeBindingsCache.put(typeBinding.getQualifiedName(), typeBinding);
+        synchronized (node.getAST()) {
+            return WellKnownTypes.of(node).resolve(fullyQualifiedName, node);
         }
-        return typeBinding;
     }
 
-    /**
-     * FIXME Horribly brittle hack that uses reflection to resolve type bindings.
-     * <p>
-     * But how could I do otherwise?
-     * <p>
-     *
-     * @see org.eclipse.jdt.core.dom.DefaultBindingResolver#resolveWellKnownType(String)
-     */
-    private ITypeBinding resolveWellKnownType(Expression node, String fullyQualifiedName) {
-        try {
-            final ITypeBinding typeBinding = node.resolveTypeBinding();
-
-            final Field f1 = typeBinding.getClass().getDeclaredField("resolver");
-            f1.setAccessible(true);
-            Object bindingResolver = f1.get(typeBinding);
-
-            final Field f2 = bindingResolver.getClass().getDeclaredField("scope");
-            f2.setAccessible(true);
-            Object compilationUnitScope = f2.get(bindingResolver);
-
-            final Method m2 = compilationUnitScope.getClass().getSuperclass()
-                    .getDeclaredMethod("getType", char[][].class, int.class);
-            m2.setAccessible(true);
-            final char[][] simpleNamesArray = toSimpleNamesArray(fullyQualifiedName);
-            final Object internalTypeBinding =
-                    m2.invoke(compilationUnitScope, simpleNamesArray, 3);
-
-            final Method m1 = bindingResolver.getClass().getDeclaredMethod("getTypeBinding",
-                    internalTypeBinding.getClass().getSuperclass().getSuperclass());
-            m1.setAccessible(true);
-            return (ITypeBinding) m1.invoke(bindingResolver, internalTypeBinding);
-        } catch (Exception e) {
-            throw new UnhandledException(node, e);
+    // JDT lazily resolves bindings and mutates its lookup environment while doing so:
+    // binding resolution must be serialized per AST when method CFGs are built concurrently
+
+    private static IMethodBinding resolveConstructorBinding(ClassInstanceCreation node) {
+        synchronized (node.getAST()) {
+            return node.resolveConstructorBinding();
         }
     }
 
-    private char[][] toSimpleNamesArray(String fullyQualifiedName) {
-        final String[] simpleNames = fullyQualifiedName.split("\\.");
-        final char[][] result = new char[simpleNames.length][];
-        for (int i = 0; i < simpleNames.length; i++) {
-            result[i] = simpleNames[i].toCharArray();
+    private static IMethodBinding resolveMethodBinding(MethodInvocation node) {
+        synchronized (node.getAST()) {
+            return node.resolveMethodBinding();
+        }
+    }
+
+    private static IMethodBinding resolveMethodBinding(SuperMethodInvocation node) {
+        synchronized (node.getAST()) {
+            return node.resolveMethodBinding();
+        }
+    }
+
+    private static IBinding resolveBinding(Name node) {
+        synchronized (node.getAST()) {
+            return node.resolveBinding();
+        }
+    }
+
+    private static ITypeBinding resolveBinding(Type node) {
+        synchronized (node.getAST()) {
+            return node.resolveBinding();
+        }
+    }
+
+    private static ITypeBinding resolveTypeBinding(Expression node) {
+        synchronized (node.getAST()) {
+            return node.resolveTypeBinding();
+        }
+    }
+
+    private static ITypeBinding[] getExceptionTypes(ASTNode node, IMethodBinding methodBinding) {
+        synchronized (node.getAST()) {
+            return methodBinding.getExceptionTypes();
+        }
+    }
+
+    private static ASTNode findDeclaringNode(ASTNode node, IBinding binding) {
+        synchronized (node.getAST()) {
+            return ((CompilationUnit) node.getRoot()).findDeclaringNode(binding);
         }
-        return result;
     }
 
     /**
@@ -482,9 +559,11 @@ public class CFGBuilder {
             VariableDeclarationFragment vdf, Type type, ThrowerBlocks throwers) {
         final int accessType = vdf.getInitializer() == null ? DECL_UNINIT
                 : DECL_INIT | WRITE;
+        // record accesses in evaluation order: the initializer is read before the variable is written
+        final boolean mightThrow = addVariableAccess(basicBlock, vdf.getInitializer(), READ, throwers);
         basicBlock.addVariableAccess(new VariableAccess(vdf, vdf.getName(),
                 type, accessType));
-        return addVariableAccess(basicBlock, vdf.getInitializer(), READ, throwers);
+        return mightThrow;
     }
 
     private boolean addDeclarations(CFGBasicBlock basicBlock,
@@ -647,19 +726,86 @@ public class CFGBuilder {
      * @return the entry block to the CFG of this method declaration
      */
     public CFGBasicBlock buildCFG(MethodDeclaration node) {
+        return new CFGBuilder(this).buildMethodCFG(node);
+    }
+
+    /**
+     * Builds the CFGs for the provided method declarations.
+     * <p>
+     * Each method CFG is built with its own per-method state, so the CFGs can be built concurrently
+     * by the provided executor. Binding resolutions are serialized on the AST.
+     * The results are returned in the order of the provided method declarations,
+     * regardless of the number of threads used by the executor.
+     * </p>
+     *
+     * @param methods the method declarations for which to build a CFG
+     * @param executor the executor building the CFGs,
+     *        or {@code null} to build them sequentially in the calling thread
+     * @return the entry blocks to the CFGs of the method declarations, in the same order
+     */
+    public List<CFGBasicBlock> buildCFGs(List<MethodDeclaration> methods, ExecutorService executor) {
+        final List<CFGBasicBlock> results = new ArrayList<CFGBasicBlock>(methods.size());
+        if (executor == null) {
+            for (MethodDeclaration method : methods) {
+                results.add(buildCFG(method));
+            }
+            return results;
+        }
+
+        final List<Future<CFGBasicBlock>> futures = new ArrayList<Future<CFGBasicBlock>>(methods.size());
+        try {
+            for (final MethodDeclaration method : methods) {
+                futures.add(executor.submit(new Callable<CFGBasicBlock>() {
+                    @Override
+                    public CFGBasicBlock call() {
+                        return buildCFG(method);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(getResult(methods.get(i), futures.get(i)));
+            }
+            return results;
+        } finally {
+            for (Future<CFGBasicBlock> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private CFGBasicBlock getResult(MethodDeclaration method, Future<CFGBasicBlock> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnhandledException(method, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UnhandledException(method, cause);
+        }
+    }
+
+    private CFGBasicBlock buildMethodCFG(MethodDeclaration node) {
         final CFGBasicBlock entryBlock = newEntryBlock(node);
         this.exitBlock = newExitBlock(node);
+        this.exceptionHierarchy = new ExceptionHierarchy(node.getAST());
 
         addDeclarations(entryBlock, parameters(node));
 
         try {
-            final ThrowerBlocks throwers = new ThrowerBlocks();
+            final ThrowerBlocks throwers = new ThrowerBlocks(exceptionHierarchy);
             final CFGEdgeBuilder liveEdge = new CFGEdgeBuilder(entryBlock);
             final LivenessState liveAfterBody = buildCFG(node.getBody(), LivenessState.of(liveEdge), throwers);
             if (!liveAfterBody.liveEdges.isEmpty()) {
-                if (node.getReturnType2() == null
-                        || node.getReturnType2().resolveBinding() == null // added for unit tests
-                        || "void".equals(node.getReturnType2().resolveBinding().getName())) {
+                final ITypeBinding returnType =
+                        node.getReturnType2() != null ? resolveBinding(node.getReturnType2()) : null;
+                if (returnType == null // added for unit tests
+                        || "void".equals(returnType.getName())) {
                     buildEdges(liveAfterBody, exitBlock);
                 } else {
                     throw new IllegalStateException(node, "Did not expect to find any edges to build "
@@ -670,21 +816,14 @@ public class CFGBuilder {
                 throw new IllegalStateException(node,
                         "At this point, there should not be any edges left to build. Left edges: " + this.edgesToBuild);
             }
-            List<CFGBasicBlock> throwingBlocks = throwers.selectBlocksThrowing(null);
-            if (!throwingBlocks.isEmpty()) {
-                for (CFGBasicBlock throwingBlock : throwingBlocks) {
-                    // TODO JNR
-                }
-            }
-            List<CFGEdgeBuilder> throwingEdges = throwers.selectEdgesThrowing(null);
-            if (!throwingEdges.isEmpty()) {
-                for (CFGEdgeBuilder throwingEdge : throwingEdges) {
-                    // TODO JNR
-                }
+            // exceptions escaping the method body
+            for (CFGBasicBlock throwingBlock : throwers.getThrowingBlocks()) {
+                CFGEdgeBuilder.buildJumpingEdge(throwingBlock, exitBlock);
             }
             return entryBlock;
         } finally {
             this.exitBlock = null;
+            this.exceptionHierarchy = null;
         }
     }
 
@@ -780,29 +919,24 @@ public class CFGBuilder {
 
     /**
      * Builds a CFG for the provided node.
+     * <p>
+     * Field initializers and initializer blocks get no CFG.
      *
      * @param node the node for which to build a CFG.
-     * @return the list of basic blocks representing CFGs for each method in this type declaration
+     * @return the list of basic blocks representing CFGs for each method in this type declaration,
+     *         followed by the CFGs for the methods of its member types
      */
     public List<CFGBasicBlock> buildCFG(TypeDeclaration node) {
+        final List<CFGBasicBlock> results = new LinkedList<CFGBasicBlock>();
         if (!node.isInterface()) {
-            List<CFGBasicBlock> results = new LinkedList<CFGBasicBlock>();
-            for (FieldDeclaration fieldDecl : node.getFields()) {
-                buildCFG(fieldDecl);
-            }
             for (MethodDeclaration methodDecl : node.getMethods()) {
                 results.add(buildCFG(methodDecl));
             }
-            for (TypeDeclaration typeDeclaration : node.getTypes()) {
-                buildCFG(typeDeclaration);
-            }
-            // for (BodyDeclaration bodyDeclaration : (List<BodyDeclaration>)
-            // node.bodyDeclarations()) {
-            // buildCFG(bodyDeclaration);
-            // }
-            return results;
         }
-        return Collections.emptyList();
+        for (TypeDeclaration typeDecl : node.getTypes()) {
+            results.addAll(buildCFG(typeDecl));
+        }
+        return results;
     }
 
     /**
@@ -814,56 +948,76 @@ public class CFGBuilder {
      * @return the blocks liveness state after current node
      */
     public LivenessState buildCFG(TryStatement node, LivenessState state, ThrowerBlocks throwers) {
-        final ThrowerBlocks localThrowers = new ThrowerBlocks();
+        final ThrowerBlocks localThrowers = new ThrowerBlocks(exceptionHierarchy);
 
         final LivenessState liveAfterTry = buildCFG(node.getBody(), state, localThrowers);
         final LivenessState liveAfterCatchClauses = new LivenessState();
 
-        final Set<ITypeBinding> caughtExceptions = new HashSet<ITypeBinding>();
+        final List<ITypeBinding> caughtExceptions = new ArrayList<ITypeBinding>();
+        final ThrowerBlocks catchClausesThrowers = new ThrowerBlocks(exceptionHierarchy);
         for (CatchClause catchClause : catchClauses(node)) {
-            final LivenessState catchState = new LivenessState();
-            CFGBasicBlock catchBasicBlock = getCFGBasicBlock(catchClause, catchState);
             final SingleVariableDeclaration exceptionDecl = catchClause.getException();
-            addDeclaration(catchBasicBlock, exceptionDecl, DECL_INIT);
-
-            final ITypeBinding caughtException = exceptionDecl.getType().resolveBinding();
-            caughtExceptions.add(caughtException);
+            final List<ITypeBinding> caughtException = resolveCaughtExceptions(exceptionDecl.getType());
 
-            final List<CFGBasicBlock> throwingBlocksInTry = localThrowers.selectBlocksThrowing(caughtException);
+            final LivenessState catchState = new LivenessState();
+            final List<CFGBasicBlock> throwingBlocksInTry =
+                    localThrowers.selectBlocksThrowing(caughtException, caughtExceptions);
             if (throwingBlocksInTry.isEmpty()) {
                 // TODO JNR dead code found!!
             }
-            final List<CFGEdgeBuilder> liveBeforeCatchClause = new LinkedList<CFGEdgeBuilder>();
             for (CFGBasicBlock throwingBlockInTry : throwingBlocksInTry) {
-                // TODO JNR if a Statement throws an exception, it must break the current basicBlock
-                // TODO JNR how to specify this edge is due to an exception?
-                liveBeforeCatchClause.add(new CFGEdgeBuilder(throwingBlockInTry));
+                catchState.add(new CFGEdgeBuilder(throwingBlockInTry, true));
             }
+            final CFGBasicBlock catchBasicBlock = getCFGBasicBlock(catchClause, catchState);
+            addDeclaration(catchBasicBlock, exceptionDecl, DECL_INIT);
+            caughtExceptions.addAll(caughtException);
 
-            final LivenessState liveAfterCatchClause = buildCFG(catchClause.getBody(), catchState, new ThrowerBlocks());
+            final LivenessState liveAfterCatchClause = buildCFG(catchClause.getBody(),
+                    getInBlockStmtResult(catchState, catchBasicBlock), catchClausesThrowers);
             liveAfterCatchClauses.addAll(liveAfterCatchClause);
         }
 
-        // TODO JNR move uncaught exceptions from localThrowers to throwers
-        final Map<CFGBasicBlock, Set<ITypeBinding>> throwUncaughtExceptions =
-                localThrowers.selectBlocksThrowingOtherThan(caughtExceptions);
-        for (Entry<CFGBasicBlock, Set<ITypeBinding>> throwing : throwUncaughtExceptions.entrySet()) {
-            final CFGEdgeBuilder uncaughtExceptionEdge = new CFGEdgeBuilder(throwing.getKey(), true);
-            liveAfterCatchClauses.add(uncaughtExceptionEdge);
-            throwers.addThrow(uncaughtExceptionEdge, throwing.getValue());
-        }
+        final ThrowerBlocks uncaughtThrowers = localThrowers.selectBlocksThrowingOtherThan(caughtExceptions);
+        uncaughtThrowers.addAll(catchClausesThrowers);
 
-        if (node.getFinally() != null) {
-            final LivenessState liveBeforeFinally = new LivenessState();
-            liveBeforeFinally.addAll(liveAfterTry);
-            liveBeforeFinally.addAll(liveAfterCatchClauses);
+        final LivenessState liveBeforeFinally = new LivenessState();
+        liveBeforeFinally.addAll(liveAfterTry);
+        liveBeforeFinally.addAll(liveAfterCatchClauses);
+        if (node.getFinally() != null && !statements(node.getFinally()).isEmpty()) {
+            final boolean finallyIsReachedNormally = !liveBeforeFinally.liveEdges.isEmpty();
+            for (CFGBasicBlock throwingBlock : uncaughtThrowers.getThrowingBlocks()) {
+                liveBeforeFinally.add(new CFGEdgeBuilder(throwingBlock, true));
+            }
             final LivenessState liveAfterFinally = buildCFG(node.getFinally(), liveBeforeFinally, throwers);
+            if (!uncaughtThrowers.isEmpty()) {
+                // the finally block is not duplicated: its last blocks rethrow the uncaught exceptions
+                final Set<ITypeBinding> uncaughtExceptions = uncaughtThrowers.getThrownTypes();
+                for (CFGEdgeBuilder liveEdge : liveAfterFinally.liveEdges) {
+                    throwers.addThrow(liveEdge.getSourceBlock(), uncaughtExceptions);
+                }
+            }
+            if (!finallyIsReachedNormally) {
+                return liveAfterFinally.nextStmtsAreDeadCode();
+            }
             return liveAfterFinally;
         } else {
-            return liveAfterCatchClauses.copyLiveBasicBlock();
+            throwers.addAll(uncaughtThrowers);
+            return liveBeforeFinally;
         }
     }
 
+    private List<ITypeBinding> resolveCaughtExceptions(Type caughtType) {
+        final List<ITypeBinding> results = new ArrayList<ITypeBinding>();
+        if (caughtType instanceof UnionType) {
+            for (Type type : types((UnionType) caughtType)) {
+                results.add(resolveBinding(type));
+            }
+        } else {
+            results.add(resolveBinding(caughtType));
+        }
+        return results;
+    }
+
     /**
      * Builds a CFG for the provided node.
      *
@@ -886,8 +1040,12 @@ public class CFGBuilder {
         addVariableAccess(conditionBlock, node.getExpression(), READ, throwers);
 
         final CFGEdgeBuilder liveEdge = new CFGEdgeBuilder(node.getExpression(), true, conditionBlock);
-        final LivenessState liveAfterStmt = buildCFG(node.getBody(), LivenessState.of(liveEdge), throwers);
-        liveAfterStmt.add(new CFGEdgeBuilder(node.getExpression(), false, conditionBlock));
+        final LivenessState liveAfterBody = buildCFG(node.getBody(), LivenessState.of(liveEdge), throwers);
+        // loop back to the condition
+        buildEdges(liveAfterBody, conditionBlock);
+
+        final LivenessState liveAfterStmt = LivenessState.of(
+                new CFGEdgeBuilder(node.getExpression(), false, conditionBlock));
         buildEdgesAfterBranchableStmt(node, liveAfterStmt, conditionBlock);
         return liveAfterStmt.nextStmtWillCreateNewBlock();
     }
@@ -912,7 +1070,7 @@ public class CFGBuilder {
     public LivenessState buildCFG(VariableDeclarationStatement node, LivenessState state, ThrowerBlocks throwers) {
         final CFGBasicBlock basicBlock = getCFGBasicBlock(node, state);
         addDeclarations(basicBlock, fragments(node), node.getType(), throwers);
-        return getInBlockStmtResult(state, basicBlock);
+        return getInBlockStmtResult(state, basicBlock, throwers);
     }
 
     /**
@@ -992,7 +1150,7 @@ public class CFGBuilder {
             ThrowerBlocks throwers) {
         final CFGBasicBlock basicBlock = getCFGBasicBlock(node, state);
         addVariableAccesses(basicBlock, arguments(node), READ, throwers);
-        return getInBlockStmtResult(state, basicBlock);
+        return getInBlockStmtResult(state, basicBlock, throwers);
     }
 
     /**
@@ -1015,8 +1173,8 @@ public class CFGBuilder {
     public LivenessState buildCFG(ThrowStatement node, LivenessState state, ThrowerBlocks throwers) {
         CFGBasicBlock basicBlock = getCFGBasicBlock(node, state);
         final Expression throwingExpr = node.getExpression();
-        addVariableAccess(state.liveBasicBlock, throwingExpr, READ, throwers);
-        throwers.addThrow(basicBlock, throwingExpr.resolveTypeBinding());
+        addVariableAccess(basicBlock, throwingExpr, READ, throwers);
+        throwers.addThrow(basicBlock, resolveTypeBinding(throwingExpr));
         return state.nextStmtsAreDeadCode();
     }
 
@@ -1143,7 +1301,7 @@ public class CFGBuilder {
     public LivenessState buildCFG(ConstructorInvocation node, LivenessState state, ThrowerBlocks throwers) {
         final CFGBasicBlock basicBlock = getCFGBasicBlock(node, state);
         addVariableAccesses(basicBlock, arguments(node), READ, throwers);
-        return getInBlockStmtResult(state, basicBlock);
+        return getInBlockStmtResult(state, basicBlock, throwers);
     }
 
     /**
@@ -1162,15 +1320,33 @@ public class CFGBuilder {
      * @return the list of basic blocks representing CFGs for each method in this compilation unit
      */
     public List<CFGBasicBlock> buildCFG(CompilationUnit node) {
-        List<CFGBasicBlock> results = new LinkedList<CFGBasicBlock>();
+        return buildCFG(node, null);
+    }
+
+    /**
+     * Builds the CFGs for the methods of the provided compilation unit.
+     *
+     * @param node the node for which to build a CFG.
+     * @param executor the executor building the method CFGs concurrently,
+     *        or {@code null} to build them sequentially in the calling thread
+     * @return the list of basic blocks representing CFGs for each method in this compilation unit,
+     *         in source order
+     * @see #buildCFGs(List, ExecutorService)
+     */
+    @SuppressWarnings("unchecked")
+    public List<CFGBasicBlock> buildCFG(CompilationUnit node, ExecutorService executor) {
+        final List<MethodDeclaration> methods = new ArrayList<MethodDeclaration>();
         for (AbstractTypeDeclaration decl : (List<AbstractTypeDeclaration>) node.types()) {
             if (decl.getNodeType() == TYPE_DECLARATION) {
-                results.addAll(buildCFG((TypeDeclaration) decl));
+                final TypeDeclaration typeDecl = (TypeDeclaration) decl;
+                if (!typeDecl.isInterface()) {
+                    methods.addAll(Arrays.asList(typeDecl.getMethods()));
+                }
             } else {
                 throw new NotImplementedException(node);
             }
         }
-        return results;
+        return buildCFGs(methods, executor);
     }
 
     /**
@@ -1420,7 +1596,7 @@ public class CFGBuilder {
         if (builder != null) {
             Map<CFGEdgeBuilder, Boolean> builders = this.edgesToBuild.get(node);
             if (builders == null) {
-                builders = new HashMap<CFGEdgeBuilder, Boolean>();
+                builders = new LinkedHashMap<CFGEdgeBuilder, Boolean>();
                 this.edgesToBuild.put(node, builders);
             }
             builders.put(builder, isBreakStmt);
@@ -1495,6 +1671,7 @@ public class CFGBuilder {
     public LivenessState buildCFG(EnhancedForStatement node, LivenessState state, ThrowerBlocks throwers) {
         final CFGBasicBlock basicBlock = getCFGBasicBlock(node, state.nextStmtWillCreateNewBlock());
 
+        addVariableAccess(basicBlock, node.getExpression(), READ, throwers);
         addDeclaration(basicBlock, node.getParameter(), DECL_INIT | WRITE);
 
         final LivenessState newLiveState = LivenessState.of(new CFGEdgeBuilder(basicBlock));
@@ -1527,6 +1704,16 @@ public class CFGBuilder {
         return state;
     }
 
+    private LivenessState getInBlockStmtResult(LivenessState state, CFGBasicBlock basicBlock,
+            ThrowerBlocks throwers) {
+        final LivenessState result = getInBlockStmtResult(state, basicBlock);
+        if (throwers.isThrowing(basicBlock)) {
+            // an exception can leave the block after the current node: next statements go in a new block
+            return result.nextStmtWillCreateNewBlock();
+        }
+        return result;
+    }
+
     /**
      * Builds a CFG for the provided node.
      *
@@ -1599,6 +1786,8 @@ public class CFGBuilder {
         for (Expression expression : initializers(node)) {
             if (expression instanceof VariableDeclarationExpression) {
                 addDeclarations(initBlock, (VariableDeclarationExpression) expression, throwers);
+            } else {
+                addVariableAccess(initBlock, expression, READ, throwers);
             }
         }
         addVariableAccess(exprBlock, node.getExpression(), READ, throwers);
@@ -1641,15 +1830,9 @@ public class CFGBuilder {
      * @return the blocks liveness state after current node
      */
     public LivenessState buildCFG(ExpressionStatement node, LivenessState state, ThrowerBlocks throwers) {
-        boolean isNewBlock = state.requireNewBlock();
         final CFGBasicBlock basicBlock = getCFGBasicBlock(node, state);
-        boolean mightThrow = addVariableAccess(basicBlock, node.getExpression(), READ, throwers);
-        if (!isNewBlock && mightThrow) {
-            final CFGBasicBlock currentBlock = getCFGBasicBlock(node, state.nextStmtWillCreateNewBlock());
-            return new LivenessState(currentBlock, new CFGEdgeBuilder(currentBlock));
-            // TODO JNR create a new CFGBasicBlock from here to catch / finally / exit
-        }
-        return getInBlockStmtResult(state, basicBlock);
+        addVariableAccess(basicBlock, node.getExpression(), READ, throwers);
+        return getInBlockStmtResult(state, basicBlock, throwers);
     }
 
     private CFGBasicBlock getCFGBasicBlock(ASTNode node, LivenessState state) {
@@ -1682,7 +1865,7 @@ public class CFGBuilder {
         }
         final LineAndColumn lineCol = getLineAndColumn(node);
         final CFGBasicBlock basicBlock = new CFGBasicBlock(node,
-                getFileName(node), codeExcerpt(node), isDecision, lineCol);
+                getFileName(node), null, isDecision, lineCol);
         buildEdges(state, basicBlock);
         return basicBlock;
     }
@@ -1700,15 +1883,13 @@ public class CFGBuilder {
     }
 
     private CFGBasicBlock newEntryBlock(MethodDeclaration node) {
-        return CFGBasicBlock.buildEntryBlock(node, getFileName(node),
-                codeExcerpt(node));
+        return CFGBasicBlock.buildEntryBlock(node, getFileName(node), null);
     }
 
     private CFGBasicBlock newExitBlock(MethodDeclaration node) {
         final LineAndColumn lineCol = getLineAndColumn(node
                 .getStartPosition() + node.getLength());
-        return CFGBasicBlock.buildExitBlock(node, getFileName(node),
-                codeExcerpt(node), lineCol);
+        return CFGBasicBlock.buildExitBlock(node, getFileName(node), null, lineCol);
     }
 
     private LineAndColumn getLineAndColumn(ASTNode node) {
@@ -1720,22 +1901,26 @@ public class CFGBuilder {
         // Return SourceLocation class with also startNodePosition to be used for graph node names
         // line number and column number are then used as comments for the node
         // file starts with line 1
-        int lineNo = 1;
-        int lastMatchPosition = 0;
-        final Matcher matcher = NEWLINE.matcher(source);
-        while (matcher.find()) {
-            final MatchResult matchResult = matcher.toMatchResult();
-            if (matchResult.end() >= position) {
-                final String startOfLine = this.source.substring(
-                        lastMatchPosition, position);
-                final int nbChars = countCharacters(startOfLine, tabSize);
-                // + 1 because line starts with column 1
-                return new LineAndColumn(position, lineNo, nbChars + 1);
+        // binary search the first newline ending at or after the position
+        int low = 0;
+        int high = newlineEnds.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (newlineEnds[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
-            lastMatchPosition = matchResult.end();
-            ++lineNo;
         }
-        throw new IllegalStateException(null, "A line and column number should have been found");
+        if (low == newlineEnds.length) {
+            throw new IllegalStateException(null, "A line and column number should have been found");
+        }
+        final int lineNo = low + 1;
+        final int lastMatchPosition = low > 0 ? newlineEnds[low - 1] : 0;
+        final String startOfLine = this.source.substring(lastMatchPosition, position);
+        final int nbChars = countCharacters(startOfLine, tabSize);
+        // + 1 because line starts with column 1
+        return new LineAndColumn(position, lineNo, nbChars + 1);
     }
 
     private int countCharacters(String s, int tabSize) {
@@ -55,10 +55,9 @@ import org.eclipse.jdt.core.dom.TryStatement;
 public class CFGDotPrinter {
 
     // TODO JNR
-    // - Add variable access nodes
+    // - Add variable access nodes instead of annotating the node labels
     // - link them with "--" and/or inside a box
     // - Display expr in the box?
-    // - node label of the form: var name + line, column + R, W, Decl
     // - use separate colors?
 
     private static final class CFGSubGraph {
@@ -85,6 +84,23 @@ public class CFGDotPrinter {
         }
     }
 
+    private final boolean withVariableAccesses;
+
+    /** Builds a printer which does not annotate the nodes with the variable accesses. */
+    public CFGDotPrinter() {
+        this(false);
+    }
+
+    /**
+     * Builds a printer.
+     *
+     * @param withVariableAccesses whether to annotate each node label with the variable accesses of its block,
+     *        like {@code i:RW} (see {@link VariableAccess#appendShortDescription(StringBuilder)})
+     */
+    public CFGDotPrinter(boolean withVariableAccesses) {
+        this.withVariableAccesses = withVariableAccesses;
+    }
+
     /**
      * Returns a String representing the CFG in the dot format.
      *
@@ -208,6 +224,8 @@ public class CFGDotPrinter {
         if (edge.getCondition() != null) {
             sb.append(" [label=\"").append(edge.getEvaluationResult())
                     .append("\"];");
+        } else if (edge.isJumping()) {
+            sb.append(" [style=\"dashed\"];");
         }
         sb.append("\n");
         return true;
@@ -215,12 +233,16 @@ public class CFGDotPrinter {
 
     private void appendDotNode(CFGBasicBlock block, StringBuilder sb) {
         if (block.isEntryBlock()) {
-            sb.append("Entry [style=\"filled\" fillcolor=\"red\"   fontcolor=\"white\"];\n");
+            sb.append("Entry [style=\"filled\" fillcolor=\"red\"   fontcolor=\"white\"");
+            appendVariableAccessesLabel(block, "Entry", sb);
+            sb.append("];\n");
         } else if (block.isExitBlock()) {
             sb.append("Exit  [style=\"filled\" fillcolor=\"black\" fontcolor=\"white\"];\n");
         } else {
             block.appendDotNodeId(sb);
-            sb.append(" [label=\"").append(escape(block.getDotNodeLabel())).append("\"");
+            sb.append(" [label=\"").append(escape(block.getDotNodeLabel()));
+            appendVariableAccesses(block, sb);
+            sb.append("\"");
             if (block.isDecision()) {
                 sb.append(",shape=\"triangle\"");
             }
@@ -229,6 +251,32 @@ public class CFGDotPrinter {
         }
     }
 
+    private void appendVariableAccessesLabel(CFGBasicBlock block, String label, StringBuilder sb) {
+        final int length = sb.length();
+        sb.append(" label=\"").append(label);
+        if (appendVariableAccesses(block, sb)) {
+            sb.append("\"");
+        } else {
+            sb.setLength(length);
+        }
+    }
+
+    private boolean appendVariableAccesses(CFGBasicBlock block, StringBuilder sb) {
+        if (!withVariableAccesses) {
+            return false;
+        }
+        boolean appended = false;
+        for (Object obj : block.getOutgoingEdgesAndVariableAccesses()) {
+            if (obj instanceof VariableAccess) {
+                sb.append(appended ? " " : "\\n");
+                final StringBuilder access = ((VariableAccess) obj).appendShortDescription(new StringBuilder());
+                sb.append(escape(access.toString()));
+                appended = true;
+            }
+        }
+        return appended;
+    }
+
     private String escape(String s) {
         return s != null ? s.replaceAll("\"", "\\\"") : null;
     }
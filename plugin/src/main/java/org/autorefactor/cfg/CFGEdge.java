@@ -39,6 +39,8 @@ public class CFGEdge {
     private final boolean evaluationResult;
     private final CFGBasicBlock sourceBlock;
     private final CFGBasicBlock targetBlock;
+    /** Whether this edge is taken when an exception is thrown. */
+    private final boolean jumping;
 
     /**
      * Builds an instance of this class.
@@ -50,10 +52,25 @@ public class CFGEdge {
      */
     public CFGEdge(Expression condition, boolean evaluationResult,
             CFGBasicBlock sourceBlock, CFGBasicBlock targetBlock) {
+        this(condition, evaluationResult, sourceBlock, targetBlock, false);
+    }
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param condition the decision condition that led to the creation of this edge.
+     * @param evaluationResult the condition evaluation result
+     * @param sourceBlock the source block
+     * @param targetBlock the target block
+     * @param jumping whether this edge is taken when an exception is thrown
+     */
+    public CFGEdge(Expression condition, boolean evaluationResult,
+            CFGBasicBlock sourceBlock, CFGBasicBlock targetBlock, boolean jumping) {
         this.condition = condition;
         this.evaluationResult = evaluationResult;
         this.sourceBlock = sourceBlock;
         this.targetBlock = targetBlock;
+        this.jumping = jumping;
     }
 
     /**
@@ -92,6 +109,16 @@ public class CFGEdge {
         return evaluationResult;
     }
 
+    /**
+     * Returns whether this edge is taken when an exception is thrown.
+     * Such an edge goes from a block throwing an exception to a catch clause, a finally block or the exit block.
+     *
+     * @return true if this edge is taken when an exception is thrown, false otherwise
+     */
+    public boolean isJumping() {
+        return jumping;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
@@ -110,6 +137,7 @@ public class CFGEdge {
         result = prime * result
                 + ((condition == null) ? 0 : condition.hashCode());
         result = prime * result + (evaluationResult ? 1231 : 1237);
+        result = prime * result + (jumping ? 1231 : 1237);
         result = prime * result
                 + ((sourceBlock == null) ? 0 : sourceBlock.hashCode());
         result = prime * result
@@ -129,6 +157,7 @@ public class CFGEdge {
         final CFGEdge other = (CFGEdge) obj;
         return equal(condition, other.condition)
                 && equal(evaluationResult, other.evaluationResult)
+                && equal(jumping, other.jumping)
                 && equal(sourceBlock, other.sourceBlock)
                 && equal(targetBlock, other.targetBlock);
     }
@@ -40,7 +40,7 @@ public class CFGEdgeBuilder {
     private boolean evaluationResult;
     private final CFGBasicBlock sourceBlock;
     private CFGBasicBlock targetBlock;
-    /** Marks a "jumping" edge: and edge built because of an exception escaping a try statement. */
+    /** Marks a "jumping" edge: an edge built because of an exception thrown by the source block. */
     private boolean jumping;
     /** Prevents building twice. */
     private CFGEdge built;
@@ -71,7 +71,7 @@ public class CFGEdgeBuilder {
      * Builds an instance of this class.
      *
      * @param throwingBlock a block throwing an exception
-     * @param jumping marks a "jumping" edge: and edge built because of an exception escaping a try statement
+     * @param jumping marks a "jumping" edge: an edge built because of an exception thrown by the source block
      */
     public CFGEdgeBuilder(CFGBasicBlock throwingBlock, boolean jumping) {
         this.sourceBlock = throwingBlock;
@@ -136,7 +136,9 @@ public class CFGEdgeBuilder {
         if (built != null) {
             throw new IllegalStateException(this.condition, "CFGEdgeBuilder " + this + " has already been built");
         }
-        if (condition != null) {
+        if (jumping) {
+            built = buildJumpingEdge(sourceBlock, targetBlock);
+        } else if (condition != null) {
             built = buildEdge(condition, evaluationResult, sourceBlock, targetBlock);
         } else {
             built = buildEdge(sourceBlock, targetBlock);
@@ -185,6 +187,29 @@ public class CFGEdgeBuilder {
         return edge;
     }
 
+    /**
+     * Factory method building a CFGEdge taken when an exception is thrown.
+     *
+     * @param throwingBlock the block throwing an exception
+     * @param targetBlock the catch clause, finally or exit block where the exception goes
+     * @return a new {@link CFGEdge}
+     */
+    public static CFGEdge buildJumpingEdge(CFGBasicBlock throwingBlock, CFGBasicBlock targetBlock) {
+        final CFGEdge edge = new CFGEdge(null, true, throwingBlock, targetBlock, true);
+        throwingBlock.addOutgoingEdge(edge);
+        targetBlock.addIncomingEdge(edge);
+        return edge;
+    }
+
+    /**
+     * Returns the source block of the edge.
+     *
+     * @return the source block of the edge
+     */
+    CFGBasicBlock getSourceBlock() {
+        return sourceBlock;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
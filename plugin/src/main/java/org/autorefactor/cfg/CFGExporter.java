@@ -0,0 +1,358 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.util.IllegalArgumentException;
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.eclipse.jdt.core.dom.ASTNode.*;
+
+/**
+ * Streams the CFGs of all the methods of a project to a {@link Writer}, in the dot format or in a compact JSON format.
+ * <p>
+ * Callers export the compilation units of a project one at a time, so only one AST is held in memory.
+ * The method CFGs of a compilation unit can be built and printed concurrently by an executor: at most
+ * {@code maxPendingMethods} methods are in flight, and each method is written as soon as it is printed and all the
+ * methods before it have been written. The output is therefore the same whatever the number of threads.
+ * </p>
+ * <p>
+ * The dot format outputs one {@code digraph} per method, preceded by a comment with the method metrics.
+ * The JSON format outputs one object per line and per method:
+ * </p>
+ *
+ * <pre>
+ * {"file":"A.java","method":"A.m(int)","line":3,
+ *  "metrics":{"blocks":5,"edges":5,"jumpingEdges":0,"variableAccesses":3,"cyclomaticComplexity":2},
+ *  "blocks":[{"code":"if (i &gt; 0) {","line":4,"column":9,"decision":true,"accesses":["i:R"]}, ...],
+ *  "edges":[{"from":1,"to":2,"condition":true},{"from":4,"to":5,"jumping":true}, ...]}
+ * </pre>
+ *
+ * <p>
+ * Methods whose CFG cannot be built are reported with an {@code "error"} member instead (resp. a comment).
+ * </p>
+ *
+ * @see CFGDotPrinter
+ * @see CFGMetrics
+ */
+public class CFGExporter {
+
+    /** The output formats. */
+    public static enum Format {
+        /** One graphviz {@code digraph} per method. */
+        DOT,
+        /** One JSON object per line and per method. */
+        JSON
+    }
+
+    private final Writer out;
+    private final Format format;
+    private final ExecutorService executor;
+    private final int maxPendingMethods;
+
+    /**
+     * Builds an exporter.
+     *
+     * @param out where to write the CFGs. It is neither flushed nor closed by this exporter
+     * @param format the output format
+     * @param executor the executor building and printing the CFGs,
+     *        or {@code null} to build them sequentially in the calling thread
+     * @param maxPendingMethods the maximum number of methods submitted to the executor and not yet written,
+     *        which bounds the memory used by the exporter
+     */
+    public CFGExporter(Writer out, Format format, ExecutorService executor, int maxPendingMethods) {
+        if (maxPendingMethods < 1) {
+            throw new IllegalArgumentException(null, "maxPendingMethods must be positive, got " + maxPendingMethods);
+        }
+        this.out = out;
+        this.format = format;
+        this.executor = executor;
+        this.maxPendingMethods = maxPendingMethods;
+    }
+
+    /**
+     * Exports the CFGs of all the method bodies of the provided compilation unit, in source order.
+     * <p>
+     * The methods of classes, enums, annotation types and their member types are exported,
+     * but not the methods of anonymous classes and enum constant bodies.
+     * </p>
+     *
+     * @param astRoot the compilation unit to export, with resolved bindings
+     * @param source the source code of the compilation unit
+     * @param options the Java project options used to compile the project
+     * @return the number of exported methods
+     * @throws IOException if the CFGs could not be written
+     */
+    public int export(CompilationUnit astRoot, String source, JavaProjectOptions options) throws IOException {
+        final List<MethodDeclaration> methods = new ArrayList<MethodDeclaration>();
+        for (AbstractTypeDeclaration typeDecl : types(astRoot)) {
+            collectMethods(typeDecl, methods);
+        }
+        final CFGBuilder builder = new CFGBuilder(source, options);
+        if (executor == null) {
+            for (MethodDeclaration method : methods) {
+                out.write(print(builder, method));
+            }
+            return methods.size();
+        }
+
+        final Deque<Future<String>> pending = new ArrayDeque<Future<String>>(maxPendingMethods);
+        try {
+            for (final MethodDeclaration method : methods) {
+                if (pending.size() == maxPendingMethods) {
+                    out.write(getResult(astRoot, pending.removeFirst()));
+                }
+                pending.addLast(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return print(builder, method);
+                    }
+                }));
+            }
+            while (!pending.isEmpty()) {
+                out.write(getResult(astRoot, pending.removeFirst()));
+            }
+            return methods.size();
+        } finally {
+            for (Future<String> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void collectMethods(AbstractTypeDeclaration typeDecl, List<MethodDeclaration> results) {
+        for (BodyDeclaration decl : bodyDeclarations(typeDecl)) {
+            if (decl.getNodeType() == METHOD_DECLARATION) {
+                final MethodDeclaration method = (MethodDeclaration) decl;
+                if (method.getBody() != null) {
+                    results.add(method);
+                }
+            } else if (decl instanceof AbstractTypeDeclaration) {
+                collectMethods((AbstractTypeDeclaration) decl, results);
+            }
+        }
+    }
+
+    private String getResult(ASTNode node, Future<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnhandledException(node, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UnhandledException(node, cause);
+        }
+    }
+
+    private String print(CFGBuilder builder, MethodDeclaration method) {
+        final String fileName = getFileName(method);
+        final String methodId = getMethodId(method);
+        final int line = ((CompilationUnit) method.getRoot()).getLineNumber(method.getName().getStartPosition());
+        final StringBuilder sb = new StringBuilder();
+        final CFGBasicBlock entryBlock;
+        try {
+            entryBlock = builder.buildCFG(method);
+        } catch (RuntimeException e) {
+            // a whole project export must not stop on the first unsupported construct
+            if (format == Format.DOT) {
+                sb.append("// ").append(fileName).append(":").append(line).append(" ").append(methodId)
+                    .append(" error: ").append(String.valueOf(e.getMessage()).replace('\n', ' ')).append("\n");
+            } else {
+                sb.append("{\"file\":");
+                appendJsonString(sb, fileName).append(",\"method\":");
+                appendJsonString(sb, methodId).append(",\"line\":").append(line).append(",\"error\":");
+                appendJsonString(sb, String.valueOf(e.getMessage())).append("}\n");
+            }
+            return sb.toString();
+        }
+
+        final CompactCFG cfg = CompactCFG.of(entryBlock);
+        final CFGMetrics metrics = CFGMetrics.of(cfg);
+        if (format == Format.DOT) {
+            sb.append("// ").append(fileName).append(":").append(line).append(" ").append(methodId)
+                .append(" ").append(metrics).append("\n");
+            sb.append(new CFGDotPrinter(true).toDot(entryBlock));
+        } else {
+            sb.append("{\"file\":");
+            appendJsonString(sb, fileName).append(",\"method\":");
+            appendJsonString(sb, methodId).append(",\"line\":").append(line);
+            appendJsonMetrics(sb, metrics);
+            appendJsonBlocks(sb, cfg);
+            appendJsonEdges(sb, cfg);
+            sb.append("}\n");
+        }
+        return sb.toString();
+    }
+
+    private String getMethodId(MethodDeclaration method) {
+        final StringBuilder sb = new StringBuilder();
+        appendTypeName(method.getParent(), sb);
+        sb.append(method.getName().getIdentifier()).append("(");
+        boolean first = true;
+        for (SingleVariableDeclaration param : parameters(method)) {
+            if (!first) {
+                sb.append(",");
+            }
+            first = false;
+            sb.append(param.getType());
+            for (int i = 0; i < param.getExtraDimensions(); i++) {
+                sb.append("[]");
+            }
+            if (param.isVarargs()) {
+                sb.append("...");
+            }
+        }
+        return sb.append(")").toString();
+    }
+
+    private void appendTypeName(ASTNode node, StringBuilder sb) {
+        if (node instanceof AbstractTypeDeclaration) {
+            appendTypeName(node.getParent(), sb);
+            sb.append(((AbstractTypeDeclaration) node).getName().getIdentifier()).append(".");
+        }
+    }
+
+    private void appendJsonMetrics(StringBuilder sb, CFGMetrics metrics) {
+        sb.append(",\"metrics\":{\"blocks\":").append(metrics.getBlockCount())
+            .append(",\"edges\":").append(metrics.getEdgeCount())
+            .append(",\"jumpingEdges\":").append(metrics.getJumpingEdgeCount())
+            .append(",\"variableAccesses\":").append(metrics.getVariableAccessCount())
+            .append(",\"cyclomaticComplexity\":").append(metrics.getCyclomaticComplexity())
+            .append("}");
+    }
+
+    private void appendJsonBlocks(StringBuilder sb, CompactCFG cfg) {
+        sb.append(",\"blocks\":[");
+        for (int b = 0; b < cfg.getBlockCount(); b++) {
+            if (b > 0) {
+                sb.append(",");
+            }
+            final CFGBasicBlock block = cfg.getBlock(b);
+            final LineAndColumn lineAndColumn = block.getLineAndColumn();
+            sb.append("{\"code\":");
+            if (block.isEntryBlock()) {
+                appendJsonString(sb, "Entry");
+            } else if (block.isExitBlock()) {
+                appendJsonString(sb, "Exit");
+            } else {
+                appendJsonString(sb, block.getCodeExcerpt());
+            }
+            sb.append(",\"line\":").append(lineAndColumn.getLine())
+                .append(",\"column\":").append(lineAndColumn.getColumn());
+            if (block.isDecision()) {
+                sb.append(",\"decision\":true");
+            }
+            if (cfg.getAccessesStart(b) < cfg.getAccessesEnd(b)) {
+                sb.append(",\"accesses\":[");
+                for (int a = cfg.getAccessesStart(b); a < cfg.getAccessesEnd(b); a++) {
+                    if (a > cfg.getAccessesStart(b)) {
+                        sb.append(",");
+                    }
+                    appendJsonString(sb, cfg.getAccess(a).appendShortDescription(new StringBuilder()).toString());
+                }
+                sb.append("]");
+            }
+            sb.append("}");
+        }
+        sb.append("]");
+    }
+
+    private void appendJsonEdges(StringBuilder sb, CompactCFG cfg) {
+        sb.append(",\"edges\":[");
+        for (int b = 0; b < cfg.getBlockCount(); b++) {
+            for (int e = cfg.getSuccessorsStart(b); e < cfg.getSuccessorsEnd(b); e++) {
+                if (e > 0) {
+                    sb.append(",");
+                }
+                final CFGEdge edge = cfg.getEdge(e);
+                sb.append("{\"from\":").append(b).append(",\"to\":").append(cfg.getSuccessor(e));
+                if (edge.getCondition() != null) {
+                    sb.append(",\"condition\":").append(edge.getEvaluationResult());
+                }
+                if (edge.isJumping()) {
+                    sb.append(",\"jumping\":true");
+                }
+                sb.append("}");
+            }
+        }
+        sb.append("]");
+    }
+
+    private static StringBuilder appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < ' ') {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb.append('"');
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import org.eclipse.jdt.core.dom.CatchClause;
+
+/**
+ * Size and complexity metrics of a {@link CompactCFG}.
+ * <p>
+ * The cyclomatic complexity is computed as the number of decisions plus one, where each additional normal successor
+ * of a block and each reachable catch clause count as a decision. Exceptional edges to the exit block are not
+ * counted as decisions, otherwise every method call would increase the complexity.
+ * </p>
+ */
+public final class CFGMetrics {
+
+    private final int blockCount;
+    private final int edgeCount;
+    private final int jumpingEdgeCount;
+    private final int variableAccessCount;
+    private final int cyclomaticComplexity;
+
+    private CFGMetrics(CompactCFG cfg) {
+        int nbJumpingEdges = 0;
+        int nbDecisions = 0;
+        for (int b = 0; b < cfg.getBlockCount(); b++) {
+            int nbNormalSuccessors = 0;
+            for (int e = cfg.getSuccessorsStart(b); e < cfg.getSuccessorsEnd(b); e++) {
+                if (cfg.getEdge(e).isJumping()) {
+                    nbJumpingEdges++;
+                } else {
+                    nbNormalSuccessors++;
+                }
+            }
+            if (nbNormalSuccessors > 1) {
+                nbDecisions += nbNormalSuccessors - 1;
+            }
+            if (cfg.getBlock(b).getNode() instanceof CatchClause) {
+                nbDecisions++;
+            }
+        }
+        this.blockCount = cfg.getBlockCount();
+        this.edgeCount = cfg.getEdgeCount();
+        this.jumpingEdgeCount = nbJumpingEdges;
+        this.variableAccessCount = cfg.getAccessCount();
+        this.cyclomaticComplexity = nbDecisions + 1;
+    }
+
+    /**
+     * Returns the metrics of the provided graph, computing them on first request.
+     *
+     * @param cfg the graph to measure
+     * @return the metrics of the provided graph
+     */
+    public static CFGMetrics of(CompactCFG cfg) {
+        final CFGMetrics cached = cfg.getAnalysis(CFGMetrics.class, CFGMetrics.class);
+        if (cached != null) {
+            return cached;
+        }
+        return cfg.putAnalysis(CFGMetrics.class, new CFGMetrics(cfg));
+    }
+
+    /**
+     * Returns the number of reachable blocks, including the entry and exit blocks.
+     *
+     * @return the number of reachable blocks
+     */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Returns the number of edges between reachable blocks, including the exceptional edges.
+     *
+     * @return the number of edges between reachable blocks
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Returns the number of exceptional edges, see {@link CFGEdge#isJumping()}.
+     *
+     * @return the number of exceptional edges
+     */
+    public int getJumpingEdgeCount() {
+        return jumpingEdgeCount;
+    }
+
+    /**
+     * Returns the number of variable accesses in the reachable blocks.
+     *
+     * @return the number of variable accesses in the reachable blocks
+     */
+    public int getVariableAccessCount() {
+        return variableAccessCount;
+    }
+
+    /**
+     * Returns the cyclomatic complexity.
+     *
+     * @return the cyclomatic complexity, 1 for a method without any decision
+     */
+    public int getCyclomaticComplexity() {
+        return cyclomaticComplexity;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "blocks=" + blockCount + ", edges=" + edgeCount + ", jumpingEdges=" + jumpingEdgeCount
+                + ", variableAccesses=" + variableAccessCount + ", cyclomaticComplexity=" + cyclomaticComplexity;
+    }
+}
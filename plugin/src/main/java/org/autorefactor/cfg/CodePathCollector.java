@@ -27,59 +27,269 @@ package org.autorefactor.cfg;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
-import org.autorefactor.util.IllegalStateException;
+import org.autorefactor.util.IllegalArgumentException;
 
 /**
- * Collects code paths into the CFG.
+ * Answers queries about the code paths of a {@link CompactCFG}.
+ * <p>
+ * A code path is an acyclic path from one block to another. The number of code paths can be exponential in the size
+ * of the graph (a method with 30 sequential if statements has 2^30 paths), so queries never materialize all of them:
+ * path counting and path inclusion run in time linear in the size of the graph, and paths are only enumerated
+ * lazily, up to a maximum number of paths.
+ * </p>
  */
 public class CodePathCollector {
 
-    private final List<List<CFGBasicBlock>> results = new ArrayList<List<CFGBasicBlock>>();
-    private final Deque<CFGBasicBlock> stack = new LinkedList<CFGBasicBlock>();
+    private final CompactCFG cfg;
 
     /**
-     * Returns the collected code paths.
+     * Builds an instance of this class.
      *
-     * @param entryBlock the entry block of the CFG
-     * @return the collected code paths
+     * @param cfg the graph to query
      */
-    public Collection<List<CFGBasicBlock>> getPaths(CFGBasicBlock entryBlock) {
-        collectPathes(entryBlock);
+    public CodePathCollector(CompactCFG cfg) {
+        this.cfg = cfg;
+    }
+
+    /**
+     * Returns the number of code paths from the entry block to the exit block.
+     *
+     * @return the number of code paths from the entry block to the exit block,
+     *         saturated at {@link Long#MAX_VALUE}
+     */
+    public long countPaths() {
+        return countPaths(cfg.getEntryBlock(), cfg.getExitBlock());
+    }
+
+    /**
+     * Returns the number of code paths between the provided blocks.
+     * <p>
+     * The start block must be outside of any loop, except a loop it is the header of: the entry block always is.
+     * Java code always yields reducible graphs, where an acyclic path from such a block never follows a back edge,
+     * so the paths are counted in the acyclic graph made of the edges going forward in reverse postorder.
+     * Acyclic paths starting inside a loop can leave it through its back edge, and they cannot be counted
+     * in linear time.
+     * </p>
+     *
+     * @param from the index of the block where paths start
+     * @param to the index of the block where paths end
+     * @return the number of code paths between the provided blocks, saturated at {@link Long#MAX_VALUE}
+     * @throws IllegalArgumentException if the start block is inside a loop it is not the header of
+     */
+    public long countPaths(int from, int to) {
+        if (from == -1 || to == -1) {
+            return 0;
+        }
+        final LoopNestingForest loops = LoopNestingForest.of(cfg);
+        final int loop = loops.getInnermostLoop(from);
+        if (loop != -1 && (loops.getHeader(loop) != from || loops.getParent(loop) != -1)) {
+            throw new IllegalArgumentException(null,
+                    "Cannot count the code paths starting inside a loop, from block " + from);
+        }
+        if (to < from) {
+            return 0;
+        }
+        // blocks are numbered in reverse postorder: non retreating edges always go to a greater block index
+        final long[] counts = new long[to + 1];
+        counts[to] = 1;
+        for (int b = to - 1; b >= from; b--) {
+            long count = 0;
+            for (int e = cfg.getSuccessorsStart(b); e < cfg.getSuccessorsEnd(b); e++) {
+                final int target = cfg.getSuccessor(e);
+                if (b < target && target <= to) {
+                    count = saturatedAdd(count, counts[target]);
+                }
+            }
+            counts[b] = count;
+        }
+        return counts[from];
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        final long result = a + b;
+        return result < 0 ? Long.MAX_VALUE : result;
+    }
+
+    /**
+     * Returns whether every code path from the provided block to the exit block passes through the other provided
+     * block.
+     *
+     * @param from the index of the block where paths start
+     * @param through the index of the block every path must pass through
+     * @return true if every code path from {@code from} to the exit block passes through {@code through},
+     *         or if there is no such path, false otherwise
+     */
+    public boolean allPathsPassThrough(int from, int through) {
+        final int exit = cfg.getExitBlock();
+        if (from == through || exit == -1) {
+            return true;
+        }
+        // look for a path to the exit block avoiding the "through" block
+        final long[] visited = new long[(cfg.getBlockCount() + 63) >>> 6];
+        final int[] worklist = new int[cfg.getBlockCount()];
+        int nbPending = 0;
+        mark(visited, through);
+        mark(visited, from);
+        worklist[nbPending++] = from;
+        while (nbPending > 0) {
+            final int block = worklist[--nbPending];
+            if (block == exit) {
+                return false;
+            }
+            for (int e = cfg.getSuccessorsStart(block); e < cfg.getSuccessorsEnd(block); e++) {
+                final int target = cfg.getSuccessor(e);
+                if (!isMarked(visited, target)) {
+                    mark(visited, target);
+                    worklist[nbPending++] = target;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a lazy iterator over the code paths from the entry block to the exit block.
+     * Each path starts with the entry block and ends with the exit block.
+     *
+     * @param maxPaths the maximum number of paths to return
+     * @return a lazy iterator over the code paths from the entry block to the exit block
+     */
+    public Iterator<List<CFGBasicBlock>> pathIterator(int maxPaths) {
+        return new PathIterator(maxPaths);
+    }
+
+    /**
+     * Returns the code paths from the entry block to the exit block, up to the provided maximum number of paths.
+     *
+     * @param maxPaths the maximum number of paths to return
+     * @return the code paths from the entry block to the exit block
+     * @see #pathIterator(int)
+     */
+    public Collection<List<CFGBasicBlock>> getPaths(int maxPaths) {
+        final List<List<CFGBasicBlock>> results = new ArrayList<List<CFGBasicBlock>>();
+        for (Iterator<List<CFGBasicBlock>> iter = pathIterator(maxPaths); iter.hasNext();) {
+            results.add(iter.next());
+        }
         return results;
     }
 
-    private void collectPathes(CFGBasicBlock block) {
-        if (block.isExitBlock()) {
-            // this is the end of this path,
-            // let's take a copy of the stack
-            results.add(new ArrayList<CFGBasicBlock>(stack));
-            return;
+    private static void mark(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void unmark(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    private static boolean isMarked(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /** Depth first enumeration of the paths, with the current path kept in arrays and a bitset. */
+    private final class PathIterator implements Iterator<List<CFGBasicBlock>> {
+
+        private final int exit = cfg.getExitBlock();
+        private final int[] path = new int[cfg.getBlockCount()];
+        private final int[] nextEdges = new int[cfg.getBlockCount()];
+        private final long[] onPath = new long[(cfg.getBlockCount() + 63) >>> 6];
+        /** Blocks from which the exit block can be reached: other blocks are never explored. */
+        private final long[] reachesExit = new long[(cfg.getBlockCount() + 63) >>> 6];
+        private int depth;
+        private int remainingPaths;
+        private List<CFGBasicBlock> next;
+
+        private PathIterator(int maxPaths) {
+            this.remainingPaths = maxPaths;
+            if (exit != -1) {
+                markBlocksReachingExit();
+                push(cfg.getEntryBlock());
+            }
         }
-        if (stack.contains(block)) {
-            // cycle detected, let's stop it here
-            return;
+
+        private void markBlocksReachingExit() {
+            final int[] worklist = new int[cfg.getBlockCount()];
+            int nbPending = 0;
+            mark(reachesExit, exit);
+            worklist[nbPending++] = exit;
+            while (nbPending > 0) {
+                final int block = worklist[--nbPending];
+                for (int p = cfg.getPredecessorsStart(block); p < cfg.getPredecessorsEnd(block); p++) {
+                    final int source = cfg.getPredecessor(p);
+                    if (!isMarked(reachesExit, source)) {
+                        mark(reachesExit, source);
+                        worklist[nbPending++] = source;
+                    }
+                }
+            }
+        }
+
+        private void push(int block) {
+            path[depth] = block;
+            nextEdges[depth] = cfg.getSuccessorsStart(block);
+            mark(onPath, block);
+            depth++;
+        }
+
+        private void pop() {
+            depth--;
+            unmark(onPath, path[depth]);
         }
 
-        stack.push(block);
-        try {
-            boolean foundAtLeastOneEdge = false;
-            for (Object obj : block.getOutgoingEdgesAndVariableAccesses()) {
-                if (obj instanceof CFGEdge) {
-                    final CFGEdge edge = (CFGEdge) obj;
-                    collectPathes(edge.getTargetBlock());
-                    foundAtLeastOneEdge = true;
+        private List<CFGBasicBlock> computeNext() {
+            while (depth > 0 && remainingPaths > 0) {
+                final int top = depth - 1;
+                final int block = path[top];
+                if (block == exit) {
+                    final List<CFGBasicBlock> result = new ArrayList<CFGBasicBlock>(depth);
+                    for (int i = 0; i < depth; i++) {
+                        result.add(cfg.getBlock(path[i]));
+                    }
+                    pop();
+                    remainingPaths--;
+                    return result;
+                }
+                final int edge = nextEdges[top];
+                if (edge < cfg.getSuccessorsEnd(block)) {
+                    nextEdges[top]++;
+                    final int target = cfg.getSuccessor(edge);
+                    if (!isMarked(onPath, target) && isMarked(reachesExit, target)) {
+                        push(target);
+                    }
+                } else {
+                    pop();
                 }
             }
-            if (!foundAtLeastOneEdge) {
-                throw new IllegalStateException(block.getNode(),
-                        "Path should have ended with an exit block: " + stack);
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = computeNext();
             }
-        } finally {
-            stack.pop();
+            return next != null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public List<CFGBasicBlock> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final List<CFGBasicBlock> result = next;
+            next = null;
+            return result;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
         }
     }
 }
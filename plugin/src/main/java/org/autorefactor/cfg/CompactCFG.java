@@ -0,0 +1,531 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.SuperFieldAccess;
+
+/**
+ * Frozen, array based form of a control flow graph.
+ * <p>
+ * Blocks reachable from the entry block are numbered from {@code 0} to {@code getBlockCount() - 1} in reverse
+ * postorder, so the entry block is always block {@code 0}. Successors and predecessors are stored in compressed
+ * sparse row arrays: the successors of block {@code b} are found at indices
+ * {@code [getSuccessorsStart(b), getSuccessorsEnd(b))}. Edge indices are shared between successors and
+ * predecessors. Variable accesses are stored the same way, with variables numbered densely.
+ * </p>
+ * <p>
+ * The {@link CFGBasicBlock}, {@link CFGEdge} and {@link VariableAccess} objects the graph was built from remain
+ * available as a view through {@link #getBlock(int)}, {@link #getEdge(int)} and {@link #getAccess(int)}.
+ * </p>
+ */
+public final class CompactCFG {
+
+    private final CFGBasicBlock[] blocks;
+    private final Map<CFGBasicBlock, Integer> blockIndexes;
+    private final int exitBlock;
+
+    private final int[] successorsStarts;
+    private final int[] successors;
+    private final CFGEdge[] edges;
+    private final int[] predecessorsStarts;
+    private final int[] predecessors;
+    /** For each predecessor entry, the index of the edge in the successor arrays. */
+    private final int[] predecessorEdges;
+
+    private final int[] accessesStarts;
+    private final int[] accessFlags;
+    private final int[] accessVariables;
+    private final VariableAccess[] accesses;
+    private final Name[] variableNames;
+    private final IVariableBinding[] variableBindings;
+    /** Analyses computed on demand over this graph. */
+    private final Map<Object, Object> analyses = new HashMap<Object, Object>();
+
+    private CompactCFG(CFGBasicBlock[] blocks, Map<CFGBasicBlock, Integer> blockIndexes) {
+        final int nbBlocks = blocks.length;
+        this.blocks = blocks;
+        this.blockIndexes = blockIndexes;
+
+        int exit = -1;
+        final List<CFGEdge> allEdges = new ArrayList<CFGEdge>();
+        final List<VariableAccess> allAccesses = new ArrayList<VariableAccess>();
+        this.successorsStarts = new int[nbBlocks + 1];
+        this.accessesStarts = new int[nbBlocks + 1];
+        for (int b = 0; b < nbBlocks; b++) {
+            if (blocks[b].isExitBlock()) {
+                exit = b;
+            }
+            successorsStarts[b] = allEdges.size();
+            accessesStarts[b] = allAccesses.size();
+            for (Object obj : blocks[b].getOutgoingEdgesAndVariableAccesses()) {
+                if (obj instanceof CFGEdge) {
+                    allEdges.add((CFGEdge) obj);
+                } else {
+                    allAccesses.add((VariableAccess) obj);
+                }
+            }
+        }
+        successorsStarts[nbBlocks] = allEdges.size();
+        accessesStarts[nbBlocks] = allAccesses.size();
+        this.exitBlock = exit;
+
+        final int nbEdges = allEdges.size();
+        this.edges = allEdges.toArray(new CFGEdge[nbEdges]);
+        this.successors = new int[nbEdges];
+        this.predecessorsStarts = new int[nbBlocks + 1];
+        for (int e = 0; e < nbEdges; e++) {
+            final int target = blockIndexes.get(edges[e].getTargetBlock());
+            successors[e] = target;
+            predecessorsStarts[target + 1]++;
+        }
+        for (int b = 0; b < nbBlocks; b++) {
+            predecessorsStarts[b + 1] += predecessorsStarts[b];
+        }
+        this.predecessors = new int[nbEdges];
+        this.predecessorEdges = new int[nbEdges];
+        final int[] fill = new int[nbBlocks];
+        for (int b = 0; b < nbBlocks; b++) {
+            for (int e = successorsStarts[b]; e < successorsStarts[b + 1]; e++) {
+                final int target = successors[e];
+                final int idx = predecessorsStarts[target] + fill[target]++;
+                predecessors[idx] = b;
+                predecessorEdges[idx] = e;
+            }
+        }
+
+        final int nbAccesses = allAccesses.size();
+        this.accesses = allAccesses.toArray(new VariableAccess[nbAccesses]);
+        this.accessFlags = new int[nbAccesses];
+        this.accessVariables = new int[nbAccesses];
+        final Map<Object, Integer> variableIndexes = new HashMap<Object, Integer>();
+        final List<Name> names = new ArrayList<Name>();
+        final List<IVariableBinding> bindings = new ArrayList<IVariableBinding>();
+        for (int a = 0; a < nbAccesses; a++) {
+            accessFlags[a] = accesses[a].getAccessType();
+            final Name name = getVariableName(accesses[a]);
+            if (name == null) {
+                accessVariables[a] = -1;
+                continue;
+            }
+            final IBinding binding = name.resolveBinding();
+            final IVariableBinding varBinding = binding instanceof IVariableBinding
+                    ? (IVariableBinding) binding : null;
+            // without bindings, fall back to comparing the names
+            final Object key = varBinding != null ? varBinding : name.getFullyQualifiedName();
+            Integer varIndex = variableIndexes.get(key);
+            if (varIndex == null) {
+                varIndex = names.size();
+                variableIndexes.put(key, varIndex);
+                names.add(name);
+                bindings.add(varBinding);
+            }
+            accessVariables[a] = varIndex;
+        }
+        this.variableNames = names.toArray(new Name[names.size()]);
+        this.variableBindings = bindings.toArray(new IVariableBinding[bindings.size()]);
+    }
+
+    private static Name getVariableName(VariableAccess access) {
+        if (access.getName() != null) {
+            return access.getName();
+        }
+        final ASTNode node = access.getASTNode();
+        if (node instanceof FieldAccess) {
+            return ((FieldAccess) node).getName();
+        } else if (node instanceof SuperFieldAccess) {
+            return ((SuperFieldAccess) node).getName();
+        }
+        return null;
+    }
+
+    /**
+     * Freezes the control flow graph reachable from the provided entry block into its compact form.
+     *
+     * @param entryBlock the entry block of the control flow graph
+     * @return the compact form of the control flow graph
+     */
+    public static CompactCFG of(CFGBasicBlock entryBlock) {
+        final Map<CFGBasicBlock, Integer> postOrder = new IdentityHashMap<CFGBasicBlock, Integer>();
+        final List<CFGBasicBlock> postOrdered = new ArrayList<CFGBasicBlock>();
+
+        // iterative depth first search: a recursive one overflows the stack on very large methods
+        final List<CFGBasicBlock> stack = new ArrayList<CFGBasicBlock>();
+        final List<Integer> nextEdges = new ArrayList<Integer>();
+        final List<List<CFGBasicBlock>> stackTargets = new ArrayList<List<CFGBasicBlock>>();
+        postOrder.put(entryBlock, -1);
+        stack.add(entryBlock);
+        nextEdges.add(0);
+        stackTargets.add(getTargetBlocks(entryBlock));
+        while (!stack.isEmpty()) {
+            final int top = stack.size() - 1;
+            final List<CFGBasicBlock> targets = stackTargets.get(top);
+            final int next = nextEdges.get(top);
+            if (next < targets.size()) {
+                nextEdges.set(top, next + 1);
+                final CFGBasicBlock target = targets.get(next);
+                if (!postOrder.containsKey(target)) {
+                    postOrder.put(target, -1);
+                    stack.add(target);
+                    nextEdges.add(0);
+                    stackTargets.add(getTargetBlocks(target));
+                }
+            } else {
+                postOrdered.add(stack.remove(top));
+                nextEdges.remove(top);
+                stackTargets.remove(top);
+            }
+        }
+
+        final int nbBlocks = postOrdered.size();
+        final CFGBasicBlock[] blocks = new CFGBasicBlock[nbBlocks];
+        for (int i = 0; i < nbBlocks; i++) {
+            final CFGBasicBlock block = postOrdered.get(nbBlocks - 1 - i);
+            blocks[i] = block;
+            postOrder.put(block, i);
+        }
+        return new CompactCFG(blocks, postOrder);
+    }
+
+    private static List<CFGBasicBlock> getTargetBlocks(CFGBasicBlock block) {
+        final List<CFGBasicBlock> results = new ArrayList<CFGBasicBlock>();
+        for (Object obj : block.getOutgoingEdgesAndVariableAccesses()) {
+            if (obj instanceof CFGEdge) {
+                results.add(((CFGEdge) obj).getTargetBlock());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the number of blocks in this graph.
+     *
+     * @return the number of blocks in this graph
+     */
+    public int getBlockCount() {
+        return blocks.length;
+    }
+
+    /**
+     * Returns the index of the entry block.
+     *
+     * @return the index of the entry block
+     */
+    public int getEntryBlock() {
+        return 0;
+    }
+
+    /**
+     * Returns the index of the exit block.
+     *
+     * @return the index of the exit block, or -1 if the exit block is not reachable from the entry block
+     */
+    public int getExitBlock() {
+        return exitBlock;
+    }
+
+    /**
+     * Returns the basic block with the provided index.
+     *
+     * @param block the block index
+     * @return the basic block with the provided index
+     */
+    public CFGBasicBlock getBlock(int block) {
+        return blocks[block];
+    }
+
+    /**
+     * Returns the index of the provided basic block.
+     *
+     * @param block the basic block
+     * @return the index of the provided basic block, or -1 if it is not part of this graph
+     */
+    public int indexOf(CFGBasicBlock block) {
+        final Integer index = blockIndexes.get(block);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Returns the code excerpt of the provided block, computed on first request.
+     *
+     * @param block the block index
+     * @return the code excerpt of the provided block
+     */
+    public String getCodeExcerpt(int block) {
+        return blocks[block].getCodeExcerpt();
+    }
+
+    /**
+     * Returns the number of edges in this graph.
+     *
+     * @return the number of edges in this graph
+     */
+    public int getEdgeCount() {
+        return edges.length;
+    }
+
+    /**
+     * Returns the index of the first outgoing edge of the provided block.
+     *
+     * @param block the block index
+     * @return the index of the first outgoing edge of the provided block
+     */
+    public int getSuccessorsStart(int block) {
+        return successorsStarts[block];
+    }
+
+    /**
+     * Returns the index following the last outgoing edge of the provided block.
+     *
+     * @param block the block index
+     * @return the index following the last outgoing edge of the provided block
+     */
+    public int getSuccessorsEnd(int block) {
+        return successorsStarts[block + 1];
+    }
+
+    /**
+     * Returns the target block of the provided edge.
+     *
+     * @param edge the edge index
+     * @return the target block of the provided edge
+     */
+    public int getSuccessor(int edge) {
+        return successors[edge];
+    }
+
+    /**
+     * Returns the edge object with the provided index.
+     *
+     * @param edge the edge index
+     * @return the edge object with the provided index
+     */
+    public CFGEdge getEdge(int edge) {
+        return edges[edge];
+    }
+
+    /**
+     * Returns the index of the first predecessor entry of the provided block.
+     *
+     * @param block the block index
+     * @return the index of the first predecessor entry of the provided block
+     */
+    public int getPredecessorsStart(int block) {
+        return predecessorsStarts[block];
+    }
+
+    /**
+     * Returns the index following the last predecessor entry of the provided block.
+     *
+     * @param block the block index
+     * @return the index following the last predecessor entry of the provided block
+     */
+    public int getPredecessorsEnd(int block) {
+        return predecessorsStarts[block + 1];
+    }
+
+    /**
+     * Returns the source block of the provided predecessor entry.
+     *
+     * @param predecessor the predecessor entry index
+     * @return the source block of the provided predecessor entry
+     */
+    public int getPredecessor(int predecessor) {
+        return predecessors[predecessor];
+    }
+
+    /**
+     * Returns the edge index of the provided predecessor entry.
+     *
+     * @param predecessor the predecessor entry index
+     * @return the edge index of the provided predecessor entry
+     */
+    public int getPredecessorEdge(int predecessor) {
+        return predecessorEdges[predecessor];
+    }
+
+    /**
+     * Returns the index of the first variable access of the provided block.
+     *
+     * @param block the block index
+     * @return the index of the first variable access of the provided block
+     */
+    public int getAccessesStart(int block) {
+        return accessesStarts[block];
+    }
+
+    /**
+     * Returns the index following the last variable access of the provided block.
+     *
+     * @param block the block index
+     * @return the index following the last variable access of the provided block
+     */
+    public int getAccessesEnd(int block) {
+        return accessesStarts[block + 1];
+    }
+
+    /**
+     * Returns the number of variable accesses in this graph.
+     *
+     * @return the number of variable accesses in this graph
+     */
+    public int getAccessCount() {
+        return accesses.length;
+    }
+
+    /**
+     * Returns the block containing the provided variable access.
+     *
+     * @param access the variable access index
+     * @return the index of the block containing the provided variable access
+     */
+    public int getAccessBlock(int access) {
+        // find the last block starting at or before the access, skipping blocks without accesses
+        int low = 0;
+        int high = blocks.length - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (accessesStarts[mid] <= access) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the access flags of the provided variable access.
+     *
+     * @param access the variable access index
+     * @return the access flags of the provided variable access, as defined in {@link VariableAccess}
+     */
+    public int getAccessFlags(int access) {
+        return accessFlags[access];
+    }
+
+    /**
+     * Returns the variable of the provided variable access.
+     *
+     * @param access the variable access index
+     * @return the variable index of the provided variable access, or -1 if the variable is unknown
+     */
+    public int getAccessVariable(int access) {
+        return accessVariables[access];
+    }
+
+    /**
+     * Returns the variable access object with the provided index.
+     *
+     * @param access the variable access index
+     * @return the variable access object with the provided index
+     */
+    public VariableAccess getAccess(int access) {
+        return accesses[access];
+    }
+
+    /**
+     * Returns the number of distinct variables accessed in this graph.
+     *
+     * @return the number of distinct variables accessed in this graph
+     */
+    public int getVariableCount() {
+        return variableNames.length;
+    }
+
+    /**
+     * Returns the name of the first access to the provided variable.
+     *
+     * @param variable the variable index
+     * @return the name of the first access to the provided variable
+     */
+    public Name getVariableName(int variable) {
+        return variableNames[variable];
+    }
+
+    /**
+     * Returns the binding of the provided variable.
+     *
+     * @param variable the variable index
+     * @return the binding of the provided variable, or null if it could not be resolved
+     */
+    public IVariableBinding getVariableBinding(int variable) {
+        return variableBindings[variable];
+    }
+
+    /**
+     * Returns whether the provided variable is a local variable or a parameter.
+     *
+     * @param variable the variable index
+     * @return true if the provided variable is a local variable or a parameter,
+     *         false if it is a field or could not be resolved
+     */
+    public boolean isLocalVariable(int variable) {
+        final IVariableBinding binding = variableBindings[variable];
+        return binding != null && !binding.isField();
+    }
+
+    /**
+     * Returns the analysis previously cached on this graph under the provided key.
+     *
+     * @param <T> the analysis type
+     * @param key the analysis key
+     * @param analysisClass the analysis class
+     * @return the cached analysis, or null if none has been cached yet
+     */
+    synchronized <T> T getAnalysis(Object key, Class<T> analysisClass) {
+        return analysisClass.cast(analyses.get(key));
+    }
+
+    /**
+     * Caches the provided analysis on this graph under the provided key,
+     * unless one was already cached concurrently.
+     *
+     * @param <T> the analysis type
+     * @param key the analysis key
+     * @param analysis the analysis to cache
+     * @return the analysis cached on this graph under the provided key
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> T putAnalysis(Object key, T analysis) {
+        final Object existing = analyses.get(key);
+        if (existing != null) {
+            return (T) existing;
+        }
+        analyses.put(key, analysis);
+        return analysis;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import static org.autorefactor.cfg.VariableAccess.*;
+
+/**
+ * Def-use and use-def chains of the local variables of a {@link CompactCFG}, built from {@link ReachingDefinitions}.
+ * <p>
+ * Both chains are indexed by variable access and stored in compressed sparse row form: the definitions reaching a
+ * read and the reads reached by a definition are listed in constant time per answer.
+ * A compound assignment like {@code i += 1} or {@code i++} is both a read and a definition.
+ * </p>
+ */
+public final class DefUseChains {
+
+    private final ReachingDefinitions reachingDefinitions;
+    /** For each read access, the definition accesses reaching it, in compressed sparse row form. */
+    private final int[] useDefsStarts;
+    private final int[] useDefs;
+    /** For each definition access, the read accesses it reaches, in compressed sparse row form. */
+    private final int[] defUsesStarts;
+    private final int[] defUses;
+
+    private DefUseChains(CompactCFG cfg) {
+        this.reachingDefinitions = ReachingDefinitions.of(cfg);
+        final int nbAccesses = cfg.getAccessCount();
+
+        final int[][] reaching = new int[nbAccesses][];
+        this.useDefsStarts = new int[nbAccesses + 1];
+        this.defUsesStarts = new int[nbAccesses + 1];
+        for (int a = 0; a < nbAccesses; a++) {
+            if ((cfg.getAccessFlags(a) & READ) != 0) {
+                reaching[a] = reachingDefinitions.getReachingDefinitions(a);
+            }
+            final int nbDefs = reaching[a] != null ? reaching[a].length : 0;
+            useDefsStarts[a + 1] = useDefsStarts[a] + nbDefs;
+            for (int i = 0; i < nbDefs; i++) {
+                defUsesStarts[reachingDefinitions.getDefinitionAccess(reaching[a][i]) + 1]++;
+            }
+        }
+        for (int a = 0; a < nbAccesses; a++) {
+            defUsesStarts[a + 1] += defUsesStarts[a];
+        }
+
+        this.useDefs = new int[useDefsStarts[nbAccesses]];
+        this.defUses = new int[defUsesStarts[nbAccesses]];
+        final int[] fill = new int[nbAccesses];
+        for (int a = 0; a < nbAccesses; a++) {
+            if (reaching[a] == null) {
+                continue;
+            }
+            for (int i = 0; i < reaching[a].length; i++) {
+                final int defAccess = reachingDefinitions.getDefinitionAccess(reaching[a][i]);
+                useDefs[useDefsStarts[a] + i] = defAccess;
+                // reads are visited in increasing order, so the uses of each definition are sorted
+                defUses[defUsesStarts[defAccess] + fill[defAccess]++] = a;
+            }
+        }
+    }
+
+    /**
+     * Returns the def-use chains of the provided graph, computing them on first request.
+     *
+     * @param cfg the graph to analyze
+     * @return the def-use chains of the provided graph
+     */
+    public static DefUseChains of(CompactCFG cfg) {
+        final DefUseChains cached = cfg.getAnalysis(DefUseChains.class, DefUseChains.class);
+        if (cached != null) {
+            return cached;
+        }
+        return cfg.putAnalysis(DefUseChains.class, new DefUseChains(cfg));
+    }
+
+    /**
+     * Returns the reaching definitions analysis these chains are built from.
+     *
+     * @return the reaching definitions analysis these chains are built from
+     */
+    public ReachingDefinitions getReachingDefinitions() {
+        return reachingDefinitions;
+    }
+
+    /**
+     * Returns the start index of the definitions reaching the provided read access,
+     * to be used with {@link #getDefinition(int)}.
+     *
+     * @param access the read access index
+     * @return the start index of the definitions reaching the provided read access
+     */
+    public int getDefinitionsStart(int access) {
+        return useDefsStarts[access];
+    }
+
+    /**
+     * Returns the end index (exclusive) of the definitions reaching the provided read access.
+     * It is equal to the start index for accesses which do not read a local variable.
+     *
+     * @param access the read access index
+     * @return the end index of the definitions reaching the provided read access
+     */
+    public int getDefinitionsEnd(int access) {
+        return useDefsStarts[access + 1];
+    }
+
+    /**
+     * Returns the definition access at the provided index.
+     *
+     * @param index an index between {@link #getDefinitionsStart(int)} and {@link #getDefinitionsEnd(int)}
+     * @return the definition access index
+     */
+    public int getDefinition(int index) {
+        return useDefs[index];
+    }
+
+    /**
+     * Returns the start index of the reads reached by the provided definition access,
+     * to be used with {@link #getUse(int)}.
+     *
+     * @param access the definition access index
+     * @return the start index of the reads reached by the provided definition access
+     */
+    public int getUsesStart(int access) {
+        return defUsesStarts[access];
+    }
+
+    /**
+     * Returns the end index (exclusive) of the reads reached by the provided definition access.
+     * It is equal to the start index for accesses which do not define a local variable.
+     *
+     * @param access the definition access index
+     * @return the end index of the reads reached by the provided definition access
+     */
+    public int getUsesEnd(int access) {
+        return defUsesStarts[access + 1];
+    }
+
+    /**
+     * Returns the read access at the provided index.
+     *
+     * @param index an index between {@link #getUsesStart(int)} and {@link #getUsesEnd(int)}
+     * @return the read access index
+     */
+    public int getUse(int index) {
+        return defUses[index];
+    }
+
+    /**
+     * Returns whether the value written by the provided definition is never read.
+     *
+     * @param access the definition access index
+     * @return true if the provided access defines a local variable whose value is never read, false otherwise
+     */
+    public boolean isDeadDefinition(int access) {
+        return reachingDefinitions.getDefinition(access) != -1 && defUsesStarts[access] == defUsesStarts[access + 1];
+    }
+
+    /**
+     * Returns whether the provided read access is reached by a single definition.
+     *
+     * @param access the read access index
+     * @return true if the provided access reads a local variable defined in exactly one place, false otherwise
+     */
+    public boolean hasSingleDefinition(int access) {
+        return useDefsStarts[access + 1] - useDefsStarts[access] == 1;
+    }
+}
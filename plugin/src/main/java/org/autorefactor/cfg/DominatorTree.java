@@ -0,0 +1,360 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.Arrays;
+
+/**
+ * Dominator or post-dominator tree of a {@link CompactCFG}.
+ * <p>
+ * A block A dominates a block B if every path from the entry block to B passes through A. A block A post-dominates a
+ * block B if every path from B to the exit block passes through A. Both trees are computed with the algorithm from
+ * Cooper, Harvey and Kennedy, "A Simple, Fast Dominance Algorithm", then numbered by a depth first traversal so that
+ * dominance queries are answered in constant time by comparing the traversal intervals of both blocks.
+ * </p>
+ */
+public final class DominatorTree {
+
+    private static final Object POST_DOMINATORS_KEY = new Object();
+
+    private final CompactCFG cfg;
+    private final int root;
+    /** Immediate dominator of each block, -1 for the root and for blocks which are not part of the tree. */
+    private final int[] idoms;
+    /** Children of each block in the tree, in compressed sparse row form. */
+    private final int[] childrenStarts;
+    private final int[] children;
+    /** Depth first traversal interval of each block, -1 for blocks which are not part of the tree. */
+    private final int[] preOrder;
+    private final int[] postOrder;
+
+    private DominatorTree(CompactCFG cfg, int root, int[] idoms) {
+        this.cfg = cfg;
+        this.root = root;
+        this.idoms = idoms;
+        final int nbBlocks = idoms.length;
+
+        this.childrenStarts = new int[nbBlocks + 1];
+        for (int b = 0; b < nbBlocks; b++) {
+            if (idoms[b] != -1) {
+                childrenStarts[idoms[b] + 1]++;
+            }
+        }
+        for (int b = 0; b < nbBlocks; b++) {
+            childrenStarts[b + 1] += childrenStarts[b];
+        }
+        this.children = new int[childrenStarts[nbBlocks]];
+        final int[] fill = new int[nbBlocks];
+        for (int b = 0; b < nbBlocks; b++) {
+            if (idoms[b] != -1) {
+                children[childrenStarts[idoms[b]] + fill[idoms[b]]++] = b;
+            }
+        }
+
+        this.preOrder = new int[nbBlocks];
+        this.postOrder = new int[nbBlocks];
+        Arrays.fill(preOrder, -1);
+        Arrays.fill(postOrder, -1);
+        if (root != -1) {
+            numberIntervals();
+        }
+    }
+
+    private void numberIntervals() {
+        final int[] stack = new int[idoms.length];
+        final int[] nextChildren = new int[idoms.length];
+        int depth = 0;
+        int counter = 0;
+        stack[depth] = root;
+        nextChildren[depth] = childrenStarts[root];
+        depth++;
+        preOrder[root] = counter++;
+        while (depth > 0) {
+            final int block = stack[depth - 1];
+            final int child = nextChildren[depth - 1];
+            if (child < childrenStarts[block + 1]) {
+                nextChildren[depth - 1]++;
+                final int next = children[child];
+                preOrder[next] = counter++;
+                stack[depth] = next;
+                nextChildren[depth] = childrenStarts[next];
+                depth++;
+            } else {
+                postOrder[block] = counter++;
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Returns the dominator tree of the provided graph, computing it on first request.
+     *
+     * @param cfg the graph
+     * @return the dominator tree of the provided graph, rooted at the entry block
+     */
+    public static DominatorTree dominators(CompactCFG cfg) {
+        final DominatorTree cached = cfg.getAnalysis(DominatorTree.class, DominatorTree.class);
+        if (cached != null) {
+            return cached;
+        }
+        // blocks are already numbered in reverse postorder from the entry block
+        final int nbBlocks = cfg.getBlockCount();
+        final int[] order = new int[nbBlocks];
+        for (int b = 0; b < nbBlocks; b++) {
+            order[b] = b;
+        }
+        final int[] idoms = computeImmediateDominators(cfg, order, false);
+        return cfg.putAnalysis(DominatorTree.class, new DominatorTree(cfg, cfg.getEntryBlock(), idoms));
+    }
+
+    /**
+     * Returns the post-dominator tree of the provided graph, computing it on first request.
+     * Blocks which cannot reach the exit block, like the blocks of infinite loops, are not part of this tree.
+     *
+     * @param cfg the graph
+     * @return the post-dominator tree of the provided graph, rooted at the exit block
+     */
+    public static DominatorTree postDominators(CompactCFG cfg) {
+        final DominatorTree cached = cfg.getAnalysis(POST_DOMINATORS_KEY, DominatorTree.class);
+        if (cached != null) {
+            return cached;
+        }
+        final int exit = cfg.getExitBlock();
+        final int[] idoms;
+        if (exit != -1) {
+            idoms = computeImmediateDominators(cfg, reversePostOrderOfReverseGraph(cfg, exit), true);
+        } else {
+            idoms = new int[cfg.getBlockCount()];
+            Arrays.fill(idoms, -1);
+        }
+        return cfg.putAnalysis(POST_DOMINATORS_KEY, new DominatorTree(cfg, exit, idoms));
+    }
+
+    /**
+     * Computes the reverse postorder of the blocks reaching the exit block, walking edges backward.
+     */
+    private static int[] reversePostOrderOfReverseGraph(CompactCFG cfg, int exit) {
+        final int nbBlocks = cfg.getBlockCount();
+        final boolean[] visited = new boolean[nbBlocks];
+        final int[] stack = new int[nbBlocks];
+        final int[] nextPredecessors = new int[nbBlocks];
+        final int[] postOrdered = new int[nbBlocks];
+        int nbPostOrdered = 0;
+        int depth = 0;
+        visited[exit] = true;
+        stack[depth] = exit;
+        nextPredecessors[depth] = cfg.getPredecessorsStart(exit);
+        depth++;
+        while (depth > 0) {
+            final int block = stack[depth - 1];
+            final int predecessor = nextPredecessors[depth - 1];
+            if (predecessor < cfg.getPredecessorsEnd(block)) {
+                nextPredecessors[depth - 1]++;
+                final int next = cfg.getPredecessor(predecessor);
+                if (!visited[next]) {
+                    visited[next] = true;
+                    stack[depth] = next;
+                    nextPredecessors[depth] = cfg.getPredecessorsStart(next);
+                    depth++;
+                }
+            } else {
+                postOrdered[nbPostOrdered++] = block;
+                depth--;
+            }
+        }
+        final int[] results = new int[nbPostOrdered];
+        for (int i = 0; i < nbPostOrdered; i++) {
+            results[i] = postOrdered[nbPostOrdered - 1 - i];
+        }
+        return results;
+    }
+
+    /**
+     * Cooper, Harvey and Kennedy algorithm.
+     *
+     * @param cfg the graph
+     * @param order the blocks in reverse postorder, starting with the root
+     * @param reverse whether to walk edges backward, for post-dominators
+     * @return the immediate dominator of each block, -1 for the root and unreachable blocks
+     */
+    private static int[] computeImmediateDominators(CompactCFG cfg, int[] order, boolean reverse) {
+        final int nbBlocks = cfg.getBlockCount();
+        final int[] orderIndexes = new int[nbBlocks];
+        Arrays.fill(orderIndexes, -1);
+        for (int i = 0; i < order.length; i++) {
+            orderIndexes[order[i]] = i;
+        }
+        // work on order indexes, where the root is 0
+        final int[] idoms = new int[order.length];
+        Arrays.fill(idoms, -1);
+        idoms[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < order.length; i++) {
+                final int block = order[i];
+                final int start = reverse ? cfg.getSuccessorsStart(block) : cfg.getPredecessorsStart(block);
+                final int end = reverse ? cfg.getSuccessorsEnd(block) : cfg.getPredecessorsEnd(block);
+                int newIdom = -1;
+                for (int j = start; j < end; j++) {
+                    final int other = orderIndexes[reverse ? cfg.getSuccessor(j) : cfg.getPredecessor(j)];
+                    if (other == -1 || idoms[other] == -1) {
+                        // not reachable or not processed yet
+                        continue;
+                    }
+                    newIdom = newIdom == -1 ? other : intersect(idoms, other, newIdom);
+                }
+                if (idoms[i] != newIdom) {
+                    idoms[i] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+
+        final int[] results = new int[nbBlocks];
+        Arrays.fill(results, -1);
+        for (int i = 1; i < order.length; i++) {
+            if (idoms[i] != -1) {
+                results[order[i]] = order[idoms[i]];
+            }
+        }
+        return results;
+    }
+
+    private static int intersect(int[] idoms, int b1, int b2) {
+        int finger1 = b1;
+        int finger2 = b2;
+        while (finger1 != finger2) {
+            while (finger1 > finger2) {
+                finger1 = idoms[finger1];
+            }
+            while (finger2 > finger1) {
+                finger2 = idoms[finger2];
+            }
+        }
+        return finger1;
+    }
+
+    /**
+     * Returns the root of this tree: the entry block for dominators, the exit block for post-dominators.
+     *
+     * @return the root of this tree, or -1 if the exit block is unreachable in a post-dominator tree
+     */
+    public int getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns whether the provided block is part of this tree.
+     *
+     * @param block the block index
+     * @return true if the provided block is part of this tree, false otherwise
+     */
+    public boolean contains(int block) {
+        return preOrder[block] != -1;
+    }
+
+    /**
+     * Returns the immediate dominator (resp. post-dominator) of the provided block.
+     *
+     * @param block the block index
+     * @return the immediate dominator of the provided block,
+     *         or -1 for the root or for a block which is not part of this tree
+     */
+    public int getImmediateDominator(int block) {
+        return idoms[block];
+    }
+
+    /**
+     * Returns the index of the first child of the provided block in this tree.
+     *
+     * @param block the block index
+     * @return the index of the first child of the provided block in this tree
+     */
+    public int getChildrenStart(int block) {
+        return childrenStarts[block];
+    }
+
+    /**
+     * Returns the index following the last child of the provided block in this tree.
+     *
+     * @param block the block index
+     * @return the index following the last child of the provided block in this tree
+     */
+    public int getChildrenEnd(int block) {
+        return childrenStarts[block + 1];
+    }
+
+    /**
+     * Returns the child block at the provided index.
+     *
+     * @param child the child index
+     * @return the child block at the provided index
+     */
+    public int getChild(int child) {
+        return children[child];
+    }
+
+    /**
+     * Returns whether the first block dominates (resp. post-dominates) the second block.
+     * A block always dominates itself.
+     *
+     * @param dominator the index of the potential dominator
+     * @param block the index of the potentially dominated block
+     * @return true if the first block dominates the second block, false otherwise
+     */
+    public boolean dominates(int dominator, int block) {
+        return preOrder[dominator] != -1
+                && preOrder[block] != -1
+                && preOrder[dominator] <= preOrder[block]
+                && postOrder[block] <= postOrder[dominator];
+    }
+
+    /**
+     * Returns whether the first block strictly dominates (resp. post-dominates) the second block.
+     *
+     * @param dominator the index of the potential dominator
+     * @param block the index of the potentially dominated block
+     * @return true if the first block strictly dominates the second block, false otherwise
+     */
+    public boolean strictlyDominates(int dominator, int block) {
+        return dominator != block && dominates(dominator, block);
+    }
+
+    /**
+     * Returns whether the first basic block dominates (resp. post-dominates) the second basic block.
+     *
+     * @param dominator the potential dominator
+     * @param block the potentially dominated block
+     * @return true if the first basic block dominates the second basic block,
+     *         false otherwise or if any of them is not part of the graph
+     */
+    public boolean dominates(CFGBasicBlock dominator, CFGBasicBlock block) {
+        final int dominatorIndex = cfg.indexOf(dominator);
+        final int blockIndex = cfg.indexOf(block);
+        return dominatorIndex != -1 && blockIndex != -1 && dominates(dominatorIndex, blockIndex);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+/**
+ * The exception types thrown or caught in a method, numbered so subtype tests are bitset lookups.
+ * <p>
+ * Registering a type also registers all its superclasses, so the supertypes bitset of a type is complete
+ * as soon as the type has been registered: the class hierarchy is walked once per type,
+ * and never again when matching the throwing blocks against catch clauses.
+ * </p>
+ */
+final class ExceptionHierarchy {
+
+    /** Lock serializing binding resolution on the AST. */
+    private final AST ast;
+    private final Map<ITypeBinding, Integer> ids = new HashMap<ITypeBinding, Integer>();
+    /** For each type id, the ids of the type itself and all its superclasses. */
+    private final List<BitSet> supertypes = new ArrayList<BitSet>();
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param ast the AST the type bindings come from
+     */
+    ExceptionHierarchy(AST ast) {
+        this.ast = ast;
+    }
+
+    /**
+     * Returns the id of the provided type, registering it and its superclasses on the first call.
+     *
+     * @param type the type for which to return the id
+     * @return the id of the provided type, or -1 if the type is unknown
+     */
+    int getId(ITypeBinding type) {
+        if (type == null) {
+            return -1;
+        }
+        synchronized (ast) {
+            return register(type.isTypeVariable() ? type.getErasure() : type);
+        }
+    }
+
+    private int register(ITypeBinding type) {
+        final Integer id = ids.get(type);
+        if (id != null) {
+            return id;
+        }
+        final ITypeBinding superclass = type.getSuperclass();
+        final BitSet bits = new BitSet();
+        if (superclass != null) {
+            bits.or(supertypes.get(register(superclass)));
+        }
+        final int newId = supertypes.size();
+        bits.set(newId);
+        supertypes.add(bits);
+        ids.put(type, newId);
+        return newId;
+    }
+
+    /**
+     * Returns whether an exception of the provided type is always caught by a catch clause of the other type.
+     *
+     * @param thrownType the thrown exception type
+     * @param caughtType the caught exception type
+     * @return true if the thrown type is the caught type or one of its subclasses, false otherwise
+     *         or if any of the types is unknown
+     */
+    boolean isAlwaysCaught(ITypeBinding thrownType, ITypeBinding caughtType) {
+        final int thrownId = getId(thrownType);
+        final int caughtId = getId(caughtType);
+        return thrownId != -1 && caughtId != -1 && supertypes.get(thrownId).get(caughtId);
+    }
+
+    /**
+     * Returns whether an exception of the provided type can be caught by a catch clause of the other type.
+     * <p>
+     * This is the case when the thrown type is a subclass of the caught type,
+     * but also when the caught type is a subclass of the thrown type
+     * because the actual exception may be an instance of the caught type.
+     * </p>
+     *
+     * @param thrownType the thrown exception type
+     * @param caughtType the caught exception type
+     * @return true if the thrown exception can be caught by the catch clause, false otherwise
+     */
+    boolean mayBeCaught(ITypeBinding thrownType, ITypeBinding caughtType) {
+        final int thrownId = getId(thrownType);
+        final int caughtId = getId(caughtType);
+        return thrownId == -1 || caughtId == -1
+                || supertypes.get(thrownId).get(caughtId)
+                || supertypes.get(caughtId).get(thrownId);
+    }
+}
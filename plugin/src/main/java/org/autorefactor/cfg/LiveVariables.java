@@ -0,0 +1,160 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import static org.autorefactor.cfg.VariableAccess.*;
+
+/**
+ * Live variables analysis: a local variable is live at a point if its current value may be read afterwards.
+ * <p>
+ * Facts are the local variables of the analyzed graph, see {@link CompactCFG#isLocalVariable(int)}.
+ * Fields are never considered.
+ * </p>
+ */
+public final class LiveVariables extends BitVectorDataFlow {
+
+    /** Maps each variable of the graph to its dense local index, or -1 if it is not a local variable. */
+    private final int[] localIndexes;
+
+    private LiveVariables(CompactCFG cfg, int[] localIndexes, int nbLocals) {
+        super(cfg, nbLocals, false, true);
+        this.localIndexes = localIndexes;
+    }
+
+    /**
+     * Returns the live variables analysis of the provided graph, computing it on first request.
+     *
+     * @param cfg the graph to analyze
+     * @return the live variables analysis of the provided graph
+     */
+    public static LiveVariables of(CompactCFG cfg) {
+        final LiveVariables cached = cfg.getAnalysis(LiveVariables.class, LiveVariables.class);
+        if (cached != null) {
+            return cached;
+        }
+        final int[] localIndexes = numberLocalVariables(cfg);
+        int nbLocals = 0;
+        for (int localIndex : localIndexes) {
+            nbLocals = Math.max(nbLocals, localIndex + 1);
+        }
+        final LiveVariables result = new LiveVariables(cfg, localIndexes, nbLocals);
+        result.solve();
+        return cfg.putAnalysis(LiveVariables.class, result);
+    }
+
+    /**
+     * Numbers the local variables of the provided graph densely.
+     *
+     * @param cfg the graph
+     * @return for each variable of the graph, its dense local index, or -1 if it is not a local variable
+     */
+    static int[] numberLocalVariables(CompactCFG cfg) {
+        final int[] results = new int[cfg.getVariableCount()];
+        int nbLocals = 0;
+        for (int v = 0; v < results.length; v++) {
+            results[v] = cfg.isLocalVariable(v) ? nbLocals++ : -1;
+        }
+        return results;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void computeTransfer(int block, long[] gen, long[] kill, int offset) {
+        // walk backward: a read generates liveness unless the variable is written after it
+        for (int a = cfg.getAccessesEnd(block) - 1; a >= cfg.getAccessesStart(block); a--) {
+            final int local = getLocal(a);
+            if (local == -1) {
+                continue;
+            }
+            final int flags = cfg.getAccessFlags(a);
+            if ((flags & (WRITE | DECL_INIT | DECL_UNINIT)) != 0) {
+                set(kill, offset, local);
+                clear(gen, offset, local);
+            }
+            if ((flags & READ) != 0) {
+                set(gen, offset, local);
+            }
+        }
+    }
+
+    private int getLocal(int access) {
+        final int variable = cfg.getAccessVariable(access);
+        return variable != -1 ? localIndexes[variable] : -1;
+    }
+
+    /**
+     * Returns whether the provided variable is live on entering the provided block.
+     *
+     * @param block the block index
+     * @param variable the variable index in the graph
+     * @return true if the provided variable is live on entering the provided block, false otherwise.
+     *         Variables which are not local variables are always considered live.
+     */
+    public boolean isLiveOnEntry(int block, int variable) {
+        final int local = localIndexes[variable];
+        return local == -1 || isSetOnEntry(block, local);
+    }
+
+    /**
+     * Returns whether the provided variable is live on exiting the provided block.
+     *
+     * @param block the block index
+     * @param variable the variable index in the graph
+     * @return true if the provided variable is live on exiting the provided block, false otherwise.
+     *         Variables which are not local variables are always considered live.
+     */
+    public boolean isLiveOnExit(int block, int variable) {
+        final int local = localIndexes[variable];
+        return local == -1 || isSetOnExit(block, local);
+    }
+
+    /**
+     * Returns whether the variable of the provided access is live right after this access,
+     * i.e. whether the value it holds after this access may be read later on.
+     *
+     * @param access the variable access index
+     * @return true if the variable is live after the provided access, false otherwise.
+     *         Variables which are not local variables are always considered live.
+     */
+    public boolean isLiveAfter(int access) {
+        final int local = getLocal(access);
+        if (local == -1) {
+            return true;
+        }
+        final int block = cfg.getAccessBlock(access);
+        for (int a = access + 1; a < cfg.getAccessesEnd(block); a++) {
+            if (getLocal(a) == local) {
+                final int flags = cfg.getAccessFlags(a);
+                if ((flags & READ) != 0) {
+                    return true;
+                } else if ((flags & (WRITE | DECL_INIT | DECL_UNINIT)) != 0) {
+                    return false;
+                }
+            }
+        }
+        return isSetOnExit(block, local);
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.ConditionalExpression;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.InstanceofExpression;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.Statement;
+
+import static org.autorefactor.cfg.VariableAccess.*;
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.eclipse.jdt.core.dom.ASTNode.*;
+
+/**
+ * Loop-invariant expressions: an expression inside a loop is invariant if it computes the same value on every
+ * iteration, so it can be evaluated once before the loop.
+ * <p>
+ * An expression is invariant in a loop when all the local variables it reads are only defined outside of the loop
+ * according to {@link ReachingDefinitions}, when all the fields it reads are final, and when all the methods it calls
+ * are known to be pure. A method is known to be pure when it is declared by one of a few immutable JDK classes and
+ * only takes primitives or instances of these classes: a mutable argument like a {@code char[]} or a
+ * {@code StringBuilder} could be modified inside the loop. Array elements and non final fields are never invariant,
+ * since any call in the loop could modify them.
+ * </p>
+ * <p>
+ * Results are memoized per expression and loop: an instance is computed once per method and cached with its graph.
+ * </p>
+ */
+public final class LoopInvariants {
+
+    /**
+     * Immutable classes whose methods neither have side effects nor depend on mutable state,
+     * when called with immutable arguments, mapped to the exceptions.
+     */
+    private static final Map<String, Set<String>> PURE_CLASSES = new HashMap<String, Set<String>>();
+
+    static {
+        pureClass("java.lang.Math", "random");
+        pureClass("java.lang.StrictMath", "random");
+        pureClass("java.lang.String", "getBytes", "getChars", "toCharArray", "intern", "format");
+        pureClass("java.lang.Boolean", "getBoolean");
+        pureClass("java.lang.Byte");
+        pureClass("java.lang.Character");
+        pureClass("java.lang.Short");
+        pureClass("java.lang.Integer", "getInteger");
+        pureClass("java.lang.Long", "getLong");
+        pureClass("java.lang.Float");
+        pureClass("java.lang.Double");
+    }
+
+    private static void pureClass(String qualifiedName, String... impureMethods) {
+        PURE_CLASSES.put(qualifiedName, new HashSet<String>(Arrays.asList(impureMethods)));
+    }
+
+    private final CompactCFG cfg;
+    private final LoopNestingForest loops;
+    private final ReachingDefinitions reachingDefinitions;
+    /** Index of the read variable access of each name. */
+    private final Map<ASTNode, Integer> readAccesses = new IdentityHashMap<ASTNode, Integer>();
+    /** For each expression, the loops already analyzed and the loops where it is invariant. */
+    private final Map<Expression, BitSet[]> results = new IdentityHashMap<Expression, BitSet[]>();
+
+    private LoopInvariants(CompactCFG cfg) {
+        this.cfg = cfg;
+        this.loops = LoopNestingForest.of(cfg);
+        this.reachingDefinitions = ReachingDefinitions.of(cfg);
+        for (int a = 0; a < cfg.getAccessCount(); a++) {
+            if ((cfg.getAccessFlags(a) & READ) != 0) {
+                readAccesses.put(cfg.getAccess(a).getASTNode(), a);
+            }
+        }
+    }
+
+    /**
+     * Returns the loop invariants analysis of the provided graph, computing it on first request.
+     *
+     * @param cfg the graph to analyze
+     * @return the loop invariants analysis of the provided graph
+     */
+    public static LoopInvariants of(CompactCFG cfg) {
+        final LoopInvariants cached = cfg.getAnalysis(LoopInvariants.class, LoopInvariants.class);
+        if (cached != null) {
+            return cached;
+        }
+        return cfg.putAnalysis(LoopInvariants.class, new LoopInvariants(cfg));
+    }
+
+    /**
+     * Returns the loop nesting forest used by this analysis.
+     *
+     * @return the loop nesting forest used by this analysis
+     */
+    public LoopNestingForest getLoops() {
+        return loops;
+    }
+
+    /**
+     * Returns whether the provided expression computes the same value on every iteration of the provided loop.
+     *
+     * @param expr the expression, located inside the loop statement
+     * @param loopStmt the loop statement
+     * @return true if the expression is invariant in the provided loop,
+     *         false if it may not be or if the statement does not loop
+     */
+    public boolean isInvariant(Expression expr, Statement loopStmt) {
+        final int loop = loops.getLoop(loopStmt);
+        return loop != -1 && isInvariant(expr, loop);
+    }
+
+    /**
+     * Returns whether the provided expression computes the same value on every iteration of the provided loop.
+     *
+     * @param expr the expression, located inside the loop
+     * @param loop the loop index
+     * @return true if the expression is invariant in the provided loop, false if it may not be
+     */
+    public synchronized boolean isInvariant(Expression expr, int loop) {
+        BitSet[] bits = results.get(expr);
+        if (bits == null) {
+            bits = new BitSet[] { new BitSet(), new BitSet() };
+            results.put(expr, bits);
+        }
+        if (!bits[0].get(loop)) {
+            bits[0].set(loop);
+            if (computeInvariant(expr, loop)) {
+                bits[1].set(loop);
+            }
+        }
+        return bits[1].get(loop);
+    }
+
+    private boolean computeInvariant(Expression expr, int loop) {
+        if (expr == null) {
+            return true;
+        }
+        switch (expr.getNodeType()) {
+        case BOOLEAN_LITERAL:
+        case CHARACTER_LITERAL:
+        case NULL_LITERAL:
+        case NUMBER_LITERAL:
+        case STRING_LITERAL:
+        case TYPE_LITERAL:
+        case THIS_EXPRESSION:
+            return true;
+
+        case SIMPLE_NAME:
+            return isInvariantVariable((Name) expr, loop);
+
+        case QUALIFIED_NAME:
+            final QualifiedName qn = (QualifiedName) expr;
+            return isInvariantVariable(qn, loop)
+                    && (!(qn.getQualifier().resolveBinding() instanceof IVariableBinding)
+                            || computeInvariant(qn.getQualifier(), loop));
+
+        case FIELD_ACCESS:
+            final FieldAccess fa = (FieldAccess) expr;
+            return isFinal(fa.resolveFieldBinding()) && computeInvariant(fa.getExpression(), loop);
+
+        case PARENTHESIZED_EXPRESSION:
+            return computeInvariant(((ParenthesizedExpression) expr).getExpression(), loop);
+
+        case CAST_EXPRESSION:
+            return computeInvariant(((CastExpression) expr).getExpression(), loop);
+
+        case INSTANCEOF_EXPRESSION:
+            return computeInvariant(((InstanceofExpression) expr).getLeftOperand(), loop);
+
+        case CONDITIONAL_EXPRESSION:
+            final ConditionalExpression ce = (ConditionalExpression) expr;
+            return computeInvariant(ce.getExpression(), loop)
+                    && computeInvariant(ce.getThenExpression(), loop)
+                    && computeInvariant(ce.getElseExpression(), loop);
+
+        case PREFIX_EXPRESSION:
+            final PrefixExpression pe = (PrefixExpression) expr;
+            return !PrefixExpression.Operator.INCREMENT.equals(pe.getOperator())
+                    && !PrefixExpression.Operator.DECREMENT.equals(pe.getOperator())
+                    && computeInvariant(pe.getOperand(), loop);
+
+        case INFIX_EXPRESSION:
+            final InfixExpression ie = (InfixExpression) expr;
+            return computeInvariant(ie.getLeftOperand(), loop)
+                    && computeInvariant(ie.getRightOperand(), loop)
+                    && areInvariant(extendedOperands(ie), loop);
+
+        case METHOD_INVOCATION:
+            final MethodInvocation mi = (MethodInvocation) expr;
+            return isPure(mi.resolveMethodBinding())
+                    && computeInvariant(mi.getExpression(), loop)
+                    && areInvariant(arguments(mi), loop);
+
+        default:
+            // assignments, increments, object and array creations, array accesses, etc.
+            return false;
+        }
+    }
+
+    private boolean areInvariant(List<Expression> exprs, int loop) {
+        for (Expression expr : exprs) {
+            if (!computeInvariant(expr, loop)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isInvariantVariable(Name name, int loop) {
+        final IBinding binding = name.resolveBinding();
+        if (!(binding instanceof IVariableBinding)) {
+            // type or package names
+            return binding != null;
+        }
+        final IVariableBinding varBinding = (IVariableBinding) binding;
+        if (varBinding.isField()) {
+            return isFinal(varBinding);
+        }
+        final Integer access = readAccesses.get(name);
+        if (access == null) {
+            return false;
+        }
+        final int[] defs = reachingDefinitions.getReachingDefinitions(access);
+        if (defs == null) {
+            return false;
+        }
+        for (int def : defs) {
+            final int defBlock = cfg.getAccessBlock(reachingDefinitions.getDefinitionAccess(def));
+            if (loops.contains(loop, defBlock)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isFinal(IVariableBinding varBinding) {
+        return varBinding != null && Modifier.isFinal(varBinding.getModifiers());
+    }
+
+    private boolean isPure(IMethodBinding methodBinding) {
+        if (methodBinding == null) {
+            return false;
+        }
+        final Set<String> impureMethods =
+                PURE_CLASSES.get(methodBinding.getDeclaringClass().getErasure().getQualifiedName());
+        if (impureMethods == null || impureMethods.contains(methodBinding.getName())) {
+            return false;
+        }
+        // e.g. String.valueOf(Object), String.valueOf(char[]) or String.contentEquals(CharSequence)
+        for (ITypeBinding paramType : methodBinding.getParameterTypes()) {
+            if (!paramType.isPrimitive() && !PURE_CLASSES.containsKey(paramType.getErasure().getQualifiedName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.Statement;
+
+import static org.eclipse.jdt.core.dom.ASTNode.*;
+
+/**
+ * Natural loops of a {@link CompactCFG} and how they nest.
+ * <p>
+ * A back edge is an edge whose target, the loop header, dominates its source. The natural loop of a header is made of
+ * the header and all the blocks which can reach a back edge to this header without going through the header.
+ * Natural loops with different headers are either disjoint or nested, so they form a forest.
+ * Loops are numbered in header order: since blocks are numbered in reverse postorder, outer loops come first.
+ * Retreating edges of irreducible control flow are not back edges and do not form loops.
+ * </p>
+ */
+public final class LoopNestingForest {
+
+    private final CompactCFG cfg;
+    /** Whether each edge is a back edge. */
+    private final boolean[] backEdges;
+    /** Header block of each loop. */
+    private final int[] headers;
+    /** Parent loop of each loop, -1 for the outermost loops. */
+    private final int[] parents;
+    /** Nesting depth of each loop, 1 for the outermost loops. */
+    private final int[] depths;
+    /** Blocks of each loop in increasing order, in compressed sparse row form. */
+    private final int[] loopBlocksStarts;
+    private final int[] loopBlocks;
+    /** Innermost loop containing each block, -1 for blocks outside of any loop. */
+    private final int[] innermostLoops;
+    private Map<Statement, Integer> loopStatements;
+
+    private LoopNestingForest(CompactCFG cfg) {
+        this.cfg = cfg;
+        final DominatorTree dominators = DominatorTree.dominators(cfg);
+        final int nbBlocks = cfg.getBlockCount();
+        this.backEdges = new boolean[cfg.getEdgeCount()];
+        final boolean[] isHeader = new boolean[nbBlocks];
+        int nbLoops = 0;
+        for (int b = 0; b < nbBlocks; b++) {
+            for (int e = cfg.getSuccessorsStart(b); e < cfg.getSuccessorsEnd(b); e++) {
+                final int target = cfg.getSuccessor(e);
+                if (dominators.dominates(target, b)) {
+                    backEdges[e] = true;
+                    if (!isHeader[target]) {
+                        isHeader[target] = true;
+                        nbLoops++;
+                    }
+                }
+            }
+        }
+
+        this.headers = new int[nbLoops];
+        this.parents = new int[nbLoops];
+        this.depths = new int[nbLoops];
+        this.loopBlocksStarts = new int[nbLoops + 1];
+        this.innermostLoops = new int[nbBlocks];
+        Arrays.fill(innermostLoops, -1);
+        int[] allLoopBlocks = new int[nbBlocks];
+        final int[] stack = new int[nbBlocks];
+        final int[] marks = new int[nbBlocks];
+        int loop = 0;
+        for (int header = 0; header < nbBlocks; header++) {
+            if (!isHeader[header]) {
+                continue;
+            }
+            headers[loop] = header;
+            // outer loops have already been processed: the innermost one containing the header is the parent
+            parents[loop] = innermostLoops[header];
+            depths[loop] = parents[loop] != -1 ? depths[parents[loop]] + 1 : 1;
+
+            // walk backward from the back edges sources, stopping at the header
+            final int mark = loop + 1;
+            marks[header] = mark;
+            int nbLoopBlocks = 0;
+            int top = 0;
+            stack[top++] = header;
+            for (int p = cfg.getPredecessorsStart(header); p < cfg.getPredecessorsEnd(header); p++) {
+                final int latch = cfg.getPredecessor(p);
+                if (backEdges[cfg.getPredecessorEdge(p)] && marks[latch] != mark) {
+                    marks[latch] = mark;
+                    stack[top++] = latch;
+                }
+            }
+            while (top > 0) {
+                final int block = stack[--top];
+                innermostLoops[block] = loop;
+                if (loopBlocksStarts[loop] + nbLoopBlocks == allLoopBlocks.length) {
+                    allLoopBlocks = Arrays.copyOf(allLoopBlocks, allLoopBlocks.length * 2);
+                }
+                allLoopBlocks[loopBlocksStarts[loop] + nbLoopBlocks++] = block;
+                if (block == header) {
+                    continue;
+                }
+                for (int p = cfg.getPredecessorsStart(block); p < cfg.getPredecessorsEnd(block); p++) {
+                    final int predecessor = cfg.getPredecessor(p);
+                    if (marks[predecessor] != mark) {
+                        marks[predecessor] = mark;
+                        stack[top++] = predecessor;
+                    }
+                }
+            }
+            Arrays.sort(allLoopBlocks, loopBlocksStarts[loop], loopBlocksStarts[loop] + nbLoopBlocks);
+            loopBlocksStarts[loop + 1] = loopBlocksStarts[loop] + nbLoopBlocks;
+            loop++;
+        }
+        this.loopBlocks = Arrays.copyOf(allLoopBlocks, loopBlocksStarts[nbLoops]);
+    }
+
+    /**
+     * Returns the loop nesting forest of the provided graph, computing it on first request.
+     *
+     * @param cfg the graph
+     * @return the loop nesting forest of the provided graph
+     */
+    public static LoopNestingForest of(CompactCFG cfg) {
+        final LoopNestingForest cached = cfg.getAnalysis(LoopNestingForest.class, LoopNestingForest.class);
+        if (cached != null) {
+            return cached;
+        }
+        return cfg.putAnalysis(LoopNestingForest.class, new LoopNestingForest(cfg));
+    }
+
+    /**
+     * Returns the number of loops.
+     *
+     * @return the number of loops
+     */
+    public int getLoopCount() {
+        return headers.length;
+    }
+
+    /**
+     * Returns whether the provided edge is a back edge.
+     *
+     * @param edge the edge index
+     * @return true if the provided edge goes back to the header of a loop containing its source, false otherwise
+     */
+    public boolean isBackEdge(int edge) {
+        return backEdges[edge];
+    }
+
+    /**
+     * Returns the header block of the provided loop, which dominates all the blocks of the loop.
+     *
+     * @param loop the loop index
+     * @return the header block of the provided loop
+     */
+    public int getHeader(int loop) {
+        return headers[loop];
+    }
+
+    /**
+     * Returns the loop immediately enclosing the provided loop.
+     *
+     * @param loop the loop index
+     * @return the loop immediately enclosing the provided loop, or -1 for an outermost loop
+     */
+    public int getParent(int loop) {
+        return parents[loop];
+    }
+
+    /**
+     * Returns the nesting depth of the provided loop.
+     *
+     * @param loop the loop index
+     * @return the nesting depth of the provided loop, 1 for an outermost loop
+     */
+    public int getDepth(int loop) {
+        return depths[loop];
+    }
+
+    /**
+     * Returns the start index of the blocks of the provided loop, to be used with {@link #getLoopBlock(int)}.
+     *
+     * @param loop the loop index
+     * @return the start index of the blocks of the provided loop
+     */
+    public int getLoopBlocksStart(int loop) {
+        return loopBlocksStarts[loop];
+    }
+
+    /**
+     * Returns the end index (exclusive) of the blocks of the provided loop.
+     *
+     * @param loop the loop index
+     * @return the end index of the blocks of the provided loop
+     */
+    public int getLoopBlocksEnd(int loop) {
+        return loopBlocksStarts[loop + 1];
+    }
+
+    /**
+     * Returns the loop block at the provided index.
+     *
+     * @param index an index between {@link #getLoopBlocksStart(int)} and {@link #getLoopBlocksEnd(int)}
+     * @return the block index
+     */
+    public int getLoopBlock(int index) {
+        return loopBlocks[index];
+    }
+
+    /**
+     * Returns the innermost loop containing the provided block.
+     *
+     * @param block the block index
+     * @return the innermost loop containing the provided block, or -1 if the block is outside of any loop
+     */
+    public int getInnermostLoop(int block) {
+        return innermostLoops[block];
+    }
+
+    /**
+     * Returns the number of loops containing the provided block.
+     *
+     * @param block the block index
+     * @return the number of loops containing the provided block, 0 if the block is outside of any loop
+     */
+    public int getLoopDepth(int block) {
+        final int loop = innermostLoops[block];
+        return loop != -1 ? depths[loop] : 0;
+    }
+
+    /**
+     * Returns whether the provided loop contains the provided block, possibly in a nested loop.
+     *
+     * @param loop the loop index
+     * @param block the block index
+     * @return true if the provided loop contains the provided block, false otherwise
+     */
+    public boolean contains(int loop, int block) {
+        final int start = loopBlocksStarts[loop];
+        final int end = loopBlocksStarts[loop + 1];
+        return Arrays.binarySearch(loopBlocks, start, end, block) >= 0;
+    }
+
+    /**
+     * Returns the loop statement of the provided loop, i.e. the innermost loop statement enclosing its header.
+     *
+     * @param loop the loop index
+     * @return the loop statement of the provided loop, or null if it is not a loop statement (labeled continue)
+     */
+    public Statement getLoopStatement(int loop) {
+        ASTNode node = cfg.getBlock(headers[loop]).getNode();
+        while (node != null) {
+            switch (node.getNodeType()) {
+            case DO_STATEMENT:
+            case ENHANCED_FOR_STATEMENT:
+            case FOR_STATEMENT:
+            case WHILE_STATEMENT:
+                return (Statement) node;
+            case METHOD_DECLARATION:
+                return null;
+            default:
+                node = node.getParent();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the loop of the provided loop statement.
+     *
+     * @param loopStmt a do, for, enhanced for or while statement
+     * @return the loop of the provided loop statement, or -1 if the statement does not loop
+     */
+    public synchronized int getLoop(Statement loopStmt) {
+        if (loopStatements == null) {
+            loopStatements = new IdentityHashMap<Statement, Integer>();
+            // loops are in header order: keep the outermost loop for a statement
+            for (int loop = headers.length - 1; loop >= 0; loop--) {
+                final Statement stmt = getLoopStatement(loop);
+                if (stmt != null) {
+                    loopStatements.put(stmt, loop);
+                }
+            }
+        }
+        final Integer loop = loopStatements.get(loopStmt);
+        return loop != null ? loop : -1;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.Arrays;
+
+import static org.autorefactor.cfg.VariableAccess.*;
+
+/**
+ * Reaching definitions analysis: a definition of a local variable reaches a point if there is a path from the
+ * definition to this point along which the variable is not redefined.
+ * <p>
+ * Facts are the definitions of local variables, i.e. their variable accesses which write or declare them,
+ * numbered densely in access order. Fields are never considered.
+ * </p>
+ */
+public final class ReachingDefinitions extends BitVectorDataFlow {
+
+    private static final int DEFINITION = WRITE | DECL_INIT | DECL_UNINIT;
+
+    /** Maps each variable of the graph to its dense local index, or -1 if it is not a local variable. */
+    private final int[] localIndexes;
+    /** The access index of each definition. */
+    private final int[] definitionAccesses;
+    /** Definitions of each local variable, in compressed sparse row form. */
+    private final int[] localDefinitionsStarts;
+    private final int[] localDefinitions;
+
+    private ReachingDefinitions(CompactCFG cfg, int[] localIndexes, int nbLocals, int[] definitionAccesses) {
+        super(cfg, definitionAccesses.length, true, true);
+        this.localIndexes = localIndexes;
+        this.definitionAccesses = definitionAccesses;
+
+        this.localDefinitionsStarts = new int[nbLocals + 1];
+        for (int def = 0; def < definitionAccesses.length; def++) {
+            localDefinitionsStarts[getLocal(definitionAccesses[def]) + 1]++;
+        }
+        for (int l = 0; l < nbLocals; l++) {
+            localDefinitionsStarts[l + 1] += localDefinitionsStarts[l];
+        }
+        this.localDefinitions = new int[definitionAccesses.length];
+        final int[] fill = new int[nbLocals];
+        for (int def = 0; def < definitionAccesses.length; def++) {
+            final int local = getLocal(definitionAccesses[def]);
+            localDefinitions[localDefinitionsStarts[local] + fill[local]++] = def;
+        }
+    }
+
+    /**
+     * Returns the reaching definitions analysis of the provided graph, computing it on first request.
+     *
+     * @param cfg the graph to analyze
+     * @return the reaching definitions analysis of the provided graph
+     */
+    public static ReachingDefinitions of(CompactCFG cfg) {
+        final ReachingDefinitions cached = cfg.getAnalysis(ReachingDefinitions.class, ReachingDefinitions.class);
+        if (cached != null) {
+            return cached;
+        }
+        final int[] localIndexes = LiveVariables.numberLocalVariables(cfg);
+        int nbLocals = 0;
+        for (int localIndex : localIndexes) {
+            nbLocals = Math.max(nbLocals, localIndex + 1);
+        }
+        final int nbAccesses = cfg.getAccessCount();
+        int[] definitionAccesses = new int[nbAccesses];
+        int nbDefinitions = 0;
+        for (int a = 0; a < nbAccesses; a++) {
+            final int variable = cfg.getAccessVariable(a);
+            if (variable != -1 && localIndexes[variable] != -1 && (cfg.getAccessFlags(a) & DEFINITION) != 0) {
+                definitionAccesses[nbDefinitions++] = a;
+            }
+        }
+        definitionAccesses = Arrays.copyOf(definitionAccesses, nbDefinitions);
+        final ReachingDefinitions result = new ReachingDefinitions(cfg, localIndexes, nbLocals, definitionAccesses);
+        result.solve();
+        return cfg.putAnalysis(ReachingDefinitions.class, result);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void computeTransfer(int block, long[] gen, long[] kill, int offset) {
+        final int end = cfg.getAccessesEnd(block);
+        for (int a = cfg.getAccessesStart(block); a < end; a++) {
+            final int def = getDefinition(a);
+            if (def == -1) {
+                continue;
+            }
+            final int local = getLocal(a);
+            for (int i = localDefinitionsStarts[local]; i < localDefinitionsStarts[local + 1]; i++) {
+                set(kill, offset, localDefinitions[i]);
+                clear(gen, offset, localDefinitions[i]);
+            }
+            set(gen, offset, def);
+        }
+    }
+
+    private int getLocal(int access) {
+        final int variable = cfg.getAccessVariable(access);
+        return variable != -1 ? localIndexes[variable] : -1;
+    }
+
+    /**
+     * Returns the number of definitions.
+     *
+     * @return the number of definitions
+     */
+    public int getDefinitionCount() {
+        return definitionAccesses.length;
+    }
+
+    /**
+     * Returns the variable access index of the provided definition.
+     *
+     * @param def the definition index
+     * @return the variable access index of the provided definition
+     */
+    public int getDefinitionAccess(int def) {
+        return definitionAccesses[def];
+    }
+
+    /**
+     * Returns the definition index of the provided variable access.
+     *
+     * @param access the variable access index
+     * @return the definition index of the provided variable access, or -1 if it does not define a local variable
+     */
+    public int getDefinition(int access) {
+        final int def = Arrays.binarySearch(definitionAccesses, access);
+        return def >= 0 ? def : -1;
+    }
+
+    /**
+     * Returns whether the provided definition reaches the entry of the provided block.
+     *
+     * @param block the block index
+     * @param def the definition index
+     * @return true if the provided definition reaches the entry of the provided block, false otherwise
+     */
+    public boolean reachesEntry(int block, int def) {
+        return isSetOnEntry(block, def);
+    }
+
+    /**
+     * Returns the definitions of the accessed variable which reach the provided variable access,
+     * i.e. the definitions which may provide the value read by this access.
+     *
+     * @param access the variable access index
+     * @return the definition indexes reaching the provided variable access, in increasing order,
+     *         or null if the accessed variable is not a local variable
+     */
+    public int[] getReachingDefinitions(int access) {
+        final int local = getLocal(access);
+        if (local == -1) {
+            return null;
+        }
+        final int block = cfg.getAccessBlock(access);
+        for (int a = access - 1; a >= cfg.getAccessesStart(block); a--) {
+            if (getLocal(a) == local) {
+                final int def = getDefinition(a);
+                if (def != -1) {
+                    return new int[] { def };
+                }
+            }
+        }
+        final int start = localDefinitionsStarts[local];
+        final int end = localDefinitionsStarts[local + 1];
+        int[] results = new int[end - start];
+        int nbResults = 0;
+        for (int i = start; i < end; i++) {
+            if (isSetOnEntry(block, localDefinitions[i])) {
+                results[nbResults++] = localDefinitions[i];
+            }
+        }
+        return nbResults == results.length ? results : Arrays.copyOf(results, nbResults);
+    }
+}
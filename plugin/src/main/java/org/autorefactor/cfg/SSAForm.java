@@ -0,0 +1,397 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.Arrays;
+
+import static org.autorefactor.cfg.VariableAccess.*;
+
+/**
+ * Sparse static single assignment view of the local variables of a {@link CompactCFG}.
+ * <p>
+ * Each definition of a local variable is a value, numbered like in {@link ReachingDefinitions}. Phi values are
+ * numbered after them: they merge the values of a variable at the blocks of the iterated dominance frontiers of its
+ * definitions, only where the variable is live (pruned SSA). Every read of a local variable then sees exactly one
+ * value. The graph and the AST are not rewritten: this is only a numbering of the existing variable accesses.
+ * </p>
+ */
+public final class SSAForm {
+
+    private final CompactCFG cfg;
+    private final ReachingDefinitions reachingDefinitions;
+    /** Number of definitions, i.e. the first phi value. */
+    private final int nbDefinitions;
+    /** For each block, its phi values in compressed sparse row form. */
+    private final int[] blockPhisStarts;
+    /** The graph variable of each phi. */
+    private final int[] phiVariables;
+    /** The block of each phi. */
+    private final int[] phiBlocks;
+    /** For each phi, the value coming from each predecessor of its block, in compressed sparse row form. */
+    private final int[] phiOperandsStarts;
+    /** The phi operands, -1 if the variable is not defined on the path from the predecessor. */
+    private final int[] phiOperands;
+    /** For each variable access, the value it reads or defines, -1 if it does not access a local variable. */
+    private final int[] accessValues;
+
+    private SSAForm(CompactCFG cfg) {
+        this.cfg = cfg;
+        this.reachingDefinitions = ReachingDefinitions.of(cfg);
+        this.nbDefinitions = reachingDefinitions.getDefinitionCount();
+        final DominatorTree dominators = DominatorTree.dominators(cfg);
+        final LiveVariables liveVariables = LiveVariables.of(cfg);
+        final int nbBlocks = cfg.getBlockCount();
+        final int nbVariables = cfg.getVariableCount();
+
+        // place the phis, one variable at a time
+        final int[][] frontiers = dominanceFrontiers(cfg, dominators);
+        final int[] phiCounts = new int[nbBlocks];
+        final boolean[][] hasPhi = new boolean[nbVariables][];
+        final int[] worklist = new int[nbBlocks];
+        final int[] queued = new int[nbBlocks];
+        Arrays.fill(queued, -1);
+        for (int v = 0; v < nbVariables; v++) {
+            if (!cfg.isLocalVariable(v)) {
+                continue;
+            }
+            int top = 0;
+            for (int def = 0; def < nbDefinitions; def++) {
+                final int access = reachingDefinitions.getDefinitionAccess(def);
+                final int block = cfg.getAccessBlock(access);
+                if (cfg.getAccessVariable(access) == v && queued[block] != v) {
+                    queued[block] = v;
+                    worklist[top++] = block;
+                }
+            }
+            while (top > 0) {
+                final int block = worklist[--top];
+                for (int frontier : frontiers[block]) {
+                    if (hasPhi[v] == null) {
+                        hasPhi[v] = new boolean[nbBlocks];
+                    }
+                    if (!hasPhi[v][frontier] && liveVariables.isLiveOnEntry(frontier, v)) {
+                        hasPhi[v][frontier] = true;
+                        phiCounts[frontier]++;
+                        if (queued[frontier] != v) {
+                            queued[frontier] = v;
+                            worklist[top++] = frontier;
+                        }
+                    }
+                }
+            }
+        }
+
+        // number the phis block by block
+        this.blockPhisStarts = new int[nbBlocks + 1];
+        for (int b = 0; b < nbBlocks; b++) {
+            blockPhisStarts[b + 1] = blockPhisStarts[b] + phiCounts[b];
+        }
+        final int nbPhis = blockPhisStarts[nbBlocks];
+        this.phiVariables = new int[nbPhis];
+        this.phiBlocks = new int[nbPhis];
+        final int[] fill = new int[nbBlocks];
+        for (int v = 0; v < nbVariables; v++) {
+            if (hasPhi[v] == null) {
+                continue;
+            }
+            for (int b = 0; b < nbBlocks; b++) {
+                if (hasPhi[v][b]) {
+                    final int phi = blockPhisStarts[b] + fill[b]++;
+                    phiVariables[phi] = v;
+                    phiBlocks[phi] = b;
+                }
+            }
+        }
+        this.phiOperandsStarts = new int[nbPhis + 1];
+        for (int phi = 0; phi < nbPhis; phi++) {
+            final int block = phiBlocks[phi];
+            phiOperandsStarts[phi + 1] =
+                    phiOperandsStarts[phi] + cfg.getPredecessorsEnd(block) - cfg.getPredecessorsStart(block);
+        }
+        this.phiOperands = new int[phiOperandsStarts[nbPhis]];
+        Arrays.fill(phiOperands, -1);
+        this.accessValues = new int[cfg.getAccessCount()];
+        Arrays.fill(accessValues, -1);
+        rename(dominators, nbVariables);
+    }
+
+    /**
+     * Renames the accesses in a preorder walk of the dominator tree, keeping for each variable a stack of its current
+     * values. The walk is iterative so that long methods cannot overflow the thread stack.
+     */
+    private void rename(DominatorTree dominators, int nbVariables) {
+        final int nbBlocks = cfg.getBlockCount();
+        final int[][] valueStacks = new int[nbVariables][];
+        final int[] valueStackSizes = new int[nbVariables];
+        // the variables pushed while visiting each block on the current path, to pop them when leaving it
+        final int[] pushedVariables = new int[cfg.getAccessCount() + phiBlocks.length];
+        int pushedTop = 0;
+        final int[] pushedStarts = new int[nbBlocks];
+        final int[] blockStack = new int[nbBlocks];
+        final int[] childIndexes = new int[nbBlocks];
+        int top = 0;
+        if (dominators.getRoot() == -1) {
+            return;
+        }
+        blockStack[top++] = dominators.getRoot();
+        childIndexes[0] = -1;
+        while (top > 0) {
+            final int block = blockStack[top - 1];
+            if (childIndexes[top - 1] == -1) {
+                // entering the block: define its phis, then walk its accesses
+                pushedStarts[block] = pushedTop;
+                for (int phi = blockPhisStarts[block]; phi < blockPhisStarts[block + 1]; phi++) {
+                    push(valueStacks, valueStackSizes, phiVariables[phi], nbDefinitions + phi);
+                    pushedVariables[pushedTop++] = phiVariables[phi];
+                }
+                for (int a = cfg.getAccessesStart(block); a < cfg.getAccessesEnd(block); a++) {
+                    final int variable = cfg.getAccessVariable(a);
+                    if (variable == -1 || !cfg.isLocalVariable(variable)) {
+                        continue;
+                    }
+                    final int def = reachingDefinitions.getDefinition(a);
+                    if ((cfg.getAccessFlags(a) & READ) != 0) {
+                        accessValues[a] = peek(valueStacks, valueStackSizes, variable);
+                    }
+                    if (def != -1) {
+                        accessValues[a] = def;
+                        push(valueStacks, valueStackSizes, variable, def);
+                        pushedVariables[pushedTop++] = variable;
+                    }
+                }
+                fillPhiOperands(block, valueStacks, valueStackSizes);
+                childIndexes[top - 1] = dominators.getChildrenStart(block);
+            }
+            final int child = childIndexes[top - 1];
+            if (child < dominators.getChildrenEnd(block)) {
+                childIndexes[top - 1]++;
+                childIndexes[top] = -1;
+                blockStack[top++] = dominators.getChild(child);
+            } else {
+                // leaving the block: restore the values seen by its dominator
+                while (pushedTop > pushedStarts[block]) {
+                    valueStackSizes[pushedVariables[--pushedTop]]--;
+                }
+                top--;
+            }
+        }
+    }
+
+    /** Records the current values of the variables merged by the phis of the successors of the provided block. */
+    private void fillPhiOperands(int block, int[][] valueStacks, int[] valueStackSizes) {
+        for (int e = cfg.getSuccessorsStart(block); e < cfg.getSuccessorsEnd(block); e++) {
+            final int successor = cfg.getSuccessor(e);
+            if (blockPhisStarts[successor] == blockPhisStarts[successor + 1]) {
+                continue;
+            }
+            final int slot = getPredecessorSlot(successor, e);
+            for (int phi = blockPhisStarts[successor]; phi < blockPhisStarts[successor + 1]; phi++) {
+                phiOperands[phiOperandsStarts[phi] + slot] = peek(valueStacks, valueStackSizes, phiVariables[phi]);
+            }
+        }
+    }
+
+    private int getPredecessorSlot(int block, int edge) {
+        final int start = cfg.getPredecessorsStart(block);
+        for (int p = start; p < cfg.getPredecessorsEnd(block); p++) {
+            if (cfg.getPredecessorEdge(p) == edge) {
+                return p - start;
+            }
+        }
+        throw new IllegalStateException("Edge " + edge + " is not a predecessor edge of block " + block);
+    }
+
+    private static void push(int[][] valueStacks, int[] valueStackSizes, int variable, int value) {
+        final int size = valueStackSizes[variable];
+        if (valueStacks[variable] == null) {
+            valueStacks[variable] = new int[4];
+        } else if (size == valueStacks[variable].length) {
+            valueStacks[variable] = Arrays.copyOf(valueStacks[variable], size * 2);
+        }
+        valueStacks[variable][size] = value;
+        valueStackSizes[variable]++;
+    }
+
+    private static int peek(int[][] valueStacks, int[] valueStackSizes, int variable) {
+        final int size = valueStackSizes[variable];
+        return size > 0 ? valueStacks[variable][size - 1] : -1;
+    }
+
+    /**
+     * Cytron et al. dominance frontiers: for each join block, walk up the dominator tree from each predecessor
+     * until reaching the immediate dominator of the join block.
+     */
+    private static int[][] dominanceFrontiers(CompactCFG cfg, DominatorTree dominators) {
+        final int nbBlocks = cfg.getBlockCount();
+        final int[][] results = new int[nbBlocks][];
+        final int[] sizes = new int[nbBlocks];
+        for (int b = 0; b < nbBlocks; b++) {
+            results[b] = new int[0];
+        }
+        for (int b = 0; b < nbBlocks; b++) {
+            if (!dominators.contains(b) || cfg.getPredecessorsEnd(b) - cfg.getPredecessorsStart(b) < 2) {
+                continue;
+            }
+            final int idom = dominators.getImmediateDominator(b);
+            for (int p = cfg.getPredecessorsStart(b); p < cfg.getPredecessorsEnd(b); p++) {
+                int runner = cfg.getPredecessor(p);
+                if (!dominators.contains(runner)) {
+                    continue;
+                }
+                while (runner != -1 && runner != idom) {
+                    if (sizes[runner] == 0 || results[runner][sizes[runner] - 1] != b) {
+                        if (sizes[runner] == results[runner].length) {
+                            results[runner] = Arrays.copyOf(results[runner], Math.max(2, sizes[runner] * 2));
+                        }
+                        results[runner][sizes[runner]++] = b;
+                    }
+                    runner = dominators.getImmediateDominator(runner);
+                }
+            }
+        }
+        for (int b = 0; b < nbBlocks; b++) {
+            results[b] = Arrays.copyOf(results[b], sizes[b]);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the SSA form of the provided graph, computing it on first request.
+     *
+     * @param cfg the graph to analyze
+     * @return the SSA form of the provided graph
+     */
+    public static SSAForm of(CompactCFG cfg) {
+        final SSAForm cached = cfg.getAnalysis(SSAForm.class, SSAForm.class);
+        if (cached != null) {
+            return cached;
+        }
+        return cfg.putAnalysis(SSAForm.class, new SSAForm(cfg));
+    }
+
+    /**
+     * Returns the number of values: definitions first, then phis.
+     *
+     * @return the number of values
+     */
+    public int getValueCount() {
+        return nbDefinitions + phiBlocks.length;
+    }
+
+    /**
+     * Returns whether the provided value is a phi.
+     *
+     * @param value the value
+     * @return true if the provided value merges several values at a join block,
+     *         false if it is a definition as numbered by {@link ReachingDefinitions}
+     */
+    public boolean isPhi(int value) {
+        return value >= nbDefinitions;
+    }
+
+    /**
+     * Returns the value read or defined by the provided access.
+     * A compound assignment like {@code i++} is numbered with the value it defines.
+     *
+     * @param access the access index
+     * @return the value read or defined by the provided access,
+     *         or -1 if it does not access a local variable or reads a variable which was never defined
+     */
+    public int getValue(int access) {
+        return accessValues[access];
+    }
+
+    /**
+     * Returns the index of the first phi of the provided block.
+     *
+     * @param block the block index
+     * @return the value of the first phi of the provided block
+     */
+    public int getPhisStart(int block) {
+        return nbDefinitions + blockPhisStarts[block];
+    }
+
+    /**
+     * Returns the index after the last phi of the provided block.
+     *
+     * @param block the block index
+     * @return the value after the last phi of the provided block
+     */
+    public int getPhisEnd(int block) {
+        return nbDefinitions + blockPhisStarts[block + 1];
+    }
+
+    /**
+     * Returns the block where the provided phi is placed.
+     *
+     * @param phi the phi value
+     * @return the block where the provided phi is placed
+     */
+    public int getPhiBlock(int phi) {
+        return phiBlocks[phi - nbDefinitions];
+    }
+
+    /**
+     * Returns the variable merged by the provided phi.
+     *
+     * @param phi the phi value
+     * @return the variable index in the graph
+     */
+    public int getPhiVariable(int phi) {
+        return phiVariables[phi - nbDefinitions];
+    }
+
+    /**
+     * Returns the index of the first operand of the provided phi. Operands are in the same order as the predecessors
+     * of the phi block: the operand at {@code getPhiOperandsStart(phi) + i} comes from the {@code i}th predecessor.
+     *
+     * @param phi the phi value
+     * @return the index of the first operand of the provided phi
+     */
+    public int getPhiOperandsStart(int phi) {
+        return phiOperandsStarts[phi - nbDefinitions];
+    }
+
+    /**
+     * Returns the index after the last operand of the provided phi.
+     *
+     * @param phi the phi value
+     * @return the index after the last operand of the provided phi
+     */
+    public int getPhiOperandsEnd(int phi) {
+        return phiOperandsStarts[phi - nbDefinitions + 1];
+    }
+
+    /**
+     * Returns the phi operand at the provided index.
+     *
+     * @param index an index between {@link #getPhiOperandsStart(int)} and {@link #getPhiOperandsEnd(int)}
+     * @return the merged value, or -1 if the variable is not defined on the path from this predecessor
+     */
+    public int getPhiOperand(int index) {
+        return phiOperands[index];
+    }
+}
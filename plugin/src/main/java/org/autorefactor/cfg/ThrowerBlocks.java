@@ -1,9 +1,10 @@
 package org.autorefactor.cfg;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -13,24 +14,37 @@ import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ITypeBinding;
 
 /**
- * Holds all the basic blocks that can potentially throw.
+ * Holds all the basic blocks that can potentially throw, with the exception types they throw.
  */
 class ThrowerBlocks {
 
+    private final ExceptionHierarchy hierarchy;
     private final Map<CFGBasicBlock, Set<ITypeBinding>> potentialThrowingBlocks =
-            new HashMap<CFGBasicBlock, Set<ITypeBinding>>();
-    private final Map<CFGEdgeBuilder, Set<ITypeBinding>> potentialThrowingEdges =
-            new HashMap<CFGEdgeBuilder, Set<ITypeBinding>>();
+            new LinkedHashMap<CFGBasicBlock, Set<ITypeBinding>>();
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param hierarchy the exception hierarchy used to match thrown exceptions with catch clauses
+     */
+    public ThrowerBlocks(ExceptionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
 
     public void addThrow(CFGBasicBlock basicBlock, ITypeBinding... exceptionTypes) {
         if (exceptionTypes != null && exceptionTypes.length > 0) {
-            potentialThrowingBlocks.put(basicBlock, newSet(exceptionTypes));
+            addThrow(basicBlock, Arrays.asList(exceptionTypes));
         }
     }
 
-    public void addThrow(CFGEdgeBuilder liveEdge, Set<ITypeBinding> exceptionTypes) {
+    public void addThrow(CFGBasicBlock basicBlock, Collection<ITypeBinding> exceptionTypes) {
         if (exceptionTypes != null && !exceptionTypes.isEmpty()) {
-            potentialThrowingEdges.put(liveEdge, exceptionTypes);
+            Set<ITypeBinding> thrownTypes = potentialThrowingBlocks.get(basicBlock);
+            if (thrownTypes == null) {
+                thrownTypes = new LinkedHashSet<ITypeBinding>();
+                potentialThrowingBlocks.put(basicBlock, thrownTypes);
+            }
+            thrownTypes.addAll(exceptionTypes);
         }
     }
 
@@ -38,60 +52,95 @@ class ThrowerBlocks {
         // TODO JNR remove
     }
 
-    private HashSet<ITypeBinding> newSet(ITypeBinding... exceptionTypes) {
-        return new HashSet<ITypeBinding>(Arrays.asList(exceptionTypes));
+    public void addAll(ThrowerBlocks throwers) {
+        for (Entry<CFGBasicBlock, Set<ITypeBinding>> entry : throwers.potentialThrowingBlocks.entrySet()) {
+            addThrow(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public boolean isEmpty() {
+        return potentialThrowingBlocks.isEmpty();
     }
 
-    public List<CFGBasicBlock> selectBlocksThrowing(ITypeBinding exceptionTypeToFind) {
-        final List<CFGBasicBlock> results = new LinkedList<CFGBasicBlock>();
+    public boolean isThrowing(CFGBasicBlock basicBlock) {
+        return potentialThrowingBlocks.containsKey(basicBlock);
+    }
+
+    public Set<CFGBasicBlock> getThrowingBlocks() {
+        return potentialThrowingBlocks.keySet();
+    }
+
+    public Set<ITypeBinding> getThrownTypes() {
+        final Set<ITypeBinding> results = new LinkedHashSet<ITypeBinding>();
+        for (Set<ITypeBinding> thrownTypes : potentialThrowingBlocks.values()) {
+            results.addAll(thrownTypes);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the blocks throwing an exception which can be caught by a catch clause for the provided types,
+     * and which was not already caught by a previous catch clause.
+     *
+     * @param caughtTypes the exception types caught by the catch clause
+     * @param previouslyCaughtTypes the exception types caught by the previous catch clauses
+     * @return the blocks throwing an exception which can be caught by the catch clause
+     */
+    public List<CFGBasicBlock> selectBlocksThrowing(Collection<ITypeBinding> caughtTypes,
+            Collection<ITypeBinding> previouslyCaughtTypes) {
+        final List<CFGBasicBlock> results = new ArrayList<CFGBasicBlock>();
         for (Entry<CFGBasicBlock, Set<ITypeBinding>> entry : potentialThrowingBlocks.entrySet()) {
-            final Set<ITypeBinding> thrownTypes = entry.getValue();
-            if (exceptionTypeToFind == null || thrownTypes.contains(exceptionTypeToFind)) {
+            if (mayBeCaught(entry.getValue(), caughtTypes, previouslyCaughtTypes)) {
                 results.add(entry.getKey());
             }
         }
         return results;
     }
 
-    public Map<CFGBasicBlock, Set<ITypeBinding>> selectBlocksThrowingOtherThan(
-            Set<ITypeBinding> exceptionTypesToReject) {
-        Map<CFGBasicBlock, Set<ITypeBinding>> results = new HashMap<CFGBasicBlock, Set<ITypeBinding>>();
-        for (Entry<CFGBasicBlock, Set<ITypeBinding>> entry : potentialThrowingBlocks.entrySet()) {
-            final Set<ITypeBinding> bindings = getNonMatching(
-                    exceptionTypesToReject, entry.getValue());
-            if (!bindings.isEmpty()) {
-                results.put(entry.getKey(), bindings);
+    private boolean mayBeCaught(Set<ITypeBinding> thrownTypes, Collection<ITypeBinding> caughtTypes,
+            Collection<ITypeBinding> previouslyCaughtTypes) {
+        for (ITypeBinding thrownType : thrownTypes) {
+            if (!isAlwaysCaught(thrownType, previouslyCaughtTypes)) {
+                for (ITypeBinding caughtType : caughtTypes) {
+                    if (hierarchy.mayBeCaught(thrownType, caughtType)) {
+                        return true;
+                    }
+                }
             }
         }
-        return results;
+        return false;
     }
 
-    public List<CFGEdgeBuilder> selectEdgesThrowing(ITypeBinding exceptionTypeToFind) {
-        final List<CFGEdgeBuilder> results = new LinkedList<CFGEdgeBuilder>();
-        for (Entry<CFGEdgeBuilder, Set<ITypeBinding>> entry : potentialThrowingEdges.entrySet()) {
-            final Set<ITypeBinding> thrownTypes = entry.getValue();
-            if (exceptionTypeToFind == null || thrownTypes.contains(exceptionTypeToFind)) {
-                results.add(entry.getKey());
+    /**
+     * Returns the blocks throwing exceptions which are not always caught by the provided exception types.
+     *
+     * @param caughtTypes the caught exception types
+     * @return the blocks throwing exceptions which are not always caught, with such exception types
+     */
+    public ThrowerBlocks selectBlocksThrowingOtherThan(Collection<ITypeBinding> caughtTypes) {
+        final ThrowerBlocks results = new ThrowerBlocks(hierarchy);
+        for (Entry<CFGBasicBlock, Set<ITypeBinding>> entry : potentialThrowingBlocks.entrySet()) {
+            for (ITypeBinding thrownType : entry.getValue()) {
+                if (!isAlwaysCaught(thrownType, caughtTypes)) {
+                    results.addThrow(entry.getKey(), thrownType);
+                }
             }
         }
         return results;
     }
 
-    private Set<ITypeBinding> getNonMatching(Set<ITypeBinding> exceptionTypes,
-            Set<ITypeBinding> thrownTypes) {
-        final Set<ITypeBinding> results = new HashSet<ITypeBinding>();
-        for (ITypeBinding thrownType : thrownTypes) {
-            if (!exceptionTypes.contains(thrownType)) {
-                results.add(thrownType);
+    private boolean isAlwaysCaught(ITypeBinding thrownType, Collection<ITypeBinding> caughtTypes) {
+        for (ITypeBinding caughtType : caughtTypes) {
+            if (hierarchy.isAlwaysCaught(thrownType, caughtType)) {
+                return true;
             }
         }
-        return results;
+        return false;
     }
 
     @Override
     public String toString() {
-        return "potentialThrowingBlocks=" + potentialThrowingBlocks
-                + " potentialThrowingEdges=" + potentialThrowingEdges;
+        return "potentialThrowingBlocks=" + potentialThrowingBlocks;
     }
 
 }
@@ -73,6 +73,63 @@ public class VariableAccess {
         this(astNode, astNode instanceof Name ? (Name) astNode : null, null, accessType);
     }
 
+    /**
+     * Returns the AST node of the variable.
+     *
+     * @return the AST node of the variable
+     */
+    public ASTNode getASTNode() {
+        return astNode;
+    }
+
+    /**
+     * Returns the name of the variable.
+     *
+     * @return the name of the variable, or null if the AST node is not a name
+     */
+    public Name getName() {
+        return name;
+    }
+
+    /**
+     * Returns the type of the variable.
+     *
+     * @return the type of the variable, only available for declarations
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the access type to the variable.
+     *
+     * @return the access type to the variable
+     */
+    public int getAccessType() {
+        return accessType;
+    }
+
+    /**
+     * Appends a short annotation of this access, like {@code i:RW}, and returns the provided string builder.
+     * D stands for a declaration, R for a read and W for a write.
+     *
+     * @param sb the string builder where to append the annotation
+     * @return the provided string builder
+     */
+    StringBuilder appendShortDescription(StringBuilder sb) {
+        sb.append(name != null ? name : astNode).append(":");
+        if ((accessType & (DECL_INIT | DECL_UNINIT)) != 0) {
+            sb.append("D");
+        }
+        if ((accessType & READ) != 0) {
+            sb.append("R");
+        }
+        if ((accessType & WRITE) != 0) {
+            sb.append("W");
+        }
+        return sb;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
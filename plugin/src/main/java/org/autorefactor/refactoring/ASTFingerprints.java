@@ -0,0 +1,193 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.ASTMatcher;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.BooleanLiteral;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+
+/**
+ * Computes structural fingerprints of AST nodes.
+ * <p>
+ * A fingerprint is a hash computed bottom-up from the node types, the simple property values
+ * and the fingerprints of the children nodes. Source positions are ignored.
+ * Two nodes matched by an {@link ASTMatcher} always have the same fingerprint,
+ * so refactorings can cheaply reject or bucket candidates before running the full {@link ASTMatcher}
+ * only on the candidates with colliding fingerprints.
+ * <p>
+ * Fingerprints are memoized for all the nodes of the subtrees they are computed for,
+ * and the memoized fingerprints are shared by all the refactorings running on the same
+ * {@link CompilationUnit}.
+ * Memoized fingerprints are only valid as long as the AST is not modified,
+ * which is the case for a {@link CompilationUnit} during a refactoring pass:
+ * changes are recorded via {@link Refactorings} and only applied at the end of the pass.
+ */
+public final class ASTFingerprints {
+
+    /**
+     * Local variable names are ignored.
+     * <p>
+     * To be used with {@link ASTMatcher}s which match different local variables.
+     */
+    public static final int NORMALIZE_LOCAL_VARIABLES = 1 << 0;
+    /**
+     * Boolean literals and {@link Boolean} constants all get the same fingerprint.
+     * <p>
+     * To be used with {@link ASTMatcher}s which match different boolean values.
+     */
+    public static final int NORMALIZE_BOOLEAN_CONSTANTS = 1 << 1;
+
+    private static final int PRIME = 31;
+    private static final int LOCAL_VARIABLE_FINGERPRINT = 0x4c6f6361;
+    private static final int BOOLEAN_CONSTANT_FINGERPRINT = 0x426f6f6c;
+
+    private final int flags;
+    private final Map<ASTNode, Integer> fingerprints = new IdentityHashMap<ASTNode, Integer>();
+
+    private ASTFingerprints(int flags) {
+        this.flags = flags;
+    }
+
+    /**
+     * Returns the fingerprints for the AST containing the provided node.
+     * <p>
+     * The returned fingerprints are shared with other callers
+     * when the provided node is attached to a {@link CompilationUnit}.
+     *
+     * @param node a node of the AST
+     * @param flags a combination of the NORMALIZE_* flags of this class, or 0 to match a default {@link ASTMatcher}
+     * @return the fingerprints for the AST containing the provided node
+     */
+    public static ASTFingerprints of(ASTNode node, int flags) {
+        final ASTNode root = node.getRoot();
+        if (!(root instanceof CompilationUnit)) {
+            return new ASTFingerprints(flags);
+        }
+        final String key = ASTFingerprints.class.getName() + flags;
+        ASTFingerprints result = (ASTFingerprints) root.getProperty(key);
+        if (result == null) {
+            result = new ASTFingerprints(flags);
+            root.setProperty(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the provided nodes can possibly match.
+     *
+     * @param node1 the first node to compare
+     * @param node2 the second node to compare
+     * @return false if the provided nodes cannot match, true if they must be compared with an {@link ASTMatcher}
+     */
+    public boolean mayMatch(ASTNode node1, ASTNode node2) {
+        return get(node1) == get(node2);
+    }
+
+    /**
+     * Returns the fingerprint of the provided node.
+     *
+     * @param node the node for which to compute the fingerprint
+     * @return the fingerprint of the provided node, 0 for a null node
+     */
+    public int get(ASTNode node) {
+        if (node == null) {
+            return 0;
+        }
+        final Integer cached = fingerprints.get(node);
+        if (cached != null) {
+            return cached;
+        }
+        final int result = compute(node);
+        fingerprints.put(node, result);
+        return result;
+    }
+
+    private int compute(ASTNode node) {
+        switch (node.getNodeType()) {
+        case ASTNode.JAVADOC:
+            // ASTMatcher does not compare javadocs by default
+            return ASTNode.JAVADOC;
+
+        case ASTNode.BOOLEAN_LITERAL:
+            if (is(NORMALIZE_BOOLEAN_CONSTANTS)) {
+                return BOOLEAN_CONSTANT_FINGERPRINT;
+            }
+            return PRIME * ASTNode.BOOLEAN_LITERAL + (((BooleanLiteral) node).booleanValue() ? 1 : 0);
+
+        case ASTNode.QUALIFIED_NAME:
+            if (is(NORMALIZE_BOOLEAN_CONSTANTS) && hasType((QualifiedName) node, "java.lang.Boolean")) {
+                return BOOLEAN_CONSTANT_FINGERPRINT;
+            }
+            break;
+
+        case ASTNode.SIMPLE_NAME:
+            if (is(NORMALIZE_LOCAL_VARIABLES) && isLocalVariable((SimpleName) node)) {
+                return LOCAL_VARIABLE_FINGERPRINT;
+            }
+            break;
+        }
+
+        int result = node.getNodeType();
+        for (Object prop : node.structuralPropertiesForType()) {
+            final StructuralPropertyDescriptor descriptor = (StructuralPropertyDescriptor) prop;
+            final Object value = node.getStructuralProperty(descriptor);
+            if (descriptor.isSimpleProperty()) {
+                result = PRIME * result + (value != null ? value.toString().hashCode() : 0);
+            } else if (descriptor.isChildProperty()) {
+                result = PRIME * result + get((ASTNode) value);
+            } else {
+                final List<?> children = (List<?>) value;
+                result = PRIME * result + children.size();
+                for (Object child : children) {
+                    result = PRIME * result + get((ASTNode) child);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean is(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    private boolean isLocalVariable(SimpleName name) {
+        final IBinding binding = name.resolveBinding();
+        return binding instanceof IVariableBinding
+                && !((IVariableBinding) binding).isField();
+    }
+}
@@ -25,6 +25,7 @@
  */
 package org.autorefactor.refactoring;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -42,6 +43,7 @@ import org.autorefactor.util.NotImplementedException;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTMatcher;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
 import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
 import org.eclipse.jdt.core.dom.AnnotationTypeMemberDeclaration;
@@ -408,6 +410,18 @@ public final class ASTHelper {
         return args.get(0);
     }
 
+    /**
+     * Generecized version of the equivalent JDT method.
+     *
+     * @param node the node on which to call the equivalent JDT method
+     * @return a List of body declarations
+     * @see AbstractTypeDeclaration#bodyDeclarations()
+     */
+    @SuppressWarnings("unchecked")
+    public static List<BodyDeclaration> bodyDeclarations(AbstractTypeDeclaration node) {
+        return node.bodyDeclarations();
+    }
+
     /**
      * Generecized version of the equivalent JDT method.
      *
@@ -444,6 +458,18 @@ public final class ASTHelper {
         return node.catchClauses();
     }
 
+    /**
+     * Generecized version of the equivalent JDT method.
+     *
+     * @param node the node on which to call the equivalent JDT method
+     * @return a List of expressions
+     * @see ArrayCreation#dimensions()
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Expression> dimensions(ArrayCreation node) {
+        return node.dimensions();
+    }
+
     /**
      * Generecized version of the equivalent JDT method.
      *
@@ -456,6 +482,20 @@ public final class ASTHelper {
         return node.expressions();
     }
 
+    /**
+     * Returns all the operands of the provided infix expression, in order.
+     *
+     * @param node the infix expression
+     * @return the left operand, the right operand and the extended operands
+     */
+    public static List<Expression> allOperands(InfixExpression node) {
+        final List<Expression> results = new ArrayList<Expression>();
+        results.add(node.getLeftOperand());
+        results.add(node.getRightOperand());
+        results.addAll(extendedOperands(node));
+        return results;
+    }
+
     /**
      * Generecized version of the equivalent JDT method.
      *
@@ -576,6 +616,18 @@ public final class ASTHelper {
         return node.modifiers();
     }
 
+    /**
+     * Generecized version of the equivalent JDT method.
+     *
+     * @param node the node on which to call the equivalent JDT method
+     * @return a List of expressions
+     * @see VariableDeclarationStatement#modifiers()
+     */
+    @SuppressWarnings("unchecked")
+    public static List<IExtendedModifier> modifiers(VariableDeclarationStatement node) {
+        return node.modifiers();
+    }
+
     /**
      * Generecized version of the equivalent JDT method.
      *
@@ -967,7 +1019,14 @@ public final class ASTHelper {
      * @return true if the provided expression evaluates to exactly one of the provided type, false otherwise
      */
     public static boolean hasType(Expression expr, String... oneOfQualifiedTypeNames) {
-        return expr != null && hasType(expr.resolveTypeBinding(), oneOfQualifiedTypeNames);
+        if (expr == null) {
+            return false;
+        }
+        final WellKnownTypes wellKnownTypes = WellKnownTypes.of(expr);
+        if (wellKnownTypes != null) {
+            return wellKnownTypes.hasType(expr.resolveTypeBinding(), oneOfQualifiedTypeNames);
+        }
+        return hasType(expr.resolveTypeBinding(), oneOfQualifiedTypeNames);
     }
 
     /**
@@ -998,7 +1057,14 @@ public final class ASTHelper {
      * @return true if the provided expression is an instance of the qualified type name, false otherwise
      */
     public static boolean instanceOf(Expression expr, String qualifiedTypeName) {
-        return expr != null && instanceOf(expr.resolveTypeBinding(), qualifiedTypeName);
+        if (expr == null) {
+            return false;
+        }
+        final WellKnownTypes wellKnownTypes = WellKnownTypes.of(expr);
+        if (wellKnownTypes != null) {
+            return wellKnownTypes.instanceOf(expr.resolveTypeBinding(), qualifiedTypeName);
+        }
+        return instanceOf(expr.resolveTypeBinding(), qualifiedTypeName);
     }
 
     /**
@@ -1136,6 +1202,73 @@ public final class ASTHelper {
                 || node instanceof WhileStatement;
     }
 
+    /**
+     * Returns whether the provided variable is referenced after the provided statement in the enclosing body
+     * declaration. Statements inside an enclosing loop are considered to be executed after the provided statement.
+     *
+     * @param stmt the statement
+     * @param varBinding the variable binding
+     * @return true if the provided variable is referenced after the provided statement, false otherwise
+     */
+    public static boolean isUsedAfter(Statement stmt, final IVariableBinding varBinding) {
+        ASTNode parent = stmt.getParent();
+        while (!(parent instanceof BodyDeclaration)) {
+            if (isLoop(parent)) {
+                // statements before this one in an enclosing loop are also executed after it
+                return true;
+            }
+            parent = parent.getParent();
+        }
+        final int stmtEnd = stmt.getStartPosition() + stmt.getLength();
+        final boolean[] used = new boolean[1];
+        parent.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                used[0] |= node.getStartPosition() >= stmtEnd && varBinding.equals(node.resolveBinding());
+                return VISIT_SUBTREE;
+            }
+        });
+        return used[0];
+    }
+
+    /**
+     * Returns a variable name based on the provided name, which neither clashes with,
+     * nor shadows any name used in the body declaration enclosing the provided node.
+     *
+     * @param node the node where the variable will be declared
+     * @param name the preferred name
+     * @return the provided name, possibly suffixed with a number
+     */
+    public static String getFreshName(ASTNode node, String name) {
+        return getFreshName(node, name, Collections.<String> emptySet());
+    }
+
+    /**
+     * Returns a variable name based on the provided name, which neither clashes with,
+     * nor shadows any name used in the body declaration enclosing the provided node,
+     * and which is not one of the provided reserved names.
+     *
+     * @param node the node where the variable will be declared
+     * @param name the preferred name
+     * @param reservedNames the names which are not in the AST yet, but will be declared by pending refactorings
+     * @return the provided name, possibly suffixed with a number
+     */
+    public static String getFreshName(ASTNode node, String name, Set<String> reservedNames) {
+        final Set<String> usedNames = new HashSet<String>(reservedNames);
+        getAncestor(node, BodyDeclaration.class).accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName sn) {
+                usedNames.add(sn.getIdentifier());
+                return VISIT_SUBTREE;
+            }
+        });
+        String result = name;
+        for (int i = 2; usedNames.contains(result); i++) {
+            result = name + i;
+        }
+        return result;
+    }
+
     /**
      * Returns whether the provided node is breakable.
      *
@@ -1769,6 +1902,23 @@ public final class ASTHelper {
         return parent;
     }
 
+    /**
+     * Returns whether the provided node is the same as or a descendant of the provided ancestor node.
+     *
+     * @param ancestor the possible ancestor node
+     * @param node the node
+     * @return true if the provided node is the same as or a descendant of the provided ancestor node,
+     *         false otherwise
+     */
+    public static boolean isAncestor(ASTNode ancestor, ASTNode node) {
+        for (ASTNode n = node; n != null; n = n.getParent()) {
+            if (n == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns the file name where the node comes from, or "FakeClass.java" if this is a fake node.
      *
@@ -0,0 +1,174 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
+
+/**
+ * Helper class for intraprocedural escape analysis.
+ * <p>
+ * An object is confined to the method creating it when it is only stored in a local variable
+ * which is never reassigned, never stored in a field or another variable, never passed to a method,
+ * never returned, never captured by an anonymous or local class and never used as a lock.
+ * Only methods can be called on it, and the objects returned by these methods which may share its state,
+ * like iterators or the receiver itself, are checked the same way.
+ */
+public final class EscapeAnalysisHelper {
+
+    private EscapeAnalysisHelper() {
+        super();
+    }
+
+    /**
+     * Returns the method invocations made on the object created by the provided expression,
+     * if this object is confined to the method creating it.
+     *
+     * @param creation the expression creating the object, either used directly or initializing a local variable
+     * @return the method invocations made directly on the created object,
+     *         or null if the created object may escape the method creating it
+     */
+    public static List<MethodInvocation> getMethodCallsOnConfinedObject(Expression creation) {
+        final List<MethodInvocation> results = new ArrayList<MethodInvocation>();
+        final ASTNode parent = getParentIgnoringParentheses(creation);
+        if (!(parent instanceof VariableDeclarationFragment)) {
+            return isConfinedUse(creation, results, true) ? results : null;
+        }
+
+        final VariableDeclarationFragment vdf = (VariableDeclarationFragment) parent;
+        final IVariableBinding varBinding = vdf.resolveBinding();
+        if (!(vdf.getParent() instanceof VariableDeclarationStatement) || varBinding == null) {
+            return null;
+        }
+        final BodyDeclaration bodyDecl = getAncestor(vdf, BodyDeclaration.class);
+        final List<SimpleName> uses = new ArrayList<SimpleName>();
+        bodyDecl.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                if (node != vdf.getName() && varBinding.equals(node.resolveBinding())) {
+                    uses.add(node);
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        for (SimpleName use : uses) {
+            if (isCaptured(use, bodyDecl) || isWritten(use) || !isConfinedUse(use, results, true)) {
+                return null;
+            }
+        }
+        return results;
+    }
+
+    private static boolean isConfinedUse(Expression use, List<MethodInvocation> results, boolean isObject) {
+        Expression expr = use;
+        while (expr.getParent() instanceof ParenthesizedExpression) {
+            expr = (Expression) expr.getParent();
+        }
+        final ASTNode parent = expr.getParent();
+        if (expr.getLocationInParent() == MethodInvocation.EXPRESSION_PROPERTY) {
+            final MethodInvocation mi = (MethodInvocation) parent;
+            if (isObject) {
+                results.add(mi);
+            }
+            final IMethodBinding methodBinding = mi.resolveMethodBinding();
+            if (methodBinding == null) {
+                return false;
+            }
+            final ITypeBinding returnType = methodBinding.getMethodDeclaration().getReturnType();
+            if (mayShareState(returnType)) {
+                // e.g. StringBuffer.append() returns the receiver, Vector.iterator() returns a view
+                final boolean returnsObject = isObject
+                        && returnType.getErasure().equals(methodBinding.getDeclaringClass().getErasure());
+                return isConfinedUse(mi, results, returnsObject);
+            }
+            return true;
+        }
+        return expr.getLocationInParent() == ExpressionStatement.EXPRESSION_PROPERTY
+                || expr.getLocationInParent() == EnhancedForStatement.EXPRESSION_PROPERTY
+                || (parent instanceof InfixExpression
+                        && hasOperator((InfixExpression) parent, PLUS)
+                        && hasType((InfixExpression) parent, "java.lang.String"));
+    }
+
+    /** Returns whether the values of the provided type may share the state of the object returning them. */
+    private static boolean mayShareState(ITypeBinding typeBinding) {
+        return !typeBinding.isPrimitive()
+                && !typeBinding.isArray()
+                // values of type variables are elements of a collection, not views on it
+                && !typeBinding.isTypeVariable()
+                && !hasType(typeBinding, "java.lang.String", "java.lang.Boolean", "java.lang.Character",
+                        "java.lang.Byte", "java.lang.Short", "java.lang.Integer", "java.lang.Long",
+                        "java.lang.Float", "java.lang.Double");
+    }
+
+    private static boolean isCaptured(ASTNode node, BodyDeclaration bodyDecl) {
+        for (ASTNode n = node.getParent(); n != bodyDecl; n = n.getParent()) {
+            if (n instanceof AnonymousClassDeclaration || n instanceof AbstractTypeDeclaration) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWritten(SimpleName node) {
+        final ASTNode parent = getParentIgnoringParentheses(node);
+        return parent instanceof Assignment
+                || parent instanceof PostfixExpression
+                || parent instanceof PrefixExpression;
+    }
+
+    private static ASTNode getParentIgnoringParentheses(Expression expr) {
+        ASTNode parent = expr.getParent();
+        while (parent instanceof ParenthesizedExpression) {
+            parent = parent.getParent();
+        }
+        return parent;
+    }
+}
@@ -30,11 +30,13 @@ import java.util.List;
 import org.eclipse.jdt.core.dom.Assignment;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.Name;
 import org.eclipse.jdt.core.dom.PostfixExpression;
 import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.QualifiedName;
 import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 
@@ -227,6 +229,20 @@ public final class ForLoopHelper {
                 content.iterationType = IterationType.INDEX;
                 return content;
             }
+        } else if (containerVar instanceof QualifiedName
+                && loopVar instanceof Name) {
+            final QualifiedName qn = (QualifiedName) containerVar;
+            final ITypeBinding qualifierType = qn.getQualifier().resolveTypeBinding();
+            if ("length".equals(qn.getName().getIdentifier())
+                    && qualifierType != null
+                    && qualifierType.isArray()) {
+                final ForLoopContent content = new ForLoopContent();
+                content.loopVariable = (Name) loopVar;
+                content.containerVariable = qn.getQualifier();
+                content.containerType = ContainerType.ARRAY;
+                content.iterationType = IterationType.INDEX;
+                return content;
+            }
         }
         return null;
     }
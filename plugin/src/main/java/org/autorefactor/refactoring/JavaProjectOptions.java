@@ -27,6 +27,8 @@ package org.autorefactor.refactoring;
 
 import java.util.Map;
 
+import org.eclipse.jdt.core.dom.ASTParser;
+
 /**
  * The java project options.
  */
@@ -60,4 +62,13 @@ public interface JavaProjectOptions {
      */
     int getCommentLineLength();
 
+    /**
+     * Configures the provided parser to parse the compilation units of the current project.
+     * <p>
+     * A parser forgets its settings after each parse, so this must be called before each parse.
+     *
+     * @param parser the parser to configure
+     */
+    void configureParser(ASTParser parser);
+
 }
@@ -27,8 +27,8 @@ package org.autorefactor.refactoring;
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -37,8 +37,8 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 
-import org.autorefactor.util.Pair;
 import org.autorefactor.util.UnhandledException;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.BlockComment;
@@ -61,12 +61,19 @@ public class Refactorings {
 
     private boolean hasRefactorings;
     private final ASTRewrite rewrite;
-    private final Map<Pair<ASTNode, ChildListPropertyDescriptor>, ListRewrite> listRewriteCache =
-            new HashMap<Pair<ASTNode, ChildListPropertyDescriptor>, ListRewrite>();
+    /** The options used to format the new nodes, or null to use the {@link JavaCore} options. */
+    private final Map<String, String> options;
+    /**
+     * Cache of the {@link ListRewrite}s of each node, one per child list property.
+     * <p>
+     * Nodes rarely have more than one rewritten child list property, so a linear scan is fine.
+     */
+    private final Map<ASTNode, ListRewrite[]> listRewriteCache = new IdentityHashMap<ASTNode, ListRewrite[]>();
     private final ASTCommentRewriter commentRewriter = new ASTCommentRewriter();
     private final SourceRewriter sourceRewriter = new SourceRewriter();
     /** Nodes that cannot be visited. */
-    private final Set<ASTNode> forbiddenNodes = new HashSet<ASTNode>();
+    private final Set<ASTNode> forbiddenNodes =
+            Collections.newSetFromMap(new IdentityHashMap<ASTNode, Boolean>());
 
     /**
      * Builds an instance of this class.
@@ -74,7 +81,21 @@ public class Refactorings {
      * @param ast the AST
      */
     public Refactorings(AST ast) {
+        this(ast, null);
+    }
+
+    /**
+     * Builds an instance of this class.
+     * <p>
+     * The provided options must match the source level of the AST,
+     * otherwise the new nodes using newer language features cannot be formatted.
+     *
+     * @param ast the AST
+     * @param options the options used to format the new nodes, or null to use the {@link JavaCore} options
+     */
+    public Refactorings(AST ast, Map<String, String> options) {
         this.rewrite = ASTRewrite.create(ast);
+        this.options = options;
     }
 
     /**
@@ -138,11 +159,21 @@ public class Refactorings {
     }
 
     private ListRewrite getListRewrite(ASTNode node, ChildListPropertyDescriptor listProperty) {
-        final Pair<ASTNode, ChildListPropertyDescriptor> key = Pair.of(node, listProperty);
-        ListRewrite listRewrite = listRewriteCache.get(key);
-        if (listRewrite == null) {
-            listRewrite = rewrite.getListRewrite(node, listProperty);
-            listRewriteCache.put(key, listRewrite);
+        final ListRewrite[] listRewrites = listRewriteCache.get(node);
+        if (listRewrites != null) {
+            for (ListRewrite listRewrite : listRewrites) {
+                if (listRewrite.getLocationInParent() == listProperty) {
+                    return listRewrite;
+                }
+            }
+        }
+        final ListRewrite listRewrite = rewrite.getListRewrite(node, listProperty);
+        if (listRewrites == null) {
+            listRewriteCache.put(node, new ListRewrite[] { listRewrite });
+        } else {
+            final ListRewrite[] newListRewrites = Arrays.copyOf(listRewrites, listRewrites.length + 1);
+            newListRewrites[listRewrites.length] = listRewrite;
+            listRewriteCache.put(node, newListRewrites);
         }
         return listRewrite;
     }
@@ -260,6 +291,18 @@ public class Refactorings {
         sourceRewriter.remove(toRemove);
     }
 
+    /**
+     * Records all the source edits of the provided source rewriter.
+     *
+     * @param sourceEdits the source edits to record
+     */
+    public void addAll(SourceRewriter sourceEdits) {
+        if (sourceEdits.size() > 0) {
+            hasRefactorings = true;
+            sourceRewriter.addAll(sourceEdits);
+        }
+    }
+
     /**
      * Removes the provided nodes from the AST.
      *
@@ -372,13 +415,20 @@ public class Refactorings {
      * @throws BadLocationException if trying to access a non existing position
      */
     public void applyTo(final IDocument document) throws BadLocationException {
-        final TextEdit edits = rewrite.rewriteAST(document, null);
+        final TextEdit edits = rewrite.rewriteAST(document, options);
         commentRewriter.addEdits(document, edits);
         sourceRewriter.addEdits(document, edits);
         applyEditsToDocument(edits, document);
     }
 
-    private void applyEditsToDocument(final TextEdit edits, final IDocument document) throws BadLocationException {
+    /**
+     * Applies the provided edits to the provided document.
+     *
+     * @param edits the edits to apply
+     * @param document the document to edit
+     * @throws BadLocationException if trying to access a non existing position
+     */
+    static void applyEditsToDocument(final TextEdit edits, final IDocument document) throws BadLocationException {
         // Call this operation on the SWT Display Thread with syncExec(),
         // because it changes or adds something to the GUI.
         // Otherwise it would throw an Invalid thread access Exception.
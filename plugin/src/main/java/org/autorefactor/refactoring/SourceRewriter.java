@@ -25,10 +25,10 @@
  */
 package org.autorefactor.refactoring;
 
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.eclipse.jface.text.IDocument;
@@ -36,11 +36,49 @@ import org.eclipse.text.edits.DeleteEdit;
 import org.eclipse.text.edits.ReplaceEdit;
 import org.eclipse.text.edits.TextEdit;
 
-/** Directly rewrites source code. */
+/**
+ * Directly rewrites source code.
+ * <p>
+ * Rules can record thousands of tiny edits on big files,
+ * so edits are recorded in a compact log made of parallel int arrays and a pool of replacement strings.
+ * {@link TextEdit}s are only created once, when {@link #addEdits(IDocument, TextEdit)} is called.
+ */
 public class SourceRewriter {
 
-    private final Set<SourceLocation> removals = new LinkedHashSet<SourceLocation>();
-    private final Map<SourceLocation, String> replacements = new LinkedHashMap<SourceLocation, String>();
+    /** Marks a removal in the {@link #replacementIndexes} array. */
+    private static final int REMOVAL = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int size;
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    /** Index of the replacement string in the {@link #stringPool}, or {@link #REMOVAL}. */
+    private int[] replacementIndexes = new int[INITIAL_CAPACITY];
+    private final StringPool stringPool = new StringPool();
+
+    /** Pool of replacement strings, where each distinct string is stored only once. */
+    private static final class StringPool {
+        private String[] strings = new String[INITIAL_CAPACITY];
+        private int size;
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+        private int indexOf(String s) {
+            final Integer index = indexes.get(s);
+            if (index != null) {
+                return index;
+            }
+            if (size == strings.length) {
+                strings = Arrays.copyOf(strings, 2 * size);
+            }
+            strings[size] = s;
+            indexes.put(s, size);
+            return size++;
+        }
+
+        private String get(int index) {
+            return strings[index];
+        }
+    }
 
     /**
      * Removes the provided source location from the source.
@@ -48,7 +86,17 @@ public class SourceRewriter {
      * @param toRemove the source location to remove
      */
     public void remove(SourceLocation toRemove) {
-        this.removals.add(toRemove);
+        remove(toRemove.getStartPosition(), toRemove.getLength());
+    }
+
+    /**
+     * Removes the provided range from the source.
+     *
+     * @param offset the start position of the range to remove
+     * @param length the length of the range to remove
+     */
+    public void remove(int offset, int length) {
+        add(offset, length, REMOVAL);
     }
 
     /**
@@ -58,23 +106,92 @@ public class SourceRewriter {
      * @param replacement the replacement string
      */
     public void replace(SourceLocation toReplace, String replacement) {
-        this.replacements.put(toReplace, replacement);
+        replace(toReplace.getStartPosition(), toReplace.getLength(), replacement);
+    }
+
+    /**
+     * Replaces the provided range with the replacement string in the source.
+     *
+     * @param offset the start position of the range to replace
+     * @param length the length of the range to replace
+     * @param replacement the replacement string
+     */
+    public void replace(int offset, int length, String replacement) {
+        add(offset, length, stringPool.indexOf(replacement));
+    }
+
+    private void add(int offset, int length, int replacementIndex) {
+        if (size == offsets.length) {
+            final int newCapacity = 2 * size;
+            offsets = Arrays.copyOf(offsets, newCapacity);
+            lengths = Arrays.copyOf(lengths, newCapacity);
+            replacementIndexes = Arrays.copyOf(replacementIndexes, newCapacity);
+        }
+        offsets[size] = offset;
+        lengths[size] = length;
+        replacementIndexes[size] = replacementIndex;
+        size++;
+    }
+
+    /**
+     * Records all the edits of the provided source rewriter into the current instance.
+     *
+     * @param other the source rewriter whose edits must be recorded
+     */
+    public void addAll(SourceRewriter other) {
+        for (int i = 0; i < other.size; i++) {
+            if (other.replacementIndexes[i] == REMOVAL) {
+                remove(other.offsets[i], other.lengths[i]);
+            } else {
+                replace(other.offsets[i], other.lengths[i], other.stringPool.get(other.replacementIndexes[i]));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of edits recorded in this instance, including duplicate edits.
+     *
+     * @return the number of edits recorded in this instance
+     */
+    public int size() {
+        return size;
     }
 
     /**
      * Adds the edits contained in the current instance to the provided edits for the provided document.
+     * <p>
+     * Removals are added first, then replacements, each in the order they were first recorded.
+     * Duplicate removals of the same source location are only added once,
+     * and the last replacement recorded for a source location wins.
      *
      * @param document the document to edit
      * @param edits where to add edits
      */
     public void addEdits(IDocument document, TextEdit edits) {
-        for (SourceLocation loc : this.removals) {
-            edits.addChild(new DeleteEdit(loc.getStartPosition(), loc.getLength()));
+        final Set<Long> removedLocations = new HashSet<Long>();
+        final Map<Long, Integer> lastReplacements = new HashMap<Long, Integer>();
+        for (int i = 0; i < size; i++) {
+            final Long location = toLocation(i);
+            if (replacementIndexes[i] == REMOVAL) {
+                if (removedLocations.add(location)) {
+                    edits.addChild(new DeleteEdit(offsets[i], lengths[i]));
+                }
+            } else {
+                lastReplacements.put(location, i);
+            }
         }
-        for (Entry<SourceLocation, String> entry : this.replacements.entrySet()) {
-            SourceLocation loc = entry.getKey();
-            String replacement = entry.getValue();
-            edits.addChild(new ReplaceEdit(loc.getStartPosition(), loc.getLength(), replacement));
+        for (int i = 0; i < size && !lastReplacements.isEmpty(); i++) {
+            if (replacementIndexes[i] != REMOVAL) {
+                final Integer last = lastReplacements.remove(toLocation(i));
+                if (last != null) {
+                    final String replacement = stringPool.get(replacementIndexes[last]);
+                    edits.addChild(new ReplaceEdit(offsets[i], lengths[i], replacement));
+                }
+            }
         }
     }
+
+    private Long toLocation(int i) {
+        return ((long) offsets[i] << 32) | (lengths[i] & 0xFFFFFFFFL);
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import org.eclipse.jdt.core.compiler.ITerminalSymbols;
+
+/**
+ * Refactoring rule working on the token stream of the source code.
+ * <p>
+ * Such rules need neither an AST nor bindings: all the token rules are run in one single pass
+ * over the tokens of a source, see {@link TokenRefactorings}.
+ * <p>
+ * First, {@link #startScan(char[], SourceRewriter)} is called,
+ * then {@link #visitToken(int, int, int)} is called for each token, including whitespaces and comments,
+ * then {@link #endScan()} is called last.
+ */
+public interface TokenRefactoringRule extends RefactoringRule {
+
+    /**
+     * Starts scanning a new source.
+     *
+     * @param source the source to scan
+     * @param rewriter where to record the source edits
+     */
+    void startScan(char[] source, SourceRewriter rewriter);
+
+    /**
+     * Visits the next token of the source.
+     *
+     * @param tokenType the token type, one of the {@link ITerminalSymbols} constants
+     * @param startPosition the start position of the token in the source
+     * @param endPosition the end position of the token in the source, exclusive
+     */
+    void visitToken(int tokenType, int startPosition, int endPosition);
+
+    /** Ends scanning the current source. */
+    void endScan();
+}
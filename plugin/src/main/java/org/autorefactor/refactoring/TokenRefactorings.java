@@ -0,0 +1,118 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.List;
+
+import org.eclipse.jdt.core.ToolFactory;
+import org.eclipse.jdt.core.compiler.IScanner;
+import org.eclipse.jdt.core.compiler.ITerminalSymbols;
+import org.eclipse.jdt.core.compiler.InvalidInputException;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.TextEdit;
+
+/**
+ * Runs {@link TokenRefactoringRule}s over the token stream produced by the JDT scanner.
+ * <p>
+ * No AST is built and no bindings are resolved: the source is scanned once and each token
+ * is dispatched to all the rules. Apart from the source itself, memory use does not depend on the source size.
+ * <p>
+ * An instance of this class reuses the same scanner for all the sources it scans, so it is not thread-safe.
+ */
+public class TokenRefactorings {
+
+    private final IScanner scanner;
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param options the Java project options used to compile the project
+     */
+    public TokenRefactorings(JavaProjectOptions options) {
+        final Release release = options.getJavaSERelease();
+        final String level = release.getMajorVersion() + "." + release.getMinorVersion();
+        this.scanner = ToolFactory.createScanner(true, true, false, level, level);
+    }
+
+    /**
+     * Scans the provided source and returns the source edits recorded by the provided rules.
+     * <p>
+     * When the source cannot be tokenized, no edits are returned.
+     *
+     * @param source the source to scan
+     * @param rules the token rules to run
+     * @return the source edits recorded by the provided rules
+     */
+    public SourceRewriter getRefactorings(char[] source, List<TokenRefactoringRule> rules) {
+        final SourceRewriter rewriter = new SourceRewriter();
+        final SourceRewriter result = new SourceRewriter();
+        for (TokenRefactoringRule rule : rules) {
+            rule.startScan(source, rewriter);
+        }
+        scanner.setSource(source);
+        try {
+            int tokenType;
+            while ((tokenType = scanner.getNextToken()) != ITerminalSymbols.TokenNameEOF) {
+                final int startPosition = scanner.getCurrentTokenStartPosition();
+                final int endPosition = scanner.getCurrentTokenEndPosition() + 1;
+                for (TokenRefactoringRule rule : rules) {
+                    rule.visitToken(tokenType, startPosition, endPosition);
+                }
+            }
+            for (TokenRefactoringRule rule : rules) {
+                rule.endScan();
+            }
+            result.addAll(rewriter);
+        } catch (InvalidInputException e) {
+            // the source cannot be tokenized: leave it alone
+        }
+        return result;
+    }
+
+    /**
+     * Applies the provided rules to the provided document.
+     *
+     * @param document the document to refactor
+     * @param rules the token rules to run
+     * @return true if the document has been modified, false otherwise
+     * @throws BadLocationException if trying to access a non existing position
+     */
+    public boolean applyTo(IDocument document, List<TokenRefactoringRule> rules) throws BadLocationException {
+        if (rules.isEmpty()) {
+            return false;
+        }
+        final SourceRewriter rewriter = getRefactorings(document.get().toCharArray(), rules);
+        if (rewriter.size() == 0) {
+            return false;
+        }
+        final TextEdit edits = new MultiTextEdit();
+        rewriter.addEdits(document, edits);
+        Refactorings.applyEditsToDocument(edits, document);
+        return true;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ImportDeclaration;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+
+/**
+ * Decides how to refer to types from a compilation unit: by simple name when the type is or can be imported,
+ * by qualified name otherwise. Missing imports are added once per compilation unit.
+ */
+public class TypeNameDecider {
+    private final CompilationUnit astRoot;
+    private final ASTBuilder b;
+    private final Refactorings refactorings;
+    private final Map<String, String> typeNames = new HashMap<String, String>();
+    /** The imports added so far, with their index in the original imports list. */
+    private final Map<String, Integer> addedImports = new HashMap<String, Integer>();
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param astRoot the compilation unit where the types will be referenced
+     * @param b the builder used to create the names
+     * @param refactorings the refactorings where to add the missing imports
+     */
+    public TypeNameDecider(CompilationUnit astRoot, ASTBuilder b, Refactorings refactorings) {
+        this.astRoot = astRoot;
+        this.b = b;
+        this.refactorings = refactorings;
+    }
+
+    /**
+     * Returns a new name to use for referring to the provided type, adding an import if needed.
+     *
+     * @param qualifiedName the fully qualified name of a top level type
+     * @return a new simple name if the type is or could be imported, a new qualified name otherwise
+     */
+    public Name useType(String qualifiedName) {
+        String typeName = typeNames.get(qualifiedName);
+        if (typeName == null) {
+            typeName = decideTypeName(qualifiedName);
+            typeNames.put(qualifiedName, typeName);
+        }
+        return b.name(typeName.split("\\."));
+    }
+
+    private String decideTypeName(String qualifiedName) {
+        final int lastDot = qualifiedName.lastIndexOf('.');
+        final String packageName = qualifiedName.substring(0, lastDot);
+        final String simpleName = qualifiedName.substring(lastDot + 1);
+        if (declaresType(simpleName)) {
+            return qualifiedName;
+        } else if ("java.lang".equals(packageName)) {
+            return simpleName;
+        }
+
+        final List<ImportDeclaration> imports = imports(astRoot);
+        boolean isImported = false;
+        int importIndex = -1;
+        int lastImportIndex = -1;
+        for (int i = 0; i < imports.size(); i++) {
+            final ImportDeclaration id = imports.get(i);
+            final String importName = id.getName().getFullyQualifiedName();
+            if (id.isStatic()) {
+                continue;
+            }
+            lastImportIndex = i;
+            if (id.isOnDemand()) {
+                isImported |= packageName.equals(importName);
+            } else if (qualifiedName.equals(importName)) {
+                isImported = true;
+            } else if (importName.endsWith("." + simpleName)) {
+                // another type with the same simple name is already imported
+                return qualifiedName;
+            } else if (importIndex == -1 && importName.compareTo(qualifiedName) > 0) {
+                importIndex = i;
+            }
+        }
+        if (!isImported) {
+            addImport(qualifiedName, importIndex != -1 ? importIndex : lastImportIndex + 1);
+        }
+        return simpleName;
+    }
+
+    private void addImport(String qualifiedName, int index) {
+        // the index in the rewritten list must account for the imports already added before this one
+        int rewrittenIndex = index;
+        for (Map.Entry<String, Integer> entry : addedImports.entrySet()) {
+            if (entry.getValue() < index
+                    || (entry.getValue() == index && entry.getKey().compareTo(qualifiedName) < 0)) {
+                rewrittenIndex++;
+            }
+        }
+        addedImports.put(qualifiedName, index);
+
+        final ImportDeclaration id = astRoot.getAST().newImportDeclaration();
+        id.setName(b.name(qualifiedName.split("\\.")));
+        refactorings.insertAt(id, rewrittenIndex, CompilationUnit.IMPORTS_PROPERTY, astRoot);
+    }
+
+    private boolean declaresType(final String simpleName) {
+        final boolean[] result = new boolean[1];
+        astRoot.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(TypeDeclaration node) {
+                result[0] |= simpleName.equals(node.getName().getIdentifier());
+                return VISIT_SUBTREE;
+            }
+        });
+        return result[0];
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+/**
+ * Per-AST table of the well-known types used by the refactoring rules.
+ * <p>
+ * Each type binding met in the AST is classified only once: the qualified name of its erasure
+ * and the well-known types it is a subtype of are then memoized,
+ * so further type checks only compare binding identities and bits.
+ * <p>
+ * Type bindings can only be compared by identity when they come from the same AST,
+ * so one table is attached to each {@link CompilationUnit}.
+ * Like the AST it is attached to, this class is not thread-safe.
+ */
+public final class WellKnownTypes {
+
+    /** Memoized facts about one type binding erasure. */
+    private static final class TypeFacts {
+
+        private final String qualifiedName;
+        private final int index;
+        /** Bitset of the indexes of the well-known types this type is a subtype of. */
+        private long supertypes;
+        private boolean supertypesComputed;
+
+        private TypeFacts(String qualifiedName, int index) {
+            this.qualifiedName = qualifiedName;
+            this.index = index;
+        }
+    }
+
+    /** Key under which the table is stored into the {@link CompilationUnit} properties. */
+    private static final String PROPERTY_KEY = WellKnownTypes.class.getName();
+
+    /** No more than 64 names, so the supertypes of a type can be stored in a long bitset. */
+    private static final String[] NAMES = {
+        // primitive types
+        "boolean", "byte", "char", "short", "int", "long", "float", "double",
+        // java.lang
+        "java.lang.Object", "java.lang.String", "java.lang.StringBuffer", "java.lang.StringBuilder",
+        "java.lang.CharSequence", "java.lang.Appendable", "java.lang.Boolean", "java.lang.Byte",
+        "java.lang.Character", "java.lang.Short", "java.lang.Integer", "java.lang.Long",
+        "java.lang.Float", "java.lang.Double", "java.lang.Number", "java.lang.Class",
+        "java.lang.Iterable", "java.lang.Comparable", "java.lang.Cloneable", "java.lang.Throwable",
+        "java.lang.Exception", "java.lang.RuntimeException", "java.lang.Error",
+        "java.lang.NullPointerException", "java.lang.ArrayIndexOutOfBoundsException",
+        "java.lang.Override", "java.lang.SuppressWarnings",
+        // java.io
+        "java.io.Serializable",
+        // java.util
+        "java.util.Collection", "java.util.List", "java.util.Set", "java.util.Map",
+        "java.util.ArrayList", "java.util.LinkedList", "java.util.HashSet", "java.util.LinkedHashSet",
+        "java.util.TreeSet", "java.util.HashMap", "java.util.LinkedHashMap", "java.util.TreeMap",
+        "java.util.Vector", "java.util.Hashtable", "java.util.Iterator", "java.util.Collections",
+        "java.util.Arrays", "java.util.RandomAccess", "java.util.EnumMap", "java.util.EnumSet",
+        // java.math
+        "java.math.BigDecimal", "java.math.BigInteger",
+    };
+    private static final Map<String, Integer> INDEXES = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            INDEXES.put(NAMES[i], i);
+        }
+    }
+
+    private final AST ast;
+    private final ITypeBinding[] bindings = new ITypeBinding[NAMES.length];
+    private final Map<ITypeBinding, TypeFacts> facts = new IdentityHashMap<ITypeBinding, TypeFacts>();
+
+    private WellKnownTypes(AST ast) {
+        this.ast = ast;
+    }
+
+    /**
+     * Returns the table of well-known types for the AST containing the provided node.
+     *
+     * @param node a node of the AST
+     * @return the table of well-known types for the AST containing the provided node,
+     *         or null if the provided node is not attached to a {@link CompilationUnit}
+     */
+    public static WellKnownTypes of(ASTNode node) {
+        final ASTNode root = node.getRoot();
+        if (!(root instanceof CompilationUnit)) {
+            return null;
+        }
+        WellKnownTypes result = (WellKnownTypes) root.getProperty(PROPERTY_KEY);
+        if (result == null) {
+            result = new WellKnownTypes(root.getAST());
+            root.setProperty(PROPERTY_KEY, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the provided type binding is exactly one of the provided type.
+     *
+     * @param typeBinding the type binding to analyze
+     * @param oneOfQualifiedTypeNames
+     *          the type binding qualified name must be equal to one of these qualified type names
+     * @return true if the provided type binding is exactly one of the provided type, false otherwise
+     * @see ASTHelper#hasType(ITypeBinding, String...)
+     */
+    public boolean hasType(ITypeBinding typeBinding, String... oneOfQualifiedTypeNames) {
+        if (typeBinding == null) {
+            return false;
+        }
+        final TypeFacts typeFacts = getFacts(typeBinding.getErasure());
+        for (String qualifiedTypeName : oneOfQualifiedTypeNames) {
+            final Integer index = INDEXES.get(qualifiedTypeName);
+            if (index != null
+                    ? index == typeFacts.index
+                    : qualifiedTypeName.equals(typeFacts.qualifiedName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the provided type binding is an instance of the qualified type name.
+     *
+     * @param typeBinding the type binding to analyze
+     * @param qualifiedTypeName the qualified type name
+     * @return true if the provided type binding is an instance of the qualified type name, false otherwise
+     * @see ASTHelper#instanceOf(ITypeBinding, String)
+     */
+    public boolean instanceOf(ITypeBinding typeBinding, String qualifiedTypeName) {
+        if (typeBinding == null) {
+            return false;
+        }
+        final Integer index = INDEXES.get(qualifiedTypeName);
+        if (index == null) {
+            return ASTHelper.instanceOf(typeBinding, qualifiedTypeName);
+        }
+        return (getSupertypes(typeBinding.getErasure()) & (1L << index)) != 0;
+    }
+
+    /**
+     * Resolves and returns the type binding of the provided well-known type.
+     *
+     * @param qualifiedTypeName the qualified name of a type listed in this table
+     * @param node an expression from this AST with a resolved type binding,
+     *          used as a starting point to look up types which cannot be resolved from the AST
+     * @return the type binding of the provided well-known type
+     */
+    public ITypeBinding resolve(String qualifiedTypeName, Expression node) {
+        final Integer index = INDEXES.get(qualifiedTypeName);
+        if (index == null) {
+            return lookupType(node, qualifiedTypeName);
+        }
+        ITypeBinding typeBinding = bindings[index];
+        if (typeBinding == null) {
+            typeBinding = ast.resolveWellKnownType(qualifiedTypeName);
+            if (typeBinding == null) {
+                typeBinding = lookupType(node, qualifiedTypeName);
+            }
+            bindings[index] = typeBinding;
+        }
+        return typeBinding;
+    }
+
+    private TypeFacts getFacts(ITypeBinding erasure) {
+        TypeFacts result = facts.get(erasure);
+        if (result == null) {
+            final String qualifiedName = erasure.getQualifiedName();
+            final Integer index = INDEXES.get(qualifiedName);
+            result = new TypeFacts(qualifiedName, index != null ? index : -1);
+            facts.put(erasure, result);
+            if (index != null && bindings[index] == null) {
+                bindings[index] = erasure;
+            }
+        }
+        return result;
+    }
+
+    private long getSupertypes(ITypeBinding erasure) {
+        final TypeFacts typeFacts = getFacts(erasure);
+        if (!typeFacts.supertypesComputed) {
+            // mark it first to stop on (invalid) cyclic hierarchies
+            typeFacts.supertypesComputed = true;
+            long supertypes = typeFacts.index != -1 ? 1L << typeFacts.index : 0;
+            final ITypeBinding superclass = erasure.getSuperclass();
+            if (superclass != null) {
+                supertypes |= getSupertypes(superclass.getErasure());
+            }
+            for (ITypeBinding itfBinding : erasure.getInterfaces()) {
+                supertypes |= getSupertypes(itfBinding.getErasure());
+            }
+            typeFacts.supertypes = supertypes;
+        }
+        return typeFacts.supertypes;
+    }
+
+    /**
+     * FIXME Horribly brittle hack that uses reflection to resolve type bindings.
+     * <p>
+     * But how could I do otherwise?
+     * <p>
+     *
+     * @see org.eclipse.jdt.core.dom.DefaultBindingResolver#resolveWellKnownType(String)
+     */
+    private static ITypeBinding lookupType(Expression node, String fullyQualifiedName) {
+        try {
+            final ITypeBinding typeBinding = node.resolveTypeBinding();
+
+            final Field f1 = typeBinding.getClass().getDeclaredField("resolver");
+            f1.setAccessible(true);
+            Object bindingResolver = f1.get(typeBinding);
+
+            final Field f2 = bindingResolver.getClass().getDeclaredField("scope");
+            f2.setAccessible(true);
+            Object compilationUnitScope = f2.get(bindingResolver);
+
+            final Method m2 = compilationUnitScope.getClass().getSuperclass()
+                    .getDeclaredMethod("getType", char[][].class, int.class);
+            m2.setAccessible(true);
+            final char[][] simpleNamesArray = toSimpleNamesArray(fullyQualifiedName);
+            final Object internalTypeBinding =
+                    m2.invoke(compilationUnitScope, simpleNamesArray, 3);
+
+            final Method m1 = bindingResolver.getClass().getDeclaredMethod("getTypeBinding",
+                    internalTypeBinding.getClass().getSuperclass().getSuperclass());
+            m1.setAccessible(true);
+            return (ITypeBinding) m1.invoke(bindingResolver, internalTypeBinding);
+        } catch (Exception e) {
+            throw new UnhandledException(node, e);
+        }
+    }
+
+    private static char[][] toSimpleNamesArray(String fullyQualifiedName) {
+        final String[] simpleNames = fullyQualifiedName.split("\\.");
+        final char[][] result = new char[simpleNames.length][];
+        for (int i = 0; i < simpleNames.length; i++) {
+            result[i] = simpleNames[i].toCharArray();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.autorefactor.refactoring.SourceRewriter;
+import org.autorefactor.refactoring.TokenRefactoringRule;
+import org.autorefactor.refactoring.TokenRefactorings;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+
+/**
+ * Abstract class to extend when writing refactoring rules working on the token stream of the source code.
+ * <p>
+ * Such rules are normally run by {@link TokenRefactorings} without building any AST.
+ * They can still run along the AST based refactoring rules, in which case the source of the visited
+ * {@link CompilationUnit} is scanned.
+ */
+public abstract class AbstractTokenRefactoringRule extends AbstractRefactoringRule implements TokenRefactoringRule {
+
+    /** The source being scanned. */
+    protected char[] source;
+    /** Where to record the source edits. */
+    protected SourceRewriter rewriter;
+
+    /** {@inheritDoc} */
+    @Override
+    public void startScan(char[] source, SourceRewriter rewriter) {
+        this.source = source;
+        this.rewriter = rewriter;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endScan() {
+        // nothing to do by default
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean visit(CompilationUnit node) {
+        final List<TokenRefactoringRule> rules = Collections.<TokenRefactoringRule> singletonList(this);
+        final SourceRewriter edits = new TokenRefactorings(ctx.getJavaProjectOptions())
+                .getRefactorings(ctx.getSource(node).toCharArray(), rules);
+        this.source = null;
+        this.rewriter = null;
+        if (edits.size() > 0) {
+            ctx.getRefactorings().addAll(edits);
+            return DO_NOT_VISIT_SUBTREE;
+        }
+        return VISIT_SUBTREE;
+    }
+
+    /**
+     * Returns whether the provided range of the source is equal to the provided string.
+     *
+     * @param start the start position of the range, inclusive
+     * @param end the end position of the range, exclusive
+     * @param s the string to compare
+     * @return true if the provided range of the source is equal to the provided string, false otherwise
+     */
+    protected boolean sourceEquals(int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (source[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
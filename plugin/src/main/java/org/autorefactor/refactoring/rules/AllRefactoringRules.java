@@ -70,15 +70,16 @@ public final class AllRefactoringRules {
                 new WorkWithNullCheckedExpressionFirstRefactoring(),
                 new VectorOldToNewAPIRefactoring(),
                 new PrimitiveWrapperCreationRefactoring(),
+                new UnboxedAccumulatorRefactoring(),
                 new BooleanRefactoring(),
                 new AddBracketsToControlStatementRefactoring(),
                 new InvertEqualsRefactoring(),
                 new SimplifyExpressionRefactoring(),
                 new RemoveUnneededThisExpressionRefactoring(),
                 new StringRefactoring(),
+                new RegexPatternRefactoring(),
                 new BigDecimalRefactoring(),
-                // TODO JNR implement
-                // new ForeachRefactoring(),
+                new ForeachRefactoring(),
                 new DeadCodeEliminationRefactoring(),
                 new CollapseIfStatementRefactoring(),
                 new CommonCodeInIfElseStatementRefactoring(),
@@ -87,6 +88,8 @@ public final class AllRefactoringRules {
                 new UseDiamondOperatorRefactoring(),
                 new UseMultiCatchRefactoring(),
                 new CollectionRefactoring(),
+                new CollectionPresizingRefactoring(),
+                new EnumCollectionRefactoring(),
                 new NoAssignmentInIfConditionRefactoring(),
                 new IfElseIfRefactoring(),
                 new CommonIfInIfElseRefactoring(),
@@ -95,6 +98,7 @@ public final class AllRefactoringRules {
                 // TODO JNR - to be completed
                 // new ReduceVariableScopeRefactoring(),
                 new StringBuilderRefactoring(),
+                new UnsynchronizedLocalObjectRefactoring(),
                 new UseStringContainsRefactoring(),
                 new PushNegationDownRefactoring(),
                 new CommentsRefactoring(),
@@ -103,6 +107,7 @@ public final class AllRefactoringRules {
                 new RemoveUnnecessaryCastRefactoring(),
                 new RemoveUselessModifiersRefactoring(),
                 new HotSpotIntrinsicedAPIsRefactoring(),
+                new BitManipulationRefactoring(),
                 new AnnotationRefactoring(),
                 new RemoveSemiColonRefactoring(),
                 // FIXME it would be nice if it was only enabled when testng jar is detected for the project
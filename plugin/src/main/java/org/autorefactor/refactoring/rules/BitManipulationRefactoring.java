@@ -0,0 +1,865 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.Refactorings;
+import org.eclipse.jdt.core.dom.ASTMatcher;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.EmptyStatement;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.IfStatement;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.eclipse.jdt.core.dom.WhileStatement;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.eclipse.jdt.core.dom.ASTNode.*;
+import static org.eclipse.jdt.core.dom.Assignment.Operator.*;
+import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
+
+/**
+ * See {@link #getDescription()} method.
+ * <p>
+ * Expressions combining shifts and masks of the same variable are evaluated symbolically into a bit permutation,
+ * telling for each bit of the result which bit of the variable it comes from.
+ * Rotations, bit reversal and byte reversal are then recognized from the permutation,
+ * whatever the order of the operands and whether they are combined with {@code |}, {@code ^} or {@code +}.
+ */
+@SuppressWarnings("javadoc")
+public class BitManipulationRefactoring extends AbstractRefactoringRule {
+
+    /** Marks a bit of the result which is always zero. */
+    private static final int ZERO = -1;
+
+    /** Describes a test of the bit of a variable at an index given by a loop variable. */
+    private static final class BitTest {
+        /** The tested variable. */
+        private Expression operand;
+        /** Whether the tested bit is counted from the most significant bit, rather than from the least one. */
+        private boolean fromMostSignificantBit;
+        /** Whether the bit test evaluates to 0 or 1, rather than to 0 or the bit mask. */
+        private boolean isZeroOrOne;
+        /** The number of bits of the tested variable. */
+        private int width;
+    }
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Replaces hand-rolled bit manipulation idioms (population count loops, leading and trailing zeros scans,"
+            + " rotations, bit reversal and byte reversal) with the equivalent Integer or Long methods,"
+            + " which HotSpot compiles to single CPU instructions.";
+    }
+
+    @Override
+    public String getName() {
+        return "Bit manipulation intrinsics";
+    }
+
+    @Override
+    public boolean visit(InfixExpression node) {
+        final int width = getWidth(node);
+        if (width == 0 || !isBitCombination(node)) {
+            return VISIT_SUBTREE;
+        }
+        Expression replacement = rotateByVariable(node, width);
+        if (replacement == null) {
+            replacement = replaceBitPermutation(node, width);
+        }
+        if (replacement != null) {
+            ASTNode toReplace = node;
+            while (toReplace.getParent() instanceof ParenthesizedExpression) {
+                toReplace = toReplace.getParent();
+            }
+            this.ctx.getRefactorings().replace(toReplace, replacement);
+            return DO_NOT_VISIT_SUBTREE;
+        }
+        return VISIT_SUBTREE;
+    }
+
+    private boolean isBitCombination(InfixExpression node) {
+        switch (OperatorEnum.getOperator(node)) {
+        case INFIX_BIT_OR:
+        case INFIX_BIT_XOR:
+        case INFIX_PLUS:
+            return true;
+
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Replaces {@code (x << n) | (x >>> -n)} and {@code (x << n) | (x >>> (32 - n))} with
+     * {@code Integer.rotateLeft(x, n)}, and the symmetric expressions with {@code Integer.rotateRight(x, n)}.
+     * Only {@code |} is accepted here: when {@code n} is zero, both shifted values are equal to {@code x}.
+     */
+    private Expression rotateByVariable(InfixExpression node, int width) {
+        if (!hasOperator(node, OR) || node.hasExtendedOperands()) {
+            return null;
+        }
+        final InfixExpression left = asShift(node.getLeftOperand());
+        final InfixExpression right = asShift(node.getRightOperand());
+        if (left == null || right == null
+                || !match(new ASTMatcher(), left.getLeftOperand(), right.getLeftOperand())
+                || !isSideEffectFree(left.getLeftOperand())) {
+            return null;
+        }
+        final String methodName;
+        final InfixExpression shift;
+        final InfixExpression reverseShift;
+        if (hasOperator(left, LEFT_SHIFT) && hasOperator(right, RIGHT_SHIFT_UNSIGNED)) {
+            methodName = "rotateLeft";
+            shift = left;
+            reverseShift = right;
+        } else if (hasOperator(left, RIGHT_SHIFT_UNSIGNED) && hasOperator(right, LEFT_SHIFT)) {
+            methodName = "rotateRight";
+            shift = left;
+            reverseShift = right;
+        } else {
+            return null;
+        }
+        final Expression distance = shift.getRightOperand();
+        if (!isSideEffectFree(distance)
+                // the rotate methods take an int distance
+                || !hasType(distance, "int", "short", "char", "byte")
+                || !isNegatedDistance(reverseShift.getRightOperand(), distance, width)) {
+            return null;
+        }
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        return b.invoke(getTypeName(width), methodName, b.copy(shift.getLeftOperand()), b.copy(distance));
+    }
+
+    private InfixExpression asShift(Expression expr) {
+        final InfixExpression ie = as(expr, InfixExpression.class);
+        if (ie != null
+                && !ie.hasExtendedOperands()
+                && (hasOperator(ie, LEFT_SHIFT) || hasOperator(ie, RIGHT_SHIFT_UNSIGNED))) {
+            return ie;
+        }
+        return null;
+    }
+
+    /** Returns whether the provided expression is {@code -distance} or {@code 32 - distance} modulo the width. */
+    private boolean isNegatedDistance(Expression expr, Expression distance, int width) {
+        final Expression e = removeParentheses(expr);
+        if (e instanceof PrefixExpression) {
+            final PrefixExpression pe = (PrefixExpression) e;
+            return hasOperator(pe, PrefixExpression.Operator.MINUS)
+                    && match(new ASTMatcher(), removeParentheses(pe.getOperand()), removeParentheses(distance));
+        } else if (e instanceof InfixExpression) {
+            final InfixExpression ie = (InfixExpression) e;
+            final Long value = getConstant(ie.getLeftOperand());
+            return hasOperator(ie, MINUS)
+                    && !ie.hasExtendedOperands()
+                    && value != null
+                    && value % width == 0
+                    && match(new ASTMatcher(), removeParentheses(ie.getRightOperand()), removeParentheses(distance));
+        }
+        return false;
+    }
+
+    private Expression replaceBitPermutation(InfixExpression node, int width) {
+        final Expression operand = findOperand(node);
+        if (operand == null || !isSideEffectFree(operand) || getWidth(operand) != width) {
+            return null;
+        }
+        final int[] bits = getBits(node, operand, width);
+        if (bits == null) {
+            return null;
+        }
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final String typeName = getTypeName(width);
+        if (isByteReversal(bits)) {
+            return b.invoke(typeName, "reverseBytes", b.copy(operand));
+        } else if (isBitReversal(bits)) {
+            return b.invoke(typeName, "reverse", b.copy(operand));
+        }
+        final int distance = getRotationDistance(bits);
+        if (distance == 0) {
+            return null;
+        } else if (OperatorEnum.getOperator(removeParentheses(node.getLeftOperand()))
+                == OperatorEnum.INFIX_RIGHT_SHIFT_UNSIGNED) {
+            return b.invoke(typeName, "rotateRight", b.copy(operand), b.int0(width - distance));
+        }
+        return b.invoke(typeName, "rotateLeft", b.copy(operand), b.int0(distance));
+    }
+
+    /** Returns the first operand of the provided expression which is neither a constant, nor a bit operation. */
+    private Expression findOperand(Expression expr) {
+        final Expression e = removeParentheses(expr);
+        if (getConstant(e) != null) {
+            return null;
+        } else if (e instanceof InfixExpression && getBitOperator(e) != null) {
+            for (Expression operand : allOperands((InfixExpression) e)) {
+                final Expression result = findOperand(operand);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        }
+        return e;
+    }
+
+    private OperatorEnum getBitOperator(Expression e) {
+        final OperatorEnum operator = OperatorEnum.getOperator(e);
+        if (operator == null) {
+            return null;
+        }
+        switch (operator) {
+        case INFIX_LEFT_SHIFT:
+        case INFIX_RIGHT_SHIFT_SIGNED:
+        case INFIX_RIGHT_SHIFT_UNSIGNED:
+        case INFIX_BIT_AND:
+        case INFIX_BIT_OR:
+        case INFIX_BIT_XOR:
+        case INFIX_PLUS:
+            return operator;
+
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Returns, for each bit of the value of the provided expression, the index of the bit of the operand
+     * it comes from, or {@link #ZERO}. Returns null if the expression is not a bit permutation of the operand.
+     */
+    private int[] getBits(Expression expr, Expression operand, int width) {
+        final Expression e = removeParentheses(expr);
+        if (match(new ASTMatcher(), e, operand)) {
+            final int[] results = new int[width];
+            for (int i = 0; i < width; i++) {
+                results[i] = i;
+            }
+            return results;
+        }
+        final OperatorEnum operator = getBitOperator(e);
+        if (!(e instanceof InfixExpression) || operator == null) {
+            return null;
+        }
+        final List<Expression> operands = allOperands((InfixExpression) e);
+        switch (operator) {
+        case INFIX_LEFT_SHIFT:
+        case INFIX_RIGHT_SHIFT_SIGNED:
+        case INFIX_RIGHT_SHIFT_UNSIGNED:
+            int[] bits = getBits(operands.get(0), operand, width);
+            for (int i = 1; i < operands.size() && bits != null; i++) {
+                final Long distance = getConstant(operands.get(i));
+                bits = distance != null ? shift(bits, operator, (int) (distance & (width - 1))) : null;
+            }
+            return bits;
+
+        case INFIX_BIT_AND:
+            return mask(operands, operand, width);
+
+        default: // disjoint bits, so no carries and no cancellations
+            final int[] results = new int[width];
+            Arrays.fill(results, ZERO);
+            for (Expression op : operands) {
+                final int[] opBits = getBits(op, operand, width);
+                if (opBits == null) {
+                    return null;
+                }
+                for (int i = 0; i < width; i++) {
+                    if (opBits[i] != ZERO) {
+                        if (results[i] != ZERO) {
+                            return null;
+                        }
+                        results[i] = opBits[i];
+                    }
+                }
+            }
+            return results;
+        }
+    }
+
+    private int[] shift(int[] bits, OperatorEnum operator, int distance) {
+        final int width = bits.length;
+        final int[] results = new int[width];
+        for (int i = 0; i < width; i++) {
+            if (operator == OperatorEnum.INFIX_LEFT_SHIFT) {
+                results[i] = i >= distance ? bits[i - distance] : ZERO;
+            } else if (i + distance < width) {
+                results[i] = bits[i + distance];
+            } else {
+                // the signed right shift copies the sign bit
+                results[i] = operator == OperatorEnum.INFIX_RIGHT_SHIFT_SIGNED ? bits[width - 1] : ZERO;
+            }
+        }
+        return results;
+    }
+
+    private int[] mask(List<Expression> operands, Expression operand, int width) {
+        long mask = -1;
+        int[] bits = null;
+        for (Expression op : operands) {
+            final Long value = getConstant(op);
+            if (value != null) {
+                mask &= value;
+            } else if (bits == null) {
+                bits = getBits(op, operand, width);
+                if (bits == null) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        if (bits != null) {
+            for (int i = 0; i < width; i++) {
+                if ((mask & (1L << i)) == 0) {
+                    bits[i] = ZERO;
+                }
+            }
+        }
+        return bits;
+    }
+
+    private boolean isByteReversal(int[] bits) {
+        final int width = bits.length;
+        for (int i = 0; i < width; i++) {
+            if (bits[i] != width - 8 - (i & ~7) + (i & 7)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isBitReversal(int[] bits) {
+        final int width = bits.length;
+        for (int i = 0; i < width; i++) {
+            if (bits[i] != width - 1 - i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the distance of the left rotation described by the provided bits, 0 if they are not a rotation. */
+    private int getRotationDistance(int[] bits) {
+        final int width = bits.length;
+        if (bits[0] == ZERO) {
+            return 0;
+        }
+        final int distance = (width - bits[0]) % width;
+        for (int i = 0; i < width; i++) {
+            if (bits[i] != (i - distance + width) % width) {
+                return 0;
+            }
+        }
+        return distance;
+    }
+
+    @Override
+    public boolean visit(WhileStatement node) {
+        final List<Statement> stmts = asList(node.getBody());
+        if (stmts.size() == 1) {
+            final IVariableBinding counter = getIncrementedVariable(stmts.get(0));
+            return maybeReplaceZerosScan(node, node.getExpression(), counter, null);
+        } else if (stmts.size() == 2) {
+            return maybeReplacePopulationCountLoop(node, stmts.get(0), stmts.get(1));
+        }
+        return VISIT_SUBTREE;
+    }
+
+    @Override
+    public boolean visit(ForStatement node) {
+        final List<Expression> initializers = initializers(node);
+        final List<Expression> updaters = updaters(node);
+        if (updaters.size() != 1 || initializers.size() > 1 || node.getExpression() == null) {
+            return VISIT_SUBTREE;
+        }
+        final IVariableBinding index = getIncrementedVariable(updaters.get(0));
+        if (isEmpty(node.getBody())) {
+            final Expression init = initializers.isEmpty() ? null : initializers.get(0);
+            return maybeReplaceZerosScan(node, node.getExpression(), index, init);
+        }
+        final List<Statement> stmts = asList(node.getBody());
+        if (index != null && stmts.size() == 1 && initializers.size() == 1 && isDeclaredAsZero(initializers.get(0))) {
+            return maybeReplaceBitTestLoop(node, index, stmts.get(0));
+        }
+        return VISIT_SUBTREE;
+    }
+
+    private boolean isEmpty(Statement stmt) {
+        return stmt instanceof EmptyStatement
+                || (stmt instanceof Block && statements((Block) stmt).isEmpty());
+    }
+
+    private boolean isDeclaredAsZero(Expression init) {
+        if (init instanceof VariableDeclarationExpression) {
+            final VariableDeclarationExpression vde = (VariableDeclarationExpression) init;
+            if (fragments(vde).size() == 1) {
+                final VariableDeclarationFragment vdf = fragments(vde).get(0);
+                return vdf.getInitializer() != null && isConstant(vdf.getInitializer(), 0);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces {@code while (n < 32 && (x & (1 << n)) == 0) n++;} scans, starting from zero,
+     * with {@code Integer.numberOfTrailingZeros(x)} or {@code Integer.numberOfLeadingZeros(x)}.
+     * The bound makes the loop return 32 when {@code x} is zero, like the intrinsics.
+     */
+    private boolean maybeReplaceZerosScan(Statement loop, Expression condition, IVariableBinding counter,
+            Expression init) {
+        final InfixExpression ie = as(condition, InfixExpression.class);
+        if (counter == null
+                || !isPrimitive(counter.getType(), "int")
+                || ie == null
+                || !hasOperator(ie, CONDITIONAL_AND)
+                || ie.hasExtendedOperands()) {
+            return VISIT_SUBTREE;
+        }
+        final BitTest bitTest = getBitTest(getTestedExpression(ie.getRightOperand(), EQUALS), counter);
+        if (bitTest == null || !isBound(ie.getLeftOperand(), counter, bitTest.width)) {
+            return VISIT_SUBTREE;
+        }
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final String methodName = bitTest.fromMostSignificantBit ? "numberOfLeadingZeros" : "numberOfTrailingZeros";
+        final Expression value = b.invoke(getTypeName(bitTest.width), methodName, b.copy(bitTest.operand));
+        if (init != null) {
+            final Assignment as = as(init, Assignment.class);
+            if (as != null
+                    && hasOperator(as, ASSIGN)
+                    && isVariable(as.getLeftHandSide(), counter)
+                    && isConstant(as.getRightHandSide(), 0)) {
+                this.ctx.getRefactorings().replace(loop,
+                        b.toStmt(b.assign(b.copy(as.getLeftHandSide()), ASSIGN, value)));
+                return DO_NOT_VISIT_SUBTREE;
+            }
+            return VISIT_SUBTREE;
+        }
+        return replaceCounterLoop(loop, counter, value, false);
+    }
+
+    /**
+     * Replaces loops testing each bit of a variable, like
+     * {@code for (int i = 0; i < 32; i++) if ((x & (1 << i)) != 0) count++;},
+     * with {@code count += Integer.bitCount(x);}.
+     */
+    private boolean maybeReplaceBitTestLoop(ForStatement node, IVariableBinding index, Statement body) {
+        final BitTest bitTest;
+        final IVariableBinding counter;
+        final IfStatement is = as(body, IfStatement.class);
+        if (is != null) {
+            final List<Statement> thenStmts = asList(is.getThenStatement());
+            if (is.getElseStatement() != null || thenStmts.size() != 1) {
+                return VISIT_SUBTREE;
+            }
+            bitTest = getBitTest(getTestedExpression(is.getExpression(), NOT_EQUALS), index);
+            counter = getIncrementedVariable(thenStmts.get(0));
+        } else {
+            final Assignment as = asExpression(body, Assignment.class);
+            if (as == null || !hasOperator(as, PLUS_ASSIGN)) {
+                return VISIT_SUBTREE;
+            }
+            final BitTest test = getBitTest(as.getRightHandSide(), index);
+            bitTest = test != null && test.isZeroOrOne ? test : null;
+            counter = getVariableBinding(as.getLeftHandSide());
+        }
+        if (bitTest == null
+                || !isCounter(counter)
+                || counter.equals(index)
+                || !isBound(node.getExpression(), index, bitTest.width)) {
+            return VISIT_SUBTREE;
+        }
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        return replaceCounterLoop(node, counter,
+                b.invoke(getTypeName(bitTest.width), "bitCount", b.copy(bitTest.operand)), true);
+    }
+
+    /**
+     * Replaces {@code while (x != 0) { x &= x - 1; count++; }} and
+     * {@code while (x != 0) { count += x & 1; x >>>= 1; }} with {@code count += Integer.bitCount(x);}.
+     * These loops clear {@code x}, so it must not be read after the loop.
+     */
+    private boolean maybeReplacePopulationCountLoop(WhileStatement node, Statement stmt1, Statement stmt2) {
+        final Expression operand = getTestedExpression(node.getExpression(), NOT_EQUALS);
+        final IVariableBinding operandVar = getVariableBinding(operand);
+        final int width = getWidth(operand);
+        if (operandVar == null || operandVar.isField() || width == 0) {
+            return VISIT_SUBTREE;
+        }
+        IVariableBinding counter = null;
+        if (isClearingLowestSetBit(stmt1, operand)) {
+            counter = getIncrementedVariable(stmt2);
+        } else if (isClearingLowestSetBit(stmt2, operand)) {
+            counter = getIncrementedVariable(stmt1);
+        } else if (isShiftingRightByOne(stmt2, operand)) {
+            // the lowest bit must be counted before it is shifted out
+            counter = getLowestBitCounter(stmt1, operand);
+        }
+        if (!isCounter(counter) || counter.equals(operandVar) || isUsedAfter(node, operandVar)) {
+            return VISIT_SUBTREE;
+        }
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        return replaceCounterLoop(node, counter, b.invoke(getTypeName(width), "bitCount", b.copy(operand)), true);
+    }
+
+    /** Returns whether the provided statement is {@code x &= x - 1;} or {@code x = x & (x - 1);}. */
+    private boolean isClearingLowestSetBit(Statement stmt, Expression operand) {
+        final Assignment as = asExpression(stmt, Assignment.class);
+        if (as == null || !isSameOperand(as.getLeftHandSide(), operand)) {
+            return false;
+        } else if (hasOperator(as, BIT_AND_ASSIGN)) {
+            return isDecrementOf(as.getRightHandSide(), operand);
+        } else if (hasOperator(as, ASSIGN)) {
+            final InfixExpression ie = as(as.getRightHandSide(), InfixExpression.class);
+            return ie != null
+                    && hasOperator(ie, AND)
+                    && !ie.hasExtendedOperands()
+                    && ((isSameOperand(ie.getLeftOperand(), operand) && isDecrementOf(ie.getRightOperand(), operand))
+                        || (isDecrementOf(ie.getLeftOperand(), operand)
+                            && isSameOperand(ie.getRightOperand(), operand)));
+        }
+        return false;
+    }
+
+    private boolean isDecrementOf(Expression expr, Expression operand) {
+        final InfixExpression ie = as(expr, InfixExpression.class);
+        return ie != null
+                && hasOperator(ie, MINUS)
+                && !ie.hasExtendedOperands()
+                && isSameOperand(ie.getLeftOperand(), operand)
+                && isConstant(ie.getRightOperand(), 1);
+    }
+
+    /** Returns whether the provided statement is {@code x >>>= 1;} or {@code x = x >>> 1;}. */
+    private boolean isShiftingRightByOne(Statement stmt, Expression operand) {
+        final Assignment as = asExpression(stmt, Assignment.class);
+        if (as == null || !isSameOperand(as.getLeftHandSide(), operand)) {
+            return false;
+        } else if (hasOperator(as, RIGHT_SHIFT_UNSIGNED_ASSIGN)) {
+            return isConstant(as.getRightHandSide(), 1);
+        } else if (hasOperator(as, ASSIGN)) {
+            final InfixExpression ie = as(as.getRightHandSide(), InfixExpression.class);
+            return ie != null
+                    && hasOperator(ie, RIGHT_SHIFT_UNSIGNED)
+                    && !ie.hasExtendedOperands()
+                    && isSameOperand(ie.getLeftOperand(), operand)
+                    && isConstant(ie.getRightOperand(), 1);
+        }
+        return false;
+    }
+
+    /** Returns the counter of {@code count += x & 1;} or {@code if ((x & 1) != 0) count++;}. */
+    private IVariableBinding getLowestBitCounter(Statement stmt, Expression operand) {
+        final IfStatement is = as(stmt, IfStatement.class);
+        if (is != null) {
+            final List<Statement> thenStmts = asList(is.getThenStatement());
+            if (is.getElseStatement() == null
+                    && thenStmts.size() == 1
+                    && isLowestBit(getTestedExpression(is.getExpression(), NOT_EQUALS), operand)) {
+                return getIncrementedVariable(thenStmts.get(0));
+            }
+            return null;
+        }
+        final Assignment as = asExpression(stmt, Assignment.class);
+        if (as != null && hasOperator(as, PLUS_ASSIGN) && isLowestBit(as.getRightHandSide(), operand)) {
+            return getVariableBinding(as.getLeftHandSide());
+        }
+        return null;
+    }
+
+    private boolean isLowestBit(Expression expr, Expression operand) {
+        final InfixExpression ie = as(expr, InfixExpression.class);
+        return ie != null
+                && hasOperator(ie, AND)
+                && !ie.hasExtendedOperands()
+                && ((isSameOperand(ie.getLeftOperand(), operand) && isConstant(ie.getRightOperand(), 1))
+                    || (isConstant(ie.getLeftOperand(), 1) && isSameOperand(ie.getRightOperand(), operand)));
+    }
+
+    /**
+     * Replaces the provided loop computing the provided counter from zero with the provided value.
+     * The counter initialization just before the loop is reused when possible.
+     *
+     * @return {@link #DO_NOT_VISIT_SUBTREE} if the loop was replaced, {@link #VISIT_SUBTREE} otherwise
+     */
+    private boolean replaceCounterLoop(Statement loop, IVariableBinding counter, Expression value,
+            boolean canAccumulate) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final Statement previousStmt = getPreviousSibling(loop);
+        final VariableDeclarationStatement vds = as(previousStmt, VariableDeclarationStatement.class);
+        final Assignment as = asExpression(previousStmt, Assignment.class);
+        if (vds != null && fragments(vds).size() == 1) {
+            final VariableDeclarationFragment vdf = fragments(vds).get(0);
+            if (counter.equals(vdf.resolveBinding())
+                    && vdf.getInitializer() != null
+                    && isConstant(vdf.getInitializer(), 0)) {
+                r.replace(vdf.getInitializer(), value);
+                r.remove(loop);
+                return DO_NOT_VISIT_SUBTREE;
+            }
+        } else if (as != null
+                && hasOperator(as, ASSIGN)
+                && isVariable(as.getLeftHandSide(), counter)
+                && isConstant(as.getRightHandSide(), 0)) {
+            r.replace(as.getRightHandSide(), value);
+            r.remove(loop);
+            return DO_NOT_VISIT_SUBTREE;
+        }
+        if (canAccumulate) {
+            r.replace(loop, b.toStmt(b.assign(b.simpleName(counter.getName()), PLUS_ASSIGN, value)));
+            return DO_NOT_VISIT_SUBTREE;
+        }
+        return VISIT_SUBTREE;
+    }
+
+    /** Returns {@code e} when the provided expression is {@code e != 0} or {@code 0 != e} (resp. {@code ==}). */
+    private Expression getTestedExpression(Expression expr, InfixExpression.Operator operator) {
+        final InfixExpression ie = as(expr, InfixExpression.class);
+        if (ie == null || !hasOperator(ie, operator) || ie.hasExtendedOperands()) {
+            return null;
+        } else if (isConstant(ie.getRightOperand(), 0)) {
+            return ie.getLeftOperand();
+        } else if (isConstant(ie.getLeftOperand(), 0)) {
+            return ie.getRightOperand();
+        }
+        return null;
+    }
+
+    /**
+     * Recognizes {@code x & (1 << i)}, {@code (x >>> i) & 1}, {@code x & (0x80000000 >>> i)},
+     * {@code x & (1 << (31 - i))} and {@code (x >>> (31 - i)) & 1}, in any operand order.
+     */
+    private BitTest getBitTest(Expression expr, IVariableBinding index) {
+        final InfixExpression ie = as(expr, InfixExpression.class);
+        if (ie == null || !hasOperator(ie, AND) || ie.hasExtendedOperands()) {
+            return null;
+        }
+        final int width = getWidth(ie);
+        final Expression[] operands = { ie.getLeftOperand(), ie.getRightOperand() };
+        for (int i = 0; i < 2; i++) {
+            final Expression operand = removeParentheses(operands[i]);
+            final Expression other = removeParentheses(operands[1 - i]);
+            final BitTest result = new BitTest();
+            result.width = width;
+            Boolean fromMostSignificantBit = null;
+            final InfixExpression mask = as(other, InfixExpression.class);
+            final InfixExpression shift = as(operand, InfixExpression.class);
+            if (mask != null && !mask.hasExtendedOperands() && getWidth(mask) == width) {
+                final Long value = getConstant(mask.getLeftOperand());
+                if (value != null && value == 1 && hasOperator(mask, LEFT_SHIFT)) {
+                    fromMostSignificantBit = getIndexDirection(mask.getRightOperand(), index, width);
+                } else if (value != null && value == getMinValue(width)
+                        && hasOperator(mask, RIGHT_SHIFT_UNSIGNED)
+                        && isVariable(mask.getRightOperand(), index)) {
+                    fromMostSignificantBit = true;
+                }
+                result.operand = operand;
+            } else if (isConstant(other, 1)
+                    && shift != null
+                    && !shift.hasExtendedOperands()
+                    && getWidth(shift) == width
+                    && (hasOperator(shift, RIGHT_SHIFT_UNSIGNED) || hasOperator(shift, RIGHT_SHIFT_SIGNED))) {
+                fromMostSignificantBit = getIndexDirection(shift.getRightOperand(), index, width);
+                result.operand = removeParentheses(shift.getLeftOperand());
+                result.isZeroOrOne = true;
+            }
+            if (fromMostSignificantBit != null
+                    && getWidth(result.operand) == width
+                    && isSideEffectFree(result.operand)
+                    && !isUsing(result.operand, index)) {
+                result.fromMostSignificantBit = fromMostSignificantBit;
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /** Returns false for {@code i}, true for {@code 31 - i}, null otherwise. */
+    private Boolean getIndexDirection(Expression expr, IVariableBinding index, int width) {
+        final Expression e = removeParentheses(expr);
+        if (isVariable(e, index)) {
+            return false;
+        }
+        final InfixExpression ie = as(e, InfixExpression.class);
+        if (ie != null
+                && hasOperator(ie, MINUS)
+                && !ie.hasExtendedOperands()
+                && isConstant(ie.getLeftOperand(), width - 1)
+                && isVariable(ie.getRightOperand(), index)) {
+            return true;
+        }
+        return null;
+    }
+
+    /** Returns whether the provided expression is {@code i < 32}, {@code i <= 31} or their reverse. */
+    private boolean isBound(Expression expr, IVariableBinding index, int width) {
+        final InfixExpression ie = as(expr, InfixExpression.class);
+        if (ie == null || ie.hasExtendedOperands()) {
+            return false;
+        }
+        final Expression left = ie.getLeftOperand();
+        final Expression right = ie.getRightOperand();
+        return (hasOperator(ie, LESS) && isVariable(left, index) && isConstant(right, width))
+                || (hasOperator(ie, LESS_EQUALS) && isVariable(left, index) && isConstant(right, width - 1))
+                || (hasOperator(ie, GREATER) && isConstant(left, width) && isVariable(right, index))
+                || (hasOperator(ie, GREATER_EQUALS) && isConstant(left, width - 1) && isVariable(right, index));
+    }
+
+    /** Returns the variable of {@code i++}, {@code ++i} or {@code i += 1}, or null. */
+    private IVariableBinding getIncrementedVariable(Statement stmt) {
+        final Expression e = asExpression(stmt, Expression.class);
+        return e != null ? getIncrementedVariable(e) : null;
+    }
+
+    private IVariableBinding getIncrementedVariable(Expression e) {
+        if (e instanceof PostfixExpression) {
+            final PostfixExpression pe = (PostfixExpression) e;
+            if (hasOperator(pe, PostfixExpression.Operator.INCREMENT)) {
+                return getVariableBinding(pe.getOperand());
+            }
+        } else if (e instanceof PrefixExpression) {
+            final PrefixExpression pe = (PrefixExpression) e;
+            if (hasOperator(pe, PrefixExpression.Operator.INCREMENT)) {
+                return getVariableBinding(pe.getOperand());
+            }
+        } else if (e instanceof Assignment) {
+            final Assignment as = (Assignment) e;
+            if (hasOperator(as, PLUS_ASSIGN) && isConstant(as.getRightHandSide(), 1)) {
+                return getVariableBinding(as.getLeftHandSide());
+            }
+        }
+        return null;
+    }
+
+    private boolean isCounter(IVariableBinding counter) {
+        return counter != null
+                && !counter.isField()
+                && (isPrimitive(counter.getType(), "int") || isPrimitive(counter.getType(), "long"));
+    }
+
+    private IVariableBinding getVariableBinding(Expression expr) {
+        final Expression e = expr != null ? removeParentheses(expr) : null;
+        if (e instanceof SimpleName) {
+            final IBinding binding = ((SimpleName) e).resolveBinding();
+            if (binding instanceof IVariableBinding) {
+                return (IVariableBinding) binding;
+            }
+        }
+        return null;
+    }
+
+    private boolean isVariable(Expression expr, IVariableBinding varBinding) {
+        return varBinding != null && varBinding.equals(getVariableBinding(expr));
+    }
+
+    private boolean isSameOperand(Expression expr, Expression operand) {
+        return match(new ASTMatcher(), removeParentheses(expr), removeParentheses(operand));
+    }
+
+    private boolean isUsing(Expression expr, final IVariableBinding varBinding) {
+        final boolean[] used = new boolean[1];
+        expr.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                used[0] |= varBinding.equals(node.resolveBinding());
+                return VISIT_SUBTREE;
+            }
+        });
+        return used[0];
+    }
+
+    /** Returns whether the provided expression can be evaluated several times without changing the result. */
+    private boolean isSideEffectFree(Expression expr) {
+        final Expression e = removeParentheses(expr);
+        switch (e.getNodeType()) {
+        case SIMPLE_NAME:
+        case QUALIFIED_NAME:
+        case NUMBER_LITERAL:
+        case CHARACTER_LITERAL:
+        case THIS_EXPRESSION:
+            return true;
+
+        case FIELD_ACCESS:
+            return isSideEffectFree(((FieldAccess) e).getExpression());
+
+        default:
+            return false;
+        }
+    }
+
+    private boolean isConstant(Expression expr, long value) {
+        final Long constant = getConstant(expr);
+        return constant != null && constant == value;
+    }
+
+    /** Returns the value of the provided integral constant expression, or null if it is not one. */
+    private Long getConstant(Expression expr) {
+        final Object value = expr.resolveConstantExpressionValue();
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Character) {
+            return (long) ((Character) value).charValue();
+        }
+        return null;
+    }
+
+    /** Returns the number of bits of the provided expression's type, 0 if it is neither an int nor a long. */
+    private int getWidth(Expression expr) {
+        if (expr == null) {
+            return 0;
+        } else if (isPrimitive(expr, "int")) {
+            return 32;
+        } else if (isPrimitive(expr, "long")) {
+            return 64;
+        }
+        return 0;
+    }
+
+    private long getMinValue(int width) {
+        return width == 32 ? Integer.MIN_VALUE : Long.MIN_VALUE;
+    }
+
+    private String getTypeName(int width) {
+        return width == 32 ? "Integer" : "Long";
+    }
+}
@@ -33,6 +33,7 @@ import java.util.Map;
 
 import org.autorefactor.refactoring.ASTBuilder;
 import org.autorefactor.refactoring.ASTBuilder.Copy;
+import org.autorefactor.refactoring.ASTFingerprints;
 import org.autorefactor.util.IllegalArgumentException;
 import org.autorefactor.util.IllegalStateException;
 import org.autorefactor.util.NotImplementedException;
@@ -221,7 +222,9 @@ public class BooleanRefactoring extends AbstractRefactoringRule {
     @Override
     public boolean visit(IfStatement node) {
         final BooleanASTMatcher matcher = new BooleanASTMatcher();
-        if (match(matcher, node.getThenStatement(), node.getElseStatement())) {
+        if (ASTFingerprints.of(node, ASTFingerprints.NORMALIZE_BOOLEAN_CONSTANTS)
+                    .mayMatch(node.getThenStatement(), node.getElseStatement())
+                && match(matcher, node.getThenStatement(), node.getElseStatement())) {
             // Then and else statement are matching, bar the boolean values
             // which are opposite
             final Statement copyStmt = b.copySubtree(node.getThenStatement());
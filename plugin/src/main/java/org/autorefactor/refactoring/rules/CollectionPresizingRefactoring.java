@@ -0,0 +1,280 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.List;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.ForLoopHelper.ContainerType;
+import org.autorefactor.refactoring.ForLoopHelper.ForLoopContent;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.PrimitiveType;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.autorefactor.refactoring.ForLoopHelper.*;
+import static org.eclipse.jdt.core.dom.Assignment.Operator.*;
+import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
+
+/**
+ * See {@link #getDescription()} method.
+ * <p>
+ * The collection must be a local variable created with the no-arg constructor before the loop.
+ * Only local variable declarations with simple initializers may appear in between:
+ * any other statement could make the collection escape, or could have side effects
+ * which must still happen before evaluating the size of the iterated container.
+ */
+@SuppressWarnings("javadoc")
+public class CollectionPresizingRefactoring extends AbstractRefactoringRule {
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Passes the known number of elements to the constructor of a collection or map"
+            + " filled by the loop following its creation, one element per iteration,"
+            + " so it does not need to be resized while the loop runs.";
+    }
+
+    @Override
+    public String getName() {
+        return "Collection presizing";
+    }
+
+    @Override
+    public boolean visit(EnhancedForStatement node) {
+        final Expression container = node.getExpression();
+        final Name containerName = as(container, Name.class);
+        if (containerName == null) {
+            return VISIT_SUBTREE;
+        }
+        final ITypeBinding containerType = container.resolveTypeBinding();
+        if (containerType != null && containerType.isArray()) {
+            return maybePresize(node, containerName, ContainerType.ARRAY);
+        } else if (instanceOf(container, "java.util.Collection")) {
+            return maybePresize(node, containerName, ContainerType.COLLECTION);
+        }
+        return VISIT_SUBTREE;
+    }
+
+    @Override
+    public boolean visit(ForStatement node) {
+        final ForLoopContent loopContent = iterateOverContainer(node);
+        if (loopContent != null) {
+            return maybePresize(node, loopContent.getContainerVariable(), loopContent.getContainerType());
+        }
+        return VISIT_SUBTREE;
+    }
+
+    private boolean maybePresize(Statement loop, Name container, ContainerType containerType) {
+        final IVariableBinding colVar = getFilledCollection(loop);
+        if (colVar == null || colVar.isField() || isUsing(container, colVar)) {
+            return VISIT_SUBTREE;
+        }
+        Statement stmt = getPreviousSibling(loop);
+        while (stmt != null) {
+            final ClassInstanceCreation cic = getCreation(stmt, colVar);
+            if (cic != null) {
+                return presize(cic, container, containerType);
+            } else if (!isSimpleDeclaration(stmt, container) || isUsing(stmt, colVar)) {
+                // the collection may escape
+                return VISIT_SUBTREE;
+            }
+            stmt = getPreviousSibling(stmt);
+        }
+        return VISIT_SUBTREE;
+    }
+
+    /**
+     * Returns the local variable holding the collection or map filled by the provided loop,
+     * when each iteration adds exactly one element to it.
+     */
+    private IVariableBinding getFilledCollection(Statement loop) {
+        final Statement body = loop instanceof ForStatement
+                ? ((ForStatement) loop).getBody()
+                : ((EnhancedForStatement) loop).getBody();
+        final List<Statement> stmts = asList(body);
+        IVariableBinding colVar = null;
+        MethodInvocation addMI = null;
+        for (Statement stmt : stmts) {
+            if (!(stmt instanceof ExpressionStatement) && !(stmt instanceof VariableDeclarationStatement)) {
+                // conditional code may add no element, nested loops may add several
+                return null;
+            }
+            final MethodInvocation mi = asExpression(stmt, MethodInvocation.class);
+            if (isMethod(mi, "java.util.Collection", "add", "java.lang.Object")
+                    || isMethod(mi, "java.util.Map", "put", "java.lang.Object", "java.lang.Object")) {
+                if (addMI != null) {
+                    return null;
+                }
+                addMI = mi;
+                colVar = getVariableBinding(mi.getExpression());
+            }
+        }
+        if (colVar == null) {
+            return null;
+        }
+        for (Statement stmt : stmts) {
+            if (isUsing(stmt, colVar)
+                    && (stmt != addMI.getParent() || isUsing(arguments(addMI), colVar))) {
+                return null;
+            }
+        }
+        return colVar;
+    }
+
+    /** Returns the creation of the collection when the provided statement initializes the provided variable. */
+    private ClassInstanceCreation getCreation(Statement stmt, IVariableBinding colVar) {
+        final VariableDeclarationStatement vds = as(stmt, VariableDeclarationStatement.class);
+        if (vds != null) {
+            for (VariableDeclarationFragment vdf : fragments(vds)) {
+                if (colVar.equals(vdf.resolveBinding())) {
+                    return as(vdf.getInitializer(), ClassInstanceCreation.class);
+                }
+            }
+            return null;
+        }
+        final Assignment as = asExpression(stmt, Assignment.class);
+        if (as != null && hasOperator(as, ASSIGN) && colVar.equals(getVariableBinding(as.getLeftHandSide()))) {
+            return as(as.getRightHandSide(), ClassInstanceCreation.class);
+        }
+        return null;
+    }
+
+    private boolean presize(ClassInstanceCreation cic, Name container, ContainerType containerType) {
+        if (cic.getAnonymousClassDeclaration() != null || !arguments(cic).isEmpty()) {
+            return VISIT_SUBTREE;
+        }
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final AST ast = b.getAST();
+        final Expression size;
+        if (containerType == ContainerType.ARRAY) {
+            size = ast.newQualifiedName(b.copy(container), ast.newSimpleName("length"));
+        } else {
+            size = b.invoke(b.copy(container), "size");
+        }
+        final Expression capacity;
+        if (hasType(cic,
+                "java.util.ArrayDeque",
+                "java.util.ArrayList",
+                "java.util.Vector")) {
+            capacity = size;
+        } else if (hasType(cic,
+                "java.util.HashMap",
+                "java.util.HashSet",
+                "java.util.LinkedHashMap",
+                "java.util.LinkedHashSet")) {
+            capacity = hashCapacity(b, size);
+        } else {
+            return VISIT_SUBTREE;
+        }
+        this.ctx.getRefactorings().insertAt(capacity, 0, ClassInstanceCreation.ARGUMENTS_PROPERTY, cic);
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /**
+     * Returns {@code (int) (size / 0.75f) + 1}: the capacity which keeps the default load factor
+     * of hash based collections above {@code size}, so adding that many elements never rehashes.
+     */
+    private Expression hashCapacity(ASTBuilder b, Expression size) {
+        final AST ast = b.getAST();
+        final CastExpression ce = ast.newCastExpression();
+        ce.setType(ast.newPrimitiveType(PrimitiveType.INT));
+        ce.setExpression(b.parenthesize(b.infixExpr(size, DIVIDE, b.number("0.75f"))));
+        return b.infixExpr(ce, PLUS, b.int0(1));
+    }
+
+    /**
+     * Returns whether the provided statement declares local variables without side effects,
+     * none of which is used by the provided container expression.
+     */
+    private boolean isSimpleDeclaration(Statement stmt, Name container) {
+        final VariableDeclarationStatement vds = as(stmt, VariableDeclarationStatement.class);
+        if (vds == null) {
+            return false;
+        }
+        for (VariableDeclarationFragment vdf : fragments(vds)) {
+            final Expression init = vdf.getInitializer();
+            if (vdf.resolveBinding() == null || isUsing(container, vdf.resolveBinding())) {
+                // the container is not declared yet where the collection is created
+                return false;
+            } else if (init != null
+                    && init.resolveConstantExpressionValue() == null
+                    && !(init instanceof Name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private IVariableBinding getVariableBinding(Expression expr) {
+        if (expr instanceof SimpleName) {
+            final IBinding binding = ((SimpleName) expr).resolveBinding();
+            if (binding instanceof IVariableBinding) {
+                return (IVariableBinding) binding;
+            }
+        }
+        return null;
+    }
+
+    private boolean isUsing(List<Expression> exprs, IVariableBinding varBinding) {
+        for (Expression expr : exprs) {
+            if (isUsing(expr, varBinding)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns whether the provided node references the provided variable. */
+    private boolean isUsing(ASTNode node, final IVariableBinding varBinding) {
+        final boolean[] used = new boolean[1];
+        node.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName sn) {
+                used[0] |= varBinding.equals(sn.resolveBinding());
+                return VISIT_SUBTREE;
+            }
+        });
+        return used[0];
+    }
+}
@@ -25,30 +25,46 @@
  */
 package org.autorefactor.refactoring.rules;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.autorefactor.refactoring.ASTBuilder;
 import org.autorefactor.refactoring.ASTBuilder.Copy;
 import org.autorefactor.refactoring.ForLoopHelper.ForLoopContent;
 import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.Release;
+import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTMatcher;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.EnhancedForStatement;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
 import org.eclipse.jdt.core.dom.ForStatement;
 import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.IVariableBinding;
 import org.eclipse.jdt.core.dom.IfStatement;
 import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.ParameterizedType;
 import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.ReturnStatement;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
 import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
@@ -61,6 +77,11 @@ import static org.eclipse.jdt.core.dom.PrefixExpression.Operator.*;
 @SuppressWarnings("javadoc")
 public class CollectionRefactoring extends AbstractRefactoringRule {
 
+    /** Map methods which let neither the map escape, nor null values in, provided put() values are non-null. */
+    private static final Set<String> NON_NULL_MAP_METHODS = new HashSet<String>(Arrays.asList(
+            "clear", "containsKey", "containsValue", "get", "isEmpty", "keySet", "put", "putIfAbsent", "remove",
+            "size", "values"));
+
     @Override
     public String getDescription() {
         return ""
@@ -71,7 +92,11 @@ public class CollectionRefactoring extends AbstractRefactoringRule {
             + "- replaces creating a new Collection, then invoking Collection.addAll() on it,"
             + " by creating the new Collection with the other Collection as parameter,\n"
             + "- replaces some checks on Collection.size() with checks on Collection.isEmpty(),\n"
-            + "- replaces calls to Set.contains() immediately followed by Set.add() with straight calls to Set.add().";
+            + "- replaces calls to Set.contains() immediately followed by Set.add() with straight calls to Set.add(),\n"
+            + "- replaces calls to Map.containsKey() followed by Map.get() with a single call to Map.get()"
+            + " and a null check, when the map cannot hold null values,\n"
+            + "- replaces calls to Map.containsKey() followed by Map.put() with calls to Map.putIfAbsent()"
+            + " (Java 8+), when the map cannot hold null values.";
     }
 
     @Override
@@ -219,7 +244,8 @@ public class CollectionRefactoring extends AbstractRefactoringRule {
         final Expression addArg0 = arg0(colMI);
         final MethodInvocation getMI = as(addArg0, MethodInvocation.class);
         if (isMethod(getMI, "java.util.List", "get", "int")
-                && getMI.getExpression() instanceof Name) {
+                && getMI.getExpression() instanceof Name
+                && isSameVariable(getMI.getExpression(), loopContent.getContainerVariable())) {
             final Expression getArg0 = arg0(getMI);
             if (getArg0 instanceof Name
                     && isSameLocalVariable(getArg0, loopContent.getLoopVariable())) {
@@ -342,13 +368,291 @@ public class CollectionRefactoring extends AbstractRefactoringRule {
         final PrefixExpression pe = as(node.getExpression(), PrefixExpression.class);
         if (hasOperator(pe, NOT)) {
             final MethodInvocation miContains = as(pe.getOperand(), MethodInvocation.class);
+            if (isMethod(miContains, "java.util.Map", "containsKey", "java.lang.Object")) {
+                return maybeReplaceWithMapPutIfAbsent(node, miContains);
+            }
             return maybeReplaceSetContains(miContains, node.getThenStatement(), pe, false);
         } else {
             final MethodInvocation miContains = as(node.getExpression(), MethodInvocation.class);
+            if (isMethod(miContains, "java.util.Map", "containsKey", "java.lang.Object")) {
+                return maybeReplaceWithMapGet(node, miContains);
+            }
             return maybeReplaceSetContains(miContains, node.getElseStatement(), miContains, true);
         }
     }
 
+    /**
+     * Replaces {@code if (m.containsKey(k)) { return m.get(k); }} with
+     * {@code V value = m.get(k); if (value != null) { return value; }},
+     * and {@code if (m.containsKey(k)) { x = m.get(k); } else { x = y; }} with
+     * {@code x = m.get(k); if (x == null) { x = y; }}.
+     */
+    private boolean maybeReplaceWithMapGet(IfStatement node, MethodInvocation miContainsKey) {
+        final Expression map = miContainsKey.getExpression();
+        final Expression key = arg0(miContainsKey);
+        final List<Statement> thenStmts = asList(node.getThenStatement());
+        if (map == null
+                || thenStmts.isEmpty()
+                || !(node.getParent() instanceof Block)
+                || !isSideEffectFree(map)
+                || !isSideEffectFree(key)) {
+            return VISIT_SUBTREE;
+        }
+        final Statement firstStmt = thenStmts.get(0);
+        final MethodInvocation miGet = getMapGet(firstStmt);
+        if (!isMethod(miGet, "java.util.Map", "get", "java.lang.Object")
+                || !match(new ASTMatcher(), map, miGet.getExpression())
+                || !match(new ASTMatcher(), key, arg0(miGet))
+                || !hasNonNullValues(map)) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final Assignment as = asExpression(firstStmt, Assignment.class);
+        final List<Statement> elseStmts = asList(node.getElseStatement());
+        if (as != null && thenStmts.size() == 1 && elseStmts.size() == 1) {
+            final Assignment elseAs = asExpression(elseStmts.get(0), Assignment.class);
+            final Expression var = as.getLeftHandSide();
+            if (elseAs != null
+                    && hasOperator(elseAs, Assignment.Operator.ASSIGN)
+                    && isSameLocalVariable(var, elseAs.getLeftHandSide())
+                    && !((IVariableBinding) ((SimpleName) var).resolveBinding()).isField()
+                    && !isUsing(key, (SimpleName) var)
+                    && !isUsing(elseAs.getRightHandSide(), (SimpleName) var)) {
+                r.insertBefore(b.copy(firstStmt), node);
+                r.replace(node,
+                        b.if0(b.infixExpr(b.copy(var), EQUALS, b.getAST().newNullLiteral()),
+                                b.copy(node.getElseStatement())));
+                return DO_NOT_VISIT_SUBTREE;
+            }
+        }
+
+        final Type valueType = getMapValueType(map);
+        if (valueType == null) {
+            return VISIT_SUBTREE;
+        }
+        final AST ast = b.getAST();
+        final String valueName = this.ctx.getFreshName(node, "value");
+        final VariableDeclarationFragment vdf = ast.newVariableDeclarationFragment();
+        vdf.setName(b.simpleName(valueName));
+        vdf.setInitializer(b.copy(miGet));
+        final VariableDeclarationStatement vds = ast.newVariableDeclarationStatement(vdf);
+        vds.setType(valueType);
+        r.insertBefore(vds, node);
+        r.replace(node.getExpression(),
+                b.infixExpr(b.simpleName(valueName), NOT_EQUALS, ast.newNullLiteral()));
+        r.replace(miGet, b.simpleName(valueName));
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /** Returns the Map.get() call of {@code return m.get(k);}, {@code x = m.get(k);} or {@code V x = m.get(k);}. */
+    private MethodInvocation getMapGet(Statement stmt) {
+        if (stmt instanceof ReturnStatement) {
+            return as(((ReturnStatement) stmt).getExpression(), MethodInvocation.class);
+        } else if (stmt instanceof VariableDeclarationStatement) {
+            final List<VariableDeclarationFragment> fragments = fragments((VariableDeclarationStatement) stmt);
+            if (fragments.size() == 1) {
+                return as(fragments.get(0).getInitializer(), MethodInvocation.class);
+            }
+            return null;
+        }
+        final Assignment as = asExpression(stmt, Assignment.class);
+        if (as != null
+                && hasOperator(as, Assignment.Operator.ASSIGN)
+                && as.getLeftHandSide() instanceof SimpleName) {
+            return as(as.getRightHandSide(), MethodInvocation.class);
+        }
+        return null;
+    }
+
+    /**
+     * Replaces {@code if (!m.containsKey(k)) { m.put(k, v); }} with {@code m.putIfAbsent(k, v);}.
+     * The value must be side effect free, because it is now always evaluated.
+     */
+    private boolean maybeReplaceWithMapPutIfAbsent(IfStatement node, MethodInvocation miContainsKey) {
+        final Expression map = miContainsKey.getExpression();
+        final Expression key = arg0(miContainsKey);
+        final List<Statement> thenStmts = asList(node.getThenStatement());
+        if (map == null
+                || node.getElseStatement() != null
+                || thenStmts.size() != 1
+                || !getJavaSERelease().isCompatibleWith(Release.javaSE("1.8.0"))) {
+            return VISIT_SUBTREE;
+        }
+        final MethodInvocation miPut = asExpression(thenStmts.get(0), MethodInvocation.class);
+        if (isMethod(miPut, "java.util.Map", "put", "java.lang.Object", "java.lang.Object")
+                && match(new ASTMatcher(), map, miPut.getExpression())
+                && match(new ASTMatcher(), key, arg0(miPut))
+                && isSideEffectFree(map)
+                && isSideEffectFree(key)
+                && isSideEffectFree(arguments(miPut).get(1))
+                && hasNonNullValues(map)) {
+            final ASTBuilder b = this.ctx.getASTBuilder();
+            this.ctx.getRefactorings().replace(node,
+                    b.toStmt(b.invoke(b.copy(map), "putIfAbsent", b.copy(key), b.copy(arguments(miPut).get(1)))));
+            return DO_NOT_VISIT_SUBTREE;
+        }
+        return VISIT_SUBTREE;
+    }
+
+    private Release getJavaSERelease() {
+        return this.ctx.getJavaProjectOptions().getJavaSERelease();
+    }
+
+    /**
+     * Returns whether the provided map is proven to never hold null values:
+     * either its implementation rejects them, or it is a local variable initialized with an empty map,
+     * which never escapes and only receives values which cannot be null.
+     */
+    private boolean hasNonNullValues(Expression map) {
+        if (instanceOf(map, "java.util.Hashtable")
+                || instanceOf(map, "java.util.concurrent.ConcurrentHashMap")
+                || instanceOf(map, "java.util.concurrent.ConcurrentSkipListMap")) {
+            return true;
+        }
+        final VariableDeclarationFragment vdf = getLocalDeclaration(map);
+        final BodyDeclaration bd = getAncestor(map, BodyDeclaration.class);
+        if (vdf == null || bd == null || !isNewEmptyMap(vdf.getInitializer())) {
+            return false;
+        }
+        final IVariableBinding mapVar = vdf.resolveBinding();
+        final boolean[] isNonNull = { true };
+        bd.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                if (mapVar.equals(node.resolveBinding())
+                        && node.getParent() != vdf
+                        && !isNonNullMapUse(node)) {
+                    isNonNull[0] = false;
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return isNonNull[0];
+    }
+
+    private VariableDeclarationFragment getLocalDeclaration(Expression expr) {
+        if (expr instanceof SimpleName) {
+            final IBinding binding = ((SimpleName) expr).resolveBinding();
+            if (binding instanceof IVariableBinding && !((IVariableBinding) binding).isField()) {
+                final ASTNode declaration = ((CompilationUnit) expr.getRoot()).findDeclaringNode(binding);
+                if (declaration instanceof VariableDeclarationFragment) {
+                    return (VariableDeclarationFragment) declaration;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isNewEmptyMap(Expression expr) {
+        final ClassInstanceCreation cic = as(expr, ClassInstanceCreation.class);
+        if (cic == null || cic.getAnonymousClassDeclaration() != null) {
+            return false;
+        }
+        for (Expression arg : arguments(cic)) {
+            if (!isPrimitive(arg)) {
+                // copy constructors can bring null values
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isNonNullMapUse(SimpleName mapName) {
+        if (mapName.getLocationInParent() != MethodInvocation.EXPRESSION_PROPERTY) {
+            return false;
+        }
+        final MethodInvocation mi = (MethodInvocation) mapName.getParent();
+        final String methodName = mi.getName().getIdentifier();
+        if (!NON_NULL_MAP_METHODS.contains(methodName)) {
+            return false;
+        } else if ("put".equals(methodName) || "putIfAbsent".equals(methodName)) {
+            return arguments(mi).size() == 2 && isNonNull(arguments(mi).get(1));
+        }
+        return true;
+    }
+
+    private boolean isNonNull(Expression expr) {
+        switch (expr.getNodeType()) {
+        case ASTNode.CLASS_INSTANCE_CREATION:
+        case ASTNode.ARRAY_CREATION:
+        case ASTNode.STRING_LITERAL:
+        case ASTNode.TYPE_LITERAL:
+        case ASTNode.THIS_EXPRESSION:
+            return true;
+
+        case ASTNode.PARENTHESIZED_EXPRESSION:
+            return isNonNull(removeParentheses(expr));
+
+        case ASTNode.INFIX_EXPRESSION:
+            // string concatenations are never null
+            return isPrimitive(expr) || hasType(expr, "java.lang.String");
+
+        default:
+            // boxed primitives are never null
+            return isPrimitive(expr);
+        }
+    }
+
+    /** Returns the value type argument of the declared type of the provided map variable, if any. */
+    private Type getMapValueType(Expression map) {
+        final IBinding binding = map instanceof SimpleName ? ((SimpleName) map).resolveBinding()
+                : map instanceof FieldAccess ? ((FieldAccess) map).resolveFieldBinding() : null;
+        final ASTNode declaration = binding != null
+                ? ((CompilationUnit) map.getRoot()).findDeclaringNode(binding) : null;
+        Type declaredType = null;
+        if (declaration instanceof SingleVariableDeclaration) {
+            declaredType = ((SingleVariableDeclaration) declaration).getType();
+        } else if (declaration instanceof VariableDeclarationFragment) {
+            final ASTNode parent = declaration.getParent();
+            if (parent instanceof VariableDeclarationStatement) {
+                declaredType = ((VariableDeclarationStatement) parent).getType();
+            } else if (parent instanceof VariableDeclarationExpression) {
+                declaredType = ((VariableDeclarationExpression) parent).getType();
+            } else if (parent instanceof FieldDeclaration) {
+                declaredType = ((FieldDeclaration) parent).getType();
+            }
+        }
+        if (declaredType instanceof ParameterizedType) {
+            final ParameterizedType pt = (ParameterizedType) declaredType;
+            final ITypeBinding typeBinding = pt.resolveBinding();
+            final List<Type> typeArgs = typeArguments(pt);
+            // java.util maps all declare their type parameters as <K, V>
+            if (typeBinding != null
+                    && typeBinding.getErasure().getQualifiedName().startsWith("java.util.")
+                    && typeArgs.size() == 2
+                    && !typeArgs.get(1).isWildcardType()) {
+                return this.ctx.getASTBuilder().copy(typeArgs.get(1));
+            }
+        }
+        return null;
+    }
+
+    private boolean isSideEffectFree(Expression expr) {
+        if (expr instanceof Name
+                || expr.resolveConstantExpressionValue() != null
+                || expr.getNodeType() == ASTNode.THIS_EXPRESSION) {
+            return true;
+        } else if (expr instanceof FieldAccess) {
+            return isSideEffectFree(((FieldAccess) expr).getExpression());
+        }
+        return false;
+    }
+
+    private boolean isUsing(Expression expr, SimpleName var) {
+        final IBinding varBinding = var.resolveBinding();
+        final boolean[] used = new boolean[1];
+        expr.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName sn) {
+                used[0] |= varBinding.equals(sn.resolveBinding());
+                return VISIT_SUBTREE;
+            }
+        });
+        return used[0];
+    }
+
     private boolean maybeReplaceSetContains(
             MethodInvocation miContains, Statement stmt, Expression toReplace, boolean negate) {
         if (isMethod(miContains, "java.util.Set", "contains", "java.lang.Object")) {
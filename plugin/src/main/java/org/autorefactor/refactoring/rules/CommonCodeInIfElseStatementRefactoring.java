@@ -30,6 +30,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.ASTFingerprints;
 import org.autorefactor.refactoring.ASTHelper;
 import org.autorefactor.util.IllegalStateException;
 import org.autorefactor.util.NotImplementedException;
@@ -80,12 +81,14 @@ public class CommonCodeInIfElseStatementRefactoring extends AbstractRefactoringR
             }
             // if all cases exist
             final ASTMatcher matcher = new ASTMatcher();
+            final ASTFingerprints fingerprints = ASTFingerprints.of(node, 0);
             final int minSize = minSize(allCasesStmts);
             final List<Statement> caseStmts = allCasesStmts.get(0);
 
             // identify matching statements starting from the beginning of each case
             for (int stmtIndex = 0; stmtIndex < minSize; stmtIndex++) {
-                if (!match(matcher, allCasesStmts, true, stmtIndex, 0, allCasesStmts.size())) {
+                if (!haveSameFingerprints(fingerprints, allCasesStmts, true, stmtIndex)
+                        || !match(matcher, allCasesStmts, true, stmtIndex, 0, allCasesStmts.size())) {
                     break;
                 }
                 this.ctx.getRefactorings().insertBefore(b.copy(caseStmts.get(stmtIndex)), node);
@@ -94,7 +97,8 @@ public class CommonCodeInIfElseStatementRefactoring extends AbstractRefactoringR
 
             // identify matching statements starting from the end of each case
             for (int stmtIndex = 1; 0 <= minSize - stmtIndex; stmtIndex++) {
-                if (!match(matcher, allCasesStmts, false, stmtIndex, 0, allCasesStmts.size())
+                if (!haveSameFingerprints(fingerprints, allCasesStmts, false, stmtIndex)
+                        || !match(matcher, allCasesStmts, false, stmtIndex, 0, allCasesStmts.size())
                         || anyContains(removedCaseStmts, allCasesStmts, stmtIndex)) {
                     break;
                 }
@@ -212,6 +216,24 @@ public class CommonCodeInIfElseStatementRefactoring extends AbstractRefactoringR
         }
     }
 
+    /** Cheaply rejects the statements which cannot match before running the {@link ASTMatcher}. */
+    private boolean haveSameFingerprints(ASTFingerprints fingerprints, List<List<Statement>> allCasesStmts,
+            boolean matchForward, int stmtIndex) {
+        int expected = 0;
+        for (int i = 0; i < allCasesStmts.size(); i++) {
+            final List<Statement> caseStmts = allCasesStmts.get(i);
+            final int fingerprint = fingerprints.get(matchForward
+                    ? caseStmts.get(stmtIndex)
+                    : caseStmts.get(caseStmts.size() - stmtIndex));
+            if (i == 0) {
+                expected = fingerprint;
+            } else if (fingerprint != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private boolean match(ASTMatcher matcher, List<List<Statement>> allCasesStmts, boolean matchForward, int stmtIndex,
             int startIndex, int endIndex) {
         if (startIndex == endIndex || startIndex == endIndex - 1) {
@@ -26,6 +26,7 @@
 package org.autorefactor.refactoring.rules;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.ASTFingerprints;
 import org.eclipse.jdt.core.dom.ASTMatcher;
 import org.eclipse.jdt.core.dom.IfStatement;
 
@@ -85,6 +86,8 @@ public class CommonIfInIfElseRefactoring extends AbstractRefactoringRule {
                 && elseInnerIfStmt != null
                 && thenInnerIfStmt.getElseStatement() == null
                 && elseInnerIfStmt.getElseStatement() == null
+                && ASTFingerprints.of(node, 0).mayMatch(
+                        thenInnerIfStmt.getExpression(), elseInnerIfStmt.getExpression())
                 && match(new ASTMatcher(), thenInnerIfStmt.getExpression(), elseInnerIfStmt.getExpression())) {
             final ASTBuilder b = this.ctx.getASTBuilder();
             this.ctx.getRefactorings().replace(node,
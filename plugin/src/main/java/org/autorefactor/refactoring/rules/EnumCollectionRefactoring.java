@@ -0,0 +1,299 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.TypeNameDecider;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.TypeLiteral;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+
+/**
+ * See {@link #getDescription()} method.
+ * <p>
+ * Contrary to {@link java.util.HashMap} and {@link java.util.HashSet}, {@link java.util.EnumMap} and
+ * {@link java.util.EnumSet} iterate in the enum constants order and reject null keys.
+ * So only local variables declared with an interface type are rewritten, when they do not escape
+ * and when every key put in them is an enum constant.
+ */
+@SuppressWarnings("javadoc")
+public class EnumCollectionRefactoring extends AbstractRefactoringRule {
+    /** Map methods which let neither the map escape, nor null keys in. */
+    private static final Set<String> NON_NULL_KEYS_MAP_METHODS = new HashSet<String>(Arrays.asList(
+            "clear", "containsKey", "containsValue", "entrySet", "get", "isEmpty", "keySet", "remove", "size",
+            "values"));
+    /** Set methods which let neither the set escape, nor null elements in. */
+    private static final Set<String> NON_NULL_ELEMENTS_SET_METHODS = new HashSet<String>(Arrays.asList(
+            "clear", "contains", "isEmpty", "iterator", "remove", "size"));
+
+    private TypeNameDecider typeNameDecider;
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Replaces HashMap and HashSet instances with enum keys, assigned to interface typed local variables,"
+            + " with EnumMap and EnumSet instances, which store their keys in arrays indexed by the enum ordinals"
+            + " or in bit vectors.";
+    }
+
+    @Override
+    public String getName() {
+        return "Enum collections";
+    }
+
+    @Override
+    public boolean visit(CompilationUnit node) {
+        this.typeNameDecider = new TypeNameDecider(node, this.ctx.getASTBuilder(), this.ctx.getRefactorings());
+        return VISIT_SUBTREE;
+    }
+
+    @Override
+    public boolean visit(ClassInstanceCreation node) {
+        final boolean isHashMap = hasType(node, "java.util.HashMap");
+        final boolean isHashSet = hasType(node, "java.util.HashSet");
+        if ((!isHashMap && !isHashSet) || node.getAnonymousClassDeclaration() != null) {
+            return VISIT_SUBTREE;
+        }
+        final ITypeBinding[] typeArgs = node.resolveTypeBinding() != null
+                ? node.resolveTypeBinding().getTypeArguments() : new ITypeBinding[0];
+        final VariableDeclarationFragment vdf = getLocalDeclaration(node);
+        final Type targetType = vdf != null ? ((VariableDeclarationStatement) vdf.getParent()).getType() : null;
+        if (typeArgs.length == 0
+                || !typeArgs[0].isEnum()
+                || targetType == null
+                || !(isHashMap
+                        ? hasType(targetType.resolveBinding(), "java.util.Map")
+                        : hasType(targetType.resolveBinding(), "java.util.Set", "java.util.Collection",
+                                "java.lang.Iterable"))) {
+            return VISIT_SUBTREE;
+        }
+        final Type keyType = getKeyType(node, targetType, typeArgs[0]);
+        if (keyType == null || !hasEnumConstantKeys(vdf, isHashMap)) {
+            return VISIT_SUBTREE;
+        }
+        return isHashMap
+                ? maybeReplaceWithEnumMap(node, keyType)
+                : maybeReplaceWithEnumSet(node, keyType);
+    }
+
+    /** {@code new HashMap<K, V>()} becomes {@code new EnumMap<K, V>(K.class)}. */
+    private boolean maybeReplaceWithEnumMap(ClassInstanceCreation node, Type keyType) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final Expression copiedMap = getCopiedCollection(node);
+        final Expression arg;
+        if (copiedMap == null) {
+            arg = typeLiteral(keyType);
+        } else if (hasType(copiedMap, "java.util.EnumMap")) {
+            arg = b.copy(copiedMap);
+        } else {
+            // other maps may hold null keys
+            return VISIT_SUBTREE;
+        }
+
+        final ClassInstanceCreation enumMap = b.getAST().newClassInstanceCreation();
+        final Type type = node.getType();
+        if (type instanceof ParameterizedType) {
+            final ParameterizedType enumMapType = b.getAST().newParameterizedType(
+                    b.getAST().newSimpleType(typeNameDecider.useType("java.util.EnumMap")));
+            for (Type typeArg : typeArguments((ParameterizedType) type)) {
+                typeArguments(enumMapType).add(b.copy(typeArg));
+            }
+            enumMap.setType(enumMapType);
+        } else {
+            enumMap.setType(b.getAST().newSimpleType(typeNameDecider.useType("java.util.EnumMap")));
+        }
+        arguments(enumMap).add(arg);
+        r.replace(node, enumMap);
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /**
+     * {@code new HashSet<E>()} becomes {@code EnumSet.noneOf(E.class)}
+     * and {@code new HashSet<E>(Arrays.asList(E.A, E.B))} becomes {@code EnumSet.of(E.A, E.B)}.
+     */
+    private boolean maybeReplaceWithEnumSet(ClassInstanceCreation node, Type keyType) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final Expression copiedSet = getCopiedCollection(node);
+        final MethodInvocation asListMI = as(copiedSet, MethodInvocation.class);
+        final Expression replacement;
+        if (copiedSet == null
+                || (isArraysAsList(asListMI) && arguments(asListMI).isEmpty())) {
+            replacement = b.invoke(enumSet(), "noneOf", typeLiteral(keyType));
+        } else if (isArraysAsList(asListMI)) {
+            if (!areEnumConstants(arguments(asListMI))) {
+                return VISIT_SUBTREE;
+            }
+            final List<Expression> enumConstants = new ArrayList<Expression>();
+            for (Expression arg : arguments(asListMI)) {
+                enumConstants.add(b.copy(arg));
+            }
+            replacement = b.invoke(enumSet(), "of", enumConstants);
+        } else if (hasType(copiedSet, "java.util.EnumSet")) {
+            replacement = b.invoke(enumSet(), "copyOf", b.copy(copiedSet));
+        } else {
+            // other collections may hold null elements
+            return VISIT_SUBTREE;
+        }
+        r.replace(node, replacement);
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    private Name enumSet() {
+        return typeNameDecider.useType("java.util.EnumSet");
+    }
+
+    private TypeLiteral typeLiteral(Type type) {
+        final TypeLiteral tl = this.ctx.getAST().newTypeLiteral();
+        tl.setType(this.ctx.getASTBuilder().copy(type));
+        return tl;
+    }
+
+    /** Returns the declaration of the local variable initialized with the provided expression, if any. */
+    private VariableDeclarationFragment getLocalDeclaration(Expression expr) {
+        if (expr.getLocationInParent() == VariableDeclarationFragment.INITIALIZER_PROPERTY
+                && expr.getParent().getParent() instanceof VariableDeclarationStatement) {
+            return (VariableDeclarationFragment) expr.getParent();
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the provided local variable never escapes, and is only given enum constants as keys,
+     * which are known to be non null.
+     */
+    private boolean hasEnumConstantKeys(VariableDeclarationFragment vdf, final boolean isMap) {
+        final IVariableBinding var = vdf.resolveBinding();
+        final BodyDeclaration bd = getAncestor(vdf, BodyDeclaration.class);
+        if (var == null || bd == null) {
+            return false;
+        }
+        final SimpleName declaredName = vdf.getName();
+        final boolean[] hasEnumConstantKeys = { true };
+        bd.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                if (node != declaredName
+                        && var.equals(node.resolveBinding())
+                        && !isEnumConstantKeysUse(node, isMap)) {
+                    hasEnumConstantKeys[0] = false;
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return hasEnumConstantKeys[0];
+    }
+
+    private boolean isEnumConstantKeysUse(SimpleName name, boolean isMap) {
+        if (name.getLocationInParent() == EnhancedForStatement.EXPRESSION_PROPERTY) {
+            return true;
+        } else if (name.getLocationInParent() != MethodInvocation.EXPRESSION_PROPERTY) {
+            return false;
+        }
+        final MethodInvocation mi = (MethodInvocation) name.getParent();
+        final String methodName = mi.getName().getIdentifier();
+        if (isMap) {
+            if ("put".equals(methodName)) {
+                return arguments(mi).size() == 2 && areEnumConstants(arguments(mi).subList(0, 1));
+            }
+            return NON_NULL_KEYS_MAP_METHODS.contains(methodName);
+        }
+        if ("add".equals(methodName)) {
+            return arguments(mi).size() == 1 && areEnumConstants(arguments(mi));
+        }
+        return NON_NULL_ELEMENTS_SET_METHODS.contains(methodName);
+    }
+
+    /**
+     * Returns the type node to use in {@code E.class} literals, copied from the explicit type arguments
+     * of the instance creation or of the assigned variable.
+     */
+    private Type getKeyType(ClassInstanceCreation node, Type targetType, ITypeBinding keyTypeBinding) {
+        for (Type type : new Type[] { node.getType(), targetType }) {
+            if (type instanceof ParameterizedType) {
+                final List<Type> typeArgs = typeArguments((ParameterizedType) type);
+                if (!typeArgs.isEmpty() && keyTypeBinding.equals(typeArgs.get(0).resolveBinding())) {
+                    return typeArgs.get(0);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Returns the map or collection copied by the provided instance creation, if any. */
+    private Expression getCopiedCollection(ClassInstanceCreation node) {
+        final List<Expression> args = arguments(node);
+        if (args.size() == 1 && !isPrimitive(args.get(0))) {
+            return args.get(0);
+        }
+        return null;
+    }
+
+    private boolean isArraysAsList(MethodInvocation mi) {
+        return mi != null
+                && "asList".equals(mi.getName().getIdentifier())
+                && mi.resolveMethodBinding() != null
+                && hasType(mi.resolveMethodBinding().getDeclaringClass(), "java.util.Arrays");
+    }
+
+    /** Only enum constants are known to be non null, as required by EnumSet.of(). */
+    private boolean areEnumConstants(List<Expression> exprs) {
+        for (Expression expr : exprs) {
+            if (!(expr instanceof Name)) {
+                return false;
+            }
+            final IBinding binding = ((Name) expr).resolveBinding();
+            if (!(binding instanceof IVariableBinding) || !((IVariableBinding) binding).isEnumConstant()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
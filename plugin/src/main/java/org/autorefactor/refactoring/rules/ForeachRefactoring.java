@@ -25,17 +25,54 @@
  */
 package org.autorefactor.refactoring.rules;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.ForLoopHelper.ContainerType;
+import org.autorefactor.refactoring.ForLoopHelper.ForLoopContent;
+import org.autorefactor.refactoring.Refactorings;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTMatcher;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.ArrayAccess;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.FieldAccess;
 import org.eclipse.jdt.core.dom.ForStatement;
-import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IExtendedModifier;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.ImportDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
 import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.ThisExpression;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 import org.eclipse.jdt.core.dom.WhileStatement;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.autorefactor.refactoring.ForLoopHelper.*;
 
-/** See {@link #getDescription()} method. */
+/**
+ * See {@link #getDescription()} method.
+ * <p>
+ * Loops are only rewritten when their first statement declares the element variable, like
+ * {@code String s = list.get(i);} or {@code String s = it.next();}: this variable becomes the foreach variable.
+ * The index or the iterator must not be used for anything else.
+ */
 @SuppressWarnings("javadoc")
 public class ForeachRefactoring extends AbstractRefactoringRule {
 
@@ -43,8 +80,9 @@ public class ForeachRefactoring extends AbstractRefactoringRule {
     public String getDescription() {
         return ""
             + "Replaces \"while\"/\"for with iterator\"/\"for with index loops\" into foreach loops"
-            + " (applicable to arrays or Iterable)."
-            + "Replaces Map.keySet() iteration with calls to Map.get()} into iterations over Map.entrySet().";
+            + " (applicable to arrays or Iterable). Index loops over lists which do not implement RandomAccess,"
+            + " like LinkedList, no longer call List.get() in O(n) at each iteration."
+            + " Replaces Map.keySet() iteration with calls to Map.get() into iterations over Map.entrySet().";
     }
 
     @Override
@@ -52,59 +90,339 @@ public class ForeachRefactoring extends AbstractRefactoringRule {
         return "Foreach";
     }
 
-    private static class VariableUseVisitor extends ASTVisitor {
-        @Override
-        public boolean visit(SimpleName node) {
-            ASTNode parent = node.getParent();
-            if (parent instanceof QualifiedName
-                    || parent instanceof FieldAccess) {
-                return DO_NOT_VISIT_SUBTREE;
-            }
-            return DO_NOT_VISIT_SUBTREE;
-        }
-    }
-
     @Override
     public boolean visit(ForStatement node) {
-        final VariableUseVisitor variableUseVisitor = new VariableUseVisitor();
-        node.accept(variableUseVisitor);
-
-        if (initializers(node).size() == 1) {
-            initializers(node);
-        }
-
-        node.getExpression();
-        updaters(node);
-        node.getBody();
-        // TODO JNR iterate over array with index
-        // TODO JNR iterate over array with temporary variable with generics
-        // TODO JNR iterate over array with temporary variable without generics
-        // TODO JNR iterate over col with index
-        // TODO JNR iterate over col with temporary variable with generics
-        // TODO JNR iterate over col with temporary variable without generics
-        // TODO JNR iterate over col with Iterator with generics
-        // TODO JNR iterate over col with Iterator without generics
-        // TODO JNR iterate over col with ListIterator with generics
-        // TODO JNR iterate over col with ListIterator without generics
-        // be careful with use of index/iterator inside the loop
+        final ForLoopContent loopContent = iterateOverContainer(node);
+        if (loopContent != null) {
+            return maybeReplaceIndexLoop(node, loopContent);
+        }
+        final List<Expression> initializers = initializers(node);
+        final VariableDeclarationExpression vde = initializers.size() == 1
+                ? as(initializers.get(0), VariableDeclarationExpression.class) : null;
+        if (vde != null && fragments(vde).size() == 1 && updaters(node).isEmpty()) {
+            final VariableDeclarationFragment iteratorDecl = fragments(vde).get(0);
+            return maybeReplaceIteratorLoop(node, node.getExpression(), node.getBody(), iteratorDecl, null);
+        }
         return VISIT_SUBTREE;
     }
 
     @Override
     public boolean visit(WhileStatement node) {
-        node.getExpression();
-        node.getBody();
-        // TODO JNR iterate over array with index
-        // TODO JNR iterate over array with temporary variable with generics
-        // TODO JNR iterate over array with temporary variable without generics
-        // TODO JNR iterate over col with index
-        // TODO JNR iterate over col with temporary variable with generics
-        // TODO JNR iterate over col with temporary variable without generics
-        // TODO JNR iterate over col with Iterator with generics
-        // TODO JNR iterate over col with Iterator without generics
-        // TODO JNR iterate over col with ListIterator with generics
-        // TODO JNR iterate over col with ListIterator without generics
-        // be careful with use of index/iterator inside the loop
+        final VariableDeclarationStatement vds = as(getPreviousSibling(node), VariableDeclarationStatement.class);
+        if (vds != null && fragments(vds).size() == 1) {
+            final VariableDeclarationFragment iteratorDecl = fragments(vds).get(0);
+            final IVariableBinding iteratorVar = iteratorDecl.resolveBinding();
+            if (iteratorVar != null && !isUsedAfter(node, iteratorVar)) {
+                return maybeReplaceIteratorLoop(node, node.getExpression(), node.getBody(), iteratorDecl, vds);
+            }
+        }
         return VISIT_SUBTREE;
     }
+
+    /**
+     * Replaces {@code for (int i = 0; i < array.length; i++) { T elem = array[i]; ... }}
+     * and the equivalent loop over {@code list.size()} with {@code for (T elem : array) { ... }}.
+     */
+    private boolean maybeReplaceIndexLoop(ForStatement node, ForLoopContent loopContent) {
+        final SimpleName container = as(loopContent.getContainerVariable(), SimpleName.class);
+        final IVariableBinding indexVar = getVariableBinding(loopContent.getLoopVariable());
+        final IVariableBinding containerVar = getVariableBinding(container);
+        final boolean isArray = loopContent.getContainerType() == ContainerType.ARRAY;
+        if (indexVar == null
+                || containerVar == null
+                || (!isArray && !instanceOf(container, "java.util.List"))
+                // index loops over random access lists are already the fastest way to iterate over them
+                || (!isArray && instanceOf(container, "java.util.RandomAccess"))
+                || isRawIterable(container)
+                || (initializers(node).get(0) instanceof Assignment && isUsedAfter(node, indexVar))) {
+            return VISIT_SUBTREE;
+        }
+        final VariableDeclarationStatement elementDecl = getElementDeclaration(node.getBody());
+        if (elementDecl == null) {
+            return VISIT_SUBTREE;
+        }
+        final VariableDeclarationFragment vdf = fragments(elementDecl).get(0);
+        final List<Expression> accesses = new ArrayList<Expression>();
+        if (!isElementAccess(vdf.getInitializer(), container, indexVar, isArray)
+                || !collectElementAccesses(node.getBody(), container, indexVar, isArray, accesses)
+                || isAssigned(node.getBody(), vdf.resolveBinding())) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        for (Expression access : accesses) {
+            if (access != vdf.getInitializer()) {
+                r.replace(access, b.simpleName(vdf.getName().getIdentifier()));
+            }
+        }
+        replaceWithForeach(node, node.getBody(), elementDecl, b.copy(container));
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /**
+     * Replaces {@code for (Iterator<T> it = col.iterator(); it.hasNext();) { T elem = it.next(); ... }}
+     * and the equivalent while loop with {@code for (T elem : col) { ... }}.
+     */
+    private boolean maybeReplaceIteratorLoop(Statement node, Expression condition, Statement body,
+            VariableDeclarationFragment iteratorDecl, VariableDeclarationStatement iteratorDeclStmt) {
+        final MethodInvocation iteratorMI = as(iteratorDecl.getInitializer(), MethodInvocation.class);
+        final MethodInvocation hasNextMI = as(condition, MethodInvocation.class);
+        final IVariableBinding iteratorVar = iteratorDecl.resolveBinding();
+        if (!isMethod(iteratorMI, "java.lang.Iterable", "iterator")
+                || iteratorMI.getExpression() == null
+                || isRawIterable(iteratorMI.getExpression())
+                || !isMethod(hasNextMI, "java.util.Iterator", "hasNext")
+                || !isVariable(hasNextMI.getExpression(), iteratorVar)) {
+            return VISIT_SUBTREE;
+        }
+        final VariableDeclarationStatement elementDecl = getElementDeclaration(body);
+        if (elementDecl == null) {
+            return VISIT_SUBTREE;
+        }
+        final MethodInvocation nextMI = as(fragments(elementDecl).get(0).getInitializer(), MethodInvocation.class);
+        if (!isMethod(nextMI, "java.util.Iterator", "next")
+                || !isVariable(nextMI.getExpression(), iteratorVar)
+                // the iterator must not be used for anything else, like removing elements
+                || countUses(body, iteratorVar) != 1) {
+            return VISIT_SUBTREE;
+        }
+
+        if (iteratorDeclStmt != null) {
+            this.ctx.getRefactorings().remove(iteratorDeclStmt);
+        }
+        replaceWithForeach(node, body, elementDecl, this.ctx.getASTBuilder().copy(iteratorMI.getExpression()));
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /** Returns the declaration of the element variable starting the provided loop body, if any. */
+    private VariableDeclarationStatement getElementDeclaration(Statement body) {
+        if (!(body instanceof Block)) {
+            return null;
+        }
+        final List<Statement> stmts = statements((Block) body);
+        final VariableDeclarationStatement vds = !stmts.isEmpty()
+                ? as(stmts.get(0), VariableDeclarationStatement.class) : null;
+        if (vds != null && fragments(vds).size() == 1) {
+            final VariableDeclarationFragment vdf = fragments(vds).get(0);
+            if (vdf.getInitializer() != null && vdf.getExtraDimensions() == 0 && vdf.resolveBinding() != null) {
+                return vds;
+            }
+        }
+        return null;
+    }
+
+    private void replaceWithForeach(Statement loop, Statement body, VariableDeclarationStatement elementDecl,
+            Expression iterable) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final AST ast = b.getAST();
+        final VariableDeclarationFragment vdf = fragments(elementDecl).get(0);
+        final SingleVariableDeclaration parameter = ast.newSingleVariableDeclaration();
+        for (IExtendedModifier modifier : modifiers(elementDecl)) {
+            modifiers(parameter).add((IExtendedModifier) b.copy((ASTNode) modifier));
+        }
+        parameter.setType(b.copy(elementDecl.getType()));
+        parameter.setName(b.copy(vdf.getName()));
+        r.remove(elementDecl);
+
+        final EnhancedForStatement efs = ast.newEnhancedForStatement();
+        efs.setParameter(parameter);
+        efs.setExpression(iterable);
+        efs.setBody(b.move(body));
+        r.replace(loop, efs);
+    }
+
+    /** Returns whether the provided expression is {@code list.get(i)} or {@code array[i]}. */
+    private boolean isElementAccess(Expression expr, SimpleName container, IVariableBinding indexVar,
+            boolean isArray) {
+        if (isArray) {
+            final ArrayAccess aa = as(expr, ArrayAccess.class);
+            return aa != null
+                    && isVariable(aa.getArray(), getVariableBinding(container))
+                    && isVariable(aa.getIndex(), indexVar);
+        }
+        final MethodInvocation mi = as(expr, MethodInvocation.class);
+        return isMethod(mi, "java.util.List", "get", "int")
+                && isVariable(mi.getExpression(), getVariableBinding(container))
+                && isVariable(arg0(mi), indexVar);
+    }
+
+    /**
+     * Collects the reads of the current element in the provided loop body.
+     * Returns false if the index is used for anything else, if elements are written,
+     * if the container variable is reassigned, or if the list is used for anything else than reading elements.
+     */
+    private boolean collectElementAccesses(Statement body, final SimpleName container,
+            final IVariableBinding indexVar, final boolean isArray, final List<Expression> accesses) {
+        final IVariableBinding containerVar = getVariableBinding(container);
+        final boolean[] canReplace = { true };
+        body.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                final IBinding binding = node.resolveBinding();
+                if (indexVar.equals(binding)) {
+                    final Expression access = (Expression) node.getParent();
+                    if (isElementAccess(access, container, indexVar, isArray) && !isWritten(access)) {
+                        accesses.add(access);
+                    } else {
+                        canReplace[0] = false;
+                    }
+                } else if (containerVar.equals(binding)) {
+                    if (isWritten(node)
+                            || (!isArray
+                                    && !isElementAccess((Expression) node.getParent(), container, indexVar, false))) {
+                        canReplace[0] = false;
+                    }
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return canReplace[0];
+    }
+
+    /**
+     * Replaces {@code for (K key : map.keySet()) { V value = map.get(key); ... }} with
+     * {@code for (Map.Entry<K, V> entry : map.entrySet()) { K key = entry.getKey(); V value = entry.getValue(); ... }}.
+     */
+    @Override
+    public boolean visit(EnhancedForStatement node) {
+        final MethodInvocation keySetMI = as(node.getExpression(), MethodInvocation.class);
+        final VariableDeclarationStatement valueDecl = getElementDeclaration(node.getBody());
+        if (!isMethod(keySetMI, "java.util.Map", "keySet")
+                || !isSideEffectFree(keySetMI.getExpression())
+                || valueDecl == null) {
+            return VISIT_SUBTREE;
+        }
+        final Expression map = keySetMI.getExpression();
+        final SingleVariableDeclaration keyDecl = node.getParameter();
+        final MethodInvocation getMI = as(fragments(valueDecl).get(0).getInitializer(), MethodInvocation.class);
+        if (!isMethod(getMI, "java.util.Map", "get", "java.lang.Object")
+                || !match(new ASTMatcher(), map, getMI.getExpression())
+                || !isVariable(arg0(getMI), keyDecl.resolveBinding())
+                || !hasEntryTypes(keySetMI, keyDecl, valueDecl, getMI)) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final AST ast = b.getAST();
+        final String entryName = this.ctx.getFreshName(node, "entry");
+        final ParameterizedType entryType = ast.newParameterizedType(
+                ast.newSimpleType(ast.newName(getMapEntryTypeName(node))));
+        typeArguments(entryType).add(b.copy(keyDecl.getType()));
+        typeArguments(entryType).add(b.copy(valueDecl.getType()));
+        final SingleVariableDeclaration entryDecl = ast.newSingleVariableDeclaration();
+        entryDecl.setType(entryType);
+        entryDecl.setName(b.simpleName(entryName));
+        r.replace(keyDecl, entryDecl);
+        r.replace(keySetMI, b.invoke(b.copy(map), "entrySet"));
+
+        if (countUses(node.getBody(), keyDecl.resolveBinding()) > 1) {
+            final VariableDeclarationFragment keyFragment = ast.newVariableDeclarationFragment();
+            keyFragment.setName(b.copy(keyDecl.getName()));
+            keyFragment.setInitializer(b.invoke(entryName, "getKey"));
+            final VariableDeclarationStatement keyStmt = ast.newVariableDeclarationStatement(keyFragment);
+            for (IExtendedModifier modifier : modifiers(keyDecl)) {
+                modifiers(keyStmt).add((IExtendedModifier) b.copy((ASTNode) modifier));
+            }
+            keyStmt.setType(b.copy(keyDecl.getType()));
+            r.insertBefore(keyStmt, valueDecl);
+        }
+        r.replace(getMI, b.invoke(entryName, "getValue"));
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /** Returns whether the declared key and value types are exactly the type arguments of the map. */
+    private boolean hasEntryTypes(MethodInvocation keySetMI, SingleVariableDeclaration keyDecl,
+            VariableDeclarationStatement valueDecl, MethodInvocation getMI) {
+        final ITypeBinding keySetType = keySetMI.resolveTypeBinding();
+        final ITypeBinding keyType = keyDecl.getType().resolveBinding();
+        final ITypeBinding valueType = valueDecl.getType().resolveBinding();
+        return keySetType != null
+                && keySetType.getTypeArguments().length == 1
+                && keyDecl.getExtraDimensions() == 0
+                && !keyDecl.isVarargs()
+                && keySetType.getTypeArguments()[0].equals(keyType)
+                && valueType != null
+                && valueType.equals(getMI.resolveTypeBinding());
+    }
+
+    /** Returns the name to use for {@code java.util.Map.Entry}, depending on the imports. */
+    private String getMapEntryTypeName(ASTNode node) {
+        final CompilationUnit cu = (CompilationUnit) node.getRoot();
+        for (ImportDeclaration id : imports(cu)) {
+            final String importName = id.getName().getFullyQualifiedName();
+            if (!id.isStatic() && !id.isOnDemand() && "java.util.Map.Entry".equals(importName)) {
+                return "Entry";
+            }
+        }
+        for (ImportDeclaration id : imports(cu)) {
+            final String importName = id.getName().getFullyQualifiedName();
+            if (!id.isStatic()
+                    && (id.isOnDemand() ? "java.util".equals(importName) : "java.util.Map".equals(importName))) {
+                return "Map.Entry";
+            }
+        }
+        return "java.util.Map.Entry";
+    }
+
+    private boolean isRawIterable(Expression expr) {
+        final ITypeBinding typeBinding = expr.resolveTypeBinding();
+        return typeBinding == null || typeBinding.isRawType();
+    }
+
+    private boolean isSideEffectFree(Expression expr) {
+        return expr instanceof SimpleName
+                || (expr instanceof FieldAccess && ((FieldAccess) expr).getExpression() instanceof ThisExpression);
+    }
+
+    private boolean isWritten(Expression expr) {
+        final ASTNode parent = expr.getParent();
+        return expr.getLocationInParent() == Assignment.LEFT_HAND_SIDE_PROPERTY
+                || parent instanceof PostfixExpression
+                || (parent instanceof PrefixExpression
+                        && (hasOperator((PrefixExpression) parent, PrefixExpression.Operator.INCREMENT)
+                            || hasOperator((PrefixExpression) parent, PrefixExpression.Operator.DECREMENT)));
+    }
+
+    private boolean isAssigned(Statement body, final IVariableBinding varBinding) {
+        final boolean[] assigned = new boolean[1];
+        body.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                assigned[0] |= varBinding.equals(node.resolveBinding()) && isWritten(node);
+                return VISIT_SUBTREE;
+            }
+        });
+        return assigned[0];
+    }
+
+    private int countUses(ASTNode node, final IVariableBinding varBinding) {
+        final int[] count = new int[1];
+        node.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName sn) {
+                if (varBinding.equals(sn.resolveBinding())) {
+                    count[0]++;
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return count[0];
+    }
+
+    private IVariableBinding getVariableBinding(Expression expr) {
+        if (expr instanceof SimpleName) {
+            final IBinding binding = ((SimpleName) expr).resolveBinding();
+            if (binding instanceof IVariableBinding) {
+                return (IVariableBinding) binding;
+            }
+        }
+        return null;
+    }
+
+    private boolean isVariable(Expression expr, IVariableBinding varBinding) {
+        return varBinding != null && varBinding.equals(getVariableBinding(expr));
+    }
 }
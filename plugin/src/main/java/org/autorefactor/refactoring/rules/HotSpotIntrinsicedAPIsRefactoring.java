@@ -25,28 +25,48 @@
  */
 package org.autorefactor.refactoring.rules;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.autorefactor.refactoring.ASTBuilder;
-import org.autorefactor.util.NotImplementedException;
+import org.autorefactor.refactoring.Refactorings;
+import org.eclipse.jdt.core.dom.ASTMatcher;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.ArrayAccess;
+import org.eclipse.jdt.core.dom.ArrayCreation;
 import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldAccess;
 import org.eclipse.jdt.core.dom.ForStatement;
 import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.IfStatement;
+import org.eclipse.jdt.core.dom.ImportDeclaration;
 import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.Modifier;
 import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.PostfixExpression;
 import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.PrimitiveType;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.ReturnStatement;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.Statement;
 import org.eclipse.jdt.core.dom.TryStatement;
 import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.eclipse.jdt.core.dom.WhileStatement;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
 import static org.autorefactor.util.Utils.*;
+import static org.eclipse.jdt.core.dom.ASTNode.*;
 import static org.eclipse.jdt.core.dom.Assignment.Operator.*;
 import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
 
@@ -67,22 +87,147 @@ public class HotSpotIntrinsicedAPIsRefactoring extends AbstractRefactoringRule {
         return "HotSpot intrinsiced APIs";
     }
 
-    private static class SystemArrayCopyParams {
+    /**
+     * An int expression of the form {@code a + b - c + 1}, referencing the terms of the original expressions,
+     * so that bounds can be compared and simplified before building any new AST node.
+     */
+    private static final class LinearExpr {
+        private final List<Expression> plusTerms = new ArrayList<Expression>();
+        private final List<Expression> minusTerms = new ArrayList<Expression>();
+        private int constant;
+
+        private static LinearExpr of(Expression expr) {
+            final LinearExpr result = new LinearExpr();
+            result.add(expr, true);
+            return result;
+        }
+
+        private void add(Expression expr, boolean positive) {
+            final Expression e = removeParentheses(expr);
+            final Integer value = intValue(e);
+            if (value != null) {
+                constant += positive ? value : -value;
+                return;
+            }
+            final InfixExpression ie = as(e, InfixExpression.class);
+            if (ie != null && isPrimitive(ie, "int") && (hasOperator(ie, PLUS) || hasOperator(ie, MINUS))) {
+                final boolean positiveOperands = hasOperator(ie, PLUS) ? positive : !positive;
+                add(ie.getLeftOperand(), positive);
+                add(ie.getRightOperand(), positiveOperands);
+                for (Expression operand : extendedOperands(ie)) {
+                    add(operand, positiveOperands);
+                }
+                return;
+            }
+            final PrefixExpression pe = as(e, PrefixExpression.class);
+            if (pe != null && hasOperator(pe, PrefixExpression.Operator.MINUS)) {
+                add(pe.getOperand(), !positive);
+                return;
+            }
+            addTerm(e, positive);
+        }
+
+        private void addTerm(Expression term, boolean positive) {
+            // "a - a" cancels out
+            for (Iterator<Expression> iter = (positive ? minusTerms : plusTerms).iterator(); iter.hasNext();) {
+                if (match(new ASTMatcher(), iter.next(), term)) {
+                    iter.remove();
+                    return;
+                }
+            }
+            (positive ? plusTerms : minusTerms).add(term);
+        }
+
+        private LinearExpr plus(LinearExpr other) {
+            return combine(other, true);
+        }
+
+        private LinearExpr minus(LinearExpr other) {
+            return combine(other, false);
+        }
+
+        private LinearExpr plus(int value) {
+            final LinearExpr result = combine(new LinearExpr(), true);
+            result.constant += value;
+            return result;
+        }
+
+        private LinearExpr combine(LinearExpr other, boolean positive) {
+            final LinearExpr result = new LinearExpr();
+            result.plusTerms.addAll(plusTerms);
+            result.minusTerms.addAll(minusTerms);
+            result.constant = constant + (positive ? other.constant : -other.constant);
+            for (Expression term : other.plusTerms) {
+                result.addTerm(term, positive);
+            }
+            for (Expression term : other.minusTerms) {
+                result.addTerm(term, !positive);
+            }
+            return result;
+        }
+
+        private boolean isConstant() {
+            return plusTerms.isEmpty() && minusTerms.isEmpty();
+        }
+
+        private boolean isConstant(int value) {
+            return isConstant() && constant == value;
+        }
+
+        private boolean isNegativeConstant() {
+            return isConstant() && constant < 0;
+        }
+
+        private boolean matches(LinearExpr other) {
+            return minus(other).isConstant(0);
+        }
+
+        /** Returns whether this expression is the length of the provided array, like {@code array.length}. */
+        private boolean isLengthOf(Expression array) {
+            if (plusTerms.size() != 1 || !minusTerms.isEmpty() || constant != 0) {
+                return false;
+            }
+            final Expression term = plusTerms.get(0);
+            if (term instanceof QualifiedName) {
+                final QualifiedName qn = (QualifiedName) term;
+                return "length".equals(qn.getName().getIdentifier())
+                        && match(new ASTMatcher(), qn.getQualifier(), array);
+            } else if (term instanceof FieldAccess) {
+                final FieldAccess fa = (FieldAccess) term;
+                return "length".equals(fa.getName().getIdentifier())
+                        && match(new ASTMatcher(), fa.getExpression(), array);
+            }
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return plusTerms + " - " + minusTerms + " + " + constant;
+        }
+    }
+
+    /**
+     * An index loop with a single statement in its body,
+     * visiting once each index of {@code [start, start + length)}, in increasing or decreasing order.
+     */
+    private static final class ArrayLoop {
+        private Statement loop;
+        /** The statement declaring the index of a while loop, which must be removed along with the loop. */
+        private Statement indexDecl;
         private IVariableBinding indexVarBinding;
-        private Expression indexStartPos;
-        private Expression srcArrayExpr;
-        private Expression srcPos;
-        private Expression destArrayExpr;
-        private Expression destPos;
-        private Expression length;
+        private LinearExpr start;
+        private LinearExpr length;
+        private Statement body;
+
+        private Statement getFirstStatement() {
+            return indexDecl != null ? indexDecl : loop;
+        }
 
         /** {@inheritDoc} */
         @Override
         public String toString() {
-            return "System.arraycopy("
-                    + srcArrayExpr + ", " + srcPos + ", "
-                    + destArrayExpr + ", " + destPos + ", "
-                    + length + ")";
+            return "for " + indexVarBinding.getName() + " in [" + start + ", " + start + " + " + length + ")";
         }
     }
 
@@ -93,234 +238,595 @@ public class HotSpotIntrinsicedAPIsRefactoring extends AbstractRefactoringRule {
 
     @Override
     public boolean visit(ForStatement node) {
-        final SystemArrayCopyParams params = new SystemArrayCopyParams();
-        collectUniqueIndex(node, params);
-        final IVariableBinding incrementedIdx = getUniqueIncrementedVariable(node);
+        final ArrayLoop loop = analyzeForLoop(node);
+        if (loop != null) {
+            return maybeRefactorLoop(loop);
+        }
+        return VISIT_SUBTREE;
+    }
+
+    @Override
+    public boolean visit(WhileStatement node) {
+        final ArrayLoop loop = analyzeWhileLoop(node);
+        if (loop != null) {
+            return maybeRefactorLoop(loop);
+        }
+        return VISIT_SUBTREE;
+    }
+
+    private ArrayLoop analyzeForLoop(ForStatement node) {
         final List<Statement> stmts = asList(node.getBody());
-        if (equalNotNull(params.indexVarBinding, incrementedIdx)
-                && stmts.size() == 1) {
-            collectLength(node.getExpression(), incrementedIdx, params);
-
-            final Assignment as = asExpression(stmts.get(0), Assignment.class);
-            if (as != null) {
-                final Expression lhs = as.getLeftHandSide();
-                final Expression rhs = as.getRightHandSide();
-                if (lhs instanceof ArrayAccess && rhs instanceof ArrayAccess) {
-                    final ArrayAccess aaLHS = (ArrayAccess) lhs;
-                    final ArrayAccess aaRHS = (ArrayAccess) rhs;
-                    params.destArrayExpr = aaLHS.getArray();
-                    params.srcArrayExpr = aaRHS.getArray();
-                    if (haveSameType(params.srcArrayExpr, params.destArrayExpr)) {
-                        params.destPos = calcIndex(aaLHS.getIndex(), params);
-                        params.srcPos = calcIndex(aaRHS.getIndex(), params);
-                        return replaceWithSystemArrayCopyCloneAll(node, params);
-                    }
+        if (initializers(node).size() != 1
+                || updaters(node).size() != 1
+                || stmts.size() != 1) {
+            return null;
+        }
+        final ArrayLoop loop = new ArrayLoop();
+        loop.loop = node;
+        loop.body = stmts.get(0);
+        final Expression initializer0 = initializers(node).get(0);
+        Expression init = null;
+        if (initializer0 instanceof VariableDeclarationExpression) {
+            final VariableDeclarationExpression vde = (VariableDeclarationExpression) initializer0;
+            if (isPrimitive(vde, "int") && fragments(vde).size() == 1) {
+                // this must be the array index
+                final VariableDeclarationFragment vdf = fragments(vde).get(0);
+                if (vdf.getExtraDimensions() == 0) {
+                    init = vdf.getInitializer();
+                    loop.indexVarBinding = vdf.resolveBinding();
+                }
+            }
+        } else if (initializer0 instanceof Assignment) {
+            final Assignment as = (Assignment) initializer0;
+            if (hasOperator(as, ASSIGN)
+                    && isPrimitive(as.resolveTypeBinding(), "int")) {
+                // this must be the array index.
+                // Its value after the loop would change, so it must not be used afterwards
+                final IVariableBinding indexVar = getVariableBinding(as.getLeftHandSide());
+                if (indexVar != null && !isUsedAfter(node, indexVar)) {
+                    init = as.getRightHandSide();
+                    loop.indexVarBinding = indexVar;
                 }
             }
         }
-        return VISIT_SUBTREE;
+        if (init == null
+                || !collectBounds(loop, init, node.getExpression(), getIncrement(updaters(node).get(0), loop))) {
+            return null;
+        }
+        return loop;
     }
 
-    private Expression calcIndex(Expression index, SystemArrayCopyParams params) {
-        if (index instanceof SimpleName) {
-            final IVariableBinding idxVar = getVariableBinding(index);
-            if (equalNotNull(params.indexVarBinding, idxVar)) {
-                return params.indexStartPos;
+    private ArrayLoop analyzeWhileLoop(WhileStatement node) {
+        final List<Statement> stmts = asList(node.getBody());
+        final VariableDeclarationStatement vds = as(getPreviousSibling(node), VariableDeclarationStatement.class);
+        if (stmts.size() != 2
+                || vds == null
+                || !isPrimitive(vds.getType().resolveBinding(), "int")
+                || fragments(vds).size() != 1) {
+            return null;
+        }
+        final VariableDeclarationFragment vdf = fragments(vds).get(0);
+        final ArrayLoop loop = new ArrayLoop();
+        loop.loop = node;
+        loop.indexDecl = vds;
+        loop.indexVarBinding = vdf.resolveBinding();
+        loop.body = stmts.get(0);
+        final Expression update = asExpression(stmts.get(1), Expression.class);
+        if (vdf.getInitializer() == null
+                || vdf.getExtraDimensions() != 0
+                || loop.indexVarBinding == null
+                || update == null
+                // the index declaration is removed with the loop
+                || isUsedAfter(node, loop.indexVarBinding)
+                || !collectBounds(loop, vdf.getInitializer(), node.getExpression(), getIncrement(update, loop))) {
+            return null;
+        }
+        return loop;
+    }
+
+    /** Returns 1 for an index increment, -1 for an index decrement, 0 otherwise. */
+    private int getIncrement(Expression update, ArrayLoop loop) {
+        if (update instanceof PostfixExpression) {
+            final PostfixExpression pe = (PostfixExpression) update;
+            if (isIndex(pe.getOperand(), loop)) {
+                if (hasOperator(pe, PostfixExpression.Operator.INCREMENT)) {
+                    return 1;
+                } else if (hasOperator(pe, PostfixExpression.Operator.DECREMENT)) {
+                    return -1;
+                }
             }
-        } else if (index instanceof InfixExpression) {
-            final InfixExpression ie = (InfixExpression) index;
-            if (!ie.hasExtendedOperands()
-                    && hasOperator(ie, PLUS)) {
-                final Expression leftOp = ie.getLeftOperand();
-                final Expression rightOp = ie.getRightOperand();
-                if (leftOp instanceof SimpleName) {
-                    final IVariableBinding idxVar = getVariableBinding(leftOp);
-                    if (equalNotNull(params.indexVarBinding, idxVar)) {
-                        return plus(rightOp, params.indexStartPos);
-                    }
+        } else if (update instanceof PrefixExpression) {
+            final PrefixExpression pe = (PrefixExpression) update;
+            if (isIndex(pe.getOperand(), loop)) {
+                if (hasOperator(pe, PrefixExpression.Operator.INCREMENT)) {
+                    return 1;
+                } else if (hasOperator(pe, PrefixExpression.Operator.DECREMENT)) {
+                    return -1;
                 }
-                if (rightOp instanceof SimpleName) {
-                    final IVariableBinding idxVar = getVariableBinding(rightOp);
-                    if (equalNotNull(params.indexVarBinding, idxVar)) {
-                        return plus(leftOp, params.indexStartPos);
-                    }
+            }
+        } else if (update instanceof Assignment) {
+            final Assignment as = (Assignment) update;
+            final Integer value = intValue(as.getRightHandSide());
+            if (isIndex(as.getLeftHandSide(), loop) && value != null && value == 1) {
+                if (hasOperator(as, PLUS_ASSIGN)) {
+                    return 1;
+                } else if (hasOperator(as, MINUS_ASSIGN)) {
+                    return -1;
                 }
             }
         }
-        return null;
+        return 0;
     }
 
-    private Expression minus(Expression expr1, Expression expr2) {
-        final ASTBuilder b = this.ctx.getASTBuilder();
+    /** Computes the visited range from the initial index value, the loop condition and the index increment. */
+    private boolean collectBounds(ArrayLoop loop, Expression init, Expression condition, int increment) {
+        final InfixExpression ie = as(condition, InfixExpression.class);
+        if (increment == 0
+                || ie == null
+                || ie.hasExtendedOperands()
+                || !isLoopInvariant(init, loop)) {
+            return false;
+        }
+        // normalize the condition to "index op bound"
+        final Expression bound;
+        InfixExpression.Operator operator = ie.getOperator();
+        if (isIndex(ie.getLeftOperand(), loop)) {
+            bound = ie.getRightOperand();
+        } else if (isIndex(ie.getRightOperand(), loop)) {
+            bound = ie.getLeftOperand();
+            operator = reverse(operator);
+        } else {
+            return false;
+        }
+        if (!isLoopInvariant(bound, loop)) {
+            return false;
+        }
 
-        final Integer expr1Value = intValue(expr1);
-        final Integer expr2Value = intValue(expr2);
-        if (expr1Value != null && expr2Value != null) {
-            return b.int0(expr1Value - expr2Value);
-        } else if (expr1Value != null && expr1Value == 0) {
-            throw new NotImplementedException(expr2, "Code is not implemented for negating expr2: " + expr2);
-        } else if (expr2Value != null && expr2Value == 0) {
-            return b.copy(expr1);
+        final LinearExpr initExpr = LinearExpr.of(init);
+        final LinearExpr boundExpr = LinearExpr.of(bound);
+        if (increment > 0 && LESS.equals(operator)) {
+            loop.start = initExpr;
+            loop.length = boundExpr.minus(initExpr);
+        } else if (increment > 0 && LESS_EQUALS.equals(operator)) {
+            loop.start = initExpr;
+            loop.length = boundExpr.plus(1).minus(initExpr);
+        } else if (increment < 0 && GREATER_EQUALS.equals(operator)) {
+            loop.start = boundExpr;
+            loop.length = initExpr.plus(1).minus(boundExpr);
+        } else if (increment < 0 && GREATER.equals(operator)) {
+            loop.start = boundExpr.plus(1);
+            loop.length = initExpr.minus(boundExpr);
+        } else {
+            return false;
         }
-        return b.infixExpr(
-                b.copy(expr1),
-                InfixExpression.Operator.MINUS,
-                b.copy(expr2));
+        // a loop which never iterates must not be replaced by a method throwing an exception
+        return !loop.start.isNegativeConstant()
+                && !loop.length.isNegativeConstant()
+                && !loop.length.isConstant(0);
     }
 
-    private Expression plus(Expression expr1, Expression expr2) {
-        final ASTBuilder b = this.ctx.getASTBuilder();
-
-        final Integer expr1Value = intValue(expr1);
-        final Integer expr2Value = intValue(expr2);
-        if (expr1Value != null && expr2Value != null) {
-            return b.int0(expr1Value + expr2Value);
-        } else if (expr1Value != null && expr1Value == 0) {
-            return b.copy(expr2);
-        } else if (expr2Value != null && expr2Value == 0) {
-            return b.copy(expr1);
+    private InfixExpression.Operator reverse(InfixExpression.Operator operator) {
+        if (LESS.equals(operator)) {
+            return GREATER;
+        } else if (LESS_EQUALS.equals(operator)) {
+            return GREATER_EQUALS;
+        } else if (GREATER.equals(operator)) {
+            return LESS;
+        } else if (GREATER_EQUALS.equals(operator)) {
+            return LESS_EQUALS;
         }
-        return b.infixExpr(
-                b.copy(expr1),
-                InfixExpression.Operator.PLUS,
-                b.copy(expr2));
+        return operator;
     }
 
-    private Integer intValue(Expression expr) {
-        if (expr instanceof NumberLiteral) {
-            try {
-                return Integer.parseInt(((NumberLiteral) expr).getToken());
-            } catch (NumberFormatException ignored) {
-                // this is not an int, nothing to do
+    private boolean maybeRefactorLoop(ArrayLoop loop) {
+        final Assignment as = asExpression(loop.body, Assignment.class);
+        if (as != null && hasOperator(as, ASSIGN)) {
+            final ArrayAccess destAccess = as(as.getLeftHandSide(), ArrayAccess.class);
+            final LinearExpr destOffset = getIndexOffset(destAccess, loop);
+            if (destOffset == null) {
+                return VISIT_SUBTREE;
             }
+            final Expression destArray = destAccess.getArray();
+            final ArrayAccess srcAccess = as(as.getRightHandSide(), ArrayAccess.class);
+            if (srcAccess != null) {
+                final LinearExpr srcOffset = getIndexOffset(srcAccess, loop);
+                final Expression srcArray = srcAccess.getArray();
+                if (srcOffset != null
+                        && haveSameType(srcArray, destArray)
+                        // copying inside the same array depends on the iteration order
+                        && !match(new ASTMatcher(), srcArray, destArray)) {
+                    final LinearExpr srcPos = loop.start.plus(srcOffset);
+                    final LinearExpr destPos = loop.start.plus(destOffset);
+                    if (srcPos.isNegativeConstant() || destPos.isNegativeConstant()) {
+                        return VISIT_SUBTREE;
+                    }
+                    if (maybeReplaceWithArraysCopyOf(loop, srcArray, srcPos, destArray, destPos)) {
+                        return DO_NOT_VISIT_SUBTREE;
+                    }
+                    return replaceWithSystemArrayCopy(loop, srcArray, srcPos, destArray, destPos);
+                }
+            } else if (isFillValue(as.getRightHandSide(), loop)) {
+                return maybeReplaceWithArraysFill(loop, destArray, destOffset, as.getRightHandSide());
+            }
+            return VISIT_SUBTREE;
         }
-        return null;
+        final IfStatement is = as(loop.body, IfStatement.class);
+        if (is != null) {
+            return maybeReplaceWithArraysEquals(loop, is);
+        }
+        return VISIT_SUBTREE;
     }
 
-    private void collectLength(final Expression condition,
-            final IVariableBinding incrementedIdx, final SystemArrayCopyParams params) {
-        if (condition instanceof InfixExpression) {
-            final InfixExpression ie = (InfixExpression) condition;
-            if (hasOperator(ie, LESS)) {
-                IVariableBinding conditionIdx = getVariableBinding(ie.getLeftOperand());
-                if (equalNotNull(incrementedIdx, conditionIdx)) {
-                    params.length = ie.getRightOperand();
-                }
-            } else if (hasOperator(ie, LESS_EQUALS)) {
-                IVariableBinding conditionIdx = getVariableBinding(ie.getLeftOperand());
-                if (equalNotNull(incrementedIdx, conditionIdx)) {
-                    params.length = minus(
-                            plus(ie.getRightOperand(), ctx.getAST().newNumberLiteral("1")),
-                            params.indexStartPos);
-                }
-            } else if (hasOperator(ie, GREATER)) {
-                IVariableBinding conditionIdx = getVariableBinding(ie.getRightOperand());
-                if (equalNotNull(incrementedIdx, conditionIdx)) {
-                    params.length = ie.getLeftOperand();
+    /**
+     * Returns the offset of the provided array access index relative to the loop index,
+     * like {@code 1} for {@code array[i + 1]}.
+     */
+    private LinearExpr getIndexOffset(ArrayAccess aa, ArrayLoop loop) {
+        if (aa == null || !isLoopInvariant(aa.getArray(), loop)) {
+            return null;
+        }
+        final LinearExpr index = LinearExpr.of(aa.getIndex());
+        Expression indexTerm = null;
+        for (Expression term : index.plusTerms) {
+            if (isIndex(term, loop)) {
+                if (indexTerm != null) {
+                    return null;
                 }
-            } else if (hasOperator(ie, GREATER_EQUALS)) {
-                IVariableBinding conditionIdx = getVariableBinding(ie.getRightOperand());
-                if (equalNotNull(incrementedIdx, conditionIdx)) {
-                    params.length = minus(
-                            plus(ie.getLeftOperand(), ctx.getAST().newNumberLiteral("1")),
-                            params.indexStartPos);
+                indexTerm = term;
+            } else if (!isLoopInvariant(term, loop)) {
+                return null;
+            }
+        }
+        for (Expression term : index.minusTerms) {
+            if (!isLoopInvariant(term, loop)) {
+                return null;
+            }
+        }
+        if (indexTerm == null) {
+            return null;
+        }
+        index.plusTerms.remove(indexTerm);
+        return index;
+    }
+
+    private boolean isIndex(Expression expr, ArrayLoop loop) {
+        return equalNotNull(loop.indexVarBinding, getVariableBinding(expr));
+    }
+
+    /**
+     * Returns whether the provided expression does not depend on the loop index and has no side effects,
+     * so that evaluating it once gives the same result as evaluating it at each iteration.
+     */
+    private boolean isLoopInvariant(Expression expr, final ArrayLoop loop) {
+        if (!isSideEffectFree(expr)) {
+            return false;
+        }
+        final boolean[] usesIndex = new boolean[1];
+        expr.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                usesIndex[0] |= equalNotNull(loop.indexVarBinding, node.resolveBinding());
+                return VISIT_SUBTREE;
+            }
+        });
+        return !usesIndex[0];
+    }
+
+    private boolean isSideEffectFree(Expression expr) {
+        switch (expr.getNodeType()) {
+        case SIMPLE_NAME:
+        case QUALIFIED_NAME:
+        case NUMBER_LITERAL:
+        case CHARACTER_LITERAL:
+        case BOOLEAN_LITERAL:
+        case STRING_LITERAL:
+        case NULL_LITERAL:
+        case THIS_EXPRESSION:
+            return true;
+
+        case FIELD_ACCESS:
+            return isSideEffectFree(((FieldAccess) expr).getExpression());
+
+        case PARENTHESIZED_EXPRESSION:
+            return isSideEffectFree(removeParentheses(expr));
+
+        case PREFIX_EXPRESSION:
+            final PrefixExpression pe = (PrefixExpression) expr;
+            return hasOperator(pe, PrefixExpression.Operator.MINUS) && isSideEffectFree(pe.getOperand());
+
+        case INFIX_EXPRESSION:
+            final InfixExpression ie = (InfixExpression) expr;
+            if (!hasOperator(ie, PLUS) && !hasOperator(ie, MINUS) && !hasOperator(ie, TIMES)) {
+                return false;
+            }
+            for (Expression operand : allOperands(ie)) {
+                if (!isSideEffectFree(operand)) {
+                    return false;
                 }
             }
+            return true;
+
+        default:
+            return false;
         }
     }
 
+    private boolean isFillValue(Expression value, ArrayLoop loop) {
+        return isLoopInvariant(value, loop) && !(value instanceof InfixExpression);
+    }
+
     private static boolean haveSameType(Expression a1, Expression a2) {
         return a1 != null && a2 != null
                 && equalNotNull(a1.resolveTypeBinding(), a2.resolveTypeBinding());
     }
 
-    private boolean replaceWithSystemArrayCopyCloneAll(ForStatement node,
-            SystemArrayCopyParams params) {
-        if (params.srcArrayExpr == null
-                || params.srcPos == null
-                || params.destArrayExpr == null
-                || params.destPos == null
-                || params.length == null) {
-            return VISIT_SUBTREE;
+    /**
+     * Replaces a loop copying a whole array into the freshly created array declared just before it,
+     * like {@code int[] b = new int[a.length];}, with {@code Arrays.copyOf()} or {@code Arrays.copyOfRange()}.
+     */
+    private boolean maybeReplaceWithArraysCopyOf(ArrayLoop loop,
+            Expression srcArray, LinearExpr srcPos, Expression destArray, LinearExpr destPos) {
+        final VariableDeclarationStatement vds =
+                as(getPreviousSibling(loop.getFirstStatement()), VariableDeclarationStatement.class);
+        if (!destPos.isConstant(0)
+                || vds == null
+                || fragments(vds).size() != 1) {
+            return false;
+        }
+        final VariableDeclarationFragment vdf = fragments(vds).get(0);
+        final ArrayCreation ac = as(vdf.getInitializer(), ArrayCreation.class);
+        if (ac == null
+                || !equalNotNull(vdf.resolveBinding(), getVariableBinding(destArray))
+                || ac.getInitializer() != null
+                || dimensions(ac).size() != 1
+                || ac.getType().getDimensions() != 1) {
+            return false;
+        }
+        // Arrays.copyOf() creates an array of the runtime type of the source array,
+        // it is only the declared type if it cannot be subclassed
+        final ITypeBinding elementType = ac.getType().getElementType().resolveBinding();
+        if (elementType == null
+                || (!elementType.isPrimitive() && !Modifier.isFinal(elementType.getModifiers()))) {
+            return false;
+        }
+        // Arrays.copyOf() pads with default values where the loop would throw,
+        // so the loop must copy the whole source array, up to its end
+        final LinearExpr srcEnd = srcPos.plus(loop.length);
+        final Expression dimension = dimensions(ac).get(0);
+        if (!LinearExpr.of(dimension).matches(loop.length)
+                || !srcEnd.isLengthOf(srcArray)) {
+            return false;
         }
+
         final ASTBuilder b = this.ctx.getASTBuilder();
-        return replaceWithSystemArrayCopy(node,
-                b.copy(params.srcArrayExpr),
-                b.copy(params.srcPos),
-                b.copy(params.destArrayExpr),
-                b.copy(params.destPos),
-                b.copy(params.length));
-    }
-
-    private boolean replaceWithSystemArrayCopy(ForStatement node,
-            Expression srcArrayExpr, Expression srcPos,
-            Expression destArrayExpr, Expression destPos,
-            Expression length) {
+        final Expression copy;
+        if (srcPos.isConstant(0)) {
+            copy = b.invoke(arraysName(loop.loop), "copyOf", b.copy(srcArray), b.copy(dimension));
+        } else {
+            copy = b.invoke(arraysName(loop.loop), "copyOfRange",
+                    b.copy(srcArray), toExpression(srcPos), toExpression(srcEnd));
+        }
+        final Refactorings r = this.ctx.getRefactorings();
+        r.replace(ac, copy);
+        removeLoop(loop);
+        return true;
+    }
+
+    private boolean replaceWithSystemArrayCopy(ArrayLoop loop,
+            Expression srcArrayExpr, LinearExpr srcPos,
+            Expression destArrayExpr, LinearExpr destPos) {
         final ASTBuilder b = this.ctx.getASTBuilder();
         final TryStatement tryS = b.try0(
                 b.block(
                         b.toStmt(
                                 b.invoke("System", "arraycopy",
-                                        srcArrayExpr, srcPos, destArrayExpr, destPos, length))),
+                                        b.copy(srcArrayExpr), toExpression(srcPos),
+                                        b.copy(destArrayExpr), toExpression(destPos),
+                                        toExpression(loop.length)))),
                 b.catch0("IndexOutOfBoundsException", "e",
                         b.throw0(
                                 b.new0("ArrayIndexOutOfBoundsException",
                                         b.invoke("e", "getMessage")))));
 
-        this.ctx.getRefactorings().replace(node, tryS);
+        replaceLoop(loop, tryS);
         return DO_NOT_VISIT_SUBTREE;
     }
 
-    private void collectUniqueIndex(ForStatement node,
-            SystemArrayCopyParams params) {
-        if (initializers(node).size() != 1) {
-            return;
+    /**
+     * Replaces a loop assigning the same value to all the elements of an array with {@code Arrays.fill()}.
+     * The range must be proven to be in bounds or to throw like the loop.
+     */
+    private boolean maybeReplaceWithArraysFill(ArrayLoop loop, Expression array, LinearExpr offset, Expression value) {
+        final LinearExpr from = loop.start.plus(offset);
+        final LinearExpr to = from.plus(loop.length);
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Expression fill;
+        if (from.isConstant(0) && to.isLengthOf(array)) {
+            fill = b.invoke(arraysName(loop.loop), "fill", b.copy(array), fillValue(array, value));
+        } else if (from.isConstant() && to.isConstant() && from.constant >= 0 && to.constant > from.constant) {
+            // out of bounds indexes throw ArrayIndexOutOfBoundsException like the loop
+            fill = b.invoke(arraysName(loop.loop), "fill",
+                    b.copy(array), toExpression(from), toExpression(to), fillValue(array, value));
+        } else {
+            return VISIT_SUBTREE;
         }
-        final Expression initializer0 = initializers(node).get(0);
-        if (initializer0 instanceof VariableDeclarationExpression) {
-            final VariableDeclarationExpression vde =
-                    (VariableDeclarationExpression) initializer0;
-            if (isPrimitive(vde, "int") && fragments(vde).size() == 1) {
-                // this must be the array index
-                VariableDeclarationFragment vdf = fragments(vde).get(0);
-                if (vdf.getExtraDimensions() == 0) {
-                    params.indexStartPos = vdf.getInitializer();
-                    params.indexVarBinding = vdf.resolveBinding();
-                    return;
-                }
-            }
-        } else if (initializer0 instanceof Assignment) {
-            final Assignment as = (Assignment) initializer0;
-            if (hasOperator(as, ASSIGN)
-                    && isPrimitive(as.resolveTypeBinding(), "int")) {
-                // this must be the array index
-                params.indexStartPos = as.getRightHandSide();
-                final Expression lhs = as.getLeftHandSide();
-                if (lhs instanceof SimpleName) {
-                    final IBinding binding = ((SimpleName) lhs).resolveBinding();
-                    if (binding instanceof IVariableBinding) {
-                        params.indexVarBinding = (IVariableBinding) binding;
-                        return;
-                    }
-                }
+        replaceLoop(loop, b.toStmt(fill));
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /** Casts int constants to byte, short or char to select the right {@code Arrays.fill()} overload. */
+    private Expression fillValue(Expression array, Expression value) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final ITypeBinding arrayType = array.resolveTypeBinding();
+        final ITypeBinding elementType = arrayType != null ? arrayType.getComponentType() : null;
+        final ITypeBinding valueType = value.resolveTypeBinding();
+        if (elementType != null
+                && valueType != null
+                && elementType.isPrimitive()
+                && !valueType.isAssignmentCompatible(elementType)) {
+            final CastExpression ce = b.getAST().newCastExpression();
+            ce.setType(b.getAST().newPrimitiveType(PrimitiveType.toCode(elementType.getName())));
+            ce.setExpression(b.copy(value));
+            return ce;
+        }
+        return b.copy(value);
+    }
+
+    /**
+     * Replaces a loop comparing all the elements of two primitive arrays with {@code Arrays.equals()},
+     * when it is guarded by a length check and followed by {@code return true;}, or when it is inside
+     * the length check and followed by {@code return false;}.
+     */
+    private boolean maybeReplaceWithArraysEquals(ArrayLoop loop, IfStatement is) {
+        final List<Statement> thenStmts = asList(is.getThenStatement());
+        final InfixExpression ie = as(is.getExpression(), InfixExpression.class);
+        if (is.getElseStatement() != null
+                || thenStmts.size() != 1
+                || !isReturn(thenStmts.get(0), false)
+                || ie == null
+                || !hasOperator(ie, NOT_EQUALS)
+                || ie.hasExtendedOperands()
+                || !loop.start.isConstant(0)) {
+            return VISIT_SUBTREE;
+        }
+        final ArrayAccess aa1 = as(ie.getLeftOperand(), ArrayAccess.class);
+        final ArrayAccess aa2 = as(ie.getRightOperand(), ArrayAccess.class);
+        final LinearExpr offset1 = getIndexOffset(aa1, loop);
+        final LinearExpr offset2 = getIndexOffset(aa2, loop);
+        if (offset1 == null
+                || offset2 == null
+                || !offset1.isConstant(0)
+                || !offset2.isConstant(0)) {
+            return VISIT_SUBTREE;
+        }
+        final Expression array1 = aa1.getArray();
+        final Expression array2 = aa2.getArray();
+        final ITypeBinding arrayType = array1.resolveTypeBinding();
+        // Arrays.equals() compares floating point numbers with their bits, and objects with equals()
+        if (!haveSameType(array1, array2)
+                || !isPrimitive(arrayType.getComponentType())
+                || isPrimitive(arrayType.getComponentType(), "float")
+                || isPrimitive(arrayType.getComponentType(), "double")
+                || !(loop.length.isLengthOf(array1) || loop.length.isLengthOf(array2))) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final Statement previousStmt = getPreviousSibling(loop.getFirstStatement());
+        final Statement nextStmt = getNextSibling(loop.loop);
+        final IfStatement lengthCheck = as(previousStmt, IfStatement.class);
+        if (lengthCheck != null
+                && lengthCheck.getElseStatement() == null
+                && isLengthComparison(lengthCheck.getExpression(), NOT_EQUALS, array1, array2)
+                && asList(lengthCheck.getThenStatement()).size() == 1
+                && isReturn(asList(lengthCheck.getThenStatement()).get(0), false)
+                && isReturn(nextStmt, true)) {
+            r.remove(lengthCheck);
+            removeIndexDecl(loop);
+            r.replace(loop.loop, b.return0(b.invoke(arraysName(loop.loop), "equals", b.copy(array1), b.copy(array2))));
+            r.remove(nextStmt);
+            return DO_NOT_VISIT_SUBTREE;
+        }
+
+        final ASTNode block = loop.loop.getParent();
+        final ASTNode outerIfNode = block.getParent();
+        if (block instanceof Block
+                && outerIfNode instanceof IfStatement) {
+            final IfStatement outerIf = (IfStatement) outerIfNode;
+            if (outerIf.getThenStatement() == block
+                    && outerIf.getElseStatement() == null
+                    && isLengthComparison(outerIf.getExpression(), EQUALS, array1, array2)
+                    && statements((Block) block).get(0) == loop.getFirstStatement()
+                    && statements((Block) block).size() == (loop.indexDecl != null ? 3 : 2)
+                    && isReturn(nextStmt, true)
+                    && isReturn(getNextSibling(outerIf), false)) {
+                r.replace(outerIf,
+                        b.return0(b.invoke(arraysName(loop.loop), "equals", b.copy(array1), b.copy(array2))));
+                r.remove(getNextSibling(outerIf));
+                return DO_NOT_VISIT_SUBTREE;
             }
         }
+        return VISIT_SUBTREE;
     }
 
-    private IVariableBinding getUniqueIncrementedVariable(ForStatement node) {
-        if (updaters(node).size() != 1) {
-            return null;
+    private boolean isLengthComparison(Expression expr, InfixExpression.Operator operator,
+            Expression array1, Expression array2) {
+        final InfixExpression ie = as(expr, InfixExpression.class);
+        if (ie == null || !hasOperator(ie, operator) || ie.hasExtendedOperands()) {
+            return false;
         }
-        final Expression updater0 = updaters(node).get(0);
-        if (updater0 instanceof PostfixExpression) {
-            final PostfixExpression pe = (PostfixExpression) updater0;
-            if (hasOperator(pe, PostfixExpression.Operator.INCREMENT)) {
-                return getVariableBinding(pe.getOperand());
+        final LinearExpr left = LinearExpr.of(ie.getLeftOperand());
+        final LinearExpr right = LinearExpr.of(ie.getRightOperand());
+        return (left.isLengthOf(array1) && right.isLengthOf(array2))
+                || (left.isLengthOf(array2) && right.isLengthOf(array1));
+    }
+
+    private boolean isReturn(Statement stmt, boolean booleanValue) {
+        final ReturnStatement rs = as(stmt, ReturnStatement.class);
+        return rs != null
+                && rs.getExpression() != null
+                && Boolean.valueOf(booleanValue).equals(getBooleanLiteral(rs.getExpression()));
+    }
+
+    private void replaceLoop(ArrayLoop loop, Statement replacement) {
+        removeIndexDecl(loop);
+        this.ctx.getRefactorings().replace(loop.loop, replacement);
+    }
+
+    private void removeLoop(ArrayLoop loop) {
+        removeIndexDecl(loop);
+        this.ctx.getRefactorings().remove(loop.loop);
+    }
+
+    private void removeIndexDecl(ArrayLoop loop) {
+        if (loop.indexDecl != null) {
+            this.ctx.getRefactorings().remove(loop.indexDecl);
+        }
+    }
+
+    /** Returns the name to use for {@code java.util.Arrays}, depending on the imports. */
+    private Expression arraysName(ASTNode node) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final CompilationUnit cu = (CompilationUnit) node.getRoot();
+        for (ImportDeclaration id : imports(cu)) {
+            final String importName = id.getName().getFullyQualifiedName();
+            if (!id.isStatic()
+                    && (id.isOnDemand() ? "java.util".equals(importName) : "java.util.Arrays".equals(importName))) {
+                return b.name("Arrays");
             }
-        } else if (updater0 instanceof PrefixExpression) {
-            final PrefixExpression pe = (PrefixExpression) updater0;
-            if (hasOperator(pe, PrefixExpression.Operator.INCREMENT)) {
-                return getVariableBinding(pe.getOperand());
+        }
+        return b.name("java", "util", "Arrays");
+    }
+
+    private Expression toExpression(LinearExpr linear) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        Expression result = null;
+        for (Expression term : linear.plusTerms) {
+            result = result == null ? b.copy(term) : b.infixExpr(result, PLUS, b.copy(term));
+        }
+        int constant = linear.constant;
+        if (result == null) {
+            result = b.int0(constant);
+            constant = 0;
+        }
+        for (Expression term : linear.minusTerms) {
+            result = b.infixExpr(result, MINUS, b.parenthesizeIfNeeded(b.copy(term)));
+        }
+        if (constant > 0) {
+            result = b.infixExpr(result, PLUS, b.int0(constant));
+        } else if (constant < 0) {
+            result = b.infixExpr(result, MINUS, b.int0(-constant));
+        }
+        return result;
+    }
+
+    private static Integer intValue(Expression expr) {
+        if (expr instanceof NumberLiteral) {
+            try {
+                return Integer.parseInt(((NumberLiteral) expr).getToken());
+            } catch (NumberFormatException ignored) {
+                // this is not an int, nothing to do
             }
         }
         return null;
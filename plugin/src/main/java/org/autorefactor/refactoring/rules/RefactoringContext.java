@@ -25,7 +25,16 @@
  */
 package org.autorefactor.refactoring.rules;
 
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.autorefactor.cfg.CFGBasicBlock;
+import org.autorefactor.cfg.CFGBuilder;
+import org.autorefactor.cfg.CompactCFG;
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.ASTHelper;
 import org.autorefactor.refactoring.JavaProjectOptions;
 import org.autorefactor.refactoring.Refactorings;
 import org.autorefactor.util.UnhandledException;
@@ -33,8 +42,10 @@ import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
 import org.eclipse.jdt.core.dom.Comment;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
 import static org.autorefactor.refactoring.SourceLocation.*;
@@ -49,6 +60,17 @@ public class RefactoringContext {
     private final Refactorings refactorings;
     private final ASTBuilder astBuilder;
     private final JavaProjectOptions options;
+    /** Lazily created on the first call to {@link #getCFG(MethodDeclaration)}. */
+    private CFGBuilder cfgBuilder;
+    /** CFGs already built during this pass, keyed by method declaration. */
+    private final Map<MethodDeclaration, CFGBasicBlock> cfgs =
+            new IdentityHashMap<MethodDeclaration, CFGBasicBlock>();
+    /** Compact CFGs already built during this pass, keyed by method declaration. */
+    private final Map<MethodDeclaration, CompactCFG> compactCfgs =
+            new IdentityHashMap<MethodDeclaration, CompactCFG>();
+    /** Variable names declared by the refactorings of this pass, keyed by enclosing body declaration. */
+    private final Map<BodyDeclaration, Set<String>> reservedNames =
+            new IdentityHashMap<BodyDeclaration, Set<String>>();
 
     /**
      * Builds an instance of this class.
@@ -60,7 +82,7 @@ public class RefactoringContext {
     public RefactoringContext(ICompilationUnit compilationUnit, CompilationUnit astRoot, JavaProjectOptions options) {
         this.compilationUnit = compilationUnit;
         this.astRoot = astRoot;
-        this.refactorings = new Refactorings(astRoot.getAST());
+        this.refactorings = new Refactorings(astRoot.getAST(), options.getCompilerOptions());
         this.astBuilder = new ASTBuilder(refactorings);
         this.options = options;
     }
@@ -110,6 +132,79 @@ public class RefactoringContext {
         return refactorings;
     }
 
+    /**
+     * Returns the control flow graph of the provided method declaration.
+     * <p>
+     * The CFG is built on the first request, then memoized for the rest of the pass
+     * so rules querying the same method share the same graph.
+     * It must be treated as read-only.
+     *
+     * @param node the method declaration for which to get the CFG
+     * @return the entry block of the CFG of the provided method declaration,
+     *         or null if the method declaration has no body
+     */
+    public CFGBasicBlock getCFG(MethodDeclaration node) {
+        if (node.getBody() == null) {
+            return null;
+        }
+        CFGBasicBlock entryBlock = cfgs.get(node);
+        if (entryBlock == null) {
+            if (cfgBuilder == null) {
+                cfgBuilder = new CFGBuilder(getSource(node), options);
+            }
+            entryBlock = cfgBuilder.buildCFG(node);
+            cfgs.put(node, entryBlock);
+        }
+        return entryBlock;
+    }
+
+    /**
+     * Returns the compact form of the control flow graph of the provided method declaration.
+     * <p>
+     * It is built from {@link #getCFG(MethodDeclaration)} on the first request,
+     * then memoized for the rest of the pass.
+     *
+     * @param node the method declaration for which to get the CFG
+     * @return the compact form of the CFG of the provided method declaration,
+     *         or null if the method declaration has no body
+     */
+    public CompactCFG getCompactCFG(MethodDeclaration node) {
+        CompactCFG cfg = compactCfgs.get(node);
+        if (cfg == null) {
+            final CFGBasicBlock entryBlock = getCFG(node);
+            if (entryBlock == null) {
+                return null;
+            }
+            cfg = CompactCFG.of(entryBlock);
+            compactCfgs.put(node, cfg);
+        }
+        return cfg;
+    }
+
+    /**
+     * Returns a variable name based on the provided name, which neither clashes with,
+     * nor shadows any name used in the body declaration enclosing the provided node.
+     * <p>
+     * The returned name is reserved for the rest of the pass,
+     * so the names declared by two refactorings of the same body declaration cannot clash either.
+     *
+     * @param node the node where the variable will be declared
+     * @param name the preferred name
+     * @return the provided name, possibly suffixed with a number
+     * @see org.autorefactor.refactoring.ASTHelper#getFreshName(ASTNode, String, Set)
+     */
+    public String getFreshName(ASTNode node, String name) {
+        final BodyDeclaration bodyDecl = getAncestor(node, BodyDeclaration.class);
+        Set<String> names = reservedNames.get(bodyDecl);
+        if (names == null) {
+            names = new HashSet<String>();
+            reservedNames.put(bodyDecl, names);
+        }
+        final String freshName = ASTHelper.getFreshName(node, name, names);
+        names.add(freshName);
+        return freshName;
+    }
+
     String getSource(ASTNode node) {
         try {
             return compilationUnit.getSource();
@@ -0,0 +1,434 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.TypeNameDecider;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.eclipse.jdt.core.dom.Modifier.ModifierKeyword.*;
+
+/**
+ * See {@link #getDescription()} method.
+ * <p>
+ * Calls to {@link String#split(String)} with a regex handled by its fast path,
+ * like {@code ","} or {@code "\\."}, do not compile any regex and are left untouched.
+ */
+@SuppressWarnings("javadoc")
+public class RegexPatternRefactoring extends AbstractRefactoringRule {
+    private static final String PATTERN_CLASS = "java.util.regex.Pattern";
+
+    /** A method invocation compiling a constant regex, with the expressions used to compile the regex. */
+    private static final class RegexUse {
+        private final MethodInvocation node;
+        private final Expression regex;
+        private final Expression flags;
+
+        private RegexUse(MethodInvocation node, Expression regex, Expression flags) {
+            this.node = node;
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        private String getKey() {
+            final Object flagsValue = flags != null ? flags.resolveConstantExpressionValue() : 0;
+            return flagsValue + ":" + regex.resolveConstantExpressionValue();
+        }
+    }
+
+    private TypeNameDecider typeNameDecider;
+    private Set<String> usedNames;
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Moves the compilation of constant regular expressions out of method bodies"
+            + " into private static final Pattern fields, so they are compiled only once."
+            + " Applies to String.matches(), String.replaceAll(), String.replaceFirst(), String.split(),"
+            + " Pattern.matches() and Pattern.compile().";
+    }
+
+    @Override
+    public String getName() {
+        return "Regex pattern";
+    }
+
+    @Override
+    public boolean visit(CompilationUnit node) {
+        this.typeNameDecider = new TypeNameDecider(node, this.ctx.getASTBuilder(), this.ctx.getRefactorings());
+        this.usedNames = null;
+        return VISIT_SUBTREE;
+    }
+
+    @Override
+    public boolean visit(TypeDeclaration node) {
+        final ITypeBinding typeBinding = node.resolveBinding();
+        if (!canDeclareStaticFields(typeBinding)) {
+            return VISIT_SUBTREE;
+        }
+        final List<RegexUse> regexUses = new ArrayList<RegexUse>();
+        collectRegexUses(node, typeBinding, regexUses);
+        if (regexUses.isEmpty()) {
+            return VISIT_SUBTREE;
+        }
+
+        final Map<String, String> fieldNames = getExistingPatternFields(node);
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final List<Integer> insertIndices = new ArrayList<Integer>();
+        for (RegexUse regexUse : regexUses) {
+            String fieldName = fieldNames.get(regexUse.getKey());
+            if (fieldName == null) {
+                fieldName = getFreshFieldName(node, regexUse.regex);
+                fieldNames.put(regexUse.getKey(), fieldName);
+                final int index = getInsertIndex(node, regexUse);
+                int nbInsertedBefore = 0;
+                for (Integer insertIndex : insertIndices) {
+                    if (insertIndex <= index) {
+                        nbInsertedBefore++;
+                    }
+                }
+                insertIndices.add(index);
+                r.insertAt(newPatternField(fieldName, regexUse), index + nbInsertedBefore,
+                        TypeDeclaration.BODY_DECLARATIONS_PROPERTY, node);
+            }
+            r.replace(regexUse.node, usePatternField(regexUse.node, fieldName));
+        }
+        return VISIT_SUBTREE;
+    }
+
+    /** Only top level and static nested classes can declare static fields which are not constant variables. */
+    private boolean canDeclareStaticFields(ITypeBinding typeBinding) {
+        return typeBinding != null
+                && typeBinding.isClass()
+                && (typeBinding.isTopLevel()
+                        || (typeBinding.isMember() && Modifier.isStatic(typeBinding.getModifiers())));
+    }
+
+    /**
+     * Collects the regex uses from the methods of the provided type, including the methods of its inner classes
+     * which cannot declare the static fields themselves.
+     */
+    private void collectRegexUses(TypeDeclaration node, final ITypeBinding hostType, final List<RegexUse> results) {
+        for (BodyDeclaration bodyDecl : bodyDeclarations(node)) {
+            if (bodyDecl instanceof MethodDeclaration && ((MethodDeclaration) bodyDecl).getBody() != null) {
+                ((MethodDeclaration) bodyDecl).getBody().accept(new ASTVisitor() {
+                    @Override
+                    public boolean visit(MethodInvocation mi) {
+                        final RegexUse regexUse = asRegexUse(mi, hostType);
+                        if (regexUse != null) {
+                            results.add(regexUse);
+                        }
+                        return VISIT_SUBTREE;
+                    }
+                });
+            } else if (bodyDecl instanceof TypeDeclaration) {
+                final TypeDeclaration memberType = (TypeDeclaration) bodyDecl;
+                final ITypeBinding memberTypeBinding = memberType.resolveBinding();
+                if (memberTypeBinding != null
+                        && memberTypeBinding.isClass()
+                        && !canDeclareStaticFields(memberTypeBinding)) {
+                    collectRegexUses(memberType, hostType, results);
+                }
+            }
+        }
+    }
+
+    private RegexUse asRegexUse(MethodInvocation node, ITypeBinding hostType) {
+        final RegexUse regexUse = asRegexUse0(node, hostType);
+        return regexUse != null && compiles(regexUse) ? regexUse : null;
+    }
+
+    private RegexUse asRegexUse0(MethodInvocation node, ITypeBinding hostType) {
+        final List<Expression> args = arguments(node);
+        if (node.getExpression() == null || args.isEmpty() || !canBeHoisted(args.get(0), hostType)) {
+            return null;
+        }
+        if (isMethod(node, "java.lang.String", "matches", "java.lang.String")
+                || isMethod(node, "java.lang.String", "replaceAll", "java.lang.String", "java.lang.String")
+                || isMethod(node, "java.lang.String", "replaceFirst", "java.lang.String", "java.lang.String")
+                || isMethod(node, PATTERN_CLASS, "compile", "java.lang.String")
+                || isMethod(node, PATTERN_CLASS, "matches", "java.lang.String", "java.lang.CharSequence")) {
+            return new RegexUse(node, args.get(0), null);
+        } else if (isMethod(node, PATTERN_CLASS, "compile", "java.lang.String", "int")
+                && canBeHoisted(args.get(1), hostType)) {
+            return new RegexUse(node, args.get(0), args.get(1));
+        } else if ((isMethod(node, "java.lang.String", "split", "java.lang.String")
+                    || isMethod(node, "java.lang.String", "split", "java.lang.String", "int"))
+                && !isSplitFastPath((String) args.get(0).resolveConstantExpressionValue())) {
+            return new RegexUse(node, args.get(0), null);
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the regex of the provided use compiles.
+     * An invalid regex must keep throwing where it is used, and not while initializing the class.
+     */
+    private boolean compiles(RegexUse regexUse) {
+        final Object flags = regexUse.flags != null ? regexUse.flags.resolveConstantExpressionValue() : 0;
+        if (!(flags instanceof Integer)) {
+            return false;
+        }
+        try {
+            Pattern.compile((String) regexUse.regex.resolveConstantExpressionValue(), (Integer) flags);
+            return true;
+        } catch (PatternSyntaxException e) {
+            return false;
+        } catch (IllegalArgumentException e) {
+            // invalid flags
+            return false;
+        }
+    }
+
+    /** Mirrors the fast path of {@link String#split(String, int)} which does not compile the regex. */
+    private boolean isSplitFastPath(String regex) {
+        final char c;
+        if (regex.length() == 1) {
+            c = regex.charAt(0);
+            if (".$|()[{^?*+\\".indexOf(c) != -1) {
+                return false;
+            }
+        } else if (regex.length() == 2 && regex.charAt(0) == '\\') {
+            c = regex.charAt(1);
+            if (Character.isLetterOrDigit(c) && c < 128) {
+                return false;
+            }
+        } else {
+            return false;
+        }
+        return c < Character.MIN_HIGH_SURROGATE || c > Character.MAX_LOW_SURROGATE;
+    }
+
+    /**
+     * Returns whether the provided expression is a constant which still refers to the same values
+     * once moved to a static field initializer of the provided type.
+     */
+    private boolean canBeHoisted(Expression expr, final ITypeBinding hostType) {
+        if (expr.resolveConstantExpressionValue() == null) {
+            return false;
+        }
+        final boolean[] canBeHoisted = { true };
+        expr.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                final IBinding binding = node.resolveBinding();
+                final boolean isQualified = node.getLocationInParent() == QualifiedName.NAME_PROPERTY
+                        || node.getLocationInParent() == FieldAccess.NAME_PROPERTY;
+                if (binding instanceof IVariableBinding) {
+                    final IVariableBinding varBinding = (IVariableBinding) binding;
+                    canBeHoisted[0] &= varBinding.isField()
+                            && Modifier.isStatic(varBinding.getModifiers())
+                            && (isQualified || isEnclosingType(varBinding.getDeclaringClass(), hostType));
+                } else if (binding instanceof ITypeBinding) {
+                    final ITypeBinding typeBinding = (ITypeBinding) binding;
+                    canBeHoisted[0] &= typeBinding.isTopLevel()
+                            || isEnclosingType(typeBinding.getDeclaringClass(), hostType);
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return canBeHoisted[0];
+    }
+
+    private boolean isEnclosingType(ITypeBinding type, ITypeBinding hostType) {
+        for (ITypeBinding t = hostType; t != null; t = t.getDeclaringClass()) {
+            if (type != null && t.getErasure().equals(type.getErasure())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the names of the existing {@code static final Pattern} fields, keyed by their compiled regex. */
+    private Map<String, String> getExistingPatternFields(TypeDeclaration node) {
+        final Map<String, String> results = new HashMap<String, String>();
+        for (FieldDeclaration field : node.getFields()) {
+            final int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers) && fragments(field).size() == 1) {
+                final VariableDeclarationFragment vdf = fragments(field).get(0);
+                final MethodInvocation mi = as(vdf.getInitializer(), MethodInvocation.class);
+                if (mi != null
+                        && hasType(field.getType().resolveBinding(), PATTERN_CLASS)
+                        && arguments(mi).get(0).resolveConstantExpressionValue() != null) {
+                    final List<Expression> args = arguments(mi);
+                    if (isMethod(mi, PATTERN_CLASS, "compile", "java.lang.String")) {
+                        results.put(new RegexUse(mi, args.get(0), null).getKey(), vdf.getName().getIdentifier());
+                    } else if (isMethod(mi, PATTERN_CLASS, "compile", "java.lang.String", "int")
+                            && args.get(1).resolveConstantExpressionValue() != null) {
+                        results.put(new RegexUse(mi, args.get(0), args.get(1)).getKey(),
+                                vdf.getName().getIdentifier());
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the index where to insert the field compiling the regex: after the leading constants,
+     * so the regex is compiled before any code can run, but after the fields it references,
+     * to avoid illegal forward references.
+     */
+    private int getInsertIndex(TypeDeclaration node, RegexUse regexUse) {
+        final List<BodyDeclaration> bodyDecls = bodyDeclarations(node);
+        int index = 0;
+        while (index < bodyDecls.size() && isConstantField(bodyDecls.get(index))) {
+            index++;
+        }
+
+        final Set<IBinding> referencedFields = new HashSet<IBinding>();
+        final ASTVisitor fieldsCollector = new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName sn) {
+                final IBinding binding = sn.resolveBinding();
+                if (binding instanceof IVariableBinding && ((IVariableBinding) binding).isField()) {
+                    referencedFields.add(((IVariableBinding) binding).getVariableDeclaration());
+                }
+                return VISIT_SUBTREE;
+            }
+        };
+        regexUse.regex.accept(fieldsCollector);
+        if (regexUse.flags != null) {
+            regexUse.flags.accept(fieldsCollector);
+        }
+        for (int i = index; i < bodyDecls.size(); i++) {
+            if (bodyDecls.get(i) instanceof FieldDeclaration) {
+                for (VariableDeclarationFragment vdf : fragments((FieldDeclaration) bodyDecls.get(i))) {
+                    if (referencedFields.contains(vdf.resolveBinding())) {
+                        index = i + 1;
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    private boolean isConstantField(BodyDeclaration bodyDecl) {
+        if (!(bodyDecl instanceof FieldDeclaration)) {
+            return false;
+        }
+        for (VariableDeclarationFragment vdf : fragments((FieldDeclaration) bodyDecl)) {
+            if (vdf.getInitializer() == null || vdf.getInitializer().resolveConstantExpressionValue() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String getFreshFieldName(TypeDeclaration node, Expression regex) {
+        if (usedNames == null) {
+            usedNames = new HashSet<String>();
+            node.getRoot().accept(new ASTVisitor() {
+                @Override
+                public boolean visit(SimpleName sn) {
+                    usedNames.add(sn.getIdentifier());
+                    return VISIT_SUBTREE;
+                }
+            });
+        }
+        final String baseName = regex instanceof Name
+                ? ((Name) regex).resolveBinding().getName() + "_PATTERN"
+                : "PATTERN";
+        String name = baseName;
+        for (int i = 2; usedNames.contains(name); i++) {
+            name = baseName + i;
+        }
+        usedNames.add(name);
+        return name;
+    }
+
+    private FieldDeclaration newPatternField(String fieldName, RegexUse regexUse) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final AST ast = b.getAST();
+        final MethodInvocation compile = regexUse.flags != null
+                ? b.invoke(patternType(), "compile", b.copy(regexUse.regex), b.copy(regexUse.flags))
+                : b.invoke(patternType(), "compile", b.copy(regexUse.regex));
+        final VariableDeclarationFragment vdf = ast.newVariableDeclarationFragment();
+        vdf.setName(b.simpleName(fieldName));
+        vdf.setInitializer(compile);
+        final FieldDeclaration field = ast.newFieldDeclaration(vdf);
+        modifiers(field).add(ast.newModifier(PRIVATE_KEYWORD));
+        modifiers(field).add(ast.newModifier(STATIC_KEYWORD));
+        modifiers(field).add(ast.newModifier(FINAL_KEYWORD));
+        field.setType(ast.newSimpleType(patternType()));
+        return field;
+    }
+
+    private Expression usePatternField(MethodInvocation node, String fieldName) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final List<Expression> args = arguments(node);
+        final String methodName = node.getName().getIdentifier();
+        if (isMethod(node, PATTERN_CLASS, "compile", "java.lang.String")
+                || isMethod(node, PATTERN_CLASS, "compile", "java.lang.String", "int")) {
+            return b.simpleName(fieldName);
+        } else if (isMethod(node, PATTERN_CLASS, "matches", "java.lang.String", "java.lang.CharSequence")) {
+            return b.invoke(b.invoke(fieldName, "matcher", b.copy(args.get(1))), "matches");
+        } else if ("split".equals(methodName)) {
+            return args.size() == 1
+                    ? b.invoke(fieldName, "split", b.copy(node.getExpression()))
+                    : b.invoke(fieldName, "split", b.copy(node.getExpression()), b.copy(args.get(1)));
+        }
+        // String.matches(), String.replaceAll() and String.replaceFirst()
+        final MethodInvocation matcher = b.invoke(fieldName, "matcher", b.copy(node.getExpression()));
+        return args.size() == 1
+                ? b.invoke(matcher, methodName)
+                : b.invoke(matcher, methodName, b.copy(args.get(1)));
+    }
+
+    private Name patternType() {
+        return typeNameDecider.useType(PATTERN_CLASS);
+    }
+}
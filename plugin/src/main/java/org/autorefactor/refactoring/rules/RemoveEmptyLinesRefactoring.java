@@ -25,27 +25,44 @@
  */
 package org.autorefactor.refactoring.rules;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import org.autorefactor.refactoring.Refactorings;
-import org.autorefactor.refactoring.SourceLocation;
-import org.autorefactor.util.IllegalStateException;
-import org.eclipse.jdt.core.dom.ASTNode;
-import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
-import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
-import org.eclipse.jdt.core.dom.Block;
-import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.dom.EnumDeclaration;
-import org.eclipse.jdt.core.dom.MethodDeclaration;
-import org.eclipse.jdt.core.dom.TypeDeclaration;
-
-import static org.autorefactor.refactoring.ASTHelper.*;
-import static org.autorefactor.refactoring.SourceLocation.*;
-
-/** See {@link #getDescription()} method. */
+import java.util.Arrays;
+
+import org.autorefactor.refactoring.SourceRewriter;
+
+import static org.eclipse.jdt.core.compiler.ITerminalSymbols.*;
+
+/**
+ * See {@link #getDescription()} method.
+ * <p>
+ * This rule works on tokens: each whitespace token is examined
+ * once the tokens before and after it are known.
+ * It tracks the curly braces to only remove the empty lines around the curly braces
+ * of type declarations, method declarations and blocks,
+ * leaving the ones of array initializers, anonymous classes, enum constant bodies,
+ * switch statements and lambda expressions alone.
+ */
 @SuppressWarnings("javadoc")
-public class RemoveEmptyLinesRefactoring extends AbstractRefactoringRule {
+public class RemoveEmptyLinesRefactoring extends AbstractTokenRefactoringRule {
+
+    /** Token type for the start of the source, before any token. */
+    private static final int NO_TOKEN = -1;
+
+    /** The compilation unit level, at the bottom of the stack. */
+    private static final int COMPILATION_UNIT = 0;
+    /** The body of a class, interface or annotation type declaration. */
+    private static final int TYPE_BODY = 1;
+    /** The body of an enum declaration, before the semi-colon ending the enum constants. */
+    private static final int ENUM_CONSTANTS = 2;
+    /** The body of an enum declaration, after the semi-colon ending the enum constants. */
+    private static final int ENUM_BODY = 3;
+    /** The body of a method or constructor declaration. */
+    private static final int METHOD_BODY = 4;
+    /** Any other block: statement blocks, initializer blocks, etc. */
+    private static final int BLOCK = 5;
+    /** An array initializer. */
+    private static final int ARRAY_INITIALIZER = 6;
+    /** Anonymous classes, enum constant bodies, switch statements, lambda expressions, etc. */
+    private static final int OTHER = 7;
 
     @Override
     public String getDescription() {
@@ -62,191 +79,293 @@ public class RemoveEmptyLinesRefactoring extends AbstractRefactoringRule {
     }
 
     private String newlineChars;
+    /** The type of the last token which is not a whitespace. */
+    private int previousTokenType;
+    /** The start position of the whitespace token waiting for the next token, or -1 if there is none. */
+    private int whitespaceStart;
+    private int whitespaceEnd;
+    /** The type of the last token which is neither a whitespace nor a comment. */
+    private int previousCodeTokenType;
+    /** The kind of curly braces opened by the next curly, or -1 if no type keyword has been seen. */
+    private int typeKeywordKind;
+    /** Whether a new keyword has been seen and its arguments have not been opened yet. */
+    private boolean afterNewKeyword;
+
+    /** The kinds of the curly braces levels. */
+    private int[] kinds = new int[8];
+    /** Index of the current level in the kinds stack. */
+    private int level;
+    /** The token types preceding the opened parentheses, or {@code TokenNamenew} for instance creations. */
+    private int[] parenOpeners = new int[8];
+    /** Number of opened parentheses in the parenOpeners stack. */
+    private int parenDepth;
+    /** The token type preceding the parenthesis closed by the last closing parenthesis. */
+    private int closedParenOpener;
 
     @Override
-    public boolean visit(CompilationUnit node) {
-        final String source = this.ctx.getSource(node);
+    public void startScan(char[] source, SourceRewriter rewriter) {
+        super.startScan(source, rewriter);
         newlineChars = getNewlineChars(source);
-        final Refactorings r = this.ctx.getRefactorings();
+        previousTokenType = NO_TOKEN;
+        whitespaceStart = -1;
+        previousCodeTokenType = NO_TOKEN;
+        typeKeywordKind = -1;
+        afterNewKeyword = false;
+        level = 0;
+        kinds[0] = COMPILATION_UNIT;
+        parenDepth = 0;
+        closedParenOpener = NO_TOKEN;
+    }
 
-        int index = getIndexOfFirstNonWhitespaceChar(source, 0);
-        if (index != -1) {
-            r.remove(SourceLocation.fromPositions(0, index));
-            return DO_NOT_VISIT_SUBTREE;
+    @Override
+    public void visitToken(int tokenType, int startPosition, int endPosition) {
+        if (newlineChars == null) {
+            // single line source
+            return;
         }
-
-        if (node.getPackage() != null) {
-            int lastIndex = node.getPackage().getStartPosition();
-            int lastNonWsIndex = getLastIndexOfNonWhitespaceChar(source, lastIndex - 1);
-            int endOfLineIndex = source.indexOf(newlineChars, lastNonWsIndex);
-            if (maybeRemoveEmptyLines(source, endOfLineIndex, lastIndex)) {
-                return DO_NOT_VISIT_SUBTREE;
-            }
+        if (tokenType == TokenNameWHITESPACE) {
+            whitespaceStart = startPosition;
+            whitespaceEnd = endPosition;
+            return;
         }
-
-        boolean result = VISIT_SUBTREE;
-        final String newline = "(?:" + newlineChars + ")";
-        Matcher m = Pattern.compile("(" + newline + "\\s*?" + newline + "\\s*?" + ")" + "(?:" + newline + "\\s*?)+")
-                .matcher(source);
-        while (m.find()) {
-            r.replace(toSourceLocation(m, 0), substring(source, m, 1));
-            result = DO_NOT_VISIT_SUBTREE;
+        final int openedKind = tokenType == TokenNameLBRACE ? getKindOfOpeningCurly() : -1;
+        if (whitespaceStart != -1) {
+            removeEmptyLines(whitespaceStart, whitespaceEnd, tokenType, openedKind);
+            whitespaceStart = -1;
+        }
+        if (tokenType != TokenNameCOMMENT_LINE
+                && tokenType != TokenNameCOMMENT_BLOCK
+                && tokenType != TokenNameCOMMENT_JAVADOC) {
+            trackCurlyBraces(tokenType, openedKind);
+            previousCodeTokenType = tokenType;
         }
-        return result;
+        previousTokenType = tokenType;
     }
 
-    private int getIndexOfFirstNonWhitespaceChar(String s, int offset) {
-        if (Character.isWhitespace(s.charAt(offset))) {
-            for (int i = offset; i < s.length(); i++) {
-                if (!Character.isWhitespace(s.charAt(i))) {
-                    return i;
-                }
+    private void trackCurlyBraces(int tokenType, int openedKind) {
+        switch (tokenType) {
+        case TokenNameclass:
+        case TokenNameinterface:
+            if (previousCodeTokenType != TokenNameDOT) {
+                typeKeywordKind = TYPE_BODY;
             }
-        }
-        return -1;
-    }
+            break;
 
-    private int getLastIndexOfNonWhitespaceChar(String s, int fromIndex) {
-        for (int i = fromIndex; 0 <= i; i--) {
-            if (!Character.isWhitespace(s.charAt(i))) {
-                return i;
+        case TokenNameenum:
+            typeKeywordKind = ENUM_CONSTANTS;
+            break;
+
+        case TokenNamenew:
+            afterNewKeyword = true;
+            break;
+
+        case TokenNameLPAREN:
+            if (parenDepth == parenOpeners.length) {
+                parenOpeners = Arrays.copyOf(parenOpeners, 2 * parenDepth);
+            }
+            parenOpeners[parenDepth++] = afterNewKeyword ? TokenNamenew : previousCodeTokenType;
+            afterNewKeyword = false;
+            break;
+
+        case TokenNameRPAREN:
+            closedParenOpener = parenDepth > 0 ? parenOpeners[--parenDepth] : NO_TOKEN;
+            break;
+
+        case TokenNameLBRACKET:
+            afterNewKeyword = false;
+            break;
+
+        case TokenNameSEMICOLON:
+            afterNewKeyword = false;
+            if (kinds[level] == ENUM_CONSTANTS) {
+                kinds[level] = ENUM_BODY;
+            }
+            break;
+
+        case TokenNameLBRACE:
+            afterNewKeyword = false;
+            typeKeywordKind = -1;
+            level++;
+            if (level == kinds.length) {
+                kinds = Arrays.copyOf(kinds, 2 * level);
+            }
+            kinds[level] = openedKind;
+            break;
+
+        case TokenNameRBRACE:
+            afterNewKeyword = false;
+            if (level > 0) {
+                level--;
             }
+            break;
         }
-        return fromIndex;
     }
 
-    private String getNewlineChars(String source) {
-        if (source.contains("\r\n")) {
-            return "\r\n";
-        } else if (source.contains("\n")) {
-            return "\n";
-        } else if (source.contains("\r")) {
-            return "\r";
+    private int getKindOfOpeningCurly() {
+        if (typeKeywordKind != -1) {
+            return typeKeywordKind;
         }
-        throw new IllegalStateException(null,
-                "Cannot determine end of line encoding for source " + this.ctx.getCompilationUnit());
-    }
+        if (kinds[level] == ENUM_CONSTANTS) {
+            return OTHER;
+        }
+        switch (previousCodeTokenType) {
+        case TokenNameRPAREN:
+            switch (closedParenOpener) {
+            case TokenNameIdentifier:
+                // method or constructor declaration
+                return METHOD_BODY;
 
-    private SourceLocation toSourceLocation(Matcher m, int groupNumber) {
-        return SourceLocation.fromPositions(m.start(groupNumber), m.end(groupNumber));
-    }
+            case TokenNameif:
+            case TokenNamewhile:
+            case TokenNamefor:
+            case TokenNamecatch:
+            case TokenNamesynchronized:
+            case TokenNametry:
+                return BLOCK;
 
-    private String substring(String s, Matcher m, int groupNumber) {
-        return s.substring(m.start(groupNumber), m.end(groupNumber));
-    }
+            default:
+                // anonymous classes, switch statements, lambda expressions
+                return OTHER;
+            }
 
-    @Override
-    public boolean visit(AnnotationTypeDeclaration node) {
-        return visit((AbstractTypeDeclaration) node);
+        case TokenNameIdentifier:
+            // after the exceptions thrown by a method or constructor declaration
+            return METHOD_BODY;
+
+        case TokenNameEQUAL:
+        case TokenNameRBRACKET:
+        case TokenNameLPAREN:
+        case TokenNamedefault:
+            return ARRAY_INITIALIZER;
+
+        case TokenNameCOMMA:
+            return kinds[level] == ARRAY_INITIALIZER ? ARRAY_INITIALIZER : OTHER;
+
+        case TokenNameLBRACE:
+        case TokenNameRBRACE:
+        case TokenNameSEMICOLON:
+        case TokenNameCOLON:
+        case TokenNameelse:
+        case TokenNametry:
+        case TokenNamefinally:
+        case TokenNamedo:
+        case TokenNamestatic:
+            return kinds[level] == ARRAY_INITIALIZER ? ARRAY_INITIALIZER : BLOCK;
+
+        default:
+            return OTHER;
+        }
     }
 
-    @Override
-    public boolean visit(EnumDeclaration node) {
-        return visit((AbstractTypeDeclaration) node);
+    private boolean hasEmptyLinesRemoved(int kind) {
+        return kind == TYPE_BODY
+            || kind == ENUM_CONSTANTS
+            || kind == ENUM_BODY
+            || kind == METHOD_BODY
+            || kind == BLOCK;
     }
 
     @Override
-    public boolean visit(TypeDeclaration node) {
-        return visit((AbstractTypeDeclaration) node);
+    public void endScan() {
+        if (whitespaceStart != -1) {
+            removeEmptyLines(whitespaceStart, whitespaceEnd, TokenNameEOF, -1);
+            whitespaceStart = -1;
+        }
     }
 
-    private boolean visit(AbstractTypeDeclaration node) {
-        final String source = this.ctx.getSource(node);
-        int openingCurlyIndex = findOpeningCurlyForTypeBody(node, source);
-        int newLineBeforeOpeningCurly = source.lastIndexOf(newlineChars, openingCurlyIndex) + newlineChars.length();
-        int lastNonWsIndex = getLastIndexOfNonWhitespaceChar(source, openingCurlyIndex - 1);
-        int endOfLineIndex = source.indexOf(newlineChars, lastNonWsIndex);
-        if (maybeRemoveEmptyLines(source, endOfLineIndex, newLineBeforeOpeningCurly)) {
-            return DO_NOT_VISIT_SUBTREE;
+    private void removeEmptyLines(int start, int end, int nextTokenType, int openedKind) {
+        if (previousTokenType == NO_TOKEN) {
+            // whitespaces at the start of the source
+            rewriter.remove(start, end - start);
+            return;
         }
-
-        int newLineAfterOpeningCurly = source.indexOf(newlineChars, openingCurlyIndex) + newlineChars.length();
-        int lastNonWsIndex2 = getIndexOfFirstNonWhitespaceChar(source, newLineAfterOpeningCurly);
-        int endOfLineIndex2 = source.lastIndexOf(newlineChars, lastNonWsIndex2) + newlineChars.length();
-        if (maybeRemoveEmptyLines(source, openingCurlyIndex + 1, endOfLineIndex2)) {
-            return DO_NOT_VISIT_SUBTREE;
+        final int lastNewlineEnd = lastIndexOfNewline(start, end) + newlineChars.length();
+        if (lastNewlineEnd < newlineChars.length()) {
+            // no newline
+            return;
         }
-        return visitNodeWithClosingCurly(node);
-    }
-
-    private int findOpeningCurlyForTypeBody(AbstractTypeDeclaration node, String source) {
-        int pos = node.getStartPosition();
-        while (true) {
-            int firstCurly = source.indexOf("{", pos);
-            if (!this.ctx.isInComment(firstCurly)) {
-                return firstCurly;
+        // a line comment includes its trailing newline
+        final boolean afterLineComment = previousTokenType == TokenNameCOMMENT_LINE;
+        if (previousTokenType == TokenNameLBRACE && hasEmptyLinesRemoved(kinds[level])) {
+            // empty lines after opening braces
+            replaceWithNewline(start, lastNewlineEnd);
+        } else if ((nextTokenType == TokenNameRBRACE && hasEmptyLinesRemoved(kinds[level]))
+                || (nextTokenType == TokenNameLBRACE && hasEmptyLinesRemoved(openedKind) && openedKind != BLOCK)
+                || nextTokenType == TokenNamepackage) {
+            // empty lines before braces of bodies and package declaration
+            if (afterLineComment) {
+                if (start < lastNewlineEnd) {
+                    rewriter.remove(start, lastNewlineEnd - start);
+                }
+            } else {
+                replaceWithNewline(indexOfNewline(start, end), lastNewlineEnd);
+            }
+        } else {
+            // two consecutive empty lines are converted to a single empty line
+            int nbNewlines = afterLineComment ? 1 : 0;
+            int thirdNewlineStart = -1;
+            for (int i = start; i < end; i++) {
+                if (isNewline(i)) {
+                    nbNewlines++;
+                    if (nbNewlines == 3) {
+                        thirdNewlineStart = i;
+                    }
+                    i += newlineChars.length() - 1;
+                }
+            }
+            if (thirdNewlineStart != -1) {
+                rewriter.remove(thirdNewlineStart, lastNewlineEnd - thirdNewlineStart);
             }
-            pos = firstCurly + 1;
         }
     }
 
-    @Override
-    public boolean visit(MethodDeclaration node) {
-        final String source = this.ctx.getSource(node);
-        int openingCurlyIndex = node.getBody().getStartPosition();
-        int newLineBeforeOpeningCurly = source.lastIndexOf(newlineChars, openingCurlyIndex) + newlineChars.length();
-        int lastNonWsIndex = getLastIndexOfNonWhitespaceChar(source, openingCurlyIndex - 1);
-        int endOfLineIndex = source.indexOf(newlineChars, lastNonWsIndex);
-        if (maybeRemoveEmptyLines(source, endOfLineIndex, newLineBeforeOpeningCurly)) {
-            return DO_NOT_VISIT_SUBTREE;
-        }
-        return visit(node.getBody());
+    private void replaceWithNewline(int start, int end) {
+        if (!sourceEquals(start, end, newlineChars)) {
+            rewriter.replace(start, end - start, newlineChars);
+        }
     }
 
-    @Override
-    public boolean visit(Block node) {
-        final String source = this.ctx.getSource(node);
-        int openingCurlyIndex = node.getStartPosition();
-        int newLineAfterOpeningCurly = source.indexOf(newlineChars, openingCurlyIndex) + newlineChars.length();
-        int lastNonWsIndex = getIndexOfFirstNonWhitespaceChar(source, newLineAfterOpeningCurly);
-        int endOfLineIndex = source.lastIndexOf(newlineChars, lastNonWsIndex) + newlineChars.length();
-        if (maybeRemoveEmptyLines(source, openingCurlyIndex + 1, endOfLineIndex)) {
-            return DO_NOT_VISIT_SUBTREE;
-        }
-        return visitNodeWithClosingCurly(node);
+    private int indexOfNewline(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (isNewline(i)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
-    private boolean visitNodeWithClosingCurly(ASTNode node) {
-        final String source = this.ctx.getSource(node);
-
-        int closingCurlyIndex = source.lastIndexOf('}', getEndPosition(node));
-        int newLineBeforeClosingCurly = source.lastIndexOf(newlineChars, closingCurlyIndex) + newlineChars.length();
-        int lastNonWsIndex = getLastIndexOfNonWhitespaceChar(source, closingCurlyIndex - 1);
-        int endOfLineIndex = source.indexOf(newlineChars, lastNonWsIndex);
-        if (maybeRemoveEmptyLines(source, endOfLineIndex, newLineBeforeClosingCurly)) {
-            return DO_NOT_VISIT_SUBTREE;
+    private int lastIndexOfNewline(int start, int end) {
+        for (int i = end - newlineChars.length(); i >= start; i--) {
+            if (isNewline(i)) {
+                return i;
+            }
         }
-        return VISIT_SUBTREE;
+        return -1;
     }
 
-    private boolean maybeRemoveEmptyLines(String source, int endOfLineIndex, int newLineIndex) {
-        if (endOfLineIndex < newLineIndex
-                && !equals(source, endOfLineIndex, newLineIndex, newlineChars)) {
-            this.ctx.getRefactorings().replace(
-                    SourceLocation.fromPositions(endOfLineIndex, newLineIndex),
-                    newlineChars);
-            return true;
-        }
-        return false;
+    private boolean isNewline(int index) {
+        return index + newlineChars.length() <= source.length
+                && sourceEquals(index, index + newlineChars.length(), newlineChars);
     }
 
-    /**
-     * Equivalent to (but without allocations)
-     *
-     * <pre>
-     * s1.substring(beginIndex, endIndex).equals(s2)
-     * </pre>
-     */
-    private boolean equals(String s1, int beginIndex, int endIndex, String s2) {
-        int length = endIndex - beginIndex;
-        if (s2.length() != length) {
-            return false;
-        }
-        for (int i = 0; i < length; i++) {
-            if (s1.charAt(beginIndex + i) != s2.charAt(i)) {
-                return false;
+    private String getNewlineChars(char[] source) {
+        boolean hasLineFeed = false;
+        boolean hasCarriageReturn = false;
+        for (int i = 0; i < source.length; i++) {
+            if (source[i] == '\r') {
+                if (i + 1 < source.length && source[i + 1] == '\n') {
+                    return "\r\n";
+                }
+                hasCarriageReturn = true;
+            } else if (source[i] == '\n') {
+                hasLineFeed = true;
             }
         }
-        return true;
+        if (hasLineFeed) {
+            return "\n";
+        } else if (hasCarriageReturn) {
+            return "\r";
+        }
+        return null;
     }
 }
@@ -25,40 +25,59 @@
  */
 package org.autorefactor.refactoring.rules;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import org.autorefactor.refactoring.ASTHelper.NodeStartPositionComparator;
-import org.autorefactor.refactoring.SourceLocation;
-import org.autorefactor.util.NotImplementedException;
-import org.eclipse.jdt.core.dom.ASTNode;
-import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
-import org.eclipse.jdt.core.dom.BodyDeclaration;
-import org.eclipse.jdt.core.dom.Comment;
-import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.dom.EnumDeclaration;
-import org.eclipse.jdt.core.dom.FieldDeclaration;
-import org.eclipse.jdt.core.dom.Initializer;
-import org.eclipse.jdt.core.dom.MethodDeclaration;
-import org.eclipse.jdt.core.dom.TypeDeclaration;
-
-import static org.autorefactor.refactoring.ASTHelper.*;
-import static org.autorefactor.refactoring.SourceLocation.*;
+import java.util.Arrays;
+
+import org.autorefactor.refactoring.SourceRewriter;
+
+import static org.eclipse.jdt.core.compiler.ITerminalSymbols.*;
 
 /**
  * See {@link #getDescription()} method.
  * <p>
+ * This rule works on tokens: it tracks the curly braces to know whether a semi-colon
+ * is found at the level of a type body, and whether it ends a body declaration or
+ * an initializer expression (array initializer, anonymous class, enum constant body).
+ * <p>
  * TODO remove superfluous semi-colons in try-with-resources
  */
 @SuppressWarnings("javadoc")
-public class RemoveSemiColonRefactoring extends AbstractRefactoringRule {
+public class RemoveSemiColonRefactoring extends AbstractTokenRefactoringRule {
+
+    /** The compilation unit level, at the bottom of the stack. */
+    private static final int COMPILATION_UNIT = 0;
+    /** The body of a class, interface or annotation type declaration. */
+    private static final int TYPE_BODY = 1;
+    /** The body of an enum declaration. */
+    private static final int ENUM_BODY = 2;
+    /** The body of an enum constant declaration. */
+    private static final int ENUM_CONSTANT_BODY = 3;
+    /** Curly braces part of an expression, like array initializers or anonymous classes. */
+    private static final int EXPRESSION = 4;
+    /** Any other curly braces: method bodies, initializer blocks, etc. */
+    private static final int OTHER = 5;
+
+    /** Level state: an initializer expression has started and has not been ended by a semi-colon yet. */
+    private static final int IN_INITIALIZER = 1 << 0;
+    /** Level state: a class, interface or annotation keyword has been seen, the next curly opens its body. */
+    private static final int TYPE_KEYWORD = 1 << 1;
+    /** Level state: an enum keyword has been seen, the next curly opens its body. */
+    private static final int ENUM_KEYWORD = 1 << 2;
+    /** Level state: the enum constants have not been ended by a semi-colon yet. */
+    private static final int IN_ENUM_CONSTANTS = 1 << 3;
+
+    /** The kinds of the curly braces levels. */
+    private int[] kinds = new int[8];
+    /** The states of the curly braces levels, see the level state constants. */
+    private int[] states = new int[8];
+    /** The parentheses depths of the curly braces levels. */
+    private int[] parenDepths = new int[8];
+    /** Index of the current level in the stacks. */
+    private int level;
+
+    private int previousTokenType;
+    /** The kind of the level closed by the previous token when it is a closing curly. */
+    private int previousClosedKind;
+    private boolean previousSemiColonRemoved;
 
     @Override
     public String getDescription() {
@@ -71,112 +90,131 @@ public class RemoveSemiColonRefactoring extends AbstractRefactoringRule {
     }
 
     @Override
-    public boolean visit(AnnotationTypeDeclaration node) {
-        return visit((BodyDeclaration) node);
+    public void startScan(char[] source, SourceRewriter rewriter) {
+        super.startScan(source, rewriter);
+        level = 0;
+        kinds[0] = COMPILATION_UNIT;
+        states[0] = 0;
+        parenDepths[0] = 0;
+        previousTokenType = TokenNameEOF;
+        previousClosedKind = -1;
+        previousSemiColonRemoved = false;
     }
 
     @Override
-    public boolean visit(EnumDeclaration node) {
-        return visit((BodyDeclaration) node);
-    }
+    public void visitToken(int tokenType, int startPosition, int endPosition) {
+        switch (tokenType) {
+        case TokenNameWHITESPACE:
+        case TokenNameCOMMENT_LINE:
+        case TokenNameCOMMENT_BLOCK:
+        case TokenNameCOMMENT_JAVADOC:
+            // only look at significant tokens
+            return;
+
+        case TokenNameclass:
+        case TokenNameinterface:
+            if (previousTokenType != TokenNameDOT) {
+                states[level] |= TYPE_KEYWORD;
+            }
+            break;
 
-    @Override
-    public boolean visit(FieldDeclaration node) {
-        return visit((BodyDeclaration) node);
-    }
+        case TokenNameenum:
+            states[level] |= ENUM_KEYWORD;
+            break;
 
-    @Override
-    public boolean visit(Initializer node) {
-        return visit((BodyDeclaration) node);
-    }
+        case TokenNameLPAREN:
+            parenDepths[level]++;
+            break;
 
-    @Override
-    public boolean visit(MethodDeclaration node) {
-        return visit((BodyDeclaration) node);
-    }
+        case TokenNameRPAREN:
+            if (parenDepths[level] > 0) {
+                parenDepths[level]--;
+            }
+            break;
 
-    @Override
-    public boolean visit(TypeDeclaration node) {
-        return visit((BodyDeclaration) node);
-    }
+        case TokenNameEQUAL:
+            if (parenDepths[level] == 0) {
+                states[level] |= IN_INITIALIZER;
+            }
+            break;
 
-    private boolean visit(BodyDeclaration node) {
-        final BodyDeclaration nextSibling = getNextSibling(node);
-        final ASTNode parent = node.getParent();
-        if (nextSibling != null) {
-            return removeSuperfluousCommas(node, getEndPosition(node), nextSibling.getStartPosition());
-        } else if (parent instanceof TypeDeclaration) {
-            final TypeDeclaration typeDecl = (TypeDeclaration) parent;
-            return removeSuperfluousCommas(node, getEndPosition(node), getEndPosition(typeDecl) - 1);
-        } else if (parent instanceof CompilationUnit) {
-            final CompilationUnit cu = (CompilationUnit) parent;
-            return removeSuperfluousCommas(node, getEndPosition(node), getEndPosition(cu) - 1);
-        }
-        throw new NotImplementedException(node,
-                "for a parent of type " + (parent != null ? parent.getClass().getSimpleName() : null));
-    }
+        case TokenNamedefault:
+            // annotation type member default values, not switch defaults
+            if (kinds[level] == TYPE_BODY && parenDepths[level] == 0 && previousTokenType == TokenNameRPAREN) {
+                states[level] |= IN_INITIALIZER;
+            }
+            break;
+
+        case TokenNameLBRACE:
+            pushLevel(getKindOfOpeningCurly());
+            break;
+
+        case TokenNameRBRACE:
+            if (level > 0) {
+                previousClosedKind = kinds[level];
+                level--;
+                states[level] &= ~(TYPE_KEYWORD | ENUM_KEYWORD);
+            }
+            break;
 
-    private boolean removeSuperfluousCommas(ASTNode node, int start, int end) {
-        boolean result = VISIT_SUBTREE;
-        final String source = ctx.getSource(node);
-        final ASTNode root = node.getRoot();
-        if (root instanceof CompilationUnit) {
-            final CompilationUnit cu = (CompilationUnit) root;
-            final List<Comment> comments = filterCommentsInRange(start, end, getCommentList(cu));
-            final Map<String, SourceLocation> nonCommentsStrings = getNonCommentsStrings(source, start, end, comments);
-            for (Entry<String, SourceLocation> entry : nonCommentsStrings.entrySet()) {
-                final String s = entry.getKey();
-                final Matcher m = Pattern.compile("\\s*(;+)\\s*").matcher(s);
-                while (m.find()) {
-                    int startPos = entry.getValue().getStartPosition();
-                    SourceLocation toRemove = fromPositions(startPos + m.start(1), startPos + m.end(1));
-                    this.ctx.getRefactorings().remove(toRemove);
-                    result = DO_NOT_VISIT_SUBTREE;
-                }
+        case TokenNameSEMICOLON:
+            final boolean remove = parenDepths[level] == 0 && isSuperfluousSemiColon();
+            if (remove) {
+                rewriter.remove(startPosition, endPosition - startPosition);
             }
+            if (parenDepths[level] == 0) {
+                states[level] &= ~(IN_INITIALIZER | TYPE_KEYWORD | ENUM_KEYWORD | IN_ENUM_CONSTANTS);
+            }
+            previousSemiColonRemoved = remove;
+            break;
         }
-        return result;
+        previousTokenType = tokenType;
     }
 
-    private Map<String, SourceLocation> getNonCommentsStrings(
-            String source, int start, int end, List<Comment> comments) {
-        final LinkedHashMap<String, SourceLocation> results = new LinkedHashMap<String, SourceLocation>();
-        if (comments.isEmpty()) {
-            putResult(source, start, end, results);
-        } else {
-            int nextStart = start;
-            for (Comment comment : comments) {
-                if (nextStart < comment.getStartPosition()) {
-                    putResult(source, nextStart, comment.getStartPosition(), results);
-                }
-                nextStart = getEndPosition(comment);
-            }
+    private int getKindOfOpeningCurly() {
+        final int state = states[level];
+        if (parenDepths[level] > 0 || (state & IN_INITIALIZER) != 0) {
+            return EXPRESSION;
+        } else if ((state & ENUM_KEYWORD) != 0) {
+            return ENUM_BODY;
+        } else if ((state & TYPE_KEYWORD) != 0) {
+            return TYPE_BODY;
+        } else if (kinds[level] == ENUM_BODY && (state & IN_ENUM_CONSTANTS) != 0) {
+            return ENUM_CONSTANT_BODY;
         }
-        return results;
+        return OTHER;
     }
 
-    private void putResult(String source, int start, int end,
-            final LinkedHashMap<String, SourceLocation> results) {
-        final SourceLocation loc = fromPositions(start, end);
-        final String s = source.substring(loc.getStartPosition(), loc.getEndPosition());
-        results.put(s, loc);
+    private void pushLevel(int kind) {
+        level++;
+        if (level == kinds.length) {
+            kinds = Arrays.copyOf(kinds, 2 * level);
+            states = Arrays.copyOf(states, 2 * level);
+            parenDepths = Arrays.copyOf(parenDepths, 2 * level);
+        }
+        kinds[level] = kind;
+        states[level] = kind == ENUM_BODY ? IN_ENUM_CONSTANTS : 0;
+        parenDepths[level] = 0;
     }
 
-    private List<Comment> filterCommentsInRange(int start, int end, List<Comment> commentList) {
-        if (commentList.isEmpty()) {
-            return Collections.emptyList();
+    private boolean isSuperfluousSemiColon() {
+        final int kind = kinds[level];
+        if (kind == ENUM_BODY && (states[level] & IN_ENUM_CONSTANTS) != 0) {
+            // ends the enum constants
+            return false;
         }
-        final List<Comment> comments = new ArrayList<Comment>(commentList);
-        Collections.sort(comments, new NodeStartPositionComparator());
-
-        final Iterator<Comment> it = comments.iterator();
-        while (it.hasNext()) {
-            final Comment comment = it.next();
-            if (comment.getStartPosition() < start
-                    || getEndPosition(comment) > end) {
-                it.remove();
-            }
+        if (kind == COMPILATION_UNIT) {
+            return (previousTokenType == TokenNameRBRACE && isBodyDeclaration(previousClosedKind))
+                || (previousTokenType == TokenNameSEMICOLON && previousSemiColonRemoved);
+        } else if (kind == TYPE_BODY || kind == ENUM_BODY) {
+            return (previousTokenType == TokenNameRBRACE && isBodyDeclaration(previousClosedKind))
+                || previousTokenType == TokenNameSEMICOLON;
         }
-        return comments;
+        return false;
+    }
+
+    /** Returns whether the closed curly braces ended a body declaration. */
+    private boolean isBodyDeclaration(int closedKind) {
+        return closedKind == TYPE_BODY || closedKind == ENUM_BODY || closedKind == OTHER;
     }
 }
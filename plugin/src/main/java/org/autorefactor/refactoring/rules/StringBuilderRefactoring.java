@@ -35,16 +35,37 @@ import java.util.ListIterator;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.Refactorings;
+import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.BreakStatement;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ContinueStatement;
+import org.eclipse.jdt.core.dom.DoStatement;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
 import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
 import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
 import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.InfixExpression.Operator;
 import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.Statement;
 import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.TryStatement;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.eclipse.jdt.core.dom.WhileStatement;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
 import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
@@ -366,6 +387,242 @@ public class StringBuilderRefactoring extends AbstractRefactoringRule {
         results.addFirst(arg);
     }
 
+    @Override
+    public boolean visit(ForStatement node) {
+        return maybeUseStringBuilderInLoop(node);
+    }
+
+    @Override
+    public boolean visit(EnhancedForStatement node) {
+        return maybeUseStringBuilderInLoop(node);
+    }
+
+    @Override
+    public boolean visit(WhileStatement node) {
+        return maybeUseStringBuilderInLoop(node);
+    }
+
+    @Override
+    public boolean visit(DoStatement node) {
+        return maybeUseStringBuilderInLoop(node);
+    }
+
+    /**
+     * Replaces the concatenations to a String local variable in a loop, like {@code s += x;},
+     * with appends to a StringBuilder created before the loop, and converted back to a String after the loop.
+     * The intermediate values of the String variable must not be read inside the loop.
+     */
+    private boolean maybeUseStringBuilderInLoop(Statement loop) {
+        if (getJavaMinorVersion() < 5
+                || !(loop.getParent() instanceof Block)
+                || hasLabeledJumps(loop)) {
+            return VISIT_SUBTREE;
+        }
+        final List<ExpressionStatement> concatenations = new ArrayList<ExpressionStatement>();
+        final IVariableBinding stringVar = findConcatenatedVariable(loop, concatenations);
+        if (stringVar == null) {
+            return VISIT_SUBTREE;
+        }
+        final ASTNode declaration = ((CompilationUnit) loop.getRoot()).findDeclaringNode(stringVar);
+        if (declaration == null
+                || isAncestor(loop, declaration)
+                || isInTryWithHandlers(loop, declaration)
+                || !isOnlyConcatenatedInLoop(loop, stringVar, concatenations)) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final AST ast = b.getAST();
+        final String builderName = this.ctx.getFreshName(loop, stringVar.getName() + "Builder");
+        for (ExpressionStatement concatenation : concatenations) {
+            Expression appends = b.simpleName(builderName);
+            for (Expression operand : getConcatenatedOperands((Assignment) concatenation.getExpression())) {
+                appends = b.invoke(appends, "append", b.copy(operand));
+            }
+            r.replace(concatenation, b.toStmt(appends));
+        }
+
+        final VariableDeclarationFragment vdf = ast.newVariableDeclarationFragment();
+        vdf.setName(b.simpleName(builderName));
+        vdf.setInitializer(b.new0("StringBuilder", getBuilderInitialValue(loop, stringVar, declaration)));
+        final VariableDeclarationStatement builderDecl = ast.newVariableDeclarationStatement(vdf);
+        builderDecl.setType(ast.newSimpleType(b.name("StringBuilder")));
+        r.insertBefore(builderDecl, loop);
+        r.insertAfter(b.toStmt(b.assign(b.simpleName(stringVar.getName()), Assignment.Operator.ASSIGN,
+                b.invoke(builderName, "toString"))), loop);
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    private IVariableBinding findConcatenatedVariable(Statement loop,
+            final List<ExpressionStatement> concatenations) {
+        final IVariableBinding[] result = new IVariableBinding[1];
+        loop.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(ExpressionStatement node) {
+                final Assignment as = as(node.getExpression(), Assignment.class);
+                if (as != null
+                        && as.getLeftHandSide() instanceof SimpleName
+                        && getConcatenatedOperands(as) != null) {
+                    final IBinding binding = ((SimpleName) as.getLeftHandSide()).resolveBinding();
+                    if (result[0] == null
+                            && binding instanceof IVariableBinding
+                            && !((IVariableBinding) binding).isField()) {
+                        result[0] = (IVariableBinding) binding;
+                    }
+                    if (binding != null && binding.equals(result[0])) {
+                        concatenations.add(node);
+                    }
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * Returns the operands concatenated to the assigned String variable by the provided assignment,
+     * like {@code x} for {@code s += x} or {@code x, y} for {@code s = s + x + y},
+     * or null if the assignment is not such a concatenation.
+     */
+    private List<Expression> getConcatenatedOperands(Assignment as) {
+        final Expression lhs = as.getLeftHandSide();
+        if (!hasType(lhs, "java.lang.String")) {
+            return null;
+        }
+        final List<Expression> results;
+        if (hasOperator(as, Assignment.Operator.PLUS_ASSIGN)) {
+            results = Arrays.asList(as.getRightHandSide());
+        } else {
+            final InfixExpression ie = as(as.getRightHandSide(), InfixExpression.class);
+            if (!hasOperator(as, Assignment.Operator.ASSIGN)
+                    || ie == null
+                    || !isStringConcat(ie)
+                    || !isSameVariable(ie.getLeftOperand(), lhs)) {
+                return null;
+            }
+            final List<Expression> allOperands = allOperands(ie);
+            results = allOperands.subList(1, allOperands.size());
+        }
+        for (Expression operand : results) {
+            final ITypeBinding typeBinding = operand.resolveTypeBinding();
+            if (typeBinding == null
+                    || typeBinding.isNullType()
+                    // StringBuilder.append(char[]) appends the chars, whereas concatenation calls toString()
+                    || (typeBinding.isArray() && hasType(typeBinding.getElementType(), "char"))) {
+                return null;
+            }
+        }
+        return results;
+    }
+
+    private boolean isSameVariable(Expression expr1, Expression expr2) {
+        return expr1 instanceof SimpleName
+                && expr2 instanceof SimpleName
+                && ((SimpleName) expr1).resolveBinding() != null
+                && ((SimpleName) expr1).resolveBinding().equals(((SimpleName) expr2).resolveBinding());
+    }
+
+    /** Returns whether the String variable is only used by the provided concatenations inside the loop. */
+    private boolean isOnlyConcatenatedInLoop(Statement loop, final IVariableBinding stringVar,
+            final List<ExpressionStatement> concatenations) {
+        final boolean[] result = { true };
+        loop.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(ExpressionStatement node) {
+                if (concatenations.contains(node)) {
+                    // the concatenated operands must not read the intermediate value
+                    for (Expression operand : getConcatenatedOperands((Assignment) node.getExpression())) {
+                        operand.accept(this);
+                    }
+                    return DO_NOT_VISIT_SUBTREE;
+                }
+                return VISIT_SUBTREE;
+            }
+
+            @Override
+            public boolean visit(SimpleName node) {
+                result[0] &= !stringVar.equals(node.resolveBinding());
+                return VISIT_SUBTREE;
+            }
+        });
+        return result[0];
+    }
+
+    /** Labeled break and continue statements could skip the conversion of the StringBuilder back to a String. */
+    private boolean hasLabeledJumps(Statement loop) {
+        final boolean[] result = new boolean[1];
+        loop.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(BreakStatement node) {
+                result[0] |= node.getLabel() != null;
+                return VISIT_SUBTREE;
+            }
+
+            @Override
+            public boolean visit(ContinueStatement node) {
+                result[0] |= node.getLabel() != null;
+                return VISIT_SUBTREE;
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * Returns whether the String variable could be read by a catch clause or a finally block
+     * after an exception interrupted the loop, before the StringBuilder is converted back to a String.
+     */
+    private boolean isInTryWithHandlers(Statement loop, ASTNode declaration) {
+        for (ASTNode node = loop.getParent(); node != null && !isAncestor(node, declaration);
+                node = node.getParent()) {
+            if (node instanceof TryStatement
+                    && (!catchClauses((TryStatement) node).isEmpty() || ((TryStatement) node).getFinally() != null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Expression[] getBuilderInitialValue(Statement loop, IVariableBinding stringVar, ASTNode declaration) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        if (declaration instanceof VariableDeclarationFragment
+                && declaration.getParent() == getPreviousSibling(loop)
+                && isEmptyString(((VariableDeclarationFragment) declaration).getInitializer())) {
+            return new Expression[0];
+        } else if (isAlwaysNonNull(stringVar, declaration)) {
+            return new Expression[] { b.simpleName(stringVar.getName()) };
+        }
+        // concatenating to null produces "null", whereas new StringBuilder(null) throws a NullPointerException
+        return new Expression[] { b.invoke("String", "valueOf", b.simpleName(stringVar.getName())) };
+    }
+
+    /** Returns whether the String variable is initialized and only assigned with non null values. */
+    private boolean isAlwaysNonNull(final IVariableBinding stringVar, ASTNode declaration) {
+        if (!(declaration instanceof VariableDeclarationFragment)
+                || !isNonNullString(((VariableDeclarationFragment) declaration).getInitializer())) {
+            return false;
+        }
+        final boolean[] result = { true };
+        getAncestor(declaration, BodyDeclaration.class).accept(new ASTVisitor() {
+            @Override
+            public boolean visit(Assignment node) {
+                if (node.getLeftHandSide() instanceof SimpleName
+                        && stringVar.equals(((SimpleName) node.getLeftHandSide()).resolveBinding())) {
+                    result[0] &= hasOperator(node, Assignment.Operator.PLUS_ASSIGN)
+                            || isNonNullString(node.getRightHandSide());
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return result[0];
+    }
+
+    private boolean isNonNullString(Expression expr) {
+        return expr instanceof StringLiteral
+                || (expr instanceof InfixExpression && isStringConcat((InfixExpression) expr))
+                || (expr != null && expr.resolveConstantExpressionValue() != null);
+    }
+
     private boolean isStringConcat(InfixExpression node) {
         return hasOperator(node, PLUS)
                 && hasType(node, "java.lang.String");
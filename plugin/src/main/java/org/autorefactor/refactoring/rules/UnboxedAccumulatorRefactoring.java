@@ -0,0 +1,278 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.Refactorings;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.ArrayAccess;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.DoStatement;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.PrimitiveType;
+import org.eclipse.jdt.core.dom.ReturnStatement;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.eclipse.jdt.core.dom.WhileStatement;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
+
+/**
+ * See {@link #getDescription()} method.
+ * <p>
+ * The local variable is only retyped when none of its uses needs an object: it is never assigned null or a
+ * wrapper which could be null, never compared by identity, never passed where an object is expected
+ * (like a collection insertion) and never used as a method receiver except for calls to
+ * {@code intValue()}, {@code longValue()}, etc. which are replaced by the variable itself.
+ */
+@SuppressWarnings("javadoc")
+public class UnboxedAccumulatorRefactoring extends AbstractRefactoringRule {
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Replaces the Integer, Long, Float and Double local variables modified in loops,"
+            + " like counters and accumulators, with primitive local variables,"
+            + " thus avoiding to box a new value at each iteration.";
+    }
+
+    @Override
+    public String getName() {
+        return "Unboxed accumulators";
+    }
+
+    @Override
+    public boolean visit(VariableDeclarationStatement node) {
+        final ITypeBinding wrapperType = node.getType().resolveBinding();
+        final ITypeBinding primitiveType = getPrimitiveType(wrapperType);
+        if (primitiveType == null || fragments(node).size() != 1) {
+            return VISIT_SUBTREE;
+        }
+        final VariableDeclarationFragment vdf = fragments(node).get(0);
+        final IVariableBinding varBinding = vdf.resolveBinding();
+        if (varBinding == null
+                || vdf.getExtraDimensions() != 0
+                || vdf.getInitializer() == null
+                || !isPrimitive(vdf.getInitializer().resolveTypeBinding())) {
+            return VISIT_SUBTREE;
+        }
+
+        final List<SimpleName> uses = getUses(node, vdf);
+        final List<MethodInvocation> unboxingCalls = new ArrayList<MethodInvocation>();
+        boolean isModifiedInLoop = false;
+        for (SimpleName use : uses) {
+            final Expression expr = getOutermostParenthesized(use);
+            if (isWritten(expr)) {
+                if (!canBeWrittenAsPrimitive(expr)) {
+                    return VISIT_SUBTREE;
+                }
+                isModifiedInLoop |= isInLoop(expr, node);
+            } else if (isUnboxingCall(expr, wrapperType)) {
+                unboxingCalls.add((MethodInvocation) expr.getParent());
+            } else if (!canBeReadAsPrimitive(expr, wrapperType)) {
+                return VISIT_SUBTREE;
+            }
+        }
+        if (!isModifiedInLoop) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final AST ast = b.getAST();
+        final PrimitiveType.Code primitiveCode = PrimitiveType.toCode(primitiveType.getName());
+        r.replace(node.getType(), ast.newPrimitiveType(primitiveCode));
+        for (MethodInvocation mi : unboxingCalls) {
+            final ITypeBinding resultType = mi.resolveTypeBinding();
+            if (primitiveType.equals(resultType)) {
+                r.replace(mi, b.copy(mi.getExpression()));
+            } else {
+                final CastExpression ce = ast.newCastExpression();
+                ce.setType(ast.newPrimitiveType(PrimitiveType.toCode(resultType.getName())));
+                ce.setExpression(b.copy(mi.getExpression()));
+                r.replace(mi, ce);
+            }
+        }
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    private ITypeBinding getPrimitiveType(ITypeBinding wrapperType) {
+        if (hasType(wrapperType, "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double")) {
+            return this.ctx.getAST().resolveWellKnownType(getPrimitiveTypeName(wrapperType));
+        }
+        return null;
+    }
+
+    private String getPrimitiveTypeName(ITypeBinding wrapperType) {
+        if (hasType(wrapperType, "java.lang.Integer")) {
+            return "int";
+        }
+        return wrapperType.getName().toLowerCase();
+    }
+
+    private List<SimpleName> getUses(VariableDeclarationStatement node, final VariableDeclarationFragment vdf) {
+        final IVariableBinding varBinding = vdf.resolveBinding();
+        final List<SimpleName> results = new ArrayList<SimpleName>();
+        node.getParent().accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName sn) {
+                if (sn != vdf.getName() && varBinding.equals(sn.resolveBinding())) {
+                    results.add(sn);
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return results;
+    }
+
+    private Expression getOutermostParenthesized(Expression expr) {
+        Expression result = expr;
+        while (result.getParent() instanceof ParenthesizedExpression) {
+            result = (Expression) result.getParent();
+        }
+        return result;
+    }
+
+    private boolean isWritten(Expression expr) {
+        final ASTNode parent = expr.getParent();
+        return expr.getLocationInParent() == Assignment.LEFT_HAND_SIDE_PROPERTY
+                || parent instanceof PostfixExpression
+                || (parent instanceof PrefixExpression
+                        && (hasOperator((PrefixExpression) parent, PrefixExpression.Operator.INCREMENT)
+                            || hasOperator((PrefixExpression) parent, PrefixExpression.Operator.DECREMENT)));
+    }
+
+    private boolean canBeWrittenAsPrimitive(Expression expr) {
+        if (expr.getParent() instanceof Assignment) {
+            final Assignment as = (Assignment) expr.getParent();
+            // a null or a wrapper could be assigned to the variable,
+            // after the change it would throw a NullPointerException at the assignment
+            return !hasOperator(as, Assignment.Operator.ASSIGN)
+                    || isPrimitive(as.getRightHandSide().resolveTypeBinding());
+        }
+        return true;
+    }
+
+    /** Returns whether the provided written expression is executed several times for each declaration. */
+    private boolean isInLoop(Expression expr, VariableDeclarationStatement declaration) {
+        final BodyDeclaration bodyDecl = getAncestor(declaration, BodyDeclaration.class);
+        for (ASTNode node = expr.getParent(); node != bodyDecl; node = node.getParent()) {
+            if ((node instanceof ForStatement
+                        || node instanceof EnhancedForStatement
+                        || node instanceof WhileStatement
+                        || node instanceof DoStatement)
+                    && !isAncestor(node, declaration)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns whether the provided expression is the receiver of {@code intValue()}, {@code longValue()}, etc. */
+    private boolean isUnboxingCall(Expression expr, ITypeBinding wrapperType) {
+        if (expr.getLocationInParent() == MethodInvocation.EXPRESSION_PROPERTY) {
+            final MethodInvocation mi = (MethodInvocation) expr.getParent();
+            final String methodName = mi.getName().getIdentifier();
+            return arguments(mi).isEmpty()
+                    && methodName.endsWith("Value")
+                    && isPrimitive(mi.resolveTypeBinding())
+                    && isMethod(mi, "java.lang.Number", methodName);
+        }
+        return false;
+    }
+
+    private boolean canBeReadAsPrimitive(Expression expr, ITypeBinding wrapperType) {
+        final ASTNode parent = expr.getParent();
+        final StructuralPropertyDescriptor locationInParent = expr.getLocationInParent();
+        if (parent instanceof InfixExpression) {
+            final InfixExpression ie = (InfixExpression) parent;
+            if (hasOperator(ie, EQUALS) || hasOperator(ie, NOT_EQUALS)) {
+                // comparing with another object compares the identities
+                for (Expression operand : allOperands(ie)) {
+                    if (!isPrimitive(operand.resolveTypeBinding()) && operand != expr) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } else if (parent instanceof PrefixExpression
+                || parent instanceof ArrayAccess && locationInParent == ArrayAccess.INDEX_PROPERTY) {
+            return true;
+        } else if (locationInParent == Assignment.RIGHT_HAND_SIDE_PROPERTY) {
+            final Assignment as = (Assignment) parent;
+            return !hasOperator(as, Assignment.Operator.ASSIGN)
+                    || isPrimitive(as.getLeftHandSide().resolveTypeBinding());
+        } else if (locationInParent == VariableDeclarationFragment.INITIALIZER_PROPERTY) {
+            return isPrimitive(((VariableDeclarationFragment) parent).resolveBinding().getType());
+        } else if (parent instanceof CastExpression) {
+            return isPrimitive(((CastExpression) parent).getType().resolveBinding());
+        } else if (locationInParent == MethodInvocation.ARGUMENTS_PROPERTY) {
+            final MethodInvocation mi = (MethodInvocation) parent;
+            return isPrimitiveParameter(mi.resolveMethodBinding(), arguments(mi).indexOf(expr));
+        } else if (locationInParent == ClassInstanceCreation.ARGUMENTS_PROPERTY) {
+            final ClassInstanceCreation cic = (ClassInstanceCreation) parent;
+            return isPrimitiveParameter(cic.resolveConstructorBinding(), arguments(cic).indexOf(expr));
+        } else if (parent instanceof ReturnStatement) {
+            // boxing once when returning is fine
+            final MethodDeclaration md = getAncestor(parent, MethodDeclaration.class);
+            final ITypeBinding returnType = md.getReturnType2() != null ? md.getReturnType2().resolveBinding() : null;
+            return isPrimitive(returnType) || wrapperType.equals(returnType);
+        }
+        return false;
+    }
+
+    private boolean isPrimitiveParameter(IMethodBinding methodBinding, int index) {
+        if (methodBinding == null) {
+            return false;
+        }
+        final ITypeBinding[] paramTypes = methodBinding.getParameterTypes();
+        return index < paramTypes.length
+                && isPrimitive(paramTypes[index])
+                && !(methodBinding.isVarargs() && index >= paramTypes.length - 1);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.Release;
+import org.autorefactor.refactoring.TypeNameDecider;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.autorefactor.refactoring.EscapeAnalysisHelper.*;
+
+/**
+ * See {@link #getDescription()} method.
+ * <p>
+ * The synchronization is only removed from objects which are proven to be confined to the method creating them,
+ * see {@link org.autorefactor.refactoring.EscapeAnalysisHelper}.
+ * <p>
+ * {@code Hashtable} is not replaced with {@code HashMap}: they do not iterate in the same order,
+ * and {@code HashMap} accepts the null keys and values {@code Hashtable} rejects with a NullPointerException.
+ */
+@SuppressWarnings("javadoc")
+public class UnsynchronizedLocalObjectRefactoring extends AbstractRefactoringRule {
+
+    /** A synchronized class, its unsynchronized equivalent and the types they share. */
+    private static enum SynchronizedClass {
+        STRING_BUFFER("java.lang.StringBuffer", "java.lang.StringBuilder", "1.5.0", null,
+                "java.lang.Object", "java.lang.CharSequence", "java.lang.Appendable", "java.io.Serializable"),
+        VECTOR("java.util.Vector", "java.util.ArrayList", "1.2.0",
+                Arrays.asList("java.util.List", "java.util.Collection", "java.lang.Iterable", "java.lang.Object"),
+                "java.lang.Object", "java.util.List", "java.util.Collection", "java.lang.Iterable",
+                "java.util.RandomAccess", "java.lang.Cloneable", "java.io.Serializable");
+
+        private final String synchronizedClass;
+        private final String unsynchronizedClass;
+        private final String minimumRelease;
+        /** The types declaring the methods available on both classes, or null if all the methods are available. */
+        private final List<String> commonMethodsTypes;
+        private final List<String> commonSuperTypes;
+
+        private SynchronizedClass(String synchronizedClass, String unsynchronizedClass, String minimumRelease,
+                List<String> commonMethodsTypes, String... commonSuperTypes) {
+            this.synchronizedClass = synchronizedClass;
+            this.unsynchronizedClass = unsynchronizedClass;
+            this.minimumRelease = minimumRelease;
+            this.commonMethodsTypes = commonMethodsTypes;
+            this.commonSuperTypes = Arrays.asList(commonSuperTypes);
+        }
+    }
+
+    private static final List<String> SYNCHRONIZED_WRAPPERS = Arrays.asList("synchronizedCollection",
+            "synchronizedList", "synchronizedSet", "synchronizedSortedSet", "synchronizedNavigableSet",
+            "synchronizedMap", "synchronizedSortedMap", "synchronizedNavigableMap");
+
+    private TypeNameDecider typeNameDecider;
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Replaces StringBuffer, Vector and Collections.synchronized*() wrappers"
+            + " with their unsynchronized equivalents when they are confined to the method creating them.";
+    }
+
+    @Override
+    public String getName() {
+        return "Unsynchronized local objects";
+    }
+
+    @Override
+    public boolean visit(CompilationUnit node) {
+        this.typeNameDecider = new TypeNameDecider(node, this.ctx.getASTBuilder(), this.ctx.getRefactorings());
+        return VISIT_SUBTREE;
+    }
+
+    @Override
+    public boolean visit(ClassInstanceCreation node) {
+        final SynchronizedClass syncClass = getSynchronizedClass(node);
+        if (syncClass == null
+                || node.getAnonymousClassDeclaration() != null
+                || !getJavaSERelease().isCompatibleWith(Release.javaSE(syncClass.minimumRelease))
+                // Vector(int, int) specifies a capacity increment, which ArrayList does not support
+                || (syncClass == SynchronizedClass.VECTOR && arguments(node).size() == 2)) {
+            return VISIT_SUBTREE;
+        }
+        final List<MethodInvocation> methodCalls = getMethodCallsOnConfinedObject(node);
+        if (methodCalls == null) {
+            return VISIT_SUBTREE;
+        }
+
+        final VariableDeclarationStatement vds = getVariableDeclaration(node);
+        final boolean isDeclaredWithSynchronizedClass = vds == null
+                || hasType(vds.getType().resolveBinding(), syncClass.synchronizedClass);
+        if (isDeclaredWithSynchronizedClass) {
+            if (!areAvailableOnUnsynchronizedClass(methodCalls, syncClass)) {
+                return VISIT_SUBTREE;
+            }
+        } else if (!hasType(vds.getType().resolveBinding(), syncClass.commonSuperTypes.toArray(new String[0]))) {
+            return VISIT_SUBTREE;
+        }
+
+        replaceTypeName(node.getType(), syncClass.unsynchronizedClass);
+        if (vds != null && isDeclaredWithSynchronizedClass) {
+            replaceTypeName(vds.getType(), syncClass.unsynchronizedClass);
+        }
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    @Override
+    public boolean visit(MethodInvocation node) {
+        if (isSynchronizedWrapper(node) && getVariableDeclaration(node) != null) {
+            final Expression wrapped = arg0(node);
+            final ITypeBinding wrappedType = wrapped.resolveTypeBinding();
+            final ITypeBinding varType = getVariableDeclaration(node).getType().resolveBinding();
+            if (wrappedType != null
+                    && varType != null
+                    && wrappedType.isAssignmentCompatible(varType)
+                    && getMethodCallsOnConfinedObject(node) != null) {
+                this.ctx.getRefactorings().replace(node, this.ctx.getASTBuilder().move(wrapped));
+                return DO_NOT_VISIT_SUBTREE;
+            }
+        }
+        return VISIT_SUBTREE;
+    }
+
+    private boolean isSynchronizedWrapper(MethodInvocation node) {
+        final IMethodBinding methodBinding = node.resolveMethodBinding();
+        return methodBinding != null
+                && hasType(methodBinding.getDeclaringClass(), "java.util.Collections")
+                && SYNCHRONIZED_WRAPPERS.contains(methodBinding.getName())
+                && arguments(node).size() == 1;
+    }
+
+    private SynchronizedClass getSynchronizedClass(ClassInstanceCreation node) {
+        for (SynchronizedClass syncClass : SynchronizedClass.values()) {
+            if (hasType(node, syncClass.synchronizedClass)) {
+                return syncClass;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the local variable declaration initialized with the provided expression, if any. */
+    private VariableDeclarationStatement getVariableDeclaration(Expression expr) {
+        final ASTNode parent = expr.getParent();
+        if (parent instanceof VariableDeclarationFragment
+                && parent.getParent() instanceof VariableDeclarationStatement) {
+            return (VariableDeclarationStatement) parent.getParent();
+        }
+        return null;
+    }
+
+    private boolean areAvailableOnUnsynchronizedClass(List<MethodInvocation> methodCalls,
+            SynchronizedClass syncClass) {
+        if (syncClass.commonMethodsTypes == null) {
+            return true;
+        }
+        for (MethodInvocation mi : methodCalls) {
+            final IMethodBinding methodBinding = mi.resolveMethodBinding();
+            if (methodBinding == null
+                    || (!"clone".equals(methodBinding.getName())
+                            && !"ensureCapacity".equals(methodBinding.getName())
+                            && !"trimToSize".equals(methodBinding.getName())
+                            && !overridesMethodOf(methodBinding, methodBinding.getDeclaringClass(),
+                                    syncClass.commonMethodsTypes))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean overridesMethodOf(IMethodBinding methodBinding, ITypeBinding type, List<String> typeNames) {
+        if (type == null) {
+            return false;
+        }
+        if (typeNames.contains(type.getErasure().getQualifiedName())) {
+            for (IMethodBinding declaredMethod : type.getDeclaredMethods()) {
+                if (methodBinding.getMethodDeclaration() == declaredMethod.getMethodDeclaration()
+                        || methodBinding.getMethodDeclaration().overrides(declaredMethod.getMethodDeclaration())) {
+                    return true;
+                }
+            }
+        }
+        if (overridesMethodOf(methodBinding, type.getSuperclass(), typeNames)) {
+            return true;
+        }
+        for (ITypeBinding itf : type.getInterfaces()) {
+            if (overridesMethodOf(methodBinding, itf, typeNames)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void replaceTypeName(Type type, String qualifiedName) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final Type typeToReplace = type instanceof ParameterizedType ? ((ParameterizedType) type).getType() : type;
+        r.replace(typeToReplace, b.getAST().newSimpleType(typeNameDecider.useType(qualifiedName)));
+    }
+
+    private Release getJavaSERelease() {
+        return this.ctx.getJavaProjectOptions().getJavaSERelease();
+    }
+}
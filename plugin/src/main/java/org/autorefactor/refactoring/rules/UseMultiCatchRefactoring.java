@@ -33,6 +33,7 @@ import java.util.ListIterator;
 import java.util.Set;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.ASTFingerprints;
 import org.autorefactor.refactoring.Refactorings;
 import org.eclipse.jdt.core.dom.ASTMatcher;
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -123,9 +124,18 @@ public class UseMultiCatchRefactoring extends AbstractRefactoringRule {
     @Override
     public boolean visit(TryStatement node) {
         List<CatchClause> catchClauses = catchClauses(node);
+        // only catch clauses with colliding fingerprints can have the same body
+        final ASTFingerprints fingerprints = ASTFingerprints.of(node, ASTFingerprints.NORMALIZE_LOCAL_VARIABLES);
+        final int[] bodyFingerprints = new int[catchClauses.size()];
+        for (int i = 0; i < catchClauses.size(); i++) {
+            bodyFingerprints[i] = fingerprints.get(catchClauses.get(i).getBody());
+        }
         for (int i = 0; i < catchClauses.size(); i++) {
             CatchClause catchClause1 = catchClauses.get(i);
             for (int j = i + 1; j < catchClauses.size(); j++) {
+                if (bodyFingerprints[i] != bodyFingerprints[j]) {
+                    continue;
+                }
                 CatchClause catchClause2 = catchClauses.get(j);
                 AggregateDirection direction = aggregateDirection(catchClauses, i, j);
                 if (!AggregateDirection.NONE.equals(direction)
@@ -35,6 +35,8 @@ import org.autorefactor.AutoRefactorPlugin;
 import org.autorefactor.refactoring.JavaProjectOptions;
 import org.autorefactor.refactoring.RefactoringRule;
 import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.TokenRefactoringRule;
+import org.autorefactor.refactoring.TokenRefactorings;
 import org.autorefactor.refactoring.rules.AggregateASTVisitor;
 import org.autorefactor.refactoring.rules.RefactoringContext;
 import org.autorefactor.util.IllegalStateException;
@@ -67,6 +69,8 @@ public class ApplyRefactoringsJob extends Job {
 
     private final Queue<RefactoringUnit> refactoringUnits;
     private final List<RefactoringRule> refactoringRulesToApply;
+    /** The parser reused for all the compilation units refactored by this job. */
+    private final ASTParser parser = ASTParser.newParser(AST.JLS4);
 
     /**
      * Builds an instance of this class.
@@ -105,6 +109,17 @@ public class ApplyRefactoringsJob extends Job {
             return Status.OK_STATUS;
         }
 
+        // token rules are run separately, without building an AST
+        final List<RefactoringRule> astRules = new ArrayList<RefactoringRule>();
+        final List<TokenRefactoringRule> tokenRules = new ArrayList<TokenRefactoringRule>();
+        for (RefactoringRule rule : refactoringRulesToApply) {
+            if (rule instanceof TokenRefactoringRule) {
+                tokenRules.add((TokenRefactoringRule) rule);
+            } else {
+                astRules.add(rule);
+            }
+        }
+
         final int startSize = refactoringUnits.size();
         monitor.beginTask("", startSize);
         int previousSize = startSize;
@@ -119,8 +134,9 @@ public class ApplyRefactoringsJob extends Job {
                 try {
                     monitor.subTask("Applying refactorings to " + getClassName(compilationUnit));
 
-                    final AggregateASTVisitor refactoring = new AggregateASTVisitor(refactoringRulesToApply);
-                    applyRefactoring(compilationUnit, refactoring, options);
+                    final AggregateASTVisitor refactoring =
+                            !astRules.isEmpty() ? new AggregateASTVisitor(astRules) : null;
+                    applyRefactoring(compilationUnit, refactoring, tokenRules, options);
                 } catch (Exception e) {
                     final String msg = "Exception when applying refactorings to file \""
                             + compilationUnit.getPath() + "\": " + e.getMessage();
@@ -144,7 +160,7 @@ public class ApplyRefactoringsJob extends Job {
     }
 
     private void applyRefactoring(ICompilationUnit compilationUnit, AggregateASTVisitor refactoringToApply,
-            JavaProjectOptions options) throws Exception {
+            List<TokenRefactoringRule> tokenRules, JavaProjectOptions options) throws Exception {
         final ITextFileBufferManager bufferManager = FileBuffers.getTextFileBufferManager();
         final IPath path = compilationUnit.getPath();
         final LocationKind locationKind = LocationKind.NORMALIZE;
@@ -164,7 +180,13 @@ public class ApplyRefactoringsJob extends Job {
                 return;
             }
             final IDocument document = textFileBuffer.getDocument();
-            applyRefactoring(document, compilationUnit, refactoringToApply, options);
+            if (refactoringToApply != null) {
+                applyRefactoring(document, compilationUnit, refactoringToApply, options);
+            }
+            // token rules run last to clean up after the AST based refactorings
+            if (new TokenRefactorings(options).applyTo(document, tokenRules)) {
+                saveChanges(compilationUnit, document);
+            }
         } finally {
             bufferManager.disconnect(path, locationKind, null);
         }
@@ -194,7 +216,6 @@ public class ApplyRefactoringsJob extends Job {
     public void applyRefactoring(IDocument document, ICompilationUnit compilationUnit, AggregateASTVisitor refactoring,
             JavaProjectOptions options) throws Exception {
         // creation of DOM/AST from a ICompilationUnit
-        final ASTParser parser = ASTParser.newParser(AST.JLS4);
         resetParser(compilationUnit, parser, options);
 
         CompilationUnit astRoot = (CompilationUnit) parser.createAST(null);
@@ -227,18 +248,7 @@ public class ApplyRefactoringsJob extends Job {
 
             // apply the refactorings and save the compilation unit
             refactorings.applyTo(document);
-            final boolean hadUnsavedChanges = compilationUnit.hasUnsavedChanges();
-            compilationUnit.getBuffer().setContents(document.get());
-            // http://wiki.eclipse.org/FAQ_What_is_a_working_copy%3F
-            // compilationUnit.reconcile(AST.JLS4,
-            // ICompilationUnit.ENABLE_BINDINGS_RECOVERY |
-            // ICompilationUnit.ENABLE_STATEMENTS_RECOVERY |
-            // ICompilationUnit.FORCE_PROBLEM_DETECTION
-            // /** can be useful to back out a change that does not compile */
-            // , null, null);
-            if (!hadUnsavedChanges) {
-                compilationUnit.save(null, true);
-            }
+            saveChanges(compilationUnit, document);
             // I did not find any other way to directly modify the AST
             // while still keeping the resolved type bindings working.
             // Using astRoot.recordModifications() did not work:
@@ -260,10 +270,24 @@ public class ApplyRefactoringsJob extends Job {
         }
     }
 
+    private void saveChanges(ICompilationUnit compilationUnit, IDocument document) throws Exception {
+        final boolean hadUnsavedChanges = compilationUnit.hasUnsavedChanges();
+        compilationUnit.getBuffer().setContents(document.get());
+        // http://wiki.eclipse.org/FAQ_What_is_a_working_copy%3F
+        // compilationUnit.reconcile(AST.JLS4,
+        // ICompilationUnit.ENABLE_BINDINGS_RECOVERY |
+        // ICompilationUnit.ENABLE_STATEMENTS_RECOVERY |
+        // ICompilationUnit.FORCE_PROBLEM_DETECTION
+        // /** can be useful to back out a change that does not compile */
+        // , null, null);
+        if (!hadUnsavedChanges) {
+            compilationUnit.save(null, true);
+        }
+    }
+
     private static void resetParser(ICompilationUnit cu, ASTParser parser, JavaProjectOptions options) {
+        options.configureParser(parser);
         parser.setSource(cu);
-        parser.setResolveBindings(true);
-        parser.setCompilerOptions(options.getCompilerOptions());
     }
 
     private String getPossibleCulprits(int nbLoopsWithSameVisitors, List<ASTVisitor> lastLoopVisitors) {
@@ -0,0 +1,181 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.ui;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Caches the {@link JavaProjectOptions} of each java project.
+ * <p>
+ * The cached options of a java project are dropped when its preferences or its classpath change,
+ * and all the cached options are dropped when the workspace JDT preferences change.
+ * The cached options also hold the parser settings of the java project,
+ * see {@link JavaProjectOptions#configureParser(org.eclipse.jdt.core.dom.ASTParser)}.
+ * This class is thread-safe.
+ */
+public class JavaProjectOptionsCache {
+
+    /** The cached options of a java project, along with the listener to its preferences. */
+    private static final class CachedOptions {
+        private final JavaProjectOptionsImpl options;
+        private final IEclipsePreferences projectPreferences;
+        private final IPreferenceChangeListener projectPreferencesListener;
+
+        private CachedOptions(JavaProjectOptionsImpl options, IEclipsePreferences projectPreferences,
+                IPreferenceChangeListener projectPreferencesListener) {
+            this.options = options;
+            this.projectPreferences = projectPreferences;
+            this.projectPreferencesListener = projectPreferencesListener;
+        }
+    }
+
+    private final Map<IJavaProject, CachedOptions> cache = new HashMap<IJavaProject, CachedOptions>();
+    private final IEclipsePreferences workspacePreferences = InstanceScope.INSTANCE.getNode(JavaCore.PLUGIN_ID);
+    private final IPreferenceChangeListener workspacePreferencesListener = new IPreferenceChangeListener() {
+        @Override
+        public void preferenceChange(PreferenceChangeEvent event) {
+            clear();
+        }
+    };
+    private final IElementChangedListener classpathListener = new IElementChangedListener() {
+        @Override
+        public void elementChanged(ElementChangedEvent event) {
+            for (IJavaElementDelta delta : event.getDelta().getAffectedChildren()) {
+                final IJavaElement element = delta.getElement();
+                if (element instanceof IJavaProject
+                        && (delta.getKind() == IJavaElementDelta.REMOVED
+                            || (delta.getFlags() & (IJavaElementDelta.F_CLASSPATH_CHANGED
+                                    | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED)) != 0)) {
+                    invalidate((IJavaProject) element);
+                }
+            }
+        }
+    };
+
+    /** Builds an instance of this class and starts listening to preference and classpath changes. */
+    public JavaProjectOptionsCache() {
+        workspacePreferences.addPreferenceChangeListener(workspacePreferencesListener);
+        JavaCore.addElementChangedListener(classpathListener, ElementChangedEvent.POST_CHANGE);
+    }
+
+    /**
+     * Returns the options of the provided java project, computing them if they are not cached yet
+     * or if the resolved classpath of the java project changed since they were cached.
+     *
+     * @param javaProject the java project
+     * @return the options of the provided java project
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized JavaProjectOptions getJavaProjectOptions(final IJavaProject javaProject) {
+        final long classpathFingerprint = getClasspathFingerprint(javaProject);
+        final CachedOptions entry = cache.get(javaProject);
+        if (entry != null) {
+            if (entry.options.getClasspathFingerprint() == classpathFingerprint) {
+                return entry.options;
+            }
+            // the classpath listener has not been notified yet
+            invalidate(javaProject);
+        }
+        final JavaProjectOptionsImpl options =
+                new JavaProjectOptionsImpl(javaProject.getOptions(true), classpathFingerprint);
+        final IEclipsePreferences projectPreferences =
+                new ProjectScope(javaProject.getProject()).getNode(JavaCore.PLUGIN_ID);
+        final IPreferenceChangeListener projectPreferencesListener = new IPreferenceChangeListener() {
+            @Override
+            public void preferenceChange(PreferenceChangeEvent event) {
+                invalidate(javaProject);
+            }
+        };
+        projectPreferences.addPreferenceChangeListener(projectPreferencesListener);
+        cache.put(javaProject, new CachedOptions(options, projectPreferences, projectPreferencesListener));
+        return options;
+    }
+
+    private long getClasspathFingerprint(IJavaProject javaProject) {
+        try {
+            long result = 1;
+            for (IClasspathEntry cpEntry : javaProject.getResolvedClasspath(true)) {
+                result = 31 * result + cpEntry.getEntryKind();
+                result = 31 * result + cpEntry.getPath().toString().hashCode();
+            }
+            return result;
+        } catch (JavaModelException e) {
+            throw new UnhandledException(null, e);
+        }
+    }
+
+    /**
+     * Drops the cached options of the provided java project.
+     *
+     * @param javaProject the java project
+     */
+    public synchronized void invalidate(IJavaProject javaProject) {
+        final CachedOptions entry = cache.remove(javaProject);
+        if (entry != null) {
+            removeListener(entry);
+        }
+    }
+
+    /** Drops all the cached options. */
+    public synchronized void clear() {
+        for (CachedOptions entry : cache.values()) {
+            removeListener(entry);
+        }
+        cache.clear();
+    }
+
+    private void removeListener(CachedOptions entry) {
+        try {
+            entry.projectPreferences.removePreferenceChangeListener(entry.projectPreferencesListener);
+        } catch (IllegalStateException e) {
+            // the preference node has been removed along with the project
+        }
+    }
+
+    /** Drops all the cached options and stops listening to preference and classpath changes. */
+    public synchronized void dispose() {
+        clear();
+        JavaCore.removeElementChangedListener(classpathListener);
+        workspacePreferences.removePreferenceChangeListener(workspacePreferencesListener);
+    }
+}
@@ -25,6 +25,7 @@
  */
 package org.autorefactor.ui;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,6 +33,7 @@ import org.autorefactor.refactoring.JavaProjectOptions;
 import org.autorefactor.refactoring.Release;
 import org.autorefactor.util.UnhandledException;
 import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants;
 
 import static org.eclipse.jdt.core.JavaCore.*;
@@ -39,15 +41,25 @@ import static org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants.*;
 
 /**
  * Implementation of {@link JavaProjectOptions} for Eclipse JDT.
+ * <p>
+ * All the option values are computed once, when the options are set,
+ * so the getters do not allocate and instances can be shared by all the files of a project,
+ * see {@link JavaProjectOptionsCache}.
  */
 public class JavaProjectOptionsImpl implements JavaProjectOptions {
 
     private final Map<String, String> options;
+    private final long classpathFingerprint;
     private Release javaSERelease;
+    private Map<String, String> compilerOptions;
+    private Integer tabSize;
+    private int commentLineLength;
 
     /** Builds a new instance of this class. */
     public JavaProjectOptionsImpl() {
         this.options = new HashMap<String, String>();
+        this.classpathFingerprint = 0;
+        computeFormatterOptions();
     }
 
     /**
@@ -56,8 +68,29 @@ public class JavaProjectOptionsImpl implements JavaProjectOptions {
      * @param options the java project options
      */
     public JavaProjectOptionsImpl(Map<String, String> options) {
+        this(options, 0);
+    }
+
+    /**
+     * Builds a new instance of this class with the supplied options.
+     *
+     * @param options the java project options
+     * @param classpathFingerprint the fingerprint of the resolved classpath of the java project
+     */
+    public JavaProjectOptionsImpl(Map<String, String> options, long classpathFingerprint) {
         this.options = options;
-        this.javaSERelease = Release.javaSE(options.get(COMPILER_SOURCE));
+        this.classpathFingerprint = classpathFingerprint;
+        setJavaSERelease(Release.javaSE(options.get(COMPILER_SOURCE)));
+        computeFormatterOptions();
+    }
+
+    private void computeFormatterOptions() {
+        this.tabSize = asInteger(FORMATTER_INDENTATION_SIZE);
+        Integer lineLength = asInteger(FORMATTER_COMMENT_LINE_LENGTH);
+        if (lineLength == null) {
+            lineLength = asInteger(DefaultCodeFormatterConstants.FORMATTER_LINE_SPLIT);
+        }
+        this.commentLineLength = lineLength != null ? lineLength : 80;
     }
 
     private Integer asInteger(String preference) {
@@ -72,14 +105,27 @@ public class JavaProjectOptionsImpl implements JavaProjectOptions {
         }
     }
 
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned map is computed once and cannot be modified.
+     */
     @Override
     public Map<String, String> getCompilerOptions() {
-        final Map<String, String> options = JavaCore.getOptions();
-        final String v = javaSERelease.getMajorVersion() + "." + javaSERelease.getMinorVersion();
-        JavaCore.setComplianceOptions(v, options);
-        return options;
+        return compilerOptions;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The parser is given the compiler options precomputed once for the project and shared by all the parses,
+     * instead of options rebuilt for each parse.
+     */
+    @Override
+    public void configureParser(ASTParser parser) {
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setResolveBindings(true);
+        parser.setCompilerOptions(compilerOptions);
     }
 
     /** {@inheritDoc} */
@@ -91,17 +137,23 @@ public class JavaProjectOptionsImpl implements JavaProjectOptions {
     /** {@inheritDoc} */
     @Override
     public Integer getTabSize() {
-        return asInteger(FORMATTER_INDENTATION_SIZE);
+        return tabSize;
     }
 
     /** {@inheritDoc} */
     @Override
     public int getCommentLineLength() {
-        Integer result = asInteger(FORMATTER_COMMENT_LINE_LENGTH);
-        if (result == null) {
-            result = asInteger(DefaultCodeFormatterConstants.FORMATTER_LINE_SPLIT);
-        }
-        return result != null ? result : 80;
+        return commentLineLength;
+    }
+
+    /**
+     * Returns the fingerprint of the resolved classpath of the java project, or 0 if unknown.
+     * Two different fingerprints denote two different classpaths.
+     *
+     * @return the fingerprint of the resolved classpath of the java project
+     */
+    public long getClasspathFingerprint() {
+        return classpathFingerprint;
     }
 
     /**
@@ -109,8 +161,13 @@ public class JavaProjectOptionsImpl implements JavaProjectOptions {
      *
      * @param javaSERelease the Java SE release
      */
+    @SuppressWarnings("unchecked")
     public void setJavaSERelease(Release javaSERelease) {
         this.javaSERelease = javaSERelease;
+        final Map<String, String> options = JavaCore.getOptions();
+        final String v = javaSERelease.getMajorVersion() + "." + javaSERelease.getMinorVersion();
+        JavaCore.setComplianceOptions(v, options);
+        this.compilerOptions = Collections.unmodifiableMap(options);
     }
 
     /**
@@ -120,6 +177,7 @@ public class JavaProjectOptionsImpl implements JavaProjectOptions {
      */
     public void setTabSize(int tabSize) {
         options.put(FORMATTER_INDENTATION_SIZE, String.valueOf(tabSize));
+        computeFormatterOptions();
     }
 
 }
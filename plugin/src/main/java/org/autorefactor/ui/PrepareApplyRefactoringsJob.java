@@ -27,9 +27,7 @@ package org.autorefactor.ui;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -56,7 +54,6 @@ public class PrepareApplyRefactoringsJob extends Job {
 
     private final List<IJavaElement> javaElements;
     private final List<RefactoringRule> refactoringRulesToApply;
-    private final Map<IJavaElement, JavaProjectOptions> javaProjects = new HashMap<IJavaElement, JavaProjectOptions>();
 
     /**
      * Builds an instance of this class.
@@ -172,15 +169,9 @@ public class PrepareApplyRefactoringsJob extends Job {
         }
     }
 
-    @SuppressWarnings("unchecked")
     private JavaProjectOptions getJavaProjectOptions(IJavaElement javaElement) {
         final IJavaProject javaProject = getIJavaProject(javaElement);
-        JavaProjectOptions options = javaProjects.get(javaProject);
-        if (options == null) {
-            options = new JavaProjectOptionsImpl(javaProject.getOptions(true));
-            javaProjects.put(javaProject, options);
-        }
-        return options;
+        return AutoRefactorPlugin.getJavaProjectOptionsCache().getJavaProjectOptions(javaProject);
     }
 
     private IJavaProject getIJavaProject(IJavaElement javaElement) {
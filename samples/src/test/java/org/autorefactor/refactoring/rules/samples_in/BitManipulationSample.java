@@ -0,0 +1,253 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_in;
+
+public class BitManipulationSample {
+
+    public int replaceRotateLeftByConstant(int i) {
+        return (i << 8) | (i >>> 24);
+    }
+
+    public int replaceRotateRightByConstant(int i) {
+        return (i >>> 5) + (i << 27);
+    }
+
+    public long replaceLongRotateLeftByConstant(long l) {
+        return (l >>> 51) ^ (l << 13);
+    }
+
+    public int replaceRotateLeftByVariable(int i, int distance) {
+        return (i << distance) | (i >>> -distance);
+    }
+
+    public long replaceRotateRightByVariable(long l, int distance) {
+        return (l >>> distance) | (l << (64 - distance));
+    }
+
+    public int doNotReplaceRotateWithDifferentDistances(int i, int d1, int d2) {
+        return (i << d1) | (i >>> (32 - d2));
+    }
+
+    public long doNotReplaceLongRotateWithIntWidth(long l, int distance) {
+        return (l << distance) | (l >>> (32 - distance));
+    }
+
+    public int doNotReplaceRotateByLongDistance(int i, long distance) {
+        return (i << distance) | (i >>> -distance);
+    }
+
+    public int doNotReplaceRotateByVariableWithPlus(int i, int distance) {
+        return (i << distance) + (i >>> -distance);
+    }
+
+    public int doNotReplaceOverlappingShifts(int i) {
+        return (i << 8) | (i >>> 20);
+    }
+
+    public int doNotReplaceDifferentOperands(int i, int j) {
+        return (i << 8) | (j >>> 24);
+    }
+
+    public int replaceReverseBytes(int i) {
+        return (i >>> 24) | ((i >> 8) & 0xFF00) | ((i << 8) & 0xFF0000) | (i << 24);
+    }
+
+    public int replaceReverseBytesWithMasksFirst(int i) {
+        return ((i & 0xFF) << 24) | ((i & 0xFF00) << 8) | ((i & 0xFF0000) >>> 8) | ((i >> 24) & 0xFF);
+    }
+
+    public long replaceLongReverseBytes(long l) {
+        return (l << 56)
+                | ((l & 0xFF00L) << 40)
+                | ((l & 0xFF0000L) << 24)
+                | ((l & 0xFF000000L) << 8)
+                | ((l >>> 8) & 0xFF000000L)
+                | ((l >>> 24) & 0xFF0000L)
+                | ((l >>> 40) & 0xFF00L)
+                | (l >>> 56);
+    }
+
+    public int doNotReplaceIncompleteReverseBytes(int i) {
+        return (i >>> 24) | ((i >> 8) & 0xFF00) | (i << 24);
+    }
+
+    public int doNotReplaceSignedShiftWithoutMask(int i) {
+        return (i >> 24) | ((i >> 8) & 0xFF00) | ((i << 8) & 0xFF0000) | (i << 24);
+    }
+
+    public int replaceReverse(int i) {
+        int r = 0;
+        r = ((i & 0x1) << 31) | ((i & 0x2) << 29) | ((i & 0x4) << 27) | ((i & 0x8) << 25)
+                | ((i & 0x10) << 23) | ((i & 0x20) << 21) | ((i & 0x40) << 19) | ((i & 0x80) << 17)
+                | ((i & 0x100) << 15) | ((i & 0x200) << 13) | ((i & 0x400) << 11) | ((i & 0x800) << 9)
+                | ((i & 0x1000) << 7) | ((i & 0x2000) << 5) | ((i & 0x4000) << 3) | ((i & 0x8000) << 1)
+                | ((i >>> 1) & 0x8000) | ((i >>> 3) & 0x4000) | ((i >>> 5) & 0x2000) | ((i >>> 7) & 0x1000)
+                | ((i >>> 9) & 0x800) | ((i >>> 11) & 0x400) | ((i >>> 13) & 0x200) | ((i >>> 15) & 0x100)
+                | ((i >>> 17) & 0x80) | ((i >>> 19) & 0x40) | ((i >>> 21) & 0x20) | ((i >>> 23) & 0x10)
+                | ((i >>> 25) & 0x8) | ((i >>> 27) & 0x4) | ((i >>> 29) & 0x2) | (i >>> 31);
+        return r;
+    }
+
+    public int replaceBitCountByClearingLowestSetBit(int i) {
+        int count = 0;
+        while (i != 0) {
+            i &= i - 1;
+            count++;
+        }
+        return count;
+    }
+
+    public int replaceLongBitCountByShifting(long l) {
+        int count = 0;
+        while (l != 0) {
+            count += l & 1;
+            l >>>= 1;
+        }
+        return count;
+    }
+
+    public int replaceBitCountAccumulating(int i, int count) {
+        while (0 != i) {
+            if ((i & 1) != 0) {
+                count++;
+            }
+            i = i >>> 1;
+        }
+        return count;
+    }
+
+    public int replaceBitCountByTestingEachBit(int i) {
+        int count = 0;
+        for (int bit = 0; bit < 32; bit++) {
+            if ((i & (1 << bit)) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int replaceLongBitCountByTestingEachBit(long l) {
+        int count = 0;
+        for (int bit = 0; bit <= 63; bit++) {
+            count += (l >>> bit) & 1;
+        }
+        return count;
+    }
+
+    public int doNotReplaceBitCountWhenOperandIsUsedAfter(int i) {
+        int count = 0;
+        while (i != 0) {
+            i &= i - 1;
+            count++;
+        }
+        return count + i;
+    }
+
+    public int doNotReplaceBitCountWithSignedShift(int i) {
+        int count = 0;
+        while (i != 0) {
+            count += i & 1;
+            i >>= 1;
+        }
+        return count;
+    }
+
+    public int doNotReplaceBitCountWhenShiftingBeforeCounting(int i) {
+        int count = 0;
+        while (i != 0) {
+            i >>>= 1;
+            count += i & 1;
+        }
+        return count;
+    }
+
+    public int doNotReplaceBitCountWithIntMaskOnLong(long l) {
+        int count = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if ((l & (1 << bit)) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int doNotReplaceBitCountWithWrongBound(int i) {
+        int count = 0;
+        for (int bit = 0; bit < 31; bit++) {
+            if ((i & (1 << bit)) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int replaceNumberOfTrailingZeros(int i) {
+        int n = 0;
+        while (n < 32 && (i & (1 << n)) == 0) {
+            n++;
+        }
+        return n;
+    }
+
+    public int replaceNumberOfLeadingZeros(int i) {
+        int n = 0;
+        while (n < 32 && (i & (0x80000000 >>> n)) == 0) {
+            n++;
+        }
+        return n;
+    }
+
+    public int replaceLongNumberOfLeadingZerosInForLoop(long l) {
+        int n;
+        for (n = 0; n < 64 && ((l >>> (63 - n)) & 1) == 0; n++) {
+        }
+        return n;
+    }
+
+    public int replaceLongNumberOfTrailingZerosAfterAssignment(long l) {
+        int n;
+        n = 0;
+        while (64 > n && 0 == (l & (1L << n))) {
+            ++n;
+        }
+        return n;
+    }
+
+    public int doNotReplaceZerosScanWithoutBound(int i) {
+        int n = 0;
+        while ((i & (1 << n)) == 0) {
+            n++;
+        }
+        return n;
+    }
+
+    public int doNotReplaceZerosScanNotStartingFromZero(int i, int n) {
+        while (n < 32 && (i & (1 << n)) == 0) {
+            n++;
+        }
+        return n;
+    }
+}
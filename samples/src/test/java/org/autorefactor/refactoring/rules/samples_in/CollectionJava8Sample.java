@@ -0,0 +1,69 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2014-2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_in;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CollectionJava8Sample {
+
+    public void replaceContainsKeyThenPut(ConcurrentHashMap<String, String> map, String key) {
+        if (!map.containsKey(key)) {
+            map.put(key, "default");
+        }
+    }
+
+    public int replaceContainsKeyThenPutOnLocalMap(String key) {
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        counts.put("first", 1);
+        if (!counts.containsKey(key)) {
+            counts.put(key, 0);
+        }
+        return counts.get(key);
+    }
+
+    public void doNotReplaceContainsKeyThenPutWhenMapMayHoldNullValues(Map<String, String> map, String key) {
+        if (!map.containsKey(key)) {
+            map.put(key, "default");
+        }
+    }
+
+    public void doNotReplaceContainsKeyThenPutWithSideEffectValue(ConcurrentHashMap<String, Integer> map,
+            String key, int[] counter) {
+        if (!map.containsKey(key)) {
+            map.put(key, counter[0]++);
+        }
+    }
+
+    public void doNotReplaceContainsKeyThenPutWithElse(ConcurrentHashMap<String, String> map, String key) {
+        if (!map.containsKey(key)) {
+            map.put(key, "default");
+        } else {
+            map.remove(key);
+        }
+    }
+}
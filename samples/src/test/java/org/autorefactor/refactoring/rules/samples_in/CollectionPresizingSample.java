@@ -0,0 +1,153 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_in;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CollectionPresizingSample {
+
+    public List<String> presizeArrayListFromArray(String[] array) {
+        List<String> results = new ArrayList<String>();
+        for (String s : array) {
+            results.add(s.trim());
+        }
+        return results;
+    }
+
+    public List<String> presizeArrayListFromCollection(Collection<String> col) {
+        List<String> results = new ArrayList<String>();
+        for (String s : col) {
+            results.add(s.trim());
+        }
+        return results;
+    }
+
+    public List<Integer> presizeArrayListFromIndexedLoop(List<String> list) {
+        List<Integer> results = new ArrayList<Integer>();
+        for (int i = 0; i < list.size(); i++) {
+            String s = list.get(i);
+            results.add(s.length());
+        }
+        return results;
+    }
+
+    public Map<String, Integer> presizeHashMapFromIndexedArrayLoop(String[] array) {
+        Map<String, Integer> results;
+        results = new HashMap<String, Integer>();
+        for (int i = 0; i < array.length; i++) {
+            results.put(array[i], i);
+        }
+        return results;
+    }
+
+    public Set<String> presizeHashSetAfterSimpleDeclarations(List<String> list) {
+        Set<String> results = new HashSet<String>();
+        int max = 10;
+        String prefix = "a";
+        for (String s : list) {
+            results.add(prefix + s.substring(0, max));
+        }
+        return results;
+    }
+
+    public List<String> doNotPresizeWhenEscapingBeforeLoop(String[] array, List<List<String>> all) {
+        List<String> results = new ArrayList<String>();
+        all.add(results);
+        for (String s : array) {
+            results.add(s.trim());
+        }
+        return results;
+    }
+
+    public List<String> doNotPresizeWhenAliased(String[] array) {
+        List<String> results = new ArrayList<String>();
+        List<String> alias = results;
+        for (String s : array) {
+            results.add(s.trim());
+        }
+        return alias;
+    }
+
+    public List<String> doNotPresizeWhenAddingConditionally(String[] array) {
+        List<String> results = new ArrayList<String>();
+        for (String s : array) {
+            if (s != null) {
+                results.add(s);
+            }
+        }
+        return results;
+    }
+
+    public List<String> doNotPresizeWhenAddingTwice(String[] array) {
+        List<String> results = new ArrayList<String>();
+        for (String s : array) {
+            results.add(s);
+            results.add(s.trim());
+        }
+        return results;
+    }
+
+    public List<String> doNotPresizeWhenCapacityIsGiven(String[] array) {
+        List<String> results = new ArrayList<String>(4);
+        for (String s : array) {
+            results.add(s.trim());
+        }
+        return results;
+    }
+
+    public List<String> doNotPresizeLinkedList(String[] array) {
+        List<String> results = new LinkedList<String>();
+        for (String s : array) {
+            results.add(s.trim());
+        }
+        return results;
+    }
+
+    public List<String> doNotPresizeWhenSideEffectBeforeLoop(String[] array) {
+        List<String> results = new ArrayList<String>();
+        System.out.println("filling");
+        for (String s : array) {
+            results.add(s.trim());
+        }
+        return results;
+    }
+
+    public List<String> doNotPresizeWhenContainerIsDeclaredAfterCreation(String[] array) {
+        List<String> results = new ArrayList<String>();
+        String[] copy = array;
+        for (String s : copy) {
+            results.add(s.trim());
+        }
+        return results;
+    }
+}
@@ -27,8 +27,12 @@ package org.autorefactor.refactoring.rules.samples_in;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CollectionSample {
 
@@ -67,6 +71,16 @@ public class CollectionSample {
         }
     }
 
+    public void doNotReplaceAddWithForLoopOverAnotherContainer(List<String> col, List<String> output,
+            String[] array) {
+        for (int i = 0; i < array.length; i++) {
+            output.add(col.get(i));
+        }
+        for (int i = 0; i < output.size(); i++) {
+            output.add(col.get(i));
+        }
+    }
+
     public void replaceAddWithForEach(Collection<String> col, List<String> output) {
         for (String s : col) {
             output.add(s);
@@ -144,4 +158,85 @@ public class CollectionSample {
             System.out.println("KO");
         }
     }
+
+    public Integer replaceContainsKeyThenGetOnConcurrentMap(ConcurrentHashMap<String, Integer> cache, String key) {
+        if (cache.containsKey(key)) {
+            return cache.get(key);
+        }
+        Integer result = key.length();
+        cache.put(key, result);
+        return result;
+    }
+
+    public Integer replaceTwoContainsKeyThenGet(ConcurrentHashMap<String, Integer> cache, String key1, String key2) {
+        if (cache.containsKey(key1)) {
+            return cache.get(key1);
+        }
+        if (cache.containsKey(key2)) {
+            return cache.get(key2);
+        }
+        return null;
+    }
+
+    public String replaceContainsKeyThenGetOnLocalMap(String[] keys, String key) {
+        Map<String, String> map = new HashMap<String, String>();
+        for (String k : keys) {
+            map.put(k, k + "!");
+        }
+        String result;
+        if (map.containsKey(key)) {
+            result = map.get(key);
+        } else {
+            result = "none";
+        }
+        return result;
+    }
+
+    public StringBuilder replaceContainsKeyThenGetWithTemporary(Hashtable<String, StringBuilder> map, String key) {
+        if (map.containsKey(key)) {
+            StringBuilder sb = map.get(key);
+            sb.append(key);
+            return sb;
+        }
+        return null;
+    }
+
+    public String doNotReplaceContainsKeyThenGetWhenValuesCanBeNull(Map<String, String> map, String key) {
+        if (map.containsKey(key)) {
+            return map.get(key);
+        }
+        return "none";
+    }
+
+    public String doNotReplaceContainsKeyThenGetWhenLocalMapEscapes(String key, List<Map<String, String>> all) {
+        Map<String, String> map = new HashMap<String, String>();
+        all.add(map);
+        if (map.containsKey(key)) {
+            return map.get(key);
+        }
+        return "none";
+    }
+
+    public String doNotReplaceContainsKeyThenGetWhenLocalMapCanHoldNull(String key, String value) {
+        Map<String, String> map = new HashMap<String, String>();
+        map.put(key, value);
+        if (map.containsKey(key)) {
+            return map.get(key);
+        }
+        return "none";
+    }
+
+    public String doNotReplaceContainsKeyThenGetWithDifferentKeys(
+            ConcurrentHashMap<String, String> map, String key1, String key2) {
+        if (map.containsKey(key1)) {
+            return map.get(key2);
+        }
+        return "none";
+    }
+
+    public void doNotReplaceContainsKeyThenPutBeforeJava8(ConcurrentHashMap<String, String> map, String key) {
+        if (!map.containsKey(key)) {
+            map.put(key, "default");
+        }
+    }
 }
@@ -0,0 +1,124 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_in;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class EnumCollectionSample {
+
+    public enum State {
+        NEW, RUNNING, DONE
+    }
+
+    private Map<State, String> labels = new HashMap<State, String>();
+
+    public Integer replaceHashMap() {
+        Map<State, Integer> counts = new HashMap<State, Integer>();
+        counts.put(State.NEW, 0);
+        return counts.get(State.NEW);
+    }
+
+    public int replaceHashSet() {
+        Set<State> states = new HashSet<State>(8);
+        states.add(State.DONE);
+        int count = 0;
+        for (State state : states) {
+            count += state.ordinal();
+        }
+        return count;
+    }
+
+    public boolean replaceHashSetWithEnumConstants(State state) {
+        Set<State> states = new HashSet<State>(Arrays.asList(State.NEW, State.RUNNING));
+        return states.contains(state);
+    }
+
+    public int replaceEnumMapCopy(EnumMap<State, String> map) {
+        Map<State, String> copy = new HashMap<State, String>(map);
+        copy.remove(State.NEW);
+        return copy.size();
+    }
+
+    public HashMap<State, String> doNotReplaceConcreteType() {
+        HashMap<State, String> map = new HashMap<State, String>();
+        return map;
+    }
+
+    public Map<String, State> doNotReplaceNonEnumKeys() {
+        Map<String, State> map = new HashMap<String, State>();
+        return map;
+    }
+
+    public Set<State> doNotReplaceWithPossiblyNullElements(State state) {
+        Set<State> states = new HashSet<State>(Arrays.asList(state));
+        return states;
+    }
+
+    public int doNotReplaceWhenAddingPossiblyNullElements(State maybeNull) {
+        Set<State> states = new HashSet<State>();
+        states.add(maybeNull);
+        return states.size();
+    }
+
+    public int doNotReplaceWhenPuttingNullKeys() {
+        Map<State, String> map = new HashMap<State, String>();
+        map.put(null, "none");
+        return map.size();
+    }
+
+    public int doNotReplaceHashMapCopy(Map<State, String> map) {
+        Map<State, String> copy = new HashMap<State, String>(map);
+        copy.remove(State.NEW);
+        return copy.size();
+    }
+
+    public int doNotReplaceHashSetCopy(Collection<State> states) {
+        Collection<State> copy = new HashSet<State>(states);
+        return copy.size();
+    }
+
+    public int doNotReplaceWhenCopyingIn(Map<State, String> map) {
+        Map<State, String> copy = new HashMap<State, String>();
+        copy.putAll(map);
+        return copy.size();
+    }
+
+    public Map<State, Integer> doNotReplaceEscapingMap() {
+        Map<State, Integer> counts = new HashMap<State, Integer>();
+        counts.put(State.NEW, 0);
+        return counts;
+    }
+
+    public void doNotReplaceField() {
+        labels = new HashMap<State, String>();
+    }
+}
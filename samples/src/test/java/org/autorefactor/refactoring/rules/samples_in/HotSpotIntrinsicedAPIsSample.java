@@ -81,12 +81,97 @@ public class HotSpotIntrinsicedAPIsSample {
         }
     }
 
-    public static void replaceWithArraysCopyOf(int[] src, int[] dest) {
-        // FIXME Should use java.util.Arrays.copyOf()
+    public static void replaceBySystemArrayCopyReverseIndex(int[] src, int[] dest) {
+        for (int i = src.length - 1; i >= 0; i--) {
+            dest[i] = src[i];
+        }
+    }
+
+    public static void replaceBySystemArrayCopyWhileLoop(int[] src, int[] dest) {
+        int i = 0;
+        while (i < src.length) {
+            dest[i + 1] = src[i];
+            i++;
+        }
+    }
+
+    public static int doNotReplaceWhileLoopWhenIndexIsUsedAfter(int[] src, int[] dest) {
+        int i = 0;
+        while (i < src.length) {
+            dest[i] = src[i];
+            i++;
+        }
+        return i;
+    }
+
+    public static void doNotReplaceBySystemArrayCopyInsideSameArray(int[] array) {
+        for (int i = 0; i < array.length - 1; i++) {
+            array[i + 1] = array[i];
+        }
+    }
+
+    public static int[] replaceWithArraysCopyOf(int[] src) {
+        int[] dest = new int[src.length];
+        for (int i = 0; i < src.length; i++) {
+            dest[i] = src[i];
+        }
+        return dest;
+    }
+
+    public static String[] replaceWithArraysCopyOfRange(String[] src) {
+        String[] dest = new String[src.length - 2];
+        for (int i = 0; i < src.length - 2; i++) {
+            dest[i] = src[i + 2];
+        }
+        return dest;
+    }
+
+    public static Object[] replaceBySystemArrayCopyWhenRuntimeTypeMayDiffer(Object[] src) {
+        Object[] dest = new Object[src.length];
+        for (int i = 0; i < src.length; i++) {
+            dest[i] = src[i];
+        }
+        return dest;
+    }
+
+    public static int[] replaceBySystemArrayCopyWhenLoopCanThrow(int[] src, int length) {
+        int[] dest = new int[length];
+        for (int i = 0; i < length; i++) {
+            dest[i] = src[i];
+        }
+        return dest;
+    }
+
+    public static void replaceWithArraysFill(int[] array) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = -1;
+        }
+    }
+
+    public static void replaceWithArraysFillCastValue(byte[] array) {
+        for (int i = array.length - 1; i >= 0; --i) {
+            array[i] = 0;
+        }
+    }
+
+    public static void replaceWithArraysFillRange(Object[] array, Object value) {
+        int i = 2;
+        while (i <= 5) {
+            array[i] = value;
+            i += 1;
+        }
     }
 
-    public static void replaceWithArraysCopyOfRange(int[] src, int[] dest) {
-        // FIXME Should use java.util.Arrays.copyOfRange()
+    public static void doNotReplaceWithArraysFillWhenRangeCannotBeProven(int[] array, int length) {
+        for (int i = 0; i < length; i++) {
+            array[i] = 0;
+        }
+    }
+
+    public static void doNotReplaceWithArraysFillWhenValueChanges(int[] array, int[] values) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.length + i;
+        }
     }
 
     public static boolean replaceWithArraysEquals(int[] src, int[] dest) {
@@ -99,7 +184,6 @@ public class HotSpotIntrinsicedAPIsSample {
             }
         }
         return true;
-        // FIXME Should use java.util.Arrays.equals()
     }
 
     public static boolean replaceWithArraysEquals2(int[] src, int[] dest) {
@@ -112,7 +196,32 @@ public class HotSpotIntrinsicedAPIsSample {
             return true;
         }
         return false;
-        // FIXME Should use java.util.Arrays.equals()
+    }
+
+    public static boolean replaceWithArraysEqualsReverseWhileLoop(char[] a1, char[] a2) {
+        if (a1.length != a2.length) {
+            return false;
+        }
+        int i = a1.length - 1;
+        while (i >= 0) {
+            if (a1[i] != a2[i]) {
+                return false;
+            }
+            i--;
+        }
+        return true;
+    }
+
+    public static boolean doNotReplaceWithArraysEqualsForDoubles(double[] src, double[] dest) {
+        if (dest.length != src.length) {
+            return false;
+        }
+        for (int i = 0; i < src.length; i++) {
+            if (dest[i] != src[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public static void replaceWithStringIndexOf(String s) {
@@ -0,0 +1,112 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_in;
+
+import java.util.List;
+
+public class RegexPatternSample {
+
+    private static final String SEPARATOR = "\\s*,\\s*";
+
+    public boolean isNumber(String s) {
+        return s.matches("[0-9]+");
+    }
+
+    public boolean isNumberAgain(String s) {
+        return s.matches("[0-9]+");
+    }
+
+    public String normalizeSpaces(String s) {
+        return s.replaceAll("\\s+", " ");
+    }
+
+    public String removeLeadingZeros(String s) {
+        return s.replaceFirst("^0+", "");
+    }
+
+    public String[] splitWithRegex(String s) {
+        return s.split(SEPARATOR);
+    }
+
+    public String[] splitWithRegexAndLimit(String s) {
+        return s.split(SEPARATOR, 2);
+    }
+
+    public String[] doNotRefactorSplitFastPath(String s) {
+        String[] a = s.split(",");
+        String[] b = s.split("\\.");
+        return s.split("|").length > 0 ? a : b;
+    }
+
+    public boolean doNotRefactorNonConstantRegex(String s, String regex) {
+        return s.matches(regex);
+    }
+
+    public boolean doNotRefactorLocalConstant(String s) {
+        final String regex = "a+";
+        return s.matches(regex);
+    }
+
+    public boolean doNotRefactorInvalidRegex(String s) {
+        try {
+            return s.matches("[");
+        } catch (java.util.regex.PatternSyntaxException e) {
+            return false;
+        }
+    }
+
+    public void printMatches(List<String> list) {
+        for (String s : list) {
+            if (java.util.regex.Pattern.matches("[a-z]+", s)) {
+                System.out.println(s.matches("[0-9]+"));
+            }
+        }
+    }
+
+    public java.util.regex.Pattern compileCaseInsensitive() {
+        return java.util.regex.Pattern.compile("abc", java.util.regex.Pattern.CASE_INSENSITIVE);
+    }
+
+    public static class Nested {
+        private static final java.util.regex.Pattern WORD = java.util.regex.Pattern.compile("\\w+");
+
+        public boolean isWord(String s) {
+            return s.matches("\\w+");
+        }
+
+        public String maskDigits(String s) {
+            return s.replaceAll(DIGITS, "#");
+        }
+
+        private static final String DIGITS = "\\d+";
+    }
+
+    public class Inner {
+        public boolean isHexNumber(String s) {
+            return s.matches("[0-9a-f]+");
+        }
+    }
+}
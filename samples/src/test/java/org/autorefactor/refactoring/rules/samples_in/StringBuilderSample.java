@@ -141,4 +141,84 @@ public class StringBuilderSample {
         new StringBuilder().append(s.substring(1));
         new StringBuffer().append(s.substring(1));
     }
+
+    public String concatenateInLoop(String[] array) {
+        String result = "";
+        for (String s : array) {
+            result += s;
+            result = result + ", " + s.length();
+        }
+        return result;
+    }
+
+    public String concatenateInTwoLoops(String[] array1, String[] array2) {
+        String result = "";
+        for (String s : array1) {
+            result += s;
+        }
+        for (String s : array2) {
+            result += s;
+        }
+        return result;
+    }
+
+    public String concatenateInWhileLoop(String[] array, String prefix) {
+        String result = prefix;
+        int i = 0;
+        while (i < array.length) {
+            result += array[i++];
+        }
+        return result;
+    }
+
+    public String concatenateInNestedLoops(String[][] matrix) {
+        String result = "[";
+        String ignored = "";
+        for (String[] row : matrix) {
+            for (String s : row) {
+                result += s;
+            }
+            result += "\n";
+        }
+        return result + "]";
+    }
+
+    public String doNotReplaceWhenReadInLoop(String[] array) {
+        String result = "";
+        for (String s : array) {
+            result += s;
+            if (result.length() > 10) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    public String doNotReplaceWhenConcatenatingToItself(String[] array) {
+        String result = "";
+        for (String s : array) {
+            result += result.length() + s;
+        }
+        return result;
+    }
+
+    public String doNotReplaceCharArrayConcatenation(char[][] array) {
+        String result = "";
+        for (char[] chars : array) {
+            result += chars;
+        }
+        return result;
+    }
+
+    public String doNotReplaceWhenReadInFinally(String[] array) {
+        String result = "";
+        try {
+            for (String s : array) {
+                result += s;
+            }
+        } finally {
+            System.out.println(result);
+        }
+        return result;
+    }
 }
@@ -0,0 +1,208 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_out;
+
+public class BitManipulationSample {
+
+    public int replaceRotateLeftByConstant(int i) {
+        return Integer.rotateLeft(i, 8);
+    }
+
+    public int replaceRotateRightByConstant(int i) {
+        return Integer.rotateRight(i, 5);
+    }
+
+    public long replaceLongRotateLeftByConstant(long l) {
+        return Long.rotateRight(l, 51);
+    }
+
+    public int replaceRotateLeftByVariable(int i, int distance) {
+        return Integer.rotateLeft(i, distance);
+    }
+
+    public long replaceRotateRightByVariable(long l, int distance) {
+        return Long.rotateRight(l, distance);
+    }
+
+    public int doNotReplaceRotateWithDifferentDistances(int i, int d1, int d2) {
+        return (i << d1) | (i >>> (32 - d2));
+    }
+
+    public long doNotReplaceLongRotateWithIntWidth(long l, int distance) {
+        return (l << distance) | (l >>> (32 - distance));
+    }
+
+    public int doNotReplaceRotateByLongDistance(int i, long distance) {
+        return (i << distance) | (i >>> -distance);
+    }
+
+    public int doNotReplaceRotateByVariableWithPlus(int i, int distance) {
+        return (i << distance) + (i >>> -distance);
+    }
+
+    public int doNotReplaceOverlappingShifts(int i) {
+        return (i << 8) | (i >>> 20);
+    }
+
+    public int doNotReplaceDifferentOperands(int i, int j) {
+        return (i << 8) | (j >>> 24);
+    }
+
+    public int replaceReverseBytes(int i) {
+        return Integer.reverseBytes(i);
+    }
+
+    public int replaceReverseBytesWithMasksFirst(int i) {
+        return Integer.reverseBytes(i);
+    }
+
+    public long replaceLongReverseBytes(long l) {
+        return Long.reverseBytes(l);
+    }
+
+    public int doNotReplaceIncompleteReverseBytes(int i) {
+        return (i >>> 24) | ((i >> 8) & 0xFF00) | (i << 24);
+    }
+
+    public int doNotReplaceSignedShiftWithoutMask(int i) {
+        return (i >> 24) | ((i >> 8) & 0xFF00) | ((i << 8) & 0xFF0000) | (i << 24);
+    }
+
+    public int replaceReverse(int i) {
+        int r = 0;
+        r = Integer.reverse(i);
+        return r;
+    }
+
+    public int replaceBitCountByClearingLowestSetBit(int i) {
+        int count = Integer.bitCount(i);
+        return count;
+    }
+
+    public int replaceLongBitCountByShifting(long l) {
+        int count = Long.bitCount(l);
+        return count;
+    }
+
+    public int replaceBitCountAccumulating(int i, int count) {
+        count += Integer.bitCount(i);
+        return count;
+    }
+
+    public int replaceBitCountByTestingEachBit(int i) {
+        int count = Integer.bitCount(i);
+        return count;
+    }
+
+    public int replaceLongBitCountByTestingEachBit(long l) {
+        int count = Long.bitCount(l);
+        return count;
+    }
+
+    public int doNotReplaceBitCountWhenOperandIsUsedAfter(int i) {
+        int count = 0;
+        while (i != 0) {
+            i &= i - 1;
+            count++;
+        }
+        return count + i;
+    }
+
+    public int doNotReplaceBitCountWithSignedShift(int i) {
+        int count = 0;
+        while (i != 0) {
+            count += i & 1;
+            i >>= 1;
+        }
+        return count;
+    }
+
+    public int doNotReplaceBitCountWhenShiftingBeforeCounting(int i) {
+        int count = 0;
+        while (i != 0) {
+            i >>>= 1;
+            count += i & 1;
+        }
+        return count;
+    }
+
+    public int doNotReplaceBitCountWithIntMaskOnLong(long l) {
+        int count = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if ((l & (1 << bit)) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int doNotReplaceBitCountWithWrongBound(int i) {
+        int count = 0;
+        for (int bit = 0; bit < 31; bit++) {
+            if ((i & (1 << bit)) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int replaceNumberOfTrailingZeros(int i) {
+        int n = Integer.numberOfTrailingZeros(i);
+        return n;
+    }
+
+    public int replaceNumberOfLeadingZeros(int i) {
+        int n = Integer.numberOfLeadingZeros(i);
+        return n;
+    }
+
+    public int replaceLongNumberOfLeadingZerosInForLoop(long l) {
+        int n;
+        n = Long.numberOfLeadingZeros(l);
+        return n;
+    }
+
+    public int replaceLongNumberOfTrailingZerosAfterAssignment(long l) {
+        int n;
+        n = Long.numberOfTrailingZeros(l);
+        return n;
+    }
+
+    public int doNotReplaceZerosScanWithoutBound(int i) {
+        int n = 0;
+        while ((i & (1 << n)) == 0) {
+            n++;
+        }
+        return n;
+    }
+
+    public int doNotReplaceZerosScanNotStartingFromZero(int i, int n) {
+        while (n < 32 && (i & (1 << n)) == 0) {
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2014-2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_out;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+public class ForeachSample {
+
+    public int sumArray(int[] array) {
+        int sum = 0;
+        for (int value : array) {
+            sum += value + value;
+        }
+        return sum;
+    }
+
+    public void printLinkedList(LinkedList<String> list) {
+        for (final String s : list) {
+            System.out.println(s + s.length());
+        }
+    }
+
+    public void doNotReplaceRandomAccessList(ArrayList<String> list) {
+        for (int i = 0; i < list.size(); i++) {
+            String s = list.get(i);
+            System.out.println(s);
+        }
+    }
+
+    public void doNotReplaceWhenIndexIsUsed(int[] array) {
+        for (int i = 0; i < array.length; i++) {
+            int value = array[i];
+            System.out.println(i + ": " + value);
+        }
+    }
+
+    public void doNotReplaceWhenArrayIsWritten(int[] array) {
+        for (int i = 0; i < array.length; i++) {
+            int value = array[i];
+            array[i] = value * 2;
+        }
+    }
+
+    public void printWithIterator(List<String> list) {
+        for (String s : list) {
+            System.out.println(s);
+        }
+    }
+
+    public void printWithWhileIterator(List<String> list) {
+        for (String s : list) {
+            System.out.println(s);
+        }
+    }
+
+    public void doNotReplaceWhenIteratorRemoves(List<String> list) {
+        for (Iterator<String> it = list.iterator(); it.hasNext();) {
+            String s = it.next();
+            if (s.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    public void printMap(Map<String, Integer> map) {
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            Integer value = entry.getValue();
+            System.out.println(value);
+        }
+    }
+
+    public void printMapWithKeys(Map<String, Integer> map) {
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            String key = entry.getKey();
+            Integer value = entry.getValue();
+            System.out.println(key + "=" + value);
+        }
+    }
+
+    public void doNotReplaceWithOtherMap(Map<String, Integer> map, Map<String, Integer> other) {
+        for (String key : map.keySet()) {
+            Integer value = other.get(key);
+            System.out.println(value);
+        }
+    }
+}
@@ -97,15 +97,104 @@ public class HotSpotIntrinsicedAPIsSample {
         }
     }
 
-    public static void replaceWithArraysCopyOf(int[] src, int[] dest) {
-        // FIXME Should use java.util.Arrays.copyOf()
+    public static void replaceBySystemArrayCopyReverseIndex(int[] src, int[] dest) {
+        try {
+            System.arraycopy(src, 0, dest, 0, src.length);
+        } catch (IndexOutOfBoundsException e) {
+            throw new ArrayIndexOutOfBoundsException(e.getMessage());
+        }
     }
 
-    public static void replaceWithArraysCopyOfRange(int[] src, int[] dest) {
-        // FIXME Should use java.util.Arrays.copyOfRange()
+    public static void replaceBySystemArrayCopyWhileLoop(int[] src, int[] dest) {
+        try {
+            System.arraycopy(src, 0, dest, 1, src.length);
+        } catch (IndexOutOfBoundsException e) {
+            throw new ArrayIndexOutOfBoundsException(e.getMessage());
+        }
+    }
+
+    public static int doNotReplaceWhileLoopWhenIndexIsUsedAfter(int[] src, int[] dest) {
+        int i = 0;
+        while (i < src.length) {
+            dest[i] = src[i];
+            i++;
+        }
+        return i;
+    }
+
+    public static void doNotReplaceBySystemArrayCopyInsideSameArray(int[] array) {
+        for (int i = 0; i < array.length - 1; i++) {
+            array[i + 1] = array[i];
+        }
+    }
+
+    public static int[] replaceWithArraysCopyOf(int[] src) {
+        int[] dest = java.util.Arrays.copyOf(src, src.length);
+        return dest;
+    }
+
+    public static String[] replaceWithArraysCopyOfRange(String[] src) {
+        String[] dest = java.util.Arrays.copyOfRange(src, 2, src.length);
+        return dest;
+    }
+
+    public static Object[] replaceBySystemArrayCopyWhenRuntimeTypeMayDiffer(Object[] src) {
+        Object[] dest = new Object[src.length];
+        try {
+            System.arraycopy(src, 0, dest, 0, src.length);
+        } catch (IndexOutOfBoundsException e) {
+            throw new ArrayIndexOutOfBoundsException(e.getMessage());
+        }
+        return dest;
+    }
+
+    public static int[] replaceBySystemArrayCopyWhenLoopCanThrow(int[] src, int length) {
+        int[] dest = new int[length];
+        try {
+            System.arraycopy(src, 0, dest, 0, length);
+        } catch (IndexOutOfBoundsException e) {
+            throw new ArrayIndexOutOfBoundsException(e.getMessage());
+        }
+        return dest;
+    }
+
+    public static void replaceWithArraysFill(int[] array) {
+        java.util.Arrays.fill(array, -1);
+    }
+
+    public static void replaceWithArraysFillCastValue(byte[] array) {
+        java.util.Arrays.fill(array, (byte) 0);
+    }
+
+    public static void replaceWithArraysFillRange(Object[] array, Object value) {
+        java.util.Arrays.fill(array, 2, 6, value);
+    }
+
+    public static void doNotReplaceWithArraysFillWhenRangeCannotBeProven(int[] array, int length) {
+        for (int i = 0; i < length; i++) {
+            array[i] = 0;
+        }
+    }
+
+    public static void doNotReplaceWithArraysFillWhenValueChanges(int[] array, int[] values) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.length + i;
+        }
     }
 
     public static boolean replaceWithArraysEquals(int[] src, int[] dest) {
+        return java.util.Arrays.equals(dest, src);
+    }
+
+    public static boolean replaceWithArraysEquals2(int[] src, int[] dest) {
+        return java.util.Arrays.equals(dest, src);
+    }
+
+    public static boolean replaceWithArraysEqualsReverseWhileLoop(char[] a1, char[] a2) {
+        return java.util.Arrays.equals(a1, a2);
+    }
+
+    public static boolean doNotReplaceWithArraysEqualsForDoubles(double[] src, double[] dest) {
         if (dest.length != src.length) {
             return false;
         }
@@ -115,20 +204,6 @@ public class HotSpotIntrinsicedAPIsSample {
             }
         }
         return true;
-        // FIXME Should use java.util.Arrays.equals()
-    }
-
-    public static boolean replaceWithArraysEquals2(int[] src, int[] dest) {
-        if (dest.length == src.length) {
-            for (int i = 0; i < src.length; i++) {
-                if (dest[i] != src[i]) {
-                    return false;
-                }
-            }
-            return true;
-        }
-        return false;
-        // FIXME Should use java.util.Arrays.equals()
     }
 
     public static void replaceWithStringIndexOf(String s) {
@@ -0,0 +1,122 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_out;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class RegexPatternSample {
+
+    private static final String SEPARATOR = "\\s*,\\s*";
+    private static final Pattern PATTERN = Pattern.compile("[0-9]+");
+    private static final Pattern PATTERN2 = Pattern.compile("\\s+");
+    private static final Pattern PATTERN3 = Pattern.compile("^0+");
+    private static final Pattern SEPARATOR_PATTERN = Pattern.compile(SEPARATOR);
+    private static final Pattern PATTERN4 = Pattern.compile("|");
+    private static final Pattern PATTERN5 = Pattern.compile("[a-z]+");
+    private static final Pattern PATTERN6 = Pattern.compile("abc", java.util.regex.Pattern.CASE_INSENSITIVE);
+    private static final Pattern PATTERN7 = Pattern.compile("[0-9a-f]+");
+
+    public boolean isNumber(String s) {
+        return PATTERN.matcher(s).matches();
+    }
+
+    public boolean isNumberAgain(String s) {
+        return PATTERN.matcher(s).matches();
+    }
+
+    public String normalizeSpaces(String s) {
+        return PATTERN2.matcher(s).replaceAll(" ");
+    }
+
+    public String removeLeadingZeros(String s) {
+        return PATTERN3.matcher(s).replaceFirst("");
+    }
+
+    public String[] splitWithRegex(String s) {
+        return SEPARATOR_PATTERN.split(s);
+    }
+
+    public String[] splitWithRegexAndLimit(String s) {
+        return SEPARATOR_PATTERN.split(s, 2);
+    }
+
+    public String[] doNotRefactorSplitFastPath(String s) {
+        String[] a = s.split(",");
+        String[] b = s.split("\\.");
+        return PATTERN4.split(s).length > 0 ? a : b;
+    }
+
+    public boolean doNotRefactorNonConstantRegex(String s, String regex) {
+        return s.matches(regex);
+    }
+
+    public boolean doNotRefactorLocalConstant(String s) {
+        final String regex = "a+";
+        return s.matches(regex);
+    }
+
+    public boolean doNotRefactorInvalidRegex(String s) {
+        try {
+            return s.matches("[");
+        } catch (java.util.regex.PatternSyntaxException e) {
+            return false;
+        }
+    }
+
+    public void printMatches(List<String> list) {
+        for (String s : list) {
+            if (PATTERN5.matcher(s).matches()) {
+                System.out.println(PATTERN.matcher(s).matches());
+            }
+        }
+    }
+
+    public java.util.regex.Pattern compileCaseInsensitive() {
+        return PATTERN6;
+    }
+
+    public static class Nested {
+        private static final java.util.regex.Pattern WORD = java.util.regex.Pattern.compile("\\w+");
+
+        public boolean isWord(String s) {
+            return WORD.matcher(s).matches();
+        }
+
+        public String maskDigits(String s) {
+            return DIGITS_PATTERN.matcher(s).replaceAll("#");
+        }
+
+        private static final String DIGITS = "\\d+";
+        private static final Pattern DIGITS_PATTERN = Pattern.compile(DIGITS);
+    }
+
+    public class Inner {
+        public boolean isHexNumber(String s) {
+            return PATTERN7.matcher(s).matches();
+        }
+    }
+}
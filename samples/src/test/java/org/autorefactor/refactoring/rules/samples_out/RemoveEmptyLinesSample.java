@@ -43,4 +43,60 @@ public class RemoveEmptyLinesSample
     public void anotherMethod() throws Exception
     {
     }
+
+    public void removeEmptyLinesInBlocks(boolean b)
+    {
+        if (b) {
+            aField++;
+        }
+    }
+
+    public int[] doNotRemoveEmptyLinesInArrayInitializers()
+    {
+        return new int[] {
+
+            1, 2
+
+        };
+    }
+
+    public Runnable doNotRemoveEmptyLinesInAnonymousClasses()
+    {
+        return new Runnable()
+        {
+
+            public void run()
+            {
+            }
+
+        };
+    }
+
+    public void doNotRemoveEmptyLinesInSwitch(int i)
+    {
+        switch (i) {
+
+        case 0:
+            break;
+
+        }
+    }
+
+    private enum AnEnum
+    {
+        A
+        {
+
+            int value()
+            {
+                return 0;
+            }
+
+        };
+
+        int value()
+        {
+            return 1;
+        }
+    }
 }
@@ -11,6 +11,20 @@ public abstract class RemoveSemiColonSample {
     private static @interface MyAnotation {
     }
 
+    private static @interface MyAnnotationWithDefaults {
+        String[] value() default {};
+
+        int[] numbers() default { 1, 2 };
+    }
+
+    private int aSwitch(int i) {
+        switch (i) {
+        default: {
+            return 0;
+        }
+        }
+    }
+
     private int field;
 
     private void aMethod() {
@@ -141,4 +141,94 @@ public class StringBuilderSample {
         new StringBuilder().append(s.substring(1));
         new StringBuffer().append(s.substring(1));
     }
+
+    public String concatenateInLoop(String[] array) {
+        String result = "";
+        StringBuilder resultBuilder = new StringBuilder();
+        for (String s : array) {
+            resultBuilder.append(s);
+            resultBuilder.append(", ").append(s.length());
+        }
+        result = resultBuilder.toString();
+        return result;
+    }
+
+    public String concatenateInTwoLoops(String[] array1, String[] array2) {
+        String result = "";
+        StringBuilder resultBuilder = new StringBuilder();
+        for (String s : array1) {
+            resultBuilder.append(s);
+        }
+        result = resultBuilder.toString();
+        StringBuilder resultBuilder2 = new StringBuilder(result);
+        for (String s : array2) {
+            resultBuilder2.append(s);
+        }
+        result = resultBuilder2.toString();
+        return result;
+    }
+
+    public String concatenateInWhileLoop(String[] array, String prefix) {
+        String result = prefix;
+        int i = 0;
+        StringBuilder resultBuilder = new StringBuilder(String.valueOf(result));
+        while (i < array.length) {
+            resultBuilder.append(array[i++]);
+        }
+        result = resultBuilder.toString();
+        return result;
+    }
+
+    public String concatenateInNestedLoops(String[][] matrix) {
+        String result = "[";
+        String ignored = "";
+        StringBuilder resultBuilder = new StringBuilder(result);
+        for (String[] row : matrix) {
+            for (String s : row) {
+                resultBuilder.append(s);
+            }
+            resultBuilder.append("\n");
+        }
+        result = resultBuilder.toString();
+        return result + "]";
+    }
+
+    public String doNotReplaceWhenReadInLoop(String[] array) {
+        String result = "";
+        for (String s : array) {
+            result += s;
+            if (result.length() > 10) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    public String doNotReplaceWhenConcatenatingToItself(String[] array) {
+        String result = "";
+        for (String s : array) {
+            result += result.length() + s;
+        }
+        return result;
+    }
+
+    public String doNotReplaceCharArrayConcatenation(char[][] array) {
+        String result = "";
+        for (char[] chars : array) {
+            result += chars;
+        }
+        return result;
+    }
+
+    public String doNotReplaceWhenReadInFinally(String[] array) {
+        String result = "";
+        try {
+            for (String s : array) {
+                result += s;
+            }
+        } finally {
+            System.out.println(result);
+        }
+        return result;
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_out;
+
+import java.util.List;
+
+public class UnboxedAccumulatorSample {
+
+    public long sum(int[] array) {
+        long total = 0L;
+        for (int i : array) {
+            total += i;
+        }
+        return total;
+    }
+
+    public Integer countPositives(List<Integer> list) {
+        int count = 0;
+        for (Integer i : list) {
+            if (i > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public double average(double[] array) {
+        double sum = 0.0;
+        int i = 0;
+        while (i < array.length) {
+            sum = sum + array[i];
+            i++;
+        }
+        return sum / array.length;
+    }
+
+    public int countAndTruncate(long[] array) {
+        long total = 0L;
+        for (long l : array) {
+            total += l;
+        }
+        return (int) total;
+    }
+
+    public Integer doNotRefactorNullAssignment(int[] array) {
+        Integer max = 0;
+        for (int i : array) {
+            if (i > max) {
+                max = i;
+            }
+        }
+        if (max == 0) {
+            max = null;
+        }
+        return max;
+    }
+
+    public boolean doNotRefactorIdentityComparison(int[] array, Integer other) {
+        Integer total = 0;
+        for (int i : array) {
+            total += i;
+        }
+        return total == other;
+    }
+
+    public void doNotRefactorCollectionInsertion(int[] array, List<Integer> results) {
+        Integer total = 0;
+        for (int i : array) {
+            total += i;
+            results.add(total);
+        }
+    }
+
+    public int doNotRefactorWrapperInitializer(int[] array, Integer initialValue) {
+        Integer total = initialValue;
+        for (int i : array) {
+            total += i;
+        }
+        return total;
+    }
+
+    public int doNotRefactorWhenNotModifiedInLoop(int a, int b) {
+        Integer total = a;
+        total += b;
+        return total;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_out;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+public class UnsynchronizedLocalObjectSample {
+
+    private List<String> field;
+
+    public String joinWithStringBuffer(String[] array) {
+        StringBuilder sb = new StringBuilder();
+        for (String s : array) {
+            sb.append(s).append(", ");
+        }
+        return sb.toString();
+    }
+
+    public String useTemporaryStringBuffer(int i) {
+        return new StringBuilder("value: ").append(i).toString();
+    }
+
+    public int countWithVector(String[] array) {
+        ArrayList<String> v = new ArrayList<String>(array.length);
+        for (String s : array) {
+            if (!v.contains(s)) {
+                v.add(s);
+            }
+        }
+        for (String s : v) {
+            System.out.println(s);
+        }
+        return v.size();
+    }
+
+    public String doNotRefactorHashtableWhichIsPrinted(String[] array) {
+        Map<String, Integer> counts = new Hashtable<String, Integer>();
+        for (String s : array) {
+            Integer count = counts.get(s);
+            counts.put(s, count != null ? count + 1 : 1);
+        }
+        return counts.toString();
+    }
+
+    public int doNotRefactorHashtableRejectingNullKeys(String key) {
+        Map<String, Integer> counts = new Hashtable<String, Integer>();
+        counts.put(key, 1);
+        return counts.size();
+    }
+
+    public boolean useSynchronizedList(String[] array) {
+        List<String> list = new ArrayList<String>();
+        for (String s : array) {
+            list.add(s);
+        }
+        return list.iterator().hasNext();
+    }
+
+    public StringBuffer doNotRefactorReturnedStringBuffer() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("returned");
+        return sb;
+    }
+
+    public void doNotRefactorStringBufferAlias() {
+        StringBuffer sb = new StringBuffer();
+        StringBuffer alias = sb.append("alias");
+        System.out.println(alias);
+    }
+
+    public void doNotRefactorVectorStoredInField() {
+        List<String> v = new Vector<String>();
+        v.add("field");
+        field = v;
+    }
+
+    public void doNotRefactorVectorPassedToMethod() {
+        Vector<String> v = new Vector<String>();
+        v.add("argument");
+        System.out.println(v);
+    }
+
+    public Iterator<String> doNotRefactorEscapingView() {
+        Vector<String> v = new Vector<String>();
+        v.add("view");
+        return v.iterator();
+    }
+
+    public Enumeration<String> doNotRefactorVectorSpecificMethods() {
+        Vector<String> v = new Vector<String>();
+        v.add("enumeration");
+        v.elements();
+        return null;
+    }
+
+    public Runnable doNotRefactorCapturedVector() {
+        final Vector<String> v = new Vector<String>();
+        return new Runnable() {
+            @Override
+            public void run() {
+                v.add("captured");
+            }
+        };
+    }
+
+    public void doNotRefactorWhenUsedAsLock() {
+        Hashtable<String, String> map = new Hashtable<String, String>();
+        synchronized (map) {
+            map.put("lock", "lock");
+        }
+    }
+}